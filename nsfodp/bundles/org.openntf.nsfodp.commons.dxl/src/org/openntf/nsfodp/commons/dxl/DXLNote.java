@@ -0,0 +1,270 @@
+/**
+ * Copyright © 2018-2021 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsfodp.commons.dxl;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import com.ibm.commons.util.StringUtil;
+import com.ibm.commons.xml.DOMUtil;
+
+/**
+ * A view of a DXL {@code <note>} document that keeps a direct reference to the root note
+ * element and an index of its items by name, allowing items to be read, added, and replaced
+ * without evaluating XPath expressions.
+ *
+ * <p>The index is built once when the object is created and is kept current by the methods
+ * of this class. Items added to or removed from the document by other means after that
+ * point will not be reflected.</p>
+ *
+ * @author Jesse Gallagher
+ * @since 3.5.0
+ */
+public class DXLNote {
+	private static final String ELEMENT_NOTE = "note"; //$NON-NLS-1$
+	private static final String ELEMENT_ITEM = "item"; //$NON-NLS-1$
+	private static final String ATTR_NAME = "name"; //$NON-NLS-1$
+
+	private final Document dxlDoc;
+	private final Element note;
+	private final Map<String, List<Element>> items = new HashMap<>();
+
+	/**
+	 * @param dxlDoc the DXL document to wrap
+	 * @throws IllegalStateException if the root {@code note} element is not present
+	 */
+	public DXLNote(Document dxlDoc) {
+		this.dxlDoc = Objects.requireNonNull(dxlDoc);
+		this.note = findNoteElement(dxlDoc);
+
+		for(Node child = note.getFirstChild(); child != null; child = child.getNextSibling()) {
+			if(isElement(child, ELEMENT_ITEM)) {
+				Element item = (Element)child;
+				index(item.getAttribute(ATTR_NAME), item);
+			}
+		}
+	}
+
+	public Document getDocument() {
+		return dxlDoc;
+	}
+
+	/**
+	 * @return the root {@code note} element
+	 */
+	public Element getNoteElement() {
+		return note;
+	}
+
+	/**
+	 * @param itemName the name of the item to find
+	 * @return whether the note contains at least one item of the given name
+	 */
+	public boolean hasItem(String itemName) {
+		return items.containsKey(itemName);
+	}
+
+	/**
+	 * @param itemName the name of the item to find
+	 * @return an unmodifiable {@link List} of the {@code <item>} elements of the given name,
+	 *         in document order
+	 */
+	public List<Element> getItems(String itemName) {
+		List<Element> result = items.get(itemName);
+		return result == null ? Collections.emptyList() : Collections.unmodifiableList(result);
+	}
+
+	/**
+	 * Removes all items of the given name from the note.
+	 *
+	 * @param itemName the name of the items to remove
+	 */
+	public void deleteItems(String itemName) {
+		List<Element> existing = items.remove(itemName);
+		if(existing != null) {
+			for(Element item : existing) {
+				note.removeChild(item);
+			}
+		}
+	}
+
+	/**
+	 * @param itemName the name of the item to read
+	 * @return the content of each {@code <text>} element directly within the named items
+	 */
+	public List<String> getItemValueStrings(String itemName) {
+		List<String> result = new ArrayList<>();
+		for(Element item : getItems(itemName)) {
+			for(Node child = item.getFirstChild(); child != null; child = child.getNextSibling()) {
+				if(isElement(child, "text")) { //$NON-NLS-1$
+					result.add(child.getTextContent());
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Adds a text item to the note.
+	 *
+	 * @param itemName the name of the item to write
+	 * @param removeExisting whether to remove existing items of the same name first
+	 * @param value the values to write, or {@code null} to write no new item
+	 * @return the element containing the {@code <text>} values, or {@code null} if
+	 *         {@code value} is {@code null}
+	 */
+	public Element writeItemString(String itemName, boolean removeExisting, CharSequence... value) {
+		if(removeExisting) {
+			deleteItems(itemName);
+		}
+
+		if(value != null) {
+			Element item = createItem(itemName);
+			if(value.length > 1) {
+				item = DOMUtil.createElement(dxlDoc, item, "textlist"); //$NON-NLS-1$
+			}
+			for(CharSequence val : value) {
+				Element text = DOMUtil.createElement(dxlDoc, item, "text"); //$NON-NLS-1$
+				text.setTextContent(StringUtil.toString(val));
+			}
+			return item;
+		} else {
+			return null;
+		}
+	}
+
+	/**
+	 * Replaces any items of the given name with a number item.
+	 *
+	 * @param itemName the name of the item to write
+	 * @param value the values to write, or {@code null} to only remove existing items
+	 */
+	public void writeItemNumber(String itemName, Number... value) {
+		deleteItems(itemName);
+
+		if(value != null) {
+			Element item = createItem(itemName);
+			for(Number val : value) {
+				Element number = DOMUtil.createElement(dxlDoc, item, "number"); //$NON-NLS-1$
+				number.setTextContent(StringUtil.toString(val));
+			}
+		}
+	}
+
+	/**
+	 * Replaces any items of the given name with a series of {@code <rawitemdata>} items
+	 * holding the provided composite data.
+	 *
+	 * @param itemName the name of the item to write
+	 * @param data the composite data to store
+	 * @param itemCap the maximum amount of data to store in each item chunk
+	 * @param headerSize the size of the header preceding the first chunk's data
+	 */
+	public void writeItemDataRaw(String itemName, byte[] data, int itemCap, int headerSize) {
+		deleteItems(itemName);
+
+		int dxlChunks = data.length / itemCap;
+		if(data.length % itemCap > 0) {
+			dxlChunks++;
+		}
+		int offset = 0;
+		Base64.Encoder base64 = Base64.getEncoder();
+		for (int i = 0; i < dxlChunks; i++) {
+			int chunkSize = Math.min(data.length-offset, itemCap + (i==0 ? headerSize : 0));
+			String chunkData = base64.encodeToString(Arrays.copyOfRange(data, offset, offset + chunkSize));
+
+			Element itemNode = createItem(itemName);
+			Element fileDataNode = DOMUtil.createElement(dxlDoc, itemNode, "rawitemdata"); //$NON-NLS-1$
+			fileDataNode.setAttribute("type", "1"); //$NON-NLS-1$ //$NON-NLS-2$
+			// Write out the value with 72-column wrapping
+			StringBuilder wrapped = new StringBuilder("\n"); //$NON-NLS-1$
+			for(int stringIndex = 0; stringIndex < chunkData.length(); stringIndex += 72) {
+				wrapped.append(chunkData, stringIndex, Math.min(stringIndex+72, chunkData.length()));
+				wrapped.append('\n');
+			}
+			fileDataNode.setTextContent(StringUtil.toString(wrapped));
+
+			offset += chunkSize;
+		}
+	}
+
+	/**
+	 * Adds a date/time item to the note.
+	 *
+	 * @param itemName the name of the item to write
+	 * @param removeExisting whether to remove existing items of the same name first
+	 * @param value the value to write, or {@code null} to write no new item
+	 * @return the {@code <datetime>} element, or {@code null} if {@code value} is {@code null}
+	 */
+	public Element writeItemDateTime(String itemName, boolean removeExisting, Instant value) {
+		if(removeExisting) {
+			deleteItems(itemName);
+		}
+
+		if(value != null) {
+			Element item = createItem(itemName);
+			item = DOMUtil.createElement(dxlDoc, item, "datetime"); //$NON-NLS-1$
+			item.setTextContent(DXLUtil.DXL_DATETIME_FORMAT.get().format(Date.from(value)));
+			return item;
+		} else {
+			return null;
+		}
+	}
+
+	// *******************************************************************************
+	// * Internal utility methods
+	// *******************************************************************************
+
+	/**
+	 * @param dxlDoc the DXL document to search
+	 * @return the root {@code note} element
+	 * @throws IllegalStateException if the root {@code note} element is not present
+	 */
+	static Element findNoteElement(Document dxlDoc) {
+		Element root = dxlDoc.getDocumentElement();
+		if(!isElement(root, ELEMENT_NOTE)) {
+			throw new IllegalStateException("Root element <note> not found. This is most likely because the ODP is not using binary DXL, and this is currently unsupported");
+		}
+		return root;
+	}
+
+	private static boolean isElement(Node node, String name) {
+		return node != null && node.getNodeType() == Node.ELEMENT_NODE && name.equals(node.getNodeName());
+	}
+
+	private Element createItem(String itemName) {
+		Element item = DOMUtil.createElement(dxlDoc, note, ELEMENT_ITEM);
+		item.setAttribute(ATTR_NAME, itemName);
+		index(itemName, item);
+		return item;
+	}
+
+	private void index(String itemName, Element item) {
+		items.computeIfAbsent(itemName, key -> new ArrayList<>()).add(item);
+	}
+}
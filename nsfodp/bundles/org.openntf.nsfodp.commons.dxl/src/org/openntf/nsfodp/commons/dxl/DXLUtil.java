@@ -15,12 +15,9 @@
  */
 package org.openntf.nsfodp.commons.dxl;
 
-import static org.openntf.nsfodp.commons.dxl.ODSConstants.FILE_SEGMENT_SIZE_CAP;
 import static org.openntf.nsfodp.commons.dxl.ODSConstants.IMAGE_SEGMENT_SIZE_CAP;
 import static org.openntf.nsfodp.commons.dxl.ODSConstants.PER_FILE_ITEM_DATA_CAP;
 import static org.openntf.nsfodp.commons.h.Ods.CDGRAPHIC_VERSION3;
-import static org.openntf.nsfodp.commons.h.Ods.SIG_CDFILEHEADER;
-import static org.openntf.nsfodp.commons.h.Ods.SIG_CDFILESEGMENT;
 import static org.openntf.nsfodp.commons.h.Ods.SIG_CDGRAPHIC;
 import static org.openntf.nsfodp.commons.h.Ods.SIG_CDIMAGEHEADER;
 import static org.openntf.nsfodp.commons.h.Ods.SIG_CDIMAGESEGMENT;
@@ -37,14 +34,10 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.sql.Date;
 import java.text.DateFormat;
 import java.text.MessageFormat;
 import java.text.SimpleDateFormat;
 import java.time.Instant;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Base64;
 import java.util.List;
 
 import javax.activation.MimetypesFileTypeMap;
@@ -53,10 +46,8 @@ import org.openntf.nsfodp.commons.NSFODPUtil;
 import org.openntf.nsfodp.commons.h.Ods;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
-import org.w3c.dom.Node;
 
 import com.ibm.commons.util.StringUtil;
-import com.ibm.commons.xml.DOMUtil;
 import com.ibm.commons.xml.XMLException;
 
 public enum DXLUtil {
@@ -68,97 +59,34 @@ public enum DXLUtil {
 		return input.replace("'", "\\'"); //$NON-NLS-1$ //$NON-NLS-2$
 	}
 
+	/**
+	 * Removes all items of the given name from the note.
+	 * 
+	 * <p>Each of the item methods in this class scans the note for items on every call. Code
+	 * that makes several changes to the same note should use a {@link DXLNote} instead.</p>
+	 * 
+	 * @param dxlDoc the DXL document to modify
+	 * @param itemName the name of the items to remove
+	 * @see DXLNote#deleteItems(String)
+	 */
 	public static void deleteItems(Document dxlDoc, String itemName) throws XMLException {
-		// Force the side effect of checking for the note root
-		getRootNoteElement(dxlDoc);
-		
-		Object[] existingNodes = DOMUtil.evaluateXPath(dxlDoc, "/note/item[@name='" + escapeXPathValue(itemName) + "']").getNodes(); //$NON-NLS-1$ //$NON-NLS-2$
-		for(Object existing : existingNodes) {
-			Node node = (Node)existing;
-			node.getParentNode().removeChild(node);
-		}
+		new DXLNote(dxlDoc).deleteItems(itemName);
 	}
 
 	public static List<String> getItemValueStrings(Document dxlDoc, String itemName) throws XMLException {
-		List<String> result = new ArrayList<>();
-
-		// Force the side effect of checking for the note root
-		getRootNoteElement(dxlDoc);
-		
-		Object[] nodes = DOMUtil.evaluateXPath(dxlDoc, "/*[name()='note']/*[name()='item'][@name='" + escapeXPathValue(itemName) + "']/*[name()='text']").getNodes(); //$NON-NLS-1$ //$NON-NLS-2$
-		for(Object nodeObj : nodes) {
-			Node node = (Node)nodeObj;
-			result.add(node.getTextContent());
-		}
-		
-		return result;
+		return new DXLNote(dxlDoc).getItemValueStrings(itemName);
 	}
 
 	public static Element writeItemString(Document dxlDoc, String itemName, boolean removeExisting, CharSequence... value) throws XMLException {
-		if(removeExisting) {
-			deleteItems(dxlDoc, itemName);
-		}
-		
-		if(value != null) {
-			Element note = getRootNoteElement(dxlDoc);
-			Element item = DOMUtil.createElement(dxlDoc, note, "item"); //$NON-NLS-1$
-			item.setAttribute("name", itemName); //$NON-NLS-1$
-			if(value.length > 1) {
-				item = DOMUtil.createElement(dxlDoc, item, "textlist"); //$NON-NLS-1$
-			}
-			for(CharSequence val : value) {
-				Element text = DOMUtil.createElement(dxlDoc, item, "text"); //$NON-NLS-1$
-				text.setTextContent(StringUtil.toString(val));
-			}
-			return item;
-		} else {
-			return null;
-		}
+		return new DXLNote(dxlDoc).writeItemString(itemName, removeExisting, value);
 	}
 
 	public static void writeItemNumber(Document dxlDoc, String itemName, Number... value) throws XMLException {
-		deleteItems(dxlDoc, itemName);
-		
-		if(value != null) {
-			Element note = getRootNoteElement(dxlDoc);
-			Element item = DOMUtil.createElement(dxlDoc, note, "item"); //$NON-NLS-1$
-			item.setAttribute("name", itemName); //$NON-NLS-1$
-			for(Number val : value) {
-				Element number = DOMUtil.createElement(dxlDoc, item, "number"); //$NON-NLS-1$
-				number.setTextContent(StringUtil.toString(val));
-			}
-		}
+		new DXLNote(dxlDoc).writeItemNumber(itemName, value);
 	}
 
 	public static void writeItemDataRaw(Document dxlDoc, String itemName, byte[] data, int itemCap, int headerSize) throws XMLException {
-		deleteItems(dxlDoc, itemName);
-
-		Element note = getRootNoteElement(dxlDoc);
-		
-		int dxlChunks = data.length / itemCap;
-		if(data.length % itemCap > 0) {
-			dxlChunks++;
-		}
-		int offset = 0;
-		Base64.Encoder base64 = Base64.getEncoder();
-		for (int i = 0; i < dxlChunks; i++) {
-			int chunkSize = Math.min(data.length-offset, itemCap + (i==0 ? headerSize : 0));
-			String chunkData = base64.encodeToString(Arrays.copyOfRange(data, offset, offset + chunkSize));
-	
-			Element itemNode = DOMUtil.createElement(dxlDoc, note, "item"); //$NON-NLS-1$
-			itemNode.setAttribute("name", itemName); //$NON-NLS-1$
-			Element fileDataNode = DOMUtil.createElement(dxlDoc, itemNode, "rawitemdata"); //$NON-NLS-1$
-			fileDataNode.setAttribute("type", "1"); //$NON-NLS-1$ //$NON-NLS-2$
-			// Write out the value with 72-column wrapping
-			StringBuilder wrapped = new StringBuilder("\n"); //$NON-NLS-1$
-			for(int stringIndex = 0; stringIndex < chunkData.length(); stringIndex += 72) {
-				wrapped.append(chunkData.substring(stringIndex, Math.min(stringIndex+72, chunkData.length())));
-				wrapped.append('\n');
-			}
-			fileDataNode.setTextContent(StringUtil.toString(wrapped));
-	
-			offset += chunkSize;
-		}
+		new DXLNote(dxlDoc).writeItemDataRaw(itemName, data, itemCap, headerSize);
 	}
 
 	public static void writeItemFileData(Document dxlDoc, String itemName, InputStream is, int fileLength) throws XMLException, IOException {
@@ -167,54 +95,43 @@ public enum DXLUtil {
 	}
 
 	public static byte[] getFileResourceData(InputStream is, int fileLength) throws IOException {
-		// Spec out the structure
-		int segCount = fileLength / FILE_SEGMENT_SIZE_CAP;
-		if (fileLength % FILE_SEGMENT_SIZE_CAP > 0) {
-			segCount++;
-		}
-		
-		int totalSize = SIZE_CDFILEHEADER + (SIZE_CDFILESEGMENT * segCount) + fileLength + (fileLength % 2);
-		
-		// Now create a CD record for the file data
-		// TODO this could be a little more efficient by writing to a Base64 wrapper and
-		//   cutting off and making a new item node at size intervals
-		ByteBuffer buf = ByteBuffer.allocate(totalSize).order(ByteOrder.LITTLE_ENDIAN) ;
-		// CDFILEHEADER
-		{
-			buf.putShort(SIG_CDFILEHEADER);// Header.Signature
-			buf.putInt(SIZE_CDFILEHEADER); // Header.Length
-			buf.putShort((short)0);        // FileExtLen
-			buf.putInt(fileLength);        // FileDataSize
-			buf.putInt(segCount);          // SegCount
-			buf.putInt(0);                 // Flags
-			buf.putInt(0);                 // Reserved
-		}
-		for(int i = 0; i < segCount; i++) {
-			// Each chunk begins with a CDFILESEGMENT
-	
-			// Figure out our data and segment sizes
-			int dataOffset = FILE_SEGMENT_SIZE_CAP * i;
-			short dataSize = (short)Math.min((fileLength - dataOffset), FILE_SEGMENT_SIZE_CAP);
-			short segSize = (short)(dataSize + (dataSize % 2));
-	
-			// CDFILESEGMENT
-			{
-				buf.putShort(SIG_CDFILESEGMENT);          // Header.Signature
-				buf.putInt(segSize + SIZE_CDFILESEGMENT); // Header.Length
-				buf.putShort((short)dataSize);            // DataSize
-				buf.putShort((short)segSize);             // SegSize
-				buf.putInt(0);                            // Flags
-				buf.putInt(0);                            // Reserved
-				
-				byte[] segData = new byte[dataSize];
-				is.read(segData);
-				buf.put(segData);
-				if(segSize > dataSize) {
-					buf.put((byte)0);
-				}
+		byte[] result = new byte[(int)getFileResourceDataLength(fileLength)];
+		try(InputStream data = getFileResourceDataStream(is, fileLength)) {
+			int offset = 0;
+			int read;
+			while(offset < result.length && (read = data.read(result, offset, result.length - offset)) > -1) {
+				offset += read;
 			}
 		}
-		return buf.array();
+		return result;
+	}
+
+	/**
+	 * Computes the size of the file-resource CD record structure that would be generated
+	 * for a file of the provided length.
+	 * 
+	 * @param fileLength the length of the source file data
+	 * @return the size of the corresponding CD record data
+	 * @since 3.5.0
+	 */
+	public static long getFileResourceDataLength(long fileLength) {
+		int segCount = FileResourceDataInputStream.getSegmentCount(fileLength);
+		return SIZE_CDFILEHEADER + ((long)SIZE_CDFILESEGMENT * segCount) + fileLength + (fileLength % 2);
+	}
+
+	/**
+	 * Wraps the provided file data in a stream that produces the file-resource CD record
+	 * structure lazily, reading one segment's worth of data from {@code is} at a time.
+	 * 
+	 * <p>Closing the returned stream closes {@code is}.</p>
+	 * 
+	 * @param is the source file data
+	 * @param fileLength the length of the source file data
+	 * @return a stream of the corresponding CD record data
+	 * @since 3.5.0
+	 */
+	public static InputStream getFileResourceDataStream(InputStream is, int fileLength) {
+		return new FileResourceDataInputStream(is, fileLength);
 	}
 
 	public static byte[] getImageResourceData(Path file, Document dxlDoc) throws IOException, XMLException {
@@ -224,10 +141,11 @@ public enum DXLUtil {
 		int width = 0; // true value not actually stored
 		String mimeType;
 		// First, check the DXL file
-		mimeType = DOMUtil.evaluateXPath(dxlDoc, "/*[name()='note']/*[name()='item'][@name='$MimeType']/*[name()='text']/text()").getStringValue(); //$NON-NLS-1$
+		DXLNote note = new DXLNote(dxlDoc);
+		mimeType = getFirstValue(note, "$MimeType"); //$NON-NLS-1$
 		// Failing that, go by the ImageNames item
 		if(StringUtil.isEmpty(mimeType)) {
-			String imageNames = StringUtil.toString(DOMUtil.evaluateXPath(dxlDoc, "/*[name()='note']/*[name()='item'][@name='$ImageNames']/*[name()='text']/text()").getStringValue()).toLowerCase(); //$NON-NLS-1$
+			String imageNames = getFirstValue(note, "$ImageNames").toLowerCase(); //$NON-NLS-1$
 			if(imageNames.endsWith(".gif")) { //$NON-NLS-1$
 				mimeType = "image/gif"; //$NON-NLS-1$
 			} else if(imageNames.endsWith(".bmp")) { //$NON-NLS-1$
@@ -347,34 +265,21 @@ public enum DXLUtil {
 	}
 	
 	public static Element writeItemDateTime(Document dxlDoc, String itemName, boolean removeExisting, Instant value) throws XMLException {
-		if(removeExisting) {
-			deleteItems(dxlDoc, itemName);
-		}
-		
-		if(value != null) {
-			Element note = getRootNoteElement(dxlDoc);
-			Element item = DOMUtil.createElement(dxlDoc, note, "item"); //$NON-NLS-1$
-			item.setAttribute("name", itemName); //$NON-NLS-1$
-			item = DOMUtil.createElement(dxlDoc, item, "datetime"); //$NON-NLS-1$
-			item.setTextContent(DXL_DATETIME_FORMAT.get().format(Date.from(value)));
-			return item;
-		} else {
-			return null;
-		}
+		return new DXLNote(dxlDoc).writeItemDateTime(itemName, removeExisting, value);
 	}
 	
 	/**
 	 * @param dxlDoc the DXL document to search
 	 * @return the root {@code note} element
-	 * @throws XMLException if there is a problem evaluating the XPath
 	 * @throws IllegalStateException if the root {@code note} element is not present
 	 * @since 2.5.0
 	 */
-	private static Element getRootNoteElement(Document dxlDoc) throws XMLException {
-		Element note = (Element)DOMUtil.evaluateXPath(dxlDoc, "/note").getSingleNode(); //$NON-NLS-1$
-		if(note == null) {
-			throw new IllegalStateException("Root element <note> not found. This is most likely because the ODP is not using binary DXL, and this is currently unsupported");
-		}
-		return note;
+	static Element getRootNoteElement(Document dxlDoc) {
+		return DXLNote.findNoteElement(dxlDoc);
+	}
+	
+	private static String getFirstValue(DXLNote note, String itemName) {
+		List<String> values = note.getItemValueStrings(itemName);
+		return values.isEmpty() ? "" : StringUtil.toString(values.get(0)); //$NON-NLS-1$
 	}
 }
@@ -0,0 +1,167 @@
+/**
+ * Copyright © 2018-2021 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsfodp.commons.dxl;
+
+import static org.openntf.nsfodp.commons.dxl.ODSConstants.FILE_SEGMENT_SIZE_CAP;
+import static org.openntf.nsfodp.commons.h.Ods.SIG_CDFILEHEADER;
+import static org.openntf.nsfodp.commons.h.Ods.SIG_CDFILESEGMENT;
+import static org.openntf.nsfodp.commons.h.Ods.SIZE_CDFILEHEADER;
+import static org.openntf.nsfodp.commons.h.Ods.SIZE_CDFILESEGMENT;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Produces the {@code CDFILEHEADER}/{@code CDFILESEGMENT} composite-data structure for
+ * a file on the fly, reading at most one segment of the source data at a time.
+ *
+ * @author Jesse Gallagher
+ * @since 3.5.0
+ */
+class FileResourceDataInputStream extends InputStream {
+	private final InputStream source;
+	private final int fileLength;
+	private final int segCount;
+	private final ByteBuffer segment = ByteBuffer.allocate(SIZE_CDFILESEGMENT + FILE_SEGMENT_SIZE_CAP + 1).order(ByteOrder.LITTLE_ENDIAN);
+	/** The index of the next segment to produce, with -1 representing the header */
+	private int segIndex = -1;
+
+	public FileResourceDataInputStream(InputStream source, int fileLength) {
+		this.source = source;
+		this.fileLength = fileLength;
+		this.segCount = getSegmentCount(fileLength);
+		this.segment.limit(0);
+	}
+
+	static int getSegmentCount(long fileLength) {
+		long segCount = fileLength / FILE_SEGMENT_SIZE_CAP;
+		if (fileLength % FILE_SEGMENT_SIZE_CAP > 0) {
+			segCount++;
+		}
+		return (int)segCount;
+	}
+
+	/**
+	 * Writes a {@code CDFILEHEADER} record to the provided little-endian buffer.
+	 * 
+	 * @param buf the buffer to write to
+	 * @param fileLength the length of the file data, which is stored as an unsigned DWORD
+	 * @param segCount the number of segments that will follow
+	 */
+	static void putFileHeader(ByteBuffer buf, long fileLength, int segCount) {
+		buf.putShort(SIG_CDFILEHEADER);// Header.Signature
+		buf.putInt(SIZE_CDFILEHEADER); // Header.Length
+		buf.putShort((short)0);        // FileExtLen
+		buf.putInt((int)fileLength);   // FileDataSize
+		buf.putInt(segCount);          // SegCount
+		buf.putInt(0);                 // Flags
+		buf.putInt(0);                 // Reserved
+	}
+
+	/**
+	 * Writes a {@code CDFILESEGMENT} record header to the provided little-endian buffer.
+	 * 
+	 * @param buf the buffer to write to
+	 * @param dataSize the amount of file data in the segment
+	 * @return the padded size of the segment data
+	 */
+	static int putFileSegmentHeader(ByteBuffer buf, int dataSize) {
+		int segSize = dataSize + (dataSize % 2);
+		buf.putShort(SIG_CDFILESEGMENT);          // Header.Signature
+		buf.putInt(segSize + SIZE_CDFILESEGMENT); // Header.Length
+		buf.putShort((short)dataSize);            // DataSize
+		buf.putShort((short)segSize);             // SegSize
+		buf.putInt(0);                            // Flags
+		buf.putInt(0);                            // Reserved
+		return segSize;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if(!fill()) {
+			return -1;
+		}
+		return segment.get() & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if(len == 0) {
+			return 0;
+		}
+		if(!fill()) {
+			return -1;
+		}
+		int count = Math.min(len, segment.remaining());
+		segment.get(b, off, count);
+		return count;
+	}
+
+	@Override
+	public int available() throws IOException {
+		return segment.remaining();
+	}
+
+	@Override
+	public void close() throws IOException {
+		source.close();
+	}
+
+	// *******************************************************************************
+	// * Internal utility methods
+	// *******************************************************************************
+
+	private boolean fill() throws IOException {
+		while(!segment.hasRemaining()) {
+			if(segIndex >= segCount) {
+				return false;
+			}
+			segment.clear();
+			if(segIndex == -1) {
+				putFileHeader(segment, fileLength, segCount);
+			} else {
+				// Figure out our data and segment sizes
+				int dataOffset = FILE_SEGMENT_SIZE_CAP * segIndex;
+				int dataSize = Math.min((fileLength - dataOffset), FILE_SEGMENT_SIZE_CAP);
+				int segSize = putFileSegmentHeader(segment, dataSize);
+
+				int pos = segment.position();
+				readFully(segment.array(), pos, dataSize);
+				segment.position(pos + dataSize);
+				if(segSize > dataSize) {
+					segment.put((byte)0);
+				}
+			}
+			segIndex++;
+			segment.flip();
+		}
+		return true;
+	}
+
+	private void readFully(byte[] b, int off, int len) throws IOException {
+		int read = 0;
+		while(read < len) {
+			int count = source.read(b, off + read, len - read);
+			if(count < 0) {
+				throw new EOFException();
+			}
+			read += count;
+		}
+	}
+}
@@ -0,0 +1,259 @@
+/**
+ * Copyright © 2018-2021 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsfodp.commons.dxl;
+
+import static org.openntf.nsfodp.commons.dxl.ODSConstants.FILE_SEGMENT_SIZE_CAP;
+import static org.openntf.nsfodp.commons.h.Ods.SIZE_CDFILEHEADER;
+import static org.openntf.nsfodp.commons.h.Ods.SIZE_CDFILESEGMENT;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.MessageFormat;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Builds the {@code CDFILEHEADER}/{@code CDFILESEGMENT} composite-data structure for a file
+ * by memory-mapping it and exposing the result as a lazy sequence of buffers, so that the
+ * file content is never copied onto the heap.
+ *
+ * <p>Files are mapped in windows of whole segments, so files larger than
+ * {@link Integer#MAX_VALUE} bytes are supported, up to the unsigned 32-bit limit of the
+ * {@code FileDataSize} field.</p>
+ *
+ * @author Jesse Gallagher
+ * @since 3.5.0
+ */
+public class MappedFileResourceData implements Closeable {
+	/** The maximum file size representable in a {@code CDFILEHEADER} */
+	public static final long MAX_FILE_LENGTH = 0xFFFFFFFFL;
+
+	/** The size of each mapped region, which is kept a multiple of the segment size */
+	private static final long WINDOW_SIZE = (long)FILE_SEGMENT_SIZE_CAP * 6400;
+
+	private static final ByteBuffer PADDING = ByteBuffer.allocate(1).asReadOnlyBuffer();
+
+	private final Path file;
+	private final FileChannel channel;
+	private final long fileLength;
+	private final int segCount;
+
+	public MappedFileResourceData(Path file) throws IOException {
+		this.file = file;
+		if(!Files.isRegularFile(file)) {
+			throw new IllegalArgumentException(MessageFormat.format(Messages.getString("DXLUtil.cannotReadFile"), file)); //$NON-NLS-1$
+		}
+		this.channel = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			this.fileLength = channel.size();
+			if(fileLength > MAX_FILE_LENGTH) {
+				throw new IllegalArgumentException(MessageFormat.format(Messages.getString("MappedFileResourceData.fileTooLarge"), file, fileLength)); //$NON-NLS-1$
+			}
+		} catch(IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+		this.segCount = FileResourceDataInputStream.getSegmentCount(fileLength);
+	}
+
+	public Path getFile() {
+		return file;
+	}
+
+	/**
+	 * @return the length of the source file
+	 */
+	public long getFileLength() {
+		return fileLength;
+	}
+
+	/**
+	 * @return the total length of the generated CD record data
+	 */
+	public long getDataLength() {
+		return DXLUtil.getFileResourceDataLength(fileLength);
+	}
+
+	/**
+	 * Produces the CD record structure as a sequence of read-only buffers: the file header,
+	 * then for each segment its header, a slice of the mapped file and, if needed, a padding
+	 * byte. Mapped regions are created on demand as the iterator advances.
+	 *
+	 * @return an {@link Iterator} of buffers that together make up the composite data
+	 */
+	public Iterator<ByteBuffer> slices() {
+		return new SliceIterator();
+	}
+
+	/**
+	 * @return an {@link InputStream} that reads the composite data from {@link #slices()}
+	 *         and closes this object when closed
+	 */
+	public InputStream newInputStream() {
+		return new SliceInputStream(slices());
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	// *******************************************************************************
+	// * Internal implementation
+	// *******************************************************************************
+
+	private class SliceIterator implements Iterator<ByteBuffer> {
+		/** The index of the next segment, with -1 representing the file header */
+		private int segIndex = -1;
+		/** The slice to return after the current segment header, if any */
+		private ByteBuffer pendingData;
+		private boolean pendingPadding;
+		private long windowStart = -1;
+		private MappedByteBuffer window;
+
+		@Override
+		public boolean hasNext() {
+			return segIndex < segCount || pendingData != null || pendingPadding;
+		}
+
+		@Override
+		public ByteBuffer next() {
+			if(!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			if(pendingData != null) {
+				ByteBuffer result = pendingData;
+				pendingData = null;
+				return result;
+			}
+			if(pendingPadding) {
+				pendingPadding = false;
+				return PADDING.duplicate();
+			}
+
+			if(segIndex == -1) {
+				segIndex++;
+				ByteBuffer header = ByteBuffer.allocate(SIZE_CDFILEHEADER).order(ByteOrder.LITTLE_ENDIAN);
+				FileResourceDataInputStream.putFileHeader(header, fileLength, segCount);
+				header.flip();
+				return header.asReadOnlyBuffer();
+			}
+
+			long dataOffset = (long)FILE_SEGMENT_SIZE_CAP * segIndex;
+			int dataSize = (int)Math.min(fileLength - dataOffset, FILE_SEGMENT_SIZE_CAP);
+			segIndex++;
+
+			ByteBuffer header = ByteBuffer.allocate(SIZE_CDFILESEGMENT).order(ByteOrder.LITTLE_ENDIAN);
+			int segSize = FileResourceDataInputStream.putFileSegmentHeader(header, dataSize);
+			header.flip();
+
+			pendingData = slice(dataOffset, dataSize);
+			pendingPadding = segSize > dataSize;
+			return header.asReadOnlyBuffer();
+		}
+
+		private ByteBuffer slice(long offset, int length) {
+			long start = offset - (offset % WINDOW_SIZE);
+			if(window == null || start != windowStart) {
+				try {
+					window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW_SIZE, fileLength - start));
+				} catch(IOException e) {
+					throw new UncheckedIOException(e);
+				}
+				windowStart = start;
+			}
+			ByteBuffer result = window.duplicate();
+			int pos = (int)(offset - start);
+			result.position(pos);
+			result.limit(pos + length);
+			return result.slice().asReadOnlyBuffer();
+		}
+	}
+
+	private class SliceInputStream extends InputStream {
+		private final Iterator<ByteBuffer> slices;
+		private ByteBuffer current;
+
+		public SliceInputStream(Iterator<ByteBuffer> slices) {
+			this.slices = slices;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if(!advance()) {
+				return -1;
+			}
+			return current.get() & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if(len == 0) {
+				return 0;
+			}
+			if(!advance()) {
+				return -1;
+			}
+			int count = Math.min(len, current.remaining());
+			current.get(b, off, count);
+			return count;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = 0;
+			while(skipped < n && advance()) {
+				int count = (int)Math.min(n - skipped, current.remaining());
+				current.position(current.position() + count);
+				skipped += count;
+			}
+			return skipped;
+		}
+
+		@Override
+		public int available() throws IOException {
+			return current == null ? 0 : current.remaining();
+		}
+
+		@Override
+		public void close() throws IOException {
+			MappedFileResourceData.this.close();
+		}
+
+		private boolean advance() throws IOException {
+			while(current == null || !current.hasRemaining()) {
+				if(!slices.hasNext()) {
+					return false;
+				}
+				try {
+					current = slices.next();
+				} catch(UncheckedIOException e) {
+					throw e.getCause();
+				}
+			}
+			return true;
+		}
+	}
+}
@@ -0,0 +1,434 @@
+/**
+ * Copyright © 2018-2021 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsfodp.commons.dxl;
+
+import static org.openntf.nsfodp.commons.dxl.ODSConstants.PER_FILE_ITEM_DATA_CAP;
+import static org.openntf.nsfodp.commons.h.Ods.SIZE_CDFILEHEADER;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.UUID;
+
+import org.openntf.nsfodp.commons.NSFODPUtil;
+import org.w3c.dom.Comment;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import com.ibm.commons.xml.DOMUtil;
+import com.ibm.commons.xml.XMLException;
+
+/**
+ * Emits a DXL note whose binary items are streamed from their sources as the DXL is read,
+ * rather than being Base64-encoded into the DOM up front.
+ *
+ * <p>The non-binary portion of the note is taken from a DOM {@link Document}, while each
+ * item added via {@link #addItemDataRaw} or {@link #addItemFileData} is written as a series
+ * of {@code <rawitemdata>} chunks in the same format as
+ * {@link DXLUtil#writeItemDataRaw(Document, String, byte[], int, int)}, reading at most one
+ * line's worth of source data at a time.</p>
+ *
+ * @author Jesse Gallagher
+ * @since 3.5.0
+ */
+public class StreamingDXLWriter {
+	/**
+	 * Provides a fresh {@link InputStream} of item data each time the DXL is emitted.
+	 */
+	@FunctionalInterface
+	public interface DataSource {
+		InputStream open() throws IOException;
+	}
+
+	/** The number of Base64 characters per line in rawitemdata */
+	private static final int LINE_CHARS = 72;
+	/** The number of source bytes that encode to a full line */
+	private static final int LINE_BYTES = LINE_CHARS / 4 * 3;
+
+	private static class RawItem {
+		private final String itemName;
+		private final DataSource data;
+		private final int itemCap;
+		private final int headerSize;
+
+		public RawItem(String itemName, DataSource data, int itemCap, int headerSize) {
+			this.itemName = itemName;
+			this.data = data;
+			this.itemCap = itemCap;
+			this.headerSize = headerSize;
+		}
+	}
+
+	private final Document dxlDoc;
+	private final DXLNote note;
+	private final List<RawItem> items = new ArrayList<>();
+
+	public StreamingDXLWriter(Document dxlDoc) {
+		this.dxlDoc = Objects.requireNonNull(dxlDoc);
+		this.note = new DXLNote(dxlDoc);
+	}
+
+	/**
+	 * @return the DOM representation of the non-streamed portion of the note, which may
+	 *         be modified until the DXL is emitted
+	 */
+	public Document getDocument() {
+		return dxlDoc;
+	}
+
+	/**
+	 * Retrieves the indexed item model for the non-streamed portion of the note. Items should
+	 * be added or removed via this object rather than directly in {@link #getDocument()}, so
+	 * that the index stays current.
+	 *
+	 * @return the {@link DXLNote} for the document
+	 */
+	public DXLNote getNote() {
+		return note;
+	}
+
+	/**
+	 * Adds an item whose raw composite data will be streamed from the provided source.
+	 * Any existing items of the same name in the document are removed.
+	 *
+	 * @param itemName the name of the item to write
+	 * @param data a source for the item's composite data
+	 * @param itemCap the maximum amount of data to store in each item chunk
+	 * @param headerSize the size of the header preceding the first chunk's data
+	 * @return this writer
+	 * @throws XMLException if there is a problem removing existing items
+	 */
+	public StreamingDXLWriter addItemDataRaw(String itemName, DataSource data, int itemCap, int headerSize) throws XMLException {
+		note.deleteItems(itemName);
+		items.removeIf(item -> item.itemName.equals(itemName));
+		items.add(new RawItem(itemName, Objects.requireNonNull(data), itemCap, headerSize));
+		return this;
+	}
+
+	/**
+	 * Adds a file-data item whose CD records will be generated on the fly from the provided
+	 * source.
+	 *
+	 * @param itemName the name of the item to write
+	 * @param data a source for the file's content
+	 * @param fileLength the length of the file's content
+	 * @return this writer
+	 * @throws XMLException if there is a problem removing existing items
+	 */
+	public StreamingDXLWriter addItemFileData(String itemName, DataSource data, int fileLength) throws XMLException {
+		return addItemDataRaw(itemName, () -> DXLUtil.getFileResourceDataStream(data.open(), fileLength), PER_FILE_ITEM_DATA_CAP, SIZE_CDFILEHEADER);
+	}
+
+	public StreamingDXLWriter addItemFileData(String itemName, byte[] data) throws XMLException {
+		return addItemFileData(itemName, () -> new ByteArrayInputStream(data), data.length);
+	}
+
+	/**
+	 * Adds a file-data item whose CD records will be generated from a memory-mapped view of
+	 * the provided file, allowing for files larger than {@link Integer#MAX_VALUE} bytes.
+	 *
+	 * <p>Files that are not on the default file system, such as entries in a ZIP file system,
+	 * cannot be mapped and are streamed instead, which limits them to
+	 * {@link Integer#MAX_VALUE} bytes.</p>
+	 *
+	 * @param itemName the name of the item to write
+	 * @param file the file to read
+	 * @return this writer
+	 * @throws XMLException if there is a problem removing existing items
+	 * @see MappedFileResourceData
+	 */
+	public StreamingDXLWriter addItemFileData(String itemName, Path file) throws XMLException {
+		if(!Files.isRegularFile(file)) {
+			throw new IllegalArgumentException(MessageFormat.format(Messages.getString("DXLUtil.cannotReadFile"), file)); //$NON-NLS-1$
+		}
+		if(file.getFileSystem() == FileSystems.getDefault()) {
+			return addItemDataRaw(itemName, () -> new MappedFileResourceData(file).newInputStream(), PER_FILE_ITEM_DATA_CAP, SIZE_CDFILEHEADER);
+		}
+		
+		long fileLength;
+		try {
+			fileLength = Files.size(file);
+		} catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		if(fileLength > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException(MessageFormat.format(Messages.getString("MappedFileResourceData.fileTooLarge"), file, fileLength)); //$NON-NLS-1$
+		}
+		return addItemFileData(itemName, () -> NSFODPUtil.newInputStream(file), (int)fileLength);
+	}
+
+	/**
+	 * Creates a stream of the full DXL for the note. Item sources are opened lazily as the
+	 * stream is read, and each call produces an independent stream.
+	 *
+	 * @return an {@link InputStream} of UTF-8 DXL
+	 * @throws XMLException if there is a problem serializing the document
+	 */
+	public InputStream getInputStream() throws XMLException {
+		// Serialize the DOM with a placeholder where the streamed items will go
+		String marker = "nsfodp-stream-" + UUID.randomUUID(); //$NON-NLS-1$
+		Element noteElement = note.getNoteElement();
+		Comment placeholder = dxlDoc.createComment(marker);
+		noteElement.appendChild(placeholder);
+		String xml;
+		try {
+			xml = DOMUtil.getXMLString(dxlDoc);
+		} finally {
+			noteElement.removeChild(placeholder);
+		}
+		String token = "<!--" + marker + "-->"; //$NON-NLS-1$ //$NON-NLS-2$
+		int index = xml.indexOf(token);
+		byte[] prefix = xml.substring(0, index).getBytes(StandardCharsets.UTF_8);
+		byte[] suffix = xml.substring(index + token.length()).getBytes(StandardCharsets.UTF_8);
+
+		PartEnumeration parts = new PartEnumeration(prefix, suffix);
+		return new SequenceInputStream(parts) {
+			@Override
+			public void close() throws IOException {
+				// Avoid opening the remaining sources just to close them
+				parts.abort();
+				super.close();
+			}
+		};
+	}
+
+	/**
+	 * Writes the full DXL for the note to the provided stream.
+	 *
+	 * @param os the stream to write to
+	 * @throws XMLException if there is a problem serializing the document
+	 * @throws IOException if there is a problem reading item data or writing the stream
+	 */
+	public void write(OutputStream os) throws XMLException, IOException {
+		try(InputStream is = getInputStream()) {
+			byte[] buf = new byte[8192];
+			int read;
+			while((read = is.read(buf)) > -1) {
+				os.write(buf, 0, read);
+			}
+		}
+	}
+
+	// *******************************************************************************
+	// * Internal utility methods
+	// *******************************************************************************
+
+	private static String escapeAttribute(String value) {
+		StringBuilder result = new StringBuilder(value.length());
+		for(char c : value.toCharArray()) {
+			switch(c) {
+			case '&':
+				result.append("&amp;"); //$NON-NLS-1$
+				break;
+			case '<':
+				result.append("&lt;"); //$NON-NLS-1$
+				break;
+			case '"':
+				result.append("&quot;"); //$NON-NLS-1$
+				break;
+			default:
+				result.append(c);
+				break;
+			}
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Lazily produces the sequence of streams making up the DXL: the document prefix, then
+	 * an opening tag, Base64 body and closing tag for each item chunk, then the document
+	 * suffix.
+	 */
+	private class PartEnumeration implements Enumeration<InputStream> {
+		private final byte[] suffix;
+		private InputStream pending;
+		private int itemIndex = -1;
+		private PushbackInputStream current;
+		private int chunkIndex;
+		private boolean chunkOpen;
+		private boolean done;
+
+		public PartEnumeration(byte[] prefix, byte[] suffix) {
+			this.suffix = suffix;
+			this.pending = new ByteArrayInputStream(prefix);
+		}
+
+		@Override
+		public boolean hasMoreElements() {
+			if(pending == null && !done) {
+				try {
+					pending = next();
+				} catch(IOException e) {
+					closeCurrent();
+					throw new UncheckedIOException(e);
+				}
+			}
+			return pending != null;
+		}
+
+		@Override
+		public InputStream nextElement() {
+			if(!hasMoreElements()) {
+				throw new NoSuchElementException();
+			}
+			InputStream result = pending;
+			pending = null;
+			return result;
+		}
+
+		private InputStream next() throws IOException {
+			if(chunkOpen) {
+				chunkOpen = false;
+				chunkIndex++;
+				return ascii("</rawitemdata></item>"); //$NON-NLS-1$
+			}
+			while(true) {
+				if(current != null) {
+					int b = current.read();
+					if(b > -1) {
+						current.unread(b);
+						RawItem item = items.get(itemIndex);
+						int chunkSize = item.itemCap + (chunkIndex == 0 ? item.headerSize : 0);
+						chunkOpen = true;
+						return new SequenceInputStream(
+							ascii("<item name=\"" + escapeAttribute(item.itemName) + "\"><rawitemdata type=\"1\">\n"), //$NON-NLS-1$ //$NON-NLS-2$
+							new Base64LineInputStream(current, chunkSize)
+						);
+					}
+					closeCurrent();
+				}
+				itemIndex++;
+				if(itemIndex < items.size()) {
+					current = new PushbackInputStream(items.get(itemIndex).data.open());
+					chunkIndex = 0;
+				} else {
+					done = true;
+					return new ByteArrayInputStream(suffix);
+				}
+			}
+		}
+
+		public void abort() {
+			done = true;
+			chunkOpen = false;
+			pending = null;
+			closeCurrent();
+		}
+
+		private void closeCurrent() {
+			if(current != null) {
+				try {
+					current.close();
+				} catch(IOException e) {
+					// Ignore
+				}
+				current = null;
+			}
+		}
+
+		private InputStream ascii(String value) {
+			return new ByteArrayInputStream(value.getBytes(StandardCharsets.US_ASCII));
+		}
+	}
+
+	/**
+	 * Encodes up to a fixed number of bytes from the underlying stream as Base64 lines
+	 * of {@value StreamingDXLWriter#LINE_CHARS} characters, each followed by a newline.
+	 * The underlying stream is left open.
+	 */
+	private static class Base64LineInputStream extends InputStream {
+		private final Base64.Encoder encoder = Base64.getEncoder();
+		private final InputStream source;
+		private final byte[] in = new byte[LINE_BYTES];
+		private final byte[] out = new byte[LINE_CHARS + 1];
+		private int remaining;
+		private int outPos;
+		private int outLen;
+
+		public Base64LineInputStream(InputStream source, int limit) {
+			this.source = source;
+			this.remaining = limit;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if(!fill()) {
+				return -1;
+			}
+			return out[outPos++];
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if(len == 0) {
+				return 0;
+			}
+			int total = 0;
+			while(total < len && fill()) {
+				int count = Math.min(len - total, outLen - outPos);
+				System.arraycopy(out, outPos, b, off + total, count);
+				outPos += count;
+				total += count;
+			}
+			return total == 0 ? -1 : total;
+		}
+
+		private boolean fill() throws IOException {
+			if(outPos < outLen) {
+				return true;
+			}
+			if(remaining <= 0) {
+				return false;
+			}
+			int want = Math.min(LINE_BYTES, remaining);
+			int read = 0;
+			while(read < want) {
+				int count = source.read(in, read, want - read);
+				if(count < 0) {
+					break;
+				}
+				read += count;
+			}
+			if(read == 0) {
+				remaining = 0;
+				return false;
+			}
+			remaining = read < want ? 0 : remaining - read;
+
+			byte[] chunk = read == in.length ? in : Arrays.copyOf(in, read);
+			outLen = encoder.encode(chunk, out);
+			out[outLen++] = '\n';
+			outPos = 0;
+			return true;
+		}
+	}
+}
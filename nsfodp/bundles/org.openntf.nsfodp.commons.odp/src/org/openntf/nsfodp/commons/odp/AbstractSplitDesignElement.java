@@ -24,8 +24,10 @@ import java.text.MessageFormat;
 import java.util.Objects;
 
 import org.openntf.nsfodp.commons.NSFODPUtil;
+import org.openntf.nsfodp.commons.dxl.DXLNote;
 import org.openntf.nsfodp.commons.dxl.DXLUtil;
 import org.openntf.nsfodp.commons.dxl.ODSConstants;
+import org.openntf.nsfodp.commons.dxl.StreamingDXLWriter;
 import org.openntf.nsfodp.commons.h.Ods;
 import org.openntf.nsfodp.commons.odp.util.ODPUtil;
 import org.w3c.dom.Document;
@@ -75,6 +77,23 @@ public class AbstractSplitDesignElement {
 		}
 	}
 	
+	/**
+	 * Retrieves the DXL for this element in a form that streams the file data on demand,
+	 * rather than holding the encoded data in memory.
+	 * 
+	 * @return a {@link StreamingDXLWriter} for the element
+	 * @throws XMLException if there is a problem reading the metadata file
+	 * @throws IOException if there is a problem reading the data file
+	 * @since 3.5.0
+	 */
+	public StreamingDXLWriter getStreamingDxl() throws XMLException, IOException {
+		if(Files.isRegularFile(dxlFile)) {
+			return attachStreamingFileData(ODPUtil.readXml(dxlFile));
+		} else {
+			throw new IllegalStateException(MessageFormat.format(Messages.AbstractSplitDesignElement_cannotLocateDxl, dataFile));
+		}
+	}
+	
 	public void setOverrideData(byte[] overrideData) {
 		this.overrideData = overrideData;
 	}
@@ -84,14 +103,45 @@ public class AbstractSplitDesignElement {
 		String itemName = getFileDataItem();
 		String sizeItemName = getFileSizeItem();
 		
-		DXLUtil.writeItemDataRaw(dxlDoc, itemName, data, ODSConstants.PER_FILE_ITEM_DATA_CAP, Ods.SIZE_CDFILEHEADER);
+		DXLNote note = new DXLNote(dxlDoc);
+		note.writeItemDataRaw(itemName, data, ODSConstants.PER_FILE_ITEM_DATA_CAP, Ods.SIZE_CDFILEHEADER);
 		if(StringUtil.isNotEmpty(sizeItemName)) {
-			DXLUtil.writeItemNumber(dxlDoc, sizeItemName, data.length);
+			note.writeItemNumber(sizeItemName, data.length);
 		}
 		
 		return dxlDoc;
 	}
 	
+	/**
+	 * @param dxlDoc the DXL document to wrap
+	 * @return a {@link StreamingDXLWriter} with the file data attached
+	 * @since 3.5.0
+	 */
+	protected StreamingDXLWriter attachStreamingFileData(Document dxlDoc) throws IOException, XMLException {
+		StreamingDXLWriter writer = new StreamingDXLWriter(dxlDoc);
+		String itemName = getFileDataItem();
+		String sizeItemName = getFileSizeItem();
+		
+		long fileLength;
+		byte[] overrideData = this.overrideData;
+		if(overrideData != null) {
+			fileLength = overrideData.length;
+			writer.addItemFileData(itemName, overrideData);
+		} else {
+			Path file = getDataFile();
+			if(!Files.isRegularFile(file)) {
+				throw new IllegalArgumentException(MessageFormat.format(Messages.AbstractSplitDesignElement_cannotReadFile, file));
+			}
+			fileLength = Files.size(file);
+			writer.addItemFileData(itemName, file);
+		}
+		if(StringUtil.isNotEmpty(sizeItemName)) {
+			writer.getNote().writeItemNumber(sizeItemName, DXLUtil.getFileResourceDataLength(fileLength));
+		}
+		
+		return writer;
+	}
+	
 	public byte[] getCompositeData() throws IOException, XMLException {
 		if(this.overrideData != null) {
 			try(InputStream is = new ByteArrayInputStream(this.overrideData)) {
@@ -102,8 +152,13 @@ public class AbstractSplitDesignElement {
 			if(!Files.isRegularFile(file)) {
 				throw new IllegalArgumentException(MessageFormat.format(Messages.AbstractSplitDesignElement_cannotReadFile, file));
 			}
+			long fileLength = Files.size(file);
+			if(fileLength > Integer.MAX_VALUE - 1024) {
+				// Larger files can only be handled via getStreamingDxl()
+				throw new IllegalStateException(MessageFormat.format(Messages.AbstractSplitDesignElement_fileTooLarge, file, fileLength));
+			}
 			try(InputStream is = NSFODPUtil.newInputStream(file)) {
-				return DXLUtil.getFileResourceData(is, (int)Files.size(file));
+				return DXLUtil.getFileResourceData(is, (int)fileLength);
 			}
 		}
 	}
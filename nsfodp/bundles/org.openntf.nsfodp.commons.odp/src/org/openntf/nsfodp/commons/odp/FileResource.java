@@ -22,6 +22,7 @@ import java.text.MessageFormat;
 import java.util.function.Function;
 
 import org.openntf.nsfodp.commons.dxl.DXLUtil;
+import org.openntf.nsfodp.commons.dxl.StreamingDXLWriter;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
@@ -74,34 +75,54 @@ public class FileResource extends AbstractSplitDesignElement {
 		if(Files.isRegularFile(getDxlFile())) {
 			return super.getDxl();
 		} else {
-			if(nameProvider == null) {
-				throw new IllegalStateException(MessageFormat.format(Messages.FileResource_noNameProvider, getDataFile()));
-			}
-			
-			Document dxlDoc = DOMUtil.createDocument();
-			Element note = DOMUtil.createElement(dxlDoc, "note"); //$NON-NLS-1$
-			note.setAttribute("class", "form"); //$NON-NLS-1$ //$NON-NLS-2$
-			note.setAttribute("xmlns", "http://www.lotus.com/dxl"); //$NON-NLS-1$ //$NON-NLS-2$
-			if(StringUtil.isNotEmpty(flags)) {
-				DXLUtil.writeItemString(dxlDoc, "$Flags", false, flags); //$NON-NLS-1$
-			}
-			if(StringUtil.isNotEmpty(flagsExt)) {
-				DXLUtil.writeItemString(dxlDoc, "$FlagsExt", false, flagsExt); //$NON-NLS-1$
-			}
-			String title = nameProvider.apply(getDataFile());
-			if(StringUtil.isNotEmpty(title)) {
-				DXLUtil.writeItemString(dxlDoc, "$TITLE", false, title); //$NON-NLS-1$
-			}
-			String path = pathProvider.apply(getDataFile());
-			if(StringUtil.isNotEmpty(path)) {
-				DXLUtil.writeItemString(dxlDoc, "$FileNames", false, path); //$NON-NLS-1$
-			}
-			
-			return attachFileData(dxlDoc);
+			return attachFileData(createDxl());
 		}		
 	}
 	
+	@Override
+	public StreamingDXLWriter getStreamingDxl() throws XMLException, IOException {
+		if(Files.isRegularFile(getDxlFile())) {
+			return super.getStreamingDxl();
+		} else {
+			return attachStreamingFileData(createDxl());
+		}
+	}
+	
 	public boolean isCopyToClasses() {
 		return copyToClasses;
 	}
+
+	// *******************************************************************************
+	// * Internal utility methods
+	// *******************************************************************************
+	
+	/**
+	 * Generates metadata DXL for a file resource that has no accompanying metadata file.
+	 */
+	private Document createDxl() throws XMLException {
+		if(nameProvider == null) {
+			throw new IllegalStateException(MessageFormat.format(Messages.FileResource_noNameProvider, getDataFile()));
+		}
+		
+		Document dxlDoc = DOMUtil.createDocument();
+		Element note = DOMUtil.createElement(dxlDoc, "note"); //$NON-NLS-1$
+		note.setAttribute("class", "form"); //$NON-NLS-1$ //$NON-NLS-2$
+		note.setAttribute("xmlns", "http://www.lotus.com/dxl"); //$NON-NLS-1$ //$NON-NLS-2$
+		if(StringUtil.isNotEmpty(flags)) {
+			DXLUtil.writeItemString(dxlDoc, "$Flags", false, flags); //$NON-NLS-1$
+		}
+		if(StringUtil.isNotEmpty(flagsExt)) {
+			DXLUtil.writeItemString(dxlDoc, "$FlagsExt", false, flagsExt); //$NON-NLS-1$
+		}
+		String title = nameProvider.apply(getDataFile());
+		if(StringUtil.isNotEmpty(title)) {
+			DXLUtil.writeItemString(dxlDoc, "$TITLE", false, title); //$NON-NLS-1$
+		}
+		String path = pathProvider.apply(getDataFile());
+		if(StringUtil.isNotEmpty(path)) {
+			DXLUtil.writeItemString(dxlDoc, "$FileNames", false, path); //$NON-NLS-1$
+		}
+		
+		return dxlDoc;
+	}
 }
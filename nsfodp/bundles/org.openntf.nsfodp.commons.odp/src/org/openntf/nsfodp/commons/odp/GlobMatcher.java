@@ -40,6 +40,14 @@ class GlobMatcher {
 		this.elementProvider = elementProvider;
 	}
 
+	/**
+	 * @return the Unix-format glob for this matcher
+	 * @since 3.5.0
+	 */
+	public String getGlob() {
+		return unixGlob;
+	}
+
 	public PathMatcher getMatcher(FileSystem fileSystem) {
 		return glob(fileSystem, unixGlob);
 	}
@@ -15,6 +15,7 @@
  */
 package org.openntf.nsfodp.commons.odp;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
@@ -24,6 +25,7 @@ import java.text.MessageFormat;
 import org.openntf.nsfodp.commons.NSFODPUtil;
 import org.openntf.nsfodp.commons.dxl.DXLUtil;
 import org.openntf.nsfodp.commons.dxl.ODSConstants;
+import org.openntf.nsfodp.commons.dxl.StreamingDXLWriter;
 import org.openntf.nsfodp.commons.h.Ods;
 import org.openntf.nsfodp.commons.odp.util.ODPUtil;
 import org.w3c.dom.Document;
@@ -61,6 +63,14 @@ public class ImageResource extends FileResource {
 		
 		return dxlDoc;
 	}
+	
+	@Override
+	protected StreamingDXLWriter attachStreamingFileData(Document dxlDoc) throws IOException, XMLException {
+		byte[] data = getCompositeData();
+		StreamingDXLWriter writer = new StreamingDXLWriter(dxlDoc);
+		writer.addItemDataRaw(getFileDataItem(), () -> new ByteArrayInputStream(data), ODSConstants.PER_IMAGE_ITEM_DATA_CAP, Ods.SIZE_CDIMAGEHEADER + Ods.SIZE_CDGRAPHIC);
+		return writer;
+	}
 
 	@Override
 	public byte[] getCompositeData() throws IOException, XMLException {
@@ -15,11 +15,13 @@
  */
 package org.openntf.nsfodp.commons.odp;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.nio.file.Path;
 
 import org.openntf.nsfodp.commons.dxl.DXLUtil;
 import org.openntf.nsfodp.commons.dxl.ODSConstants;
+import org.openntf.nsfodp.commons.dxl.StreamingDXLWriter;
 import org.openntf.nsfodp.commons.h.Ods;
 import org.openntf.nsfodp.commons.odp.util.DXLNativeUtil;
 import org.w3c.dom.Document;
@@ -56,4 +58,12 @@ public class JavaScriptLibrary extends AbstractSourceDesignElement {
 		
 		return dxlDoc;
 	}
+	
+	@Override
+	protected StreamingDXLWriter attachStreamingFileData(Document dxlDoc) throws IOException, XMLException {
+		byte[] data = getCompositeData();
+		StreamingDXLWriter writer = new StreamingDXLWriter(dxlDoc);
+		writer.addItemDataRaw(getFileDataItem(), () -> new ByteArrayInputStream(data), ODSConstants.PER_BLOB_ITEM_DATA_CAP, Ods.SIZE_CDEVENT);
+		return writer;
+	}
 }
@@ -21,6 +21,7 @@ public class Messages extends NLS {
 	private static final String BUNDLE_NAME = "org.openntf.nsfodp.commons.odp.messages"; //$NON-NLS-1$
 	public static String AbstractSplitDesignElement_cannotLocateDxl;
 	public static String AbstractSplitDesignElement_cannotReadFile;
+	public static String AbstractSplitDesignElement_fileTooLarge;
 	public static String FileResource_noNameProvider;
 	public static String ODPUtil_bundleInInstalledState;
 	public static String ODPUtil_cannotInferClassName;
@@ -19,7 +19,6 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.Reader;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.FileSystem;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.PathMatcher;
@@ -33,6 +32,7 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import org.openntf.nsfodp.commons.NSFODPUtil;
@@ -73,15 +73,17 @@ public class OnDiskProject {
 		"SharedElements/Subforms/*", //$NON-NLS-1$
 		"Views/*" //$NON-NLS-1$
 	).collect(Collectors.toList());
-	private final List<PathMatcher> directDxlFiles;
 	
 	public static final List<String> IGNORED_FILE_GLOBS = Stream.of(
 		"**/.DS_Store", //$NON-NLS-1$
 		"**/Thumbs.db" //$NON-NLS-1$
 	).collect(Collectors.toList());
 	private final List<PathMatcher> ignoredFileGlobs;
+	
+	private static final String LOTUSSCRIPT_LIBRARY_GLOB = "Code/ScriptLibraries/*.lss"; //$NON-NLS-1$
 
 	private final Path baseDir;
+	private final OnDiskProjectIndex index;
 	
 	public final List<GlobMatcher> FILE_RESOURCES;
 	
@@ -109,9 +111,14 @@ public class OnDiskProject {
 			new GlobMatcher("XPages/*.properties", path -> new FileResource(path, "gC~4K2", null, p -> p.getFileName().toString())), //$NON-NLS-1$ //$NON-NLS-2$
 			new GlobMatcher("CustomControls/*.properties", path -> new FileResource(path, "gC~4K2", null, p -> p.getFileName().toString())) //$NON-NLS-1$ //$NON-NLS-2$
 		);
-		this.directDxlFiles = DIRECT_DXL_FILE_GLOBS.stream()
-			.map(glob -> GlobMatcher.glob(baseDir.getFileSystem(), glob))
-			.collect(Collectors.toList());
+		
+		// The index categories are the file resources, then the direct DXL globs, then LotusScript
+		List<String> indexGlobs = new ArrayList<>();
+		FILE_RESOURCES.stream().map(GlobMatcher::getGlob).forEach(indexGlobs::add);
+		indexGlobs.addAll(DIRECT_DXL_FILE_GLOBS);
+		indexGlobs.add(LOTUSSCRIPT_LIBRARY_GLOB);
+		this.index = new OnDiskProjectIndex(baseDir, indexGlobs);
+		
 		this.ignoredFileGlobs = IGNORED_FILE_GLOBS.stream()
 			.map(glob -> GlobMatcher.glob(baseDir.getFileSystem(), glob))
 			.collect(Collectors.toList());
@@ -271,51 +278,64 @@ public class OnDiskProject {
 	 * @return a {@link Stream} of {@link Path}s containing DXL to import
 	 */
 	public Stream<Path> getDirectDXLElements() {
-		return directDxlFiles.stream()
-			.map(glob -> {
-				try {
-					return Files.find(baseDir, Integer.MAX_VALUE, (path, attr) -> {
-						return glob.matches(baseDir.relativize(path)) && attr.size() > 0;
-					});
-				} catch (IOException e) {
-					throw new RuntimeException(e);
-				}
-			})
-			.flatMap(Function.identity());
+		int offset = FILE_RESOURCES.size();
+		return IntStream.range(0, DIRECT_DXL_FILE_GLOBS.size())
+			.mapToObj(i -> index.getPaths(offset + i, (path, attr) -> attr.size() > 0))
+			.flatMap(List::stream);
 	}
 	
 	public List<AbstractSplitDesignElement> getFileResources() {
-		FileSystem fs = baseDir.getFileSystem();
-		return FILE_RESOURCES.stream()
-			.map(matcher -> {
-				try {
-					return Files.find(baseDir, Integer.MAX_VALUE,
-						(path, attr) -> {
-							for(PathMatcher ignoreMatcher : this.ignoredFileGlobs) {
-								if(ignoreMatcher.matches(path)) {
-									return false;
-								}
-							}
-							return attr.isRegularFile() && matcher.getMatcher(fs).matches(baseDir.relativize(path)) && !path.getFileName().toString().endsWith(".metadata"); //$NON-NLS-1$
-						}
-					).map(matcher::getElement);
-				} catch (IOException e) {
-					throw new RuntimeException(e);
+		List<AbstractSplitDesignElement> result = new ArrayList<>();
+		for(int i = 0; i < FILE_RESOURCES.size(); i++) {
+			GlobMatcher matcher = FILE_RESOURCES.get(i);
+			List<Path> paths = index.getPaths(i, (path, attr) -> {
+				for(PathMatcher ignoreMatcher : this.ignoredFileGlobs) {
+					if(ignoreMatcher.matches(path)) {
+						return false;
+					}
 				}
-			})
-			.flatMap(Function.identity())
-			.filter(Objects::nonNull)
-			.map(AbstractSplitDesignElement.class::cast)
-			.collect(Collectors.toList());
+				return attr.isRegularFile() && !path.getFileName().toString().endsWith(".metadata"); //$NON-NLS-1$
+			});
+			for(Path path : paths) {
+				AbstractSplitDesignElement element = matcher.getElement(path);
+				if(element != null) {
+					result.add(element);
+				}
+			}
+		}
+		return result;
 	}
 	
 	public List<LotusScriptLibrary> getLotusScriptLibraries() throws IOException {
-		PathMatcher glob = GlobMatcher.glob(baseDir.getFileSystem(), "Code/ScriptLibraries/*.lss"); //$NON-NLS-1$
-		return Files.find(baseDir, Integer.MAX_VALUE, (path, attr) -> attr.isRegularFile() && glob.matches(baseDir.relativize(path)))
+		int category = FILE_RESOURCES.size() + DIRECT_DXL_FILE_GLOBS.size();
+		return index.getPaths(category, (path, attr) -> attr.isRegularFile()).stream()
 			.map(path -> new LotusScriptLibrary(path))
 			.collect(Collectors.toList());
 	}
 	
+	/**
+	 * Discards the cached index of the project's files, so that subsequent calls to
+	 * {@link #getFileResources()}, {@link #getDirectDXLElements()}, and
+	 * {@link #getLotusScriptLibraries()} will re-read the filesystem.
+	 * 
+	 * @since 3.5.0
+	 */
+	public void invalidateIndex() {
+		index.invalidate();
+	}
+	
+	/**
+	 * Updates the cached index of the project's files for a path that has been added,
+	 * modified, or removed.
+	 * 
+	 * @param path the changed path, either absolute or relative to the project base directory
+	 * @throws IOException if there is a problem reading the filesystem
+	 * @since 3.5.0
+	 */
+	public void updateIndex(Path path) throws IOException {
+		index.update(path);
+	}
+	
 	/**
 	 * Determines whether the on-disk project has any XPages elements that need to
 	 * be compiled, namely XPages, Custom Controls, and Java classes.
@@ -0,0 +1,238 @@
+/**
+ * Copyright © 2018-2021 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsfodp.commons.odp;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiPredicate;
+import java.util.stream.Stream;
+
+/**
+ * Maintains a classification of every path in an ODP against a list of ODP-relative
+ * globs, built from a single walk of the project directory.
+ *
+ * <p>Globs are compiled into a trie keyed on their literal leading directory names, so
+ * each path is only tested against the globs that share its directory prefix.</p>
+ *
+ * @author Jesse Gallagher
+ * @since 3.5.0
+ */
+class OnDiskProjectIndex {
+	private static class Rule {
+		final int category;
+		/** The matcher for the path below the node, or {@code null} for an exact match of the node */
+		final PathMatcher matcher;
+
+		Rule(int category, PathMatcher matcher) {
+			this.category = category;
+			this.matcher = matcher;
+		}
+	}
+
+	private static class Node {
+		final Map<String, Node> children = new HashMap<>();
+		final List<Rule> rules = new ArrayList<>();
+	}
+
+	private final Path baseDir;
+	private final int categoryCount;
+	private final boolean caseInsensitive;
+	private final Node root = new Node();
+
+	/** The attributes of all paths in the project in walk order, or {@code null} when not yet built */
+	private Map<Path, BasicFileAttributes> entries;
+	private List<Set<Path>> categories;
+
+	/**
+	 * @param baseDir the base directory of the ODP
+	 * @param globs the Unix-format globs to classify paths by, with each glob's index used
+	 *        as its category
+	 */
+	public OnDiskProjectIndex(Path baseDir, List<String> globs) {
+		this.baseDir = baseDir;
+		this.categoryCount = globs.size();
+
+		FileSystem fs = baseDir.getFileSystem();
+		this.caseInsensitive = GlobMatcher.glob(fs, "a").matches(fs.getPath("A")); //$NON-NLS-1$ //$NON-NLS-2$
+
+		for(int i = 0; i < globs.size(); i++) {
+			String[] segments = globs.get(i).split("/"); //$NON-NLS-1$
+			Node node = root;
+			int s = 0;
+			while(s < segments.length && !isPattern(segments[s])) {
+				node = node.children.computeIfAbsent(toKey(segments[s]), key -> new Node());
+				s++;
+			}
+			PathMatcher matcher = null;
+			if(s < segments.length) {
+				matcher = GlobMatcher.glob(fs, String.join("/", Arrays.asList(segments).subList(s, segments.length))); //$NON-NLS-1$
+			}
+			node.rules.add(new Rule(i, matcher));
+		}
+	}
+
+	/**
+	 * Retrieves the paths in the given category, in the order they were found in the filesystem.
+	 *
+	 * @param category the index of the glob to match
+	 * @param filter an additional filter to apply to the paths and their attributes
+	 * @return a {@link List} of matching {@link Path}s
+	 */
+	public synchronized List<Path> getPaths(int category, BiPredicate<Path, BasicFileAttributes> filter) {
+		build();
+		List<Path> result = new ArrayList<>();
+		for(Path path : categories.get(category)) {
+			if(filter.test(path, entries.get(path))) {
+				result.add(path);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Discards the index, so that it will be rebuilt from the filesystem when next used.
+	 */
+	public synchronized void invalidate() {
+		this.entries = null;
+		this.categories = null;
+	}
+
+	/**
+	 * Refreshes the index entries for the given path and, if it is a directory, everything
+	 * beneath it.
+	 *
+	 * @param path the path that has been added, modified, or removed
+	 * @throws IOException if there is a problem reading the filesystem
+	 */
+	public synchronized void update(Path path) throws IOException {
+		if(entries == null) {
+			// Will be picked up when built
+			return;
+		}
+
+		Path absolute = baseDir.resolve(path);
+		Iterator<Path> iter = entries.keySet().iterator();
+		while(iter.hasNext()) {
+			Path existing = iter.next();
+			if(existing.startsWith(absolute)) {
+				iter.remove();
+				for(Set<Path> category : categories) {
+					category.remove(existing);
+				}
+			}
+		}
+
+		if(Files.exists(absolute, LinkOption.NOFOLLOW_LINKS)) {
+			walk(absolute);
+		}
+	}
+
+	// *******************************************************************************
+	// * Internal utility methods
+	// *******************************************************************************
+
+	private void build() {
+		if(entries != null) {
+			return;
+		}
+		entries = new LinkedHashMap<>();
+		categories = new ArrayList<>(categoryCount);
+		for(int i = 0; i < categoryCount; i++) {
+			categories.add(new LinkedHashSet<>());
+		}
+		try {
+			walk(baseDir);
+		} catch(IOException e) {
+			invalidate();
+			throw new RuntimeException(e);
+		} catch(RuntimeException e) {
+			invalidate();
+			throw e;
+		}
+	}
+
+	private void walk(Path start) throws IOException {
+		// Files.find is used for its traversal and the attributes it provides
+		try(Stream<Path> paths = Files.find(start, Integer.MAX_VALUE, (path, attr) -> {
+			add(path, attr);
+			return false;
+		})) {
+			paths.forEach(path -> {});
+		}
+	}
+
+	private void add(Path path, BasicFileAttributes attr) {
+		entries.put(path, attr);
+		if(path.equals(baseDir)) {
+			return;
+		}
+
+		Path relative = baseDir.relativize(path);
+		int count = relative.getNameCount();
+
+		Node node = root;
+		for(int i = 0; node != null; i++) {
+			for(Rule rule : node.rules) {
+				if(rule.matcher == null) {
+					if(i == count) {
+						categories.get(rule.category).add(path);
+					}
+				} else if(i < count && rule.matcher.matches(relative.subpath(i, count))) {
+					categories.get(rule.category).add(path);
+				}
+			}
+			if(i == count) {
+				break;
+			}
+			node = node.children.get(toKey(relative.getName(i).toString()));
+		}
+	}
+
+	private String toKey(String segment) {
+		return caseInsensitive ? segment.toLowerCase(Locale.ROOT) : segment;
+	}
+
+	private static boolean isPattern(String segment) {
+		for(int i = 0; i < segment.length(); i++) {
+			switch(segment.charAt(i)) {
+			case '*':
+			case '?':
+			case '[':
+			case '{':
+			case '\\':
+				return true;
+			default:
+				break;
+			}
+		}
+		return false;
+	}
+}
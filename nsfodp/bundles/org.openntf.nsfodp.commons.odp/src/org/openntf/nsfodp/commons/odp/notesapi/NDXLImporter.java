@@ -9,5 +9,14 @@ public interface NDXLImporter extends AutoCloseable {
 	
 	String getResultLogXML();
 	
+	/**
+	 * Sets whether the properties of the target database should be replaced by those of a
+	 * {@code <database>} element in imported DXL.
+	 * 
+	 * @param replaceDbProperties whether to replace the database properties
+	 * @since 3.5.0
+	 */
+	void setReplaceDBProperties(boolean replaceDbProperties);
+	
 	@Override void close();
 }
@@ -1,12 +1,21 @@
 package org.openntf.nsfodp.commons.odp.notesapi;
 
 import java.util.function.BiConsumer;
+import java.util.function.IntConsumer;
 
 public interface NDatabase extends AutoCloseable {
 	NotesAPI getAPI();
 	
 	NNote getNoteByID(int noteId);
 	
+	/**
+	 * Deletes the note with the provided ID from the database.
+	 * 
+	 * @param noteId the ID of the note to delete
+	 * @since 3.5.0
+	 */
+	void deleteNote(int noteId);
+	
 	String getTitle();
 	void setTitle(String title);
 	
@@ -16,6 +25,15 @@ public interface NDatabase extends AutoCloseable {
 	
 	void eachDesignNote(BiConsumer<Integer, NNote> consumer);
 	
+	/**
+	 * Iterates over the IDs of all design notes in the database without opening
+	 * the notes themselves.
+	 * 
+	 * @param consumer the consumer to call for each note ID
+	 * @since 3.5.0
+	 */
+	void eachDesignNoteId(IntConsumer consumer);
+	
 	short getCurrentAccessLevel();
 	
 	@Override void close();
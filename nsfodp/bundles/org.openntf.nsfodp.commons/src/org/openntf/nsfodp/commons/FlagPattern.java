@@ -0,0 +1,164 @@
+/**
+ * Copyright © 2018-2021 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsfodp.commons;
+
+import java.util.BitSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A parsed design-flag pattern (DFLAGPAT_*), represented as sets over the flag
+ * characters so that matching doesn't need to re-read the pattern string.
+ *
+ * <p>Flag values to test can be converted once with {@link #toFlagSet(CharSequence)} and
+ * then checked against any number of patterns.</p>
+ *
+ * @author Jesse Gallagher
+ * @since 3.5.0
+ */
+public final class FlagPattern {
+	private static final Map<String, FlagPattern> CACHE = new ConcurrentHashMap<>();
+	private static final FlagPattern NONE = new FlagPattern(null, null, null);
+
+	/**
+	 * Retrieves the compiled form of the provided pattern, parsing it the first time it is seen.
+	 *
+	 * @param pattern a flag pattern (DFLAGPAT_*)
+	 * @return the compiled pattern, which never matches if {@code pattern} is empty
+	 */
+	public static FlagPattern compile(String pattern) {
+		if(pattern == null || pattern.isEmpty()) {
+			return NONE;
+		}
+		return CACHE.computeIfAbsent(pattern, FlagPattern::parse);
+	}
+
+	/**
+	 * Retrieves a pattern that matches when the provided flag is present.
+	 *
+	 * @param flag the design flag to test for
+	 * @return the compiled pattern
+	 */
+	public static FlagPattern compile(char flag) {
+		return compile("+" + flag); //$NON-NLS-1$
+	}
+
+	/**
+	 * Converts the provided flags value into the form used for matching.
+	 *
+	 * @param flags a design flag value, which may be {@code null}
+	 * @return a {@link BitSet} with the bit for each character in {@code flags} set
+	 */
+	public static BitSet toFlagSet(CharSequence flags) {
+		BitSet result = new BitSet(128);
+		if(flags != null) {
+			for(int i = 0; i < flags.length(); i++) {
+				result.set(flags.charAt(i));
+			}
+		}
+		return result;
+	}
+
+	/** The characters of which at least one must be present, or {@code null} for a never-matching pattern */
+	private final BitSet any;
+	/** The characters that must not be present */
+	private final BitSet none;
+	/** The characters that must all be present */
+	private final BitSet all;
+
+	private FlagPattern(BitSet any, BitSet none, BitSet all) {
+		this.any = any;
+		this.none = none;
+		this.all = all;
+	}
+
+	/**
+	 * @param flags a design flag value to test, which may be {@code null}
+	 * @return whether the flags match this pattern
+	 */
+	public boolean matches(CharSequence flags) {
+		return matches(toFlagSet(flags));
+	}
+
+	/**
+	 * @param flags a flag set created by {@link #toFlagSet(CharSequence)}
+	 * @return whether the flags match this pattern
+	 */
+	public boolean matches(BitSet flags) {
+		if(any == null) {
+			return false;
+		}
+		if(!any.isEmpty() && !any.intersects(flags)) {
+			return false;
+		}
+		if(none.intersects(flags)) {
+			return false;
+		}
+		for(int i = all.nextSetBit(0); i >= 0; i = all.nextSetBit(i+1)) {
+			if(!flags.get(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// *******************************************************************************
+	// * Internal utility methods
+	// *******************************************************************************
+
+	private static FlagPattern parse(String pattern) {
+		// This interpretation is kept identical to the historical string-based matcher
+		//   so that classification of existing notes doesn't change
+
+		// Patterns start with one of four characters:
+		// "+" (match any)
+		// "-" (match none)
+		// "*" (match all)
+		// "(" (multi-part test)
+		String matchers = null;
+		String antiMatchers = null;
+		String allMatchers = null;
+		char first = pattern.charAt(0);
+		switch(first) {
+		case '+':
+			matchers = pattern.substring(1);
+			antiMatchers = ""; //$NON-NLS-1$
+			allMatchers = ""; //$NON-NLS-1$
+			break;
+		case '-':
+			matchers = ""; //$NON-NLS-1$
+			antiMatchers = pattern.substring(1);
+			allMatchers = ""; //$NON-NLS-1$
+			break;
+		case '*':
+			matchers = ""; //$NON-NLS-1$
+			antiMatchers = ""; //$NON-NLS-1$
+			allMatchers = pattern.substring(1);
+			// Falls through to the multi-part parse, as the historical matcher did
+		case '(':
+			// The order is always +-*
+			int plusIndex = pattern.indexOf('+');
+			int minusIndex = pattern.indexOf('-');
+			int starIndex = pattern.indexOf('*');
+
+			matchers = pattern.substring(plusIndex+1, minusIndex == -1 ? pattern.length() : minusIndex);
+			antiMatchers = minusIndex == -1 ? "" : pattern.substring(minusIndex+1, starIndex == -1 ? pattern.length() : starIndex); //$NON-NLS-1$
+			allMatchers = starIndex == -1 ? "" : pattern.substring(starIndex+1); //$NON-NLS-1$
+			break;
+		}
+		return new FlagPattern(toFlagSet(matchers), toFlagSet(antiMatchers), toFlagSet(allMatchers));
+	}
+}
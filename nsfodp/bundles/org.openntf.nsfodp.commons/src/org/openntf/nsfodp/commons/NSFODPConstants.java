@@ -51,6 +51,29 @@ public enum NSFODPConstants {
 	public static final String HEADER_TEMPLATE_VERSION = "X-TemplateVersion"; //$NON-NLS-1$
 	public static final String HEADER_SET_PRODUCTION_XSP = "X-SetProductionXSPOptions"; //$NON-NLS-1$
 	public static final String HEADER_ODS_RELEASE = "X-ODSRelease"; //$NON-NLS-1$
+	/**
+	 * The HTTP header name used to indicate that the body of a compiler request is the ODP ZIP
+	 * itself, rather than a package containing {@code odp.zip} and any update sites or JARs.
+	 * @since 3.5.0
+	 */
+	public static final String HEADER_ODP_ONLY = "X-ODPOnly"; //$NON-NLS-1$
+	/**
+	 * The HTTP header name used to indicate that a compiler request is a query for the
+	 * dependencies missing from the server's cache, rather than a compilation.
+	 * 
+	 * <p>The body of such a request is a JSON object with {@code "classpath"} and {@code "sites"}
+	 * arrays of SHA-256 digests, and the response is a JSON object with a {@code "missing"} array
+	 * of the digests the server does not have and a {@code "token"} reserving the ones it does.</p>
+	 * @since 3.5.0
+	 */
+	public static final String HEADER_DEPENDENCY_QUERY = "X-DependencyQuery"; //$NON-NLS-1$
+	/**
+	 * The HTTP header name used to pass the token from a {@link #HEADER_DEPENDENCY_QUERY} response
+	 * back with the subsequent compilation request, so that the dependencies reported as present
+	 * are kept in the server's cache until the compilation uses them.
+	 * @since 3.5.0
+	 */
+	public static final String HEADER_DEPENDENCY_TOKEN = "X-DependencyToken"; //$NON-NLS-1$
 	
 	/**
 	 * The system property used to specify the path to the ODP directory to compile using the local
@@ -68,6 +91,13 @@ public enum NSFODPConstants {
 	public static final String PROP_TEMPLATEVERSION = "org.openntf.nsfodp.compiler.templateVersion"; //$NON-NLS-1$
 	public static final String PROP_SETPRODUCTIONXSPOPTIONS = "org.openntf.nsfodp.compiler.setProductionXSPOptions"; //$NON-NLS-1$
 	public static final String PROP_ODSRELEASE = "org.openntf.nsfodp.compiler.odsRelease"; //$NON-NLS-1$
+	/**
+	 * The system property used to specify the path to an incremental-compilation manifest when using
+	 * the local Equinox compiler. When set, any existing output file is used as the base for the
+	 * compilation.
+	 * @since 3.5.0
+	 */
+	public static final String PROP_INCREMENTALMANIFEST = "org.openntf.nsfodp.compiler.incrementalManifest"; //$NON-NLS-1$
 	
 	// *******************************************************************************
 	// * Exporter constants
@@ -95,6 +125,25 @@ public enum NSFODPConstants {
 	public static final String HEADER_PROJECT_NAME = "X-ProjectName"; //$NON-NLS-1$
 	public static final String PROP_PROJECT_NAME = "org.openntf.nsfodp.exporter.projectName"; //$NON-NLS-1$
 	
+	/**
+	 * The HTTP header name used to specify the number of design-note export threads in the
+	 * ODP Exporter servlet.
+	 * 
+	 * @since 3.5.0
+	 */
+	public static final String HEADER_EXPORTER_THREADS = "X-ExporterThreads"; //$NON-NLS-1$
+	/**
+	 * @since 3.5.0
+	 */
+	public static final String PROP_EXPORTER_THREADS = "org.openntf.nsfodp.exporter.threads"; //$NON-NLS-1$
+	/**
+	 * The system property used to choose between the Java implementation of the Swiper filter,
+	 * which is used by default, and the XSLT stylesheet, which is used when this is set to
+	 * {@code false}.
+	 * @since 3.5.0
+	 */
+	public static final String PROP_SWIPER_JAVA_FILTER = "org.openntf.nsfodp.swiper.javaFilter"; //$NON-NLS-1$
+	
 	// *******************************************************************************
 	// * Deployment constants
 	// *******************************************************************************
@@ -110,4 +159,29 @@ public enum NSFODPConstants {
 	
 	public static final String PROP_XSP_SOURCE_ROOT = "org.openntf.nsfodp.transpiler.xspSourceRoot"; //$NON-NLS-1$
 	public static final String PROP_CC_SOURCE_ROOT = "org.openntf.nsfodp.transpiler.ccSourceRoot"; //$NON-NLS-1$
+	
+	// *******************************************************************************
+	// * Equinox daemon constants
+	// *******************************************************************************
+	
+	/**
+	 * The Equinox application ID of the long-lived local compilation daemon.
+	 * 
+	 * @since 3.5.0
+	 */
+	public static final String APP_DAEMON = "org.openntf.nsfodp.compiler.equinox.DaemonApplication"; //$NON-NLS-1$
+	/**
+	 * The environment property used to specify the file the Equinox daemon should write its
+	 * connection information to.
+	 * 
+	 * @since 3.5.0
+	 */
+	public static final String PROP_DAEMON_PORTFILE = "org.openntf.nsfodp.daemon.portFile"; //$NON-NLS-1$
+	/**
+	 * The environment property used to specify the number of minutes the Equinox daemon should
+	 * wait for a new job before shutting down.
+	 * 
+	 * @since 3.5.0
+	 */
+	public static final String PROP_DAEMON_IDLETIMEOUT = "org.openntf.nsfodp.daemon.idleTimeout"; //$NON-NLS-1$
 }
@@ -15,6 +15,7 @@
  */
 package org.openntf.nsfodp.commons;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -35,12 +36,15 @@ import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.security.AccessController;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.security.PrivilegedAction;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.TreeMap;
 import java.util.stream.Stream;
 import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
@@ -223,32 +227,71 @@ public enum NSFODPUtil {
 		Path result = Files.createTempDirectory(getTempDirectory(), "zipFile"); //$NON-NLS-1$
 		
 		try(InputStream is = Files.newInputStream(zipFilePath)) {
-			try(ZipInputStream zis = new ZipInputStream(is, StandardCharsets.UTF_8)) {
-				ZipEntry entry;
-				while((entry = zis.getNextEntry()) != null) {
-					String name = entry.getName();
+			expandZip(is, result);
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Expands ZIP data from the provided stream into the given directory as it is read, without
+	 * first storing the ZIP itself.
+	 * 
+	 * <p>The provided stream is read to the end of the ZIP data but is not closed, so this
+	 * may be used for ZIP files nested within another {@link ZipInputStream}.</p>
+	 * 
+	 * <p>This method may rename ZIP entries with non-ASCII characters to URL-encoded variants if the
+	 * underlying filesystem driver throws an exception. This was seen on Linux in particular.</p>
+	 * 
+	 * @param is an {@link InputStream} of ZIP data
+	 * @param dest the directory to expand into, which will be created if needed
+	 * @throws IOException if there is a problem reading the ZIP data or writing to the directory,
+	 *         or if an entry would be written outside of {@code dest}
+	 * @since 3.5.0
+	 */
+	public static void expandZip(InputStream is, Path dest) throws IOException {
+		Path base = dest.toAbsolutePath().normalize();
+		Files.createDirectories(base);
+		
+		InputStream nonClosing = new FilterInputStream(is) {
+			@Override
+			public void close() throws IOException {
+				// Leave the underlying stream open for the caller
+			}
+		};
+		try(ZipInputStream zis = new ZipInputStream(nonClosing, StandardCharsets.UTF_8)) {
+			ZipEntry entry;
+			while((entry = zis.getNextEntry()) != null) {
+				String name = entry.getName();
 
-					Path subFile;
-					try {
-						subFile = result.resolve(name);
-					} catch(InvalidPathException e) {
-						// This occurs with non-ASCII characters on Unix sometimes
-						String urlName = URLEncoder.encode(name, "UTF-8") //$NON-NLS-1$
-							.replace("%2F", "/"); //$NON-NLS-1$ //$NON-NLS-2$
-						subFile = result.resolve(urlName);
-					}
-					
-					if(entry.isDirectory()) {
-						Files.createDirectories(subFile);
-					} else {
-						Files.createDirectories(subFile.getParent());
-						Files.copy(zis, subFile);
-					}
+				Path subFile;
+				try {
+					subFile = base.resolve(name);
+				} catch(InvalidPathException e) {
+					// This occurs with non-ASCII characters on Unix sometimes
+					String urlName = URLEncoder.encode(name, "UTF-8") //$NON-NLS-1$
+						.replace("%2F", "/"); //$NON-NLS-1$ //$NON-NLS-2$
+					subFile = base.resolve(urlName);
+				}
+				subFile = subFile.normalize();
+				if(!subFile.startsWith(base)) {
+					throw new IOException("ZIP entry would be written outside of the destination: " + name); //$NON-NLS-1$
 				}
+				
+				if(entry.isDirectory()) {
+					Files.createDirectories(subFile);
+				} else {
+					Files.createDirectories(subFile.getParent());
+					Files.copy(zis, subFile, StandardCopyOption.REPLACE_EXISTING);
+				}
+			}
+			
+			// Drain any trailing data, such as the central directory
+			byte[] buf = new byte[8192];
+			while(nonClosing.read(buf) > -1) {
+				// Discard
 			}
 		}
-		
-		return result;
 	}
 	
 	/**
@@ -284,83 +327,10 @@ public enum NSFODPUtil {
 	 * @param pattern a flag pattern to test against (DFLAGPAT_*)
 	 * @return whether the flags match the pattern
 	 * @since 3.5.0
+	 * @see FlagPattern
 	 */
 	public static boolean matchesFlagsPattern(String flags, String pattern) {
-		if(pattern == null || pattern.isEmpty()) {
-			return false;
-		}
-		
-		String toTest = flags == null ? "" : flags; //$NON-NLS-1$
-		
-		// Patterns start with one of four characters:
-		// "+" (match any)
-		// "-" (match none)
-		// "*" (match all)
-		// "(" (multi-part test)
-		String matchers = null;
-		String antiMatchers = null;
-		String allMatchers = null;
-		char first = pattern.charAt(0);
-		switch(first) {
-		case '+':
-			matchers = pattern.substring(1);
-			antiMatchers = ""; //$NON-NLS-1$
-			allMatchers = ""; //$NON-NLS-1$
-			break;
-		case '-':
-			matchers = ""; //$NON-NLS-1$
-			antiMatchers = pattern.substring(1);
-			allMatchers = ""; //$NON-NLS-1$
-			break;
-		case '*':
-			matchers = ""; //$NON-NLS-1$
-			antiMatchers = ""; //$NON-NLS-1$
-			allMatchers = pattern.substring(1);
-		case '(':
-			// The order is always +-*
-			int plusIndex = pattern.indexOf('+');
-			int minusIndex = pattern.indexOf('-');
-			int starIndex = pattern.indexOf('*');
-			
-			matchers = pattern.substring(plusIndex+1, minusIndex == -1 ? pattern.length() : minusIndex);
-			antiMatchers = minusIndex == -1 ? "" : pattern.substring(minusIndex+1, starIndex == -1 ? pattern.length() : starIndex); //$NON-NLS-1$
-			allMatchers = starIndex == -1 ? "" : pattern.substring(starIndex+1); //$NON-NLS-1$
-			break;
-		}
-		if(matchers == null) { matchers = ""; } //$NON-NLS-1$
-		if(antiMatchers == null) { antiMatchers = ""; } //$NON-NLS-1$
-		if(allMatchers == null) { allMatchers = ""; } //$NON-NLS-1$
-		
-		// Test "match against any" and fail if it doesn't
-		boolean matchedAny = matchers.isEmpty();
-		for(int i = 0; i < matchers.length(); i++) {
-			if(toTest.indexOf(matchers.charAt(i)) > -1) {
-				matchedAny = true;
-				break;
-			}
-		}
-		if(!matchedAny) {
-			return false;
-		}
-		
-		// Test "match none" and fail if it does
-		for(int i = 0; i < antiMatchers.length(); i++) {
-			if(toTest.indexOf(antiMatchers.charAt(i)) > -1) {
-				// Exit immediately
-				return false;
-			}
-		}
-		
-		// Test "match all" and fail if it doesn't
-		for(int i = 0; i < allMatchers.length(); i++) {
-			if(toTest.indexOf(allMatchers.charAt(i)) == -1) {
-				// Exit immediately
-				return false;
-			}
-		}
-		
-		// If we survived to here, it must match
-		return true;
+		return FlagPattern.compile(pattern).matches(flags);
 	}
 	
 	/**
@@ -390,4 +360,70 @@ public enum NSFODPUtil {
 			return Files.newInputStream(path, options);
 		}
 	}
+	
+	/**
+	 * Computes the hex-encoded SHA-256 digest of the provided file's contents.
+	 * 
+	 * @param file the file to digest
+	 * @return the hex-encoded digest
+	 * @throws IOException if there is a problem reading the file
+	 * @since 3.5.0
+	 */
+	public static String sha256(Path file) throws IOException {
+		return toHex(digestFile(file));
+	}
+	
+	/**
+	 * Computes a hex-encoded SHA-256 digest of the provided directory's tree. The digest covers
+	 * the "/"-separated relative path and contents of each regular file, in path order, ignoring
+	 * empty directories and ".DS_Store" files.
+	 * 
+	 * @param dir the directory to digest
+	 * @return the hex-encoded digest
+	 * @throws IOException if there is a problem reading the directory
+	 * @since 3.5.0
+	 */
+	public static String sha256Tree(Path dir) throws IOException {
+		Map<String, Path> files = new TreeMap<>();
+		try(Stream<Path> walk = Files.walk(dir)) {
+			walk.filter(Files::isRegularFile)
+				.filter(p -> !p.getFileName().toString().startsWith(".DS_Store")) //$NON-NLS-1$
+				.forEach(p -> files.put(dir.relativize(p).toString().replace(p.getFileSystem().getSeparator(), "/"), p)); //$NON-NLS-1$
+		}
+		MessageDigest digest = newSha256();
+		for(Map.Entry<String, Path> file : files.entrySet()) {
+			digest.update(file.getKey().getBytes(StandardCharsets.UTF_8));
+			digest.update((byte)0);
+			digest.update(digestFile(file.getValue()));
+		}
+		return toHex(digest.digest());
+	}
+	
+	private static byte[] digestFile(Path file) throws IOException {
+		MessageDigest digest = newSha256();
+		byte[] buffer = new byte[16 * 1024];
+		try(InputStream is = Files.newInputStream(file)) {
+			int read;
+			while((read = is.read(buffer)) > -1) {
+				digest.update(buffer, 0, read);
+			}
+		}
+		return digest.digest();
+	}
+	
+	private static MessageDigest newSha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256"); //$NON-NLS-1$
+		} catch(NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	private static String toHex(byte[] bytes) {
+		StringBuilder result = new StringBuilder(bytes.length * 2);
+		for(byte b : bytes) {
+			result.append(String.format("%02x", b)); //$NON-NLS-1$
+		}
+		return result.toString();
+	}
 }
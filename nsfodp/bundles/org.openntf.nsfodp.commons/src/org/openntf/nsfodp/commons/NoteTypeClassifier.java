@@ -0,0 +1,270 @@
+/**
+ * Copyright © 2018-2021 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsfodp.commons;
+
+import static org.openntf.nsfodp.commons.h.StdNames.ASSIST_TYPE_JAVA;
+import static org.openntf.nsfodp.commons.h.StdNames.DESIGN_FLAGEXT_WEBCONTENTFILE;
+import static org.openntf.nsfodp.commons.h.StdNames.DESIGN_FLAGEXT_WEBSERVICELIB;
+import static org.openntf.nsfodp.commons.h.StdNames.DESIGN_FLAG_DATABASESCRIPT;
+import static org.openntf.nsfodp.commons.h.StdNames.DESIGN_FLAG_HIDEFROMDESIGNLIST;
+import static org.openntf.nsfodp.commons.h.StdNames.DESIGN_FLAG_JARFILE;
+import static org.openntf.nsfodp.commons.h.StdNames.DESIGN_FLAG_JAVA_AGENT;
+import static org.openntf.nsfodp.commons.h.StdNames.DESIGN_FLAG_JAVA_AGENT_WITH_SOURCE;
+import static org.openntf.nsfodp.commons.h.StdNames.DESIGN_FLAG_JAVA_RESOURCE;
+import static org.openntf.nsfodp.commons.h.StdNames.DESIGN_FLAG_LOTUSSCRIPT_AGENT;
+import static org.openntf.nsfodp.commons.h.StdNames.DESIGN_FLAG_PROPFILE;
+import static org.openntf.nsfodp.commons.h.StdNames.DFLAGPAT_COMPAPP;
+import static org.openntf.nsfodp.commons.h.StdNames.DFLAGPAT_COMPDEF;
+import static org.openntf.nsfodp.commons.h.StdNames.DFLAGPAT_DATA_CONNECTION_RESOURCE;
+import static org.openntf.nsfodp.commons.h.StdNames.DFLAGPAT_DB2ACCESSVIEW;
+import static org.openntf.nsfodp.commons.h.StdNames.DFLAGPAT_FILE;
+import static org.openntf.nsfodp.commons.h.StdNames.DFLAGPAT_FOLDER_DESIGN;
+import static org.openntf.nsfodp.commons.h.StdNames.DFLAGPAT_FRAMESET;
+import static org.openntf.nsfodp.commons.h.StdNames.DFLAGPAT_IMAGE_RESOURCE;
+import static org.openntf.nsfodp.commons.h.StdNames.DFLAGPAT_JAVAFILE;
+import static org.openntf.nsfodp.commons.h.StdNames.DFLAGPAT_JAVA_WEBSERVICE;
+import static org.openntf.nsfodp.commons.h.StdNames.DFLAGPAT_LS_WEBSERVICE;
+import static org.openntf.nsfodp.commons.h.StdNames.DFLAGPAT_SACTIONS_DESIGN;
+import static org.openntf.nsfodp.commons.h.StdNames.DFLAGPAT_SCRIPTLIB_JAVA;
+import static org.openntf.nsfodp.commons.h.StdNames.DFLAGPAT_SCRIPTLIB_JS;
+import static org.openntf.nsfodp.commons.h.StdNames.DFLAGPAT_SCRIPTLIB_LS;
+import static org.openntf.nsfodp.commons.h.StdNames.DFLAGPAT_SCRIPTLIB_SERVER_JS;
+import static org.openntf.nsfodp.commons.h.StdNames.DFLAGPAT_SHARED_COLS;
+import static org.openntf.nsfodp.commons.h.StdNames.DFLAGPAT_SITEMAP;
+import static org.openntf.nsfodp.commons.h.StdNames.DFLAGPAT_STYLEKIT;
+import static org.openntf.nsfodp.commons.h.StdNames.DFLAGPAT_STYLE_SHEET_RESOURCE;
+import static org.openntf.nsfodp.commons.h.StdNames.DFLAGPAT_SUBFORM_DESIGN;
+import static org.openntf.nsfodp.commons.h.StdNames.DFLAGPAT_VIEWMAP_DESIGN;
+import static org.openntf.nsfodp.commons.h.StdNames.DFLAGPAT_WEBPAGE;
+import static org.openntf.nsfodp.commons.h.StdNames.DFLAGPAT_WIDGET;
+import static org.openntf.nsfodp.commons.h.StdNames.DFLAGPAT_XSPCC;
+import static org.openntf.nsfodp.commons.h.StdNames.DFLAGPAT_XSPPAGE;
+import static org.openntf.nsfodp.commons.h.StdNames.IMAGE_NEW_DBICON_NAME;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import org.openntf.nsfodp.commons.h.NsfNote;
+
+/**
+ * Determines the {@link NoteType} of a design note from its class and flags using a
+ * precompiled table of {@link FlagPattern}s.
+ *
+ * <p>The note class selects a rule chain with a single map lookup, and the flag values are
+ * converted to flag sets once rather than being re-scanned for each pattern. Information that
+ * isn't in the flags is requested from the provided {@link NoteContext} only when a rule
+ * needs it.</p>
+ *
+ * @author Jesse Gallagher
+ * @since 3.5.0
+ */
+public enum NoteTypeClassifier {
+	;
+
+	/**
+	 * Provides note information beyond the class and flags, for the few note types that need it.
+	 */
+	public interface NoteContext {
+		/**
+		 * @return the first value of the note's {@code $TITLE} item, or an empty string
+		 */
+		String getTitle();
+		/**
+		 * @return the value of the note's {@code $AssistType} item, or {@code 0}
+		 */
+		int getAssistType();
+		/**
+		 * @return whether the note has a {@code $JavaCompilerSource} item
+		 */
+		boolean hasJavaCompilerSource();
+		/**
+		 * @return the first value of the note's {@code $FileNames} item, or {@code null}
+		 */
+		String getFileName();
+	}
+
+	@FunctionalInterface
+	private interface Resolver {
+		NoteType resolve(BitSet flags, BitSet flagsExt, NoteContext context);
+	}
+
+	private static class Rule {
+		private final Predicate<BitSet> condition;
+		private final Resolver resolver;
+
+		Rule(Predicate<BitSet> condition, Resolver resolver) {
+			this.condition = condition;
+			this.resolver = resolver;
+		}
+	}
+
+	private static final FlagPattern AGENT_DATA = FlagPattern.compile('X');
+	private static final FlagPattern PROPFILE = FlagPattern.compile(DESIGN_FLAG_PROPFILE);
+	private static final FlagPattern HIDEFROMDESIGNLIST = FlagPattern.compile(DESIGN_FLAG_HIDEFROMDESIGNLIST);
+	private static final FlagPattern LOTUSSCRIPT_AGENT = FlagPattern.compile(DESIGN_FLAG_LOTUSSCRIPT_AGENT);
+	private static final FlagPattern JAVA_AGENT = FlagPattern.compile(DESIGN_FLAG_JAVA_AGENT);
+	private static final FlagPattern JAVA_AGENT_WITH_SOURCE = FlagPattern.compile(DESIGN_FLAG_JAVA_AGENT_WITH_SOURCE);
+	private static final FlagPattern JAVAFILE = FlagPattern.compile(DFLAGPAT_JAVAFILE);
+	private static final FlagPattern EXT_WEBSERVICELIB = FlagPattern.compile(DESIGN_FLAGEXT_WEBSERVICELIB);
+	private static final FlagPattern EXT_WEBCONTENTFILE = FlagPattern.compile(DESIGN_FLAGEXT_WEBCONTENTFILE);
+
+	private static final Map<Integer, Resolver> TABLE = new HashMap<>();
+	static {
+		TABLE.put((int)NsfNote.NOTE_CLASS_ACL, constant(NoteType.ACL));
+		TABLE.put((int)NsfNote.NOTE_CLASS_DESIGN, constant(NoteType.DesignCollection));
+		TABLE.put((int)NsfNote.NOTE_CLASS_ICON, constant(NoteType.IconNote));
+		TABLE.put((int)NsfNote.NOTE_CLASS_VIEW, chain(constant(NoteType.View),
+			rule(DFLAGPAT_FOLDER_DESIGN, NoteType.Folder),
+			rule(DFLAGPAT_VIEWMAP_DESIGN, NoteType.Navigator),
+			rule(DFLAGPAT_SHARED_COLS, NoteType.SharedColumn)
+		));
+		TABLE.put((int)NsfNote.NOTE_CLASS_FIELD, constant(NoteType.SharedField));
+		TABLE.put((int)NsfNote.NOTE_CLASS_HELP, constant(NoteType.UsingDocument));
+		TABLE.put((int)NsfNote.NOTE_CLASS_INFO, constant(NoteType.AboutDocument));
+		// "filter" is a dumping ground for pre-XPages code elements
+		TABLE.put((int)NsfNote.NOTE_CLASS_FILTER, chain(NoteTypeClassifier::resolveAgent,
+			rule(FlagPattern.compile(DESIGN_FLAG_DATABASESCRIPT), NoteType.DBScript),
+			rule(DFLAGPAT_SITEMAP, NoteType.Outline),
+			rule(DFLAGPAT_SCRIPTLIB_LS, (flags, flagsExt, context) -> EXT_WEBSERVICELIB.matches(flagsExt) ? NoteType.LotusScriptWebServiceConsumer : NoteType.LotusScriptLibrary),
+			rule(DFLAGPAT_SCRIPTLIB_JAVA, (flags, flagsExt, context) -> EXT_WEBSERVICELIB.matches(flagsExt) ? NoteType.JavaWebServiceConsumer : NoteType.JavaLibrary),
+			rule(DFLAGPAT_SCRIPTLIB_JS, NoteType.JavaScriptLibrary),
+			rule(DFLAGPAT_SCRIPTLIB_SERVER_JS, NoteType.ServerJavaScriptLibrary),
+			rule(DFLAGPAT_JAVA_WEBSERVICE, NoteType.JavaWebService),
+			rule(DFLAGPAT_LS_WEBSERVICE, NoteType.LotusScriptWebService),
+			rule(DFLAGPAT_DATA_CONNECTION_RESOURCE, NoteType.DataConnection)
+		));
+		// Pretty much everything is a form nowadays
+		TABLE.put((int)NsfNote.NOTE_CLASS_FORM, chain(constant(NoteType.Form),
+			// Definitely an actual form
+			new Rule(BitSet::isEmpty, constant(NoteType.Form)),
+			rule(DFLAGPAT_IMAGE_RESOURCE, (flags, flagsExt, context) -> IMAGE_NEW_DBICON_NAME.equals(context.getTitle()) ? NoteType.DBIcon : NoteType.ImageResource),
+			rule(FlagPattern.compile(DESIGN_FLAG_JARFILE), NoteType.Jar),
+			rule(DFLAGPAT_COMPDEF, NoteType.WiringProperties),
+			rule(DFLAGPAT_COMPAPP, NoteType.CompositeApplication),
+			rule(DFLAGPAT_WIDGET, NoteType.CompositeComponent),
+			rule(DFLAGPAT_XSPCC, (flags, flagsExt, context) -> PROPFILE.matches(flags) ? NoteType.CustomControlProperties : NoteType.CustomControl),
+			rule(DFLAGPAT_XSPPAGE, (flags, flagsExt, context) -> PROPFILE.matches(flags) ? NoteType.XPageProperties : NoteType.XPage),
+			rule(DFLAGPAT_STYLEKIT, NoteType.Theme),
+			rule(DFLAGPAT_WEBPAGE, NoteType.Page),
+			rule(DFLAGPAT_STYLE_SHEET_RESOURCE, NoteType.StyleSheet),
+			rule(DFLAGPAT_SUBFORM_DESIGN, NoteType.Subform),
+			rule(DFLAGPAT_FRAMESET, NoteType.Frameset),
+			rule(DFLAGPAT_DB2ACCESSVIEW, NoteType.DB2AccessView),
+			rule(DFLAGPAT_FILE, NoteTypeClassifier::resolveFile),
+			rule(DFLAGPAT_SACTIONS_DESIGN, NoteType.SharedActions),
+			rule(FlagPattern.compile(DESIGN_FLAG_JAVA_RESOURCE), NoteType.Applet)
+		));
+		TABLE.put((int)NsfNote.NOTE_CLASS_REPLFORMULA, constant(NoteType.ReplicationFormula));
+	}
+
+	/**
+	 * Determines the type of a note.
+	 *
+	 * @param noteClass the note's class value, which may include the default and privileged bits
+	 * @param flags the note's {@code $Flags} value, or an empty string
+	 * @param flagsExt the note's {@code $FlagsExt} value, or an empty string
+	 * @param context a source for any further information needed
+	 * @return the matching {@link NoteType}, or {@link NoteType#Unknown} if the note class is not known
+	 */
+	public static NoteType classify(int noteClass, String flags, String flagsExt, NoteContext context) {
+		BitSet flagSet = FlagPattern.toFlagSet(flags);
+		if(AGENT_DATA.matches(flagSet)) {
+			return NoteType.AgentData;
+		}
+
+		Resolver resolver = TABLE.get(noteClass & NsfNote.NOTE_CLASS_NONPRIV);
+		if(resolver == null) {
+			return NoteType.Unknown;
+		}
+		return resolver.resolve(flagSet, FlagPattern.toFlagSet(flagsExt), context);
+	}
+
+	// *******************************************************************************
+	// * Internal utility methods
+	// *******************************************************************************
+
+	private static Resolver constant(NoteType type) {
+		return (flags, flagsExt, context) -> type;
+	}
+
+	private static Rule rule(String pattern, NoteType type) {
+		return rule(FlagPattern.compile(pattern), constant(type));
+	}
+
+	private static Rule rule(String pattern, Resolver resolver) {
+		return rule(FlagPattern.compile(pattern), resolver);
+	}
+
+	private static Rule rule(FlagPattern pattern, NoteType type) {
+		return rule(pattern, constant(type));
+	}
+
+	private static Rule rule(FlagPattern pattern, Resolver resolver) {
+		return new Rule(pattern::matches, resolver);
+	}
+
+	/**
+	 * Creates a resolver that returns the result of the first matching rule, or of
+	 * {@code fallback} if none match.
+	 */
+	private static Resolver chain(Resolver fallback, Rule... rules) {
+		return (flags, flagsExt, context) -> {
+			for(Rule rule : rules) {
+				if(rule.condition.test(flags)) {
+					return rule.resolver.resolve(flags, flagsExt, context);
+				}
+			}
+			return fallback.resolve(flags, flagsExt, context);
+		};
+	}
+
+	private static NoteType resolveAgent(BitSet flags, BitSet flagsExt, NoteContext context) {
+		if(LOTUSSCRIPT_AGENT.matches(flags)) {
+			return NoteType.LotusScriptAgent;
+		}
+		int assistType = context.getAssistType();
+		if(JAVA_AGENT.matches(flags) || JAVA_AGENT_WITH_SOURCE.matches(flags) || assistType == ASSIST_TYPE_JAVA) {
+			// There's not a proper pattern for distinguishing between these two, so look for another marker
+			if(JAVA_AGENT_WITH_SOURCE.matches(flags) || context.hasJavaCompilerSource()) {
+				return NoteType.JavaAgent;
+			} else {
+				return NoteType.ImportedJavaAgent;
+			}
+		} else if(assistType == -1) {
+			return NoteType.SimpleActionAgent;
+		} else {
+			return NoteType.FormulaAgent;
+		}
+	}
+
+	private static NoteType resolveFile(BitSet flags, BitSet flagsExt, NoteContext context) {
+		if(!HIDEFROMDESIGNLIST.matches(flags)) {
+			return NoteType.FileResource;
+		}
+		// xspdesign.properties needs special handling, but is distinguished only by file name
+		if("xspdesign.properties".equals(context.getFileName())) { //$NON-NLS-1$
+			return NoteType.XSPDesignProperties;
+		} else if(EXT_WEBCONTENTFILE.matches(flagsExt)) {
+			return NoteType.WebContentFile;
+		} else if(JAVAFILE.matches(flags)) {
+			return NoteType.Java;
+		} else {
+			return NoteType.GenericFile;
+		}
+	}
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright © 2018-2021 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsfodp.commons.io;
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * A {@link Writer} that removes whitespace immediately following an {@code <imageref>}
+ * start tag as the text is written, which is equivalent to replacing
+ * {@code <imageref>\s+} with {@code <imageref>} in the final document.
+ *
+ * @since 3.5.0
+ */
+public class ImagerefCleaningWriter extends FilterWriter {
+	private static final char[] TOKEN = "<imageref>".toCharArray(); //$NON-NLS-1$
+
+	/** The number of characters of {@link #TOKEN} matched so far */
+	private int matched;
+	/** Whether whitespace is currently being dropped */
+	private boolean skipping;
+
+	public ImagerefCleaningWriter(Writer out) {
+		super(out);
+	}
+
+	@Override
+	public void write(int c) throws IOException {
+		if(accept((char)c)) {
+			out.write(c);
+		}
+	}
+
+	@Override
+	public void write(char[] cbuf, int off, int len) throws IOException {
+		int runStart = off;
+		int end = off + len;
+		for(int i = off; i < end; i++) {
+			if(!accept(cbuf[i])) {
+				if(i > runStart) {
+					out.write(cbuf, runStart, i - runStart);
+				}
+				runStart = i + 1;
+			}
+		}
+		if(end > runStart) {
+			out.write(cbuf, runStart, end - runStart);
+		}
+	}
+
+	@Override
+	public void write(String str, int off, int len) throws IOException {
+		char[] chars = new char[len];
+		str.getChars(off, off + len, chars, 0);
+		write(chars, 0, len);
+	}
+
+	// *******************************************************************************
+	// * Internal utility methods
+	// *******************************************************************************
+
+	/**
+	 * Updates the matching state for the provided character.
+	 *
+	 * @param c the next character in the stream
+	 * @return whether the character should be written
+	 */
+	private boolean accept(char c) {
+		if(skipping) {
+			if(isWhitespace(c)) {
+				return false;
+			}
+			skipping = false;
+		}
+
+		if(c == TOKEN[matched]) {
+			matched++;
+			if(matched == TOKEN.length) {
+				matched = 0;
+				skipping = true;
+			}
+		} else {
+			// '<' only occurs at the start of the token, so it's the only possible restart
+			matched = c == TOKEN[0] ? 1 : 0;
+		}
+		return true;
+	}
+
+	/**
+	 * @param c the character to check
+	 * @return whether the character matches the regex {@code \s} class
+	 */
+	private static boolean isWhitespace(char c) {
+		switch(c) {
+		case ' ':
+		case '\t':
+		case '\n':
+		case '\u000B':
+		case '\f':
+		case '\r':
+			return true;
+		default:
+			return false;
+		}
+	}
+}
@@ -0,0 +1,421 @@
+/**
+ * Copyright © 2018-2021 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsfodp.commons.io;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.sax.SAXSource;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXNotRecognizedException;
+import org.xml.sax.SAXNotSupportedException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.ext.LexicalHandler;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.XMLFilterImpl;
+
+/**
+ * A SAX filter that applies the same rules as {@code SwiperDXLClean.xsl}, for use in place
+ * of running the stylesheet.
+ *
+ * <p>This mirrors the effective behavior of the stylesheet, including its template conflict
+ * resolution: the icon-note item templates are overridden by the general {@code n:item}
+ * template and so do not remove anything.</p>
+ *
+ * @since 3.5.0
+ */
+public class SwiperFilter extends XMLFilterImpl implements LexicalHandler {
+	public static final String DXL_NS = "http://www.lotus.com/dxl"; //$NON-NLS-1$
+
+	private static final String PROP_LEXICAL_HANDLER = "http://xml.org/sax/properties/lexical-handler"; //$NON-NLS-1$
+	private static final String XML_NS = "http://www.w3.org/XML/1998/namespace"; //$NON-NLS-1$
+
+	private static final SAXParserFactory SAX_FACTORY = SAXParserFactory.newInstance();
+	static {
+		SAX_FACTORY.setNamespaceAware(true);
+	}
+
+	/** Elements that have their replicaid, version, and designerversion attributes removed */
+	private static final Set<String> VERSIONED_ELEMENTS = new HashSet<>(Arrays.asList(
+		"form", "database", "sharedactions", "agent", "scriptlibrary", "databasescript", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$
+		"dataconnection", "folder", "frameset", "page", "imageresource", "helpaboutdocument", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$
+		"stylesheetresource", "view", "helpusingdocument", "sharedcolumn", "sharedfield", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+		"navigator", "outline", "subform", "fileresource" //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+	));
+	private static final Set<String> VERSION_ATTRIBUTES = new HashSet<>(Arrays.asList("replicaid", "version", "designerversion")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+	private static final Set<String> DATABASEINFO_ATTRIBUTES = new HashSet<>(Arrays.asList("dbid", "percentused", "numberofdocuments", "diskspace", "odsversion")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+	private static final Set<String> IGNORED_ITEMS = new HashSet<>(Arrays.asList("$DesignerVersion", "$$ScriptName", "$ScriptLib_error")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+	private static final Set<String> IGNORED_IMAGERESOURCE_ITEMS = new HashSet<>(Arrays.asList("$FileModDT", "$EditFilePath")); //$NON-NLS-1$ //$NON-NLS-2$
+
+	/**
+	 * Creates a {@link SAXSource} that parses the provided input through a new filter.
+	 *
+	 * @param input the source DXL
+	 * @return a {@link SAXSource} suitable for passing to an identity {@link javax.xml.transform.Transformer}
+	 * @throws SAXException if there is a problem creating the underlying parser
+	 */
+	public static SAXSource createSource(InputSource input) throws SAXException {
+		XMLReader reader;
+		try {
+			reader = SAX_FACTORY.newSAXParser().getXMLReader();
+		} catch (ParserConfigurationException e) {
+			throw new SAXException(e);
+		}
+		return new SAXSource(new SwiperFilter(reader), input);
+	}
+
+	private static class Frame {
+		final String localName;
+		final boolean preserveSpace;
+		final List<String> prefixes;
+
+		Frame(String localName, boolean preserveSpace, List<String> prefixes) {
+			this.localName = localName;
+			this.preserveSpace = preserveSpace;
+			this.prefixes = prefixes;
+		}
+	}
+
+	private LexicalHandler lexicalHandler;
+	/** The ancestors of the current position, with {@code null} local names for non-DXL elements */
+	private final Deque<Frame> stack = new ArrayDeque<>();
+	/** The depth within a removed element, or 0 when not within one */
+	private int skipDepth;
+	private final List<String[]> pendingPrefixes = new ArrayList<>();
+	private final StringBuilder text = new StringBuilder();
+
+	public SwiperFilter(XMLReader parent) {
+		super(parent);
+	}
+
+	@Override
+	public void setProperty(String name, Object value) throws SAXNotRecognizedException, SAXNotSupportedException {
+		if(PROP_LEXICAL_HANDLER.equals(name)) {
+			this.lexicalHandler = (LexicalHandler)value;
+			super.setProperty(name, this);
+		} else {
+			super.setProperty(name, value);
+		}
+	}
+
+	@Override
+	public Object getProperty(String name) throws SAXNotRecognizedException, SAXNotSupportedException {
+		if(PROP_LEXICAL_HANDLER.equals(name)) {
+			return lexicalHandler;
+		}
+		return super.getProperty(name);
+	}
+
+	// *******************************************************************************
+	// * ContentHandler
+	// *******************************************************************************
+
+	@Override
+	public void startDocument() throws SAXException {
+		stack.clear();
+		skipDepth = 0;
+		pendingPrefixes.clear();
+		text.setLength(0);
+		super.startDocument();
+	}
+
+	@Override
+	public void endDocument() throws SAXException {
+		flushText();
+		super.endDocument();
+	}
+
+	@Override
+	public void startPrefixMapping(String prefix, String uri) throws SAXException {
+		// Defer until we know whether the associated element is kept
+		pendingPrefixes.add(new String[] { prefix, uri });
+	}
+
+	@Override
+	public void endPrefixMapping(String prefix) throws SAXException {
+		// Handled in endElement for the elements that were passed along
+	}
+
+	@Override
+	public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+		flushText();
+
+		if(skipDepth > 0) {
+			skipDepth++;
+			pendingPrefixes.clear();
+			return;
+		}
+
+		String name = DXL_NS.equals(uri) ? localName : null;
+		if(name != null && isRemovedElement(name, atts)) {
+			skipDepth = 1;
+			pendingPrefixes.clear();
+			return;
+		}
+
+		List<String> prefixes;
+		if(pendingPrefixes.isEmpty()) {
+			prefixes = Collections.emptyList();
+		} else {
+			prefixes = new ArrayList<>(pendingPrefixes.size());
+			for(String[] mapping : pendingPrefixes) {
+				super.startPrefixMapping(mapping[0], mapping[1]);
+				prefixes.add(mapping[0]);
+			}
+			pendingPrefixes.clear();
+		}
+
+		boolean preserveSpace = !stack.isEmpty() && stack.peek().preserveSpace;
+		String space = atts.getValue(XML_NS, "space"); //$NON-NLS-1$
+		if(space != null) {
+			preserveSpace = "preserve".equals(space); //$NON-NLS-1$
+		}
+
+		Attributes filtered = name == null ? filterAttributes(atts) : filterAttributes(name, atts);
+		stack.push(new Frame(name, preserveSpace, prefixes));
+		super.startElement(uri, localName, qName, filtered);
+	}
+
+	@Override
+	public void endElement(String uri, String localName, String qName) throws SAXException {
+		if(skipDepth > 0) {
+			skipDepth--;
+			return;
+		}
+		flushText();
+
+		Frame frame = stack.pop();
+		super.endElement(uri, localName, qName);
+		for(String prefix : frame.prefixes) {
+			super.endPrefixMapping(prefix);
+		}
+	}
+
+	@Override
+	public void characters(char[] ch, int start, int length) throws SAXException {
+		if(skipDepth == 0) {
+			text.append(ch, start, length);
+		}
+	}
+
+	@Override
+	public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+		characters(ch, start, length);
+	}
+
+	@Override
+	public void processingInstruction(String target, String data) throws SAXException {
+		flushText();
+		if(skipDepth == 0) {
+			super.processingInstruction(target, data);
+		}
+	}
+
+	// *******************************************************************************
+	// * LexicalHandler
+	// *******************************************************************************
+
+	@Override
+	public void comment(char[] ch, int start, int length) throws SAXException {
+		flushText();
+		if(skipDepth == 0 && lexicalHandler != null) {
+			lexicalHandler.comment(ch, start, length);
+		}
+	}
+
+	// The stylesheet output has no DTD and writes CDATA content as normal text, so these
+	//   are not passed along
+
+	@Override
+	public void startDTD(String name, String publicId, String systemId) throws SAXException {
+	}
+
+	@Override
+	public void endDTD() throws SAXException {
+	}
+
+	@Override
+	public void startEntity(String name) throws SAXException {
+	}
+
+	@Override
+	public void endEntity(String name) throws SAXException {
+	}
+
+	@Override
+	public void startCDATA() throws SAXException {
+	}
+
+	@Override
+	public void endCDATA() throws SAXException {
+	}
+
+	// *******************************************************************************
+	// * Internal utility methods
+	// *******************************************************************************
+
+	/**
+	 * Passes along any accumulated text, dropping it if it consists only of whitespace,
+	 * matching {@code <xsl:strip-space elements="*"/>}.
+	 */
+	private void flushText() throws SAXException {
+		if(text.length() == 0) {
+			return;
+		}
+		boolean preserve = !stack.isEmpty() && stack.peek().preserveSpace;
+		if(preserve || !isWhitespace(text)) {
+			char[] chars = new char[text.length()];
+			text.getChars(0, chars.length, chars, 0);
+			super.characters(chars, 0, chars.length);
+		}
+		text.setLength(0);
+	}
+
+	private boolean isRemovedElement(String name, Attributes atts) {
+		switch(name) {
+		case "noteinfo": //$NON-NLS-1$
+		case "updatedby": //$NON-NLS-1$
+		case "wassignedby": //$NON-NLS-1$
+			return true;
+		case "rundata": //$NON-NLS-1$
+		case "designchange": //$NON-NLS-1$
+			return isParent("agent"); //$NON-NLS-1$
+		case "datamodified": //$NON-NLS-1$
+		case "designmodified": //$NON-NLS-1$
+			return isParent("databaseinfo", "database"); //$NON-NLS-1$ //$NON-NLS-2$
+		case "logentry": //$NON-NLS-1$
+			return isParent("acl", "database"); //$NON-NLS-1$ //$NON-NLS-2$
+		case "lastindexed": //$NON-NLS-1$
+			return isParent("fulltextsettings", "database"); //$NON-NLS-1$ //$NON-NLS-2$
+		case "item": { //$NON-NLS-1$
+			String itemName = atts.getValue("", "name"); //$NON-NLS-1$ //$NON-NLS-2$
+			if(itemName == null) {
+				return false;
+			}
+			if(IGNORED_ITEMS.contains(itemName)) {
+				return true;
+			}
+			if(IGNORED_IMAGERESOURCE_ITEMS.contains(itemName) && isParent("imageresource")) { //$NON-NLS-1$
+				return true;
+			}
+			return itemName.startsWith("$") && itemName.endsWith("_O"); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Removes {@code @maintenanceversion}, the only attribute rule that applies regardless
+	 * of the element.
+	 */
+	private Attributes filterAttributes(Attributes atts) {
+		int index = atts.getIndex("", "maintenanceversion"); //$NON-NLS-1$ //$NON-NLS-2$
+		if(index < 0) {
+			return atts;
+		}
+		AttributesImpl result = new AttributesImpl(atts);
+		result.removeAttribute(index);
+		return result;
+	}
+
+	private Attributes filterAttributes(String name, Attributes atts) {
+		AttributesImpl result = null;
+		for(int i = atts.getLength()-1; i >= 0; i--) {
+			if(!atts.getURI(i).isEmpty()) {
+				continue;
+			}
+			if(isRemovedAttribute(name, atts.getLocalName(i))) {
+				if(result == null) {
+					result = new AttributesImpl(atts);
+				}
+				result.removeAttribute(i);
+			}
+		}
+		return result == null ? atts : result;
+	}
+
+	private boolean isRemovedAttribute(String elementName, String attrName) {
+		if("maintenanceversion".equals(attrName)) { //$NON-NLS-1$
+			return true;
+		}
+		switch(elementName) {
+		case "note": //$NON-NLS-1$
+			return "replicaid".equals(attrName) || "version".equals(attrName); //$NON-NLS-1$ //$NON-NLS-2$
+		case "database": //$NON-NLS-1$
+			return VERSION_ATTRIBUTES.contains(attrName) || "path".equals(attrName); //$NON-NLS-1$
+		case "folder": //$NON-NLS-1$
+		case "view": //$NON-NLS-1$
+			return VERSION_ATTRIBUTES.contains(attrName) || "formatnoteid".equals(attrName); //$NON-NLS-1$
+		case "javaproject": //$NON-NLS-1$
+			return "codepath".equals(attrName); //$NON-NLS-1$
+		case "databaseinfo": //$NON-NLS-1$
+			return isParent("database") && DATABASEINFO_ATTRIBUTES.contains(attrName); //$NON-NLS-1$
+		case "fulltextsettings": //$NON-NLS-1$
+			return isParent("database") && ("size".equals(attrName) || "unindexeddocumentcount".equals(attrName)); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		default:
+			return VERSIONED_ELEMENTS.contains(elementName) && VERSION_ATTRIBUTES.contains(attrName);
+		}
+	}
+
+	/**
+	 * Determines whether the current element's ancestors are the named DXL elements, starting
+	 * with the immediate parent.
+	 */
+	private boolean isParent(String... names) {
+		if(stack.size() < names.length) {
+			return false;
+		}
+		int i = 0;
+		for(Frame frame : stack) {
+			if(i == names.length) {
+				break;
+			}
+			if(!names[i].equals(frame.localName)) {
+				return false;
+			}
+			i++;
+		}
+		return true;
+	}
+
+	private static boolean isWhitespace(CharSequence text) {
+		for(int i = 0; i < text.length(); i++) {
+			switch(text.charAt(i)) {
+			case ' ':
+			case '\t':
+			case '\r':
+			case '\n':
+				break;
+			default:
+				return false;
+			}
+		}
+		return true;
+	}
+}
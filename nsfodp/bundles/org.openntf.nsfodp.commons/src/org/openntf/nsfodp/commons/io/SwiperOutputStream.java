@@ -15,20 +15,29 @@
  */
 package org.openntf.nsfodp.commons.io;
 
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
 import java.io.Reader;
 import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Source;
 import javax.xml.transform.Templates;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerConfigurationException;
@@ -37,102 +46,292 @@ import javax.xml.transform.TransformerFactoryConfigurationError;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
 
+import org.openntf.nsfodp.commons.NSFODPConstants;
+import org.xml.sax.InputSource;
+
 /**
  * This OutputStream implementation toggles its behavior depending on whether or not Swiper is
  * enabled for this exporter.
  * 
+ * <p>When Swiper is enabled, the DXL is filtered by {@link SwiperFilter} by default: written
+ * bytes are piped to a SAX parser on a background thread, which passes the filtered events to
+ * an identity transformer writing to the destination file, so the note is processed in one
+ * pass without being held in memory. When the XSLT stylesheet is used instead, the written DXL
+ * is buffered and transformed when the stream is closed, as the stylesheet needs the whole
+ * document. Either way, the {@code imageref} cleanup is applied as the result is written.</p>
+ * 
  * @since 1.4.0
  */
 public class SwiperOutputStream extends OutputStream {
 	
+	private static final int INDENT_AMOUNT = 2;
+	
 	static {
 		try(InputStream is = SwiperOutputStream.class.getResourceAsStream("/res/SwiperDXLClean.xsl")) { //$NON-NLS-1$
 			try(Reader r = new InputStreamReader(is)) {
-				swiper = TransformerFactory.newInstance().newTemplates(new StreamSource(r));
+				TransformerFactory transformerFactory = TransformerFactory.newInstance();
+				try {
+					// Some compiling processors ignore the indent-amount output property on
+					//   stylesheets, so set it here too to match the streamed identity output
+					transformerFactory.setAttribute("indent-number", INDENT_AMOUNT); //$NON-NLS-1$
+				} catch(IllegalArgumentException e) {
+					// Not supported by this processor, which then honors the output property
+				}
+				swiper = transformerFactory.newTemplates(new StreamSource(r));
+				factory = transformerFactory;
 			}
 		} catch (TransformerConfigurationException | TransformerFactoryConfigurationError | IOException e) {
 			throw new RuntimeException(e);
 		}
 	}
 	
+	private static final TransformerFactory factory;
 	private static final Templates swiper;
 	
+	/**
+	 * Whether to use {@link SwiperFilter} instead of the XSLT stylesheet by default, which is
+	 * the case unless {@link NSFODPConstants#PROP_SWIPER_JAVA_FILTER} is set to {@code false}
+	 * @since 3.5.0
+	 */
+	public static final boolean DEFAULT_JAVA_FILTER = !"false".equals(System.getProperty(NSFODPConstants.PROP_SWIPER_JAVA_FILTER)); //$NON-NLS-1$
+	
+	private static final ThreadLocal<Transformer> SWIPER_TRANSFORMER = new ThreadLocal<>();
+	private static final ThreadLocal<Transformer> IDENTITY_TRANSFORMER = new ThreadLocal<>();
+	
+	/** The size of the buffer between the DXL writer and the filter */
+	private static final int PIPE_SIZE = 64 * 1024;
+	
+	private static final ExecutorService FILTER_EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory());
+	
 	private final Path path;
 	private OutputStream os;
 	private final boolean isSwiper;
+	private final boolean javaFilter;
+	private Future<?> filterResult;
+	private boolean closed;
 	
 	public SwiperOutputStream(Path path, boolean isSwiper) throws IOException {
+		this(path, isSwiper, DEFAULT_JAVA_FILTER);
+	}
+	
+	/**
+	 * @param path the destination file
+	 * @param isSwiper whether to filter the DXL with Swiper
+	 * @param javaFilter whether to use {@link SwiperFilter} instead of the XSLT stylesheet
+	 * @throws IOException if there is a problem initializing the stream
+	 * @since 3.5.0
+	 */
+	public SwiperOutputStream(Path path, boolean isSwiper, boolean javaFilter) throws IOException {
 		this.path = path;
 		this.isSwiper = isSwiper;
-		if(this.isSwiper) {
-			os = new ByteArrayOutputStream();
-		} else {
-			os = Files.newOutputStream(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
-		}
+		this.javaFilter = javaFilter;
 	}
 
 	@Override
 	public void write(int b) throws IOException {
-		os.write(b);
+		try {
+			getOutputStream().write(b);
+		} catch(IOException e) {
+			throw checkFilterFailure(e);
+		}
+	}
+	
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		try {
+			getOutputStream().write(b, off, len);
+		} catch(IOException e) {
+			throw checkFilterFailure(e);
+		}
+	}
+	
+	@Override
+	public void flush() throws IOException {
+		if(os != null) {
+			try {
+				os.flush();
+			} catch(IOException e) {
+				throw checkFilterFailure(e);
+			}
+		}
 	}
 	
 	@Override
 	public void close() throws IOException {
+		if(closed) {
+			return;
+		}
+		closed = true;
 		super.close();
 		
-		// Either close the underlying stream and be done or do Swiper transformations
-		if(this.isSwiper) {
+		// Either close the underlying stream and be done, wait for the streaming filter, or
+		//   do the buffered Swiper transformation
+		OutputStream os = getOutputStream();
+		IOException closeException = null;
+		try {
 			os.close();
+		} catch(IOException e) {
+			closeException = e;
+		}
+		if(filterResult != null) {
+			awaitFilter();
+		} else if(this.isSwiper) {
 			byte[] xml = ((ByteArrayOutputStream)os).toByteArray();
-			try {
-				Transformer transformer = createTransformer();
-				try(InputStream is = new ByteArrayInputStream(xml)) {
-					try(Reader r = new InputStreamReader(is, StandardCharsets.UTF_8)) {
-						transform(transformer, r, path);
-					}
+			try(InputStream is = new ByteArrayInputStream(xml)) {
+				try(Writer w = new ImagerefCleaningWriter(Files.newBufferedWriter(path, StandardCharsets.UTF_8))) {
+					transform(getTransformer(), new StreamSource(is), w);
 				}
-				
-				cleanKnownTroubleDxl(path);
-			} catch(RuntimeException e) {
+			} catch(RuntimeException | IOException e) {
 				throw e;
-			} catch (Exception e) {
+			} catch(Exception e) {
 				throw new IOException(e);
 			}
-		} else {
-			os.close();
+		}
+		if(closeException != null) {
+			throw closeException;
 		}
 	}
 	
 	/**
-	 * Processes the given file to remove known gotchas from formatted DXL
+	 * Transforms the source DXL with the XSLT stylesheet and writes the result to the
+	 * destination. This is not used when filtering with {@link SwiperFilter}, which is always
+	 * streamed to the destination.
 	 * 
-	 * @param path the path of the DXL file on the filesystem
-	 * @throws IOException if there is a problem reading or writing the file
-	 * @since 3.3.0
+	 * @param transformer the Swiper transformer to use
+	 * @param source the unfiltered DXL
+	 * @param destination the writer for the filtered DXL
+	 * @throws Exception if there is a problem transforming the DXL
+	 * @since 3.5.0
 	 */
-	protected void cleanKnownTroubleDxl(Path path) throws IOException {
-		// TODO use a more-efficient way to do this
-		String dxl = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
-		
-		String result = dxl.replaceAll("<imageref>\\s+", "<imageref>"); //$NON-NLS-1$ //$NON-NLS-2$
-		
-		Files.write(path, result.toString().getBytes(StandardCharsets.UTF_8), StandardOpenOption.TRUNCATE_EXISTING);
+	protected void transform(Transformer transformer, Source source, Writer destination) throws Exception {
+		transformer.transform(source, new StreamResult(destination));
+	}
+	
+	public static Transformer createTransformer() throws TransformerConfigurationException {
+		Transformer transformer = swiper.newTransformer();
+		configure(transformer);
+		return transformer;
+	}
+	
+	/**
+	 * Retrieves a Swiper transformer for use on the current thread, creating it the first
+	 * time and reapplying its output settings on subsequent calls.
+	 * 
+	 * <p>The returned object must not be shared with other threads.</p>
+	 * 
+	 * @return a configured Swiper {@link Transformer}
+	 * @throws TransformerConfigurationException if there is a problem creating the transformer
+	 * @since 3.5.0
+	 */
+	public static Transformer getTransformer() throws TransformerConfigurationException {
+		return getCached(SWIPER_TRANSFORMER, swiper::newTransformer);
 	}
 	
-	protected void transform(Transformer transformer, Reader r, Path destination) throws Exception {
-		try(Writer w = Files.newBufferedWriter(destination, StandardCharsets.UTF_8)) {
-			StreamResult result = new StreamResult(w);
-			transformer.transform(new StreamSource(r), result);
+	/**
+	 * Retrieves an identity transformer with the same output settings as {@link #getTransformer()},
+	 * for use on the current thread with a source produced by {@link SwiperFilter}. The
+	 * transformer serializes SAX events as they arrive, without building a tree of the input.
+	 * 
+	 * @return a configured identity {@link Transformer}
+	 * @throws TransformerConfigurationException if there is a problem creating the transformer
+	 * @since 3.5.0
+	 */
+	public static Transformer getIdentityTransformer() throws TransformerConfigurationException {
+		return getCached(IDENTITY_TRANSFORMER, () -> {
+			synchronized(factory) {
+				return factory.newTransformer();
+			}
+		});
+	}
+	
+	// *******************************************************************************
+	// * Internal utility methods
+	// *******************************************************************************
+	
+	private OutputStream getOutputStream() throws IOException {
+		if(os == null) {
+			if(!this.isSwiper) {
+				os = new BufferedOutputStream(Files.newOutputStream(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING));
+			} else if(this.javaFilter) {
+				PipedInputStream pipeIn = new PipedInputStream(PIPE_SIZE);
+				os = new PipedOutputStream(pipeIn);
+				filterResult = FILTER_EXECUTOR.submit(() -> {
+					// Closing the pipe here ensures that the writer fails fast if the filter does
+					try(InputStream is = pipeIn) {
+						Source source = SwiperFilter.createSource(new InputSource(is));
+						try(Writer w = new ImagerefCleaningWriter(Files.newBufferedWriter(path, StandardCharsets.UTF_8))) {
+							getIdentityTransformer().transform(source, new StreamResult(w));
+						}
+					}
+					return null;
+				});
+			} else {
+				os = new ByteArrayOutputStream();
+			}
 		}
+		return os;
 	}
 	
-	public static Transformer createTransformer() throws TransformerConfigurationException {
-		Transformer transformer = swiper.newTransformer();
-
+	@FunctionalInterface
+	private interface TransformerCreator {
+		Transformer create() throws TransformerConfigurationException;
+	}
+	
+	private static Transformer getCached(ThreadLocal<Transformer> cache, TransformerCreator creator) throws TransformerConfigurationException {
+		Transformer transformer = cache.get();
+		if(transformer == null) {
+			transformer = creator.create();
+			cache.set(transformer);
+		}
+		// Not reset, which also discards processor settings such as the indent amount; no
+		//   parameters or resolvers are set on these, so the output settings are all there is
+		configure(transformer);
+		return transformer;
+	}
+	
+	private static void configure(Transformer transformer) {
 		transformer.setOutputProperty(OutputKeys.INDENT, "yes"); //$NON-NLS-1$
-		transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2"); //$NON-NLS-1$ //$NON-NLS-2$
+		transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", String.valueOf(INDENT_AMOUNT)); //$NON-NLS-1$
 		transformer.setOutputProperty(OutputKeys.DOCTYPE_PUBLIC, "yes"); //$NON-NLS-1$
+	}
+	
+	private void awaitFilter() throws IOException {
+		try {
+			filterResult.get();
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		} catch(ExecutionException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof RuntimeException) {
+				throw (RuntimeException)cause;
+			} else if(cause instanceof IOException) {
+				throw (IOException)cause;
+			} else {
+				throw new IOException(cause);
+			}
+		}
+	}
+	
+	/**
+	 * Determines whether a write failure was caused by the filter ending early, in which case
+	 * the filter's exception is more useful than the broken pipe.
+	 */
+	private IOException checkFilterFailure(IOException e) throws IOException {
+		if(filterResult != null && filterResult.isDone()) {
+			awaitFilter();
+		}
+		return e;
+	}
+	
+	private static class ThreadFactory implements java.util.concurrent.ThreadFactory {
+		private final AtomicInteger count = new AtomicInteger();
 		
-		return transformer;
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, SwiperOutputStream.class.getSimpleName() + "-filter-" + count.incrementAndGet()); //$NON-NLS-1$
+			t.setDaemon(true);
+			return t;
+		}
 	}
-}
\ No newline at end of file
+}
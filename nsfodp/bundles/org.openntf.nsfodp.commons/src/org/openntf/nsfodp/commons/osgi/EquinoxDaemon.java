@@ -0,0 +1,193 @@
+/**
+ * Copyright © 2018-2021 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsfodp.commons.osgi;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.function.Function;
+
+/**
+ * Shared definitions for the long-lived local Equinox daemon, which keeps a framework running
+ * between builds and runs compilation, export, and transpilation jobs sent to it over a
+ * loopback socket.
+ *
+ * <p>A client sends a single {@link Request}. The daemon then streams the job's console
+ * output back as UTF-8 lines, ending with a line starting with {@link #EXIT_PREFIX} followed
+ * by the job's exit code.</p>
+ *
+ * @author Jesse Gallagher
+ * @since 3.5.0
+ */
+public enum EquinoxDaemon {
+	;
+
+	/**
+	 * The prefix of the final line sent by the daemon for a job, followed by the exit code.
+	 */
+	public static final String EXIT_PREFIX = "#exit "; //$NON-NLS-1$
+	/**
+	 * The key in an application context's arguments map holding the job's properties when
+	 * the application is run by the daemon.
+	 */
+	public static final String ARG_JOB_PROPERTIES = "org.openntf.nsfodp.daemon.jobProperties"; //$NON-NLS-1$
+
+	private static final String KEY_PORT = "port"; //$NON-NLS-1$
+	private static final String KEY_TOKEN = "token"; //$NON-NLS-1$
+
+	/**
+	 * A job to run in the daemon.
+	 */
+	public static class Request {
+		private final String token;
+		private final String applicationId;
+		private final Map<String, String> properties;
+
+		public Request(String token, String applicationId, Map<String, String> properties) {
+			this.token = Objects.requireNonNull(token);
+			this.applicationId = Objects.requireNonNull(applicationId);
+			this.properties = Collections.unmodifiableMap(new LinkedHashMap<>(properties));
+		}
+
+		/**
+		 * @return the token the daemon published in its port file
+		 */
+		public String getToken() {
+			return token;
+		}
+
+		/**
+		 * @return the ID of the Equinox application to run
+		 */
+		public String getApplicationId() {
+			return applicationId;
+		}
+
+		/**
+		 * @return the properties to provide to the application in place of environment
+		 *         variables
+		 */
+		public Map<String, String> getProperties() {
+			return properties;
+		}
+
+		public void write(OutputStream os) throws IOException {
+			DataOutputStream dos = new DataOutputStream(os);
+			dos.writeUTF(token);
+			dos.writeUTF(applicationId);
+			dos.writeInt(properties.size());
+			for(Map.Entry<String, String> prop : properties.entrySet()) {
+				dos.writeUTF(prop.getKey());
+				dos.writeUTF(prop.getValue());
+			}
+			dos.flush();
+		}
+
+		public static Request read(InputStream is) throws IOException {
+			DataInputStream dis = new DataInputStream(is);
+			String token = dis.readUTF();
+			String applicationId = dis.readUTF();
+			int count = dis.readInt();
+			Map<String, String> properties = new LinkedHashMap<>();
+			for(int i = 0; i < count; i++) {
+				properties.put(dis.readUTF(), dis.readUTF());
+			}
+			return new Request(token, applicationId, properties);
+		}
+	}
+
+	/**
+	 * Returns a function to look up an application's launch parameters. For applications
+	 * run by the daemon, these come from the job; otherwise, they come from the process
+	 * environment.
+	 *
+	 * @param contextArguments the arguments map from the application context
+	 * @return a function to look up parameter values by name
+	 */
+	@SuppressWarnings("unchecked")
+	public static Function<String, String> getParameters(Map<?, ?> contextArguments) {
+		Object jobProperties = contextArguments == null ? null : contextArguments.get(ARG_JOB_PROPERTIES);
+		if(jobProperties instanceof Map) {
+			return ((Map<String, String>)jobProperties)::get;
+		} else {
+			return System::getenv;
+		}
+	}
+
+	/**
+	 * Publishes the daemon's connection information.
+	 *
+	 * @param portFile the file to write
+	 * @param port the loopback port the daemon is listening on
+	 * @param token the token clients must present
+	 * @throws IOException if there is a problem writing the file
+	 */
+	public static void writePortFile(Path portFile, int port, String token) throws IOException {
+		Properties props = new Properties();
+		props.setProperty(KEY_PORT, Integer.toString(port));
+		props.setProperty(KEY_TOKEN, token);
+
+		// Write to a temporary file first so that clients never see a partial file
+		Path temp = Files.createTempFile(portFile.getParent(), portFile.getFileName().toString(), ".tmp"); //$NON-NLS-1$
+		try(OutputStream os = Files.newOutputStream(temp)) {
+			props.store(os, null);
+		}
+		Files.move(temp, portFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * @param portFile the file written by {@link #writePortFile}
+	 * @return a {@link Properties} object with the daemon's port and token, or {@code null}
+	 *         if the file does not exist
+	 * @throws IOException if there is a problem reading the file
+	 */
+	public static Properties readPortFile(Path portFile) throws IOException {
+		if(!Files.isRegularFile(portFile)) {
+			return null;
+		}
+		Properties props = new Properties();
+		try(InputStream is = Files.newInputStream(portFile)) {
+			props.load(is);
+		}
+		return props;
+	}
+
+	/**
+	 * @param portFileProperties properties read by {@link #readPortFile}
+	 * @return the port the daemon is listening on
+	 */
+	public static int getPort(Properties portFileProperties) {
+		return Integer.parseInt(portFileProperties.getProperty(KEY_PORT));
+	}
+
+	/**
+	 * @param portFileProperties properties read by {@link #readPortFile}
+	 * @return the token the daemon expects from clients
+	 */
+	public static String getToken(Properties portFileProperties) {
+		return portFileProperties.getProperty(KEY_TOKEN);
+	}
+}
@@ -20,20 +20,25 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.lang.ProcessBuilder.Redirect;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Properties;
+import java.util.SortedSet;
 import java.util.jar.Attributes;
 import java.util.jar.JarEntry;
-import java.util.jar.JarInputStream;
 import java.util.jar.JarOutputStream;
 import java.util.jar.Manifest;
 import java.util.stream.Collectors;
@@ -106,6 +111,32 @@ public class EquinoxRunner {
 	}
 	
 	public Process start(String applicationId) throws IOException {
+		return prepare(applicationId)
+			.redirectOutput(Redirect.PIPE)
+			.redirectInput(Redirect.INHERIT)
+			.start();
+	}
+	
+	/**
+	 * Starts the framework in a process that does not depend on the caller for its input
+	 * or output, so that it may outlive the calling process.
+	 * 
+	 * @param applicationId the Equinox application to run
+	 * @param outputFile the file to write the process's console output to
+	 * @return the started {@link Process}
+	 * @throws IOException if there is a problem preparing or starting the framework
+	 * @since 3.5.0
+	 */
+	public Process startDetached(String applicationId, Path outputFile) throws IOException {
+		Process proc = prepare(applicationId)
+			.redirectErrorStream(true)
+			.redirectOutput(Redirect.appendTo(outputFile.toFile()))
+			.start();
+		proc.getOutputStream().close();
+		return proc;
+	}
+	
+	private ProcessBuilder prepare(String applicationId) throws IOException {
 		Objects.requireNonNull(javaBin, "javaBin must be set");
 		Objects.requireNonNull(notesProgram, "notesProgram must be set");
 		Objects.requireNonNull(workingDirectory, "workingDirectory must be set");
@@ -165,9 +196,7 @@ public class EquinoxRunner {
 		command.add("-consoleLog"); //$NON-NLS-1$
 		
 		ProcessBuilder builder = new ProcessBuilder()
-				.command(command)
-				.redirectOutput(Redirect.PIPE)
-				.redirectInput(Redirect.INHERIT);
+				.command(command);
 		Map<String, String> env = builder.environment();
 		env.put("Notes_ExecDirectory", notesProgram.toAbsolutePath().toString()); //$NON-NLS-1$
 		StringBuilder path = new StringBuilder();
@@ -188,7 +217,7 @@ public class EquinoxRunner {
 		);
 		env.putAll(systemProperties);
 		
-		return builder.start();
+		return builder;
 	}
 	
 	// *******************************************************************************
@@ -292,6 +321,15 @@ public class EquinoxRunner {
     }
     
     public static String createClasspathExtensionBundle(Collection<Path> classpathJars, Path plugins) throws IOException {
+		Map<Path, SortedSet<String>> packages = classpathJars == null ? Collections.emptyMap() : JarPackageIndex.getPackages(classpathJars);
+		
+		// Derive the version from the contents so that an unchanged bundle can be reused
+		String qualifier = getQualifier(packages);
+		Path bundle = plugins.resolve("org.openntf.nsfodp.frameworkextension_1.0.0." + qualifier + ".jar"); //$NON-NLS-1$ //$NON-NLS-2$
+		if(Files.isRegularFile(bundle)) {
+			return "reference:" + bundle.toAbsolutePath().toUri(); //$NON-NLS-1$
+		}
+		
 		Path tempBundle = Files.createTempFile(plugins, "org.openntf.nsfodp.frameworkextension", ".jar"); //$NON-NLS-1$ //$NON-NLS-2$
 		try(OutputStream os = Files.newOutputStream(tempBundle, StandardOpenOption.TRUNCATE_EXISTING)) {
 			try(JarOutputStream jos = new JarOutputStream(os)) {
@@ -303,12 +341,11 @@ public class EquinoxRunner {
 				attrs.putValue("Manifest-Version", "1.0"); //$NON-NLS-1$ //$NON-NLS-2$
 				attrs.putValue("Bundle-ManifestVersion", "2"); //$NON-NLS-1$ //$NON-NLS-2$
 				attrs.putValue("Bundle-SymbolicName", "org.openntf.nsfodp.classpathprovider"); //$NON-NLS-1$ //$NON-NLS-2$
-				attrs.putValue("Bundle-Version", "1.0.0." + System.currentTimeMillis()); //$NON-NLS-1$ //$NON-NLS-2$
+				attrs.putValue("Bundle-Version", "1.0.0." + qualifier); //$NON-NLS-1$ //$NON-NLS-2$
 				attrs.putValue("Bundle-Name", "NSF ODP Tooling Extended Classpath Provider"); //$NON-NLS-1$ //$NON-NLS-2$
 				
 				if(classpathJars != null) {
-					String exportPackage = classpathJars.stream()
-						.map(EquinoxRunner::getPackages)
+					String exportPackage = packages.values().stream()
 						.flatMap(Collection::stream)
 						.collect(Collectors.joining(",")); //$NON-NLS-1$
 					attrs.putValue("Export-Package", exportPackage); //$NON-NLS-1$
@@ -322,29 +359,34 @@ public class EquinoxRunner {
 				manifest.write(jos);
 			}
 		}
-		return "reference:" + tempBundle.toAbsolutePath().toUri(); //$NON-NLS-1$
+		try {
+			Files.move(tempBundle, bundle, StandardCopyOption.ATOMIC_MOVE);
+		} catch(FileAlreadyExistsException e) {
+			// Then an identical bundle was written concurrently
+			Files.deleteIfExists(tempBundle);
+		}
+		return "reference:" + bundle.toAbsolutePath().toUri(); //$NON-NLS-1$
 	}
     
-    private static Collection<String> getPackages(Path jar) {
+    private static String getQualifier(Map<Path, SortedSet<String>> packages) {
     	try {
-    		Collection<String> packages = new HashSet<String>();
-			try(InputStream is = NSFODPUtil.newInputStream(jar)) {
-				try(JarInputStream jis = new JarInputStream(is)) {
-					JarEntry jarEntry = jis.getNextJarEntry();
-					while(jarEntry != null) {
-						String name = jarEntry.getName();
-						if(name.endsWith(".class") && !name.startsWith("java/") && name.indexOf('/') > 0) { //$NON-NLS-1$ //$NON-NLS-2$
-							String packagePath = name.substring(0, name.lastIndexOf('/'));
-							packages.add(packagePath.replace('/', '.'));
-						}
-						
-						jarEntry = jis.getNextJarEntry();
-					}
-				}
-			}
-			return packages;
-    	} catch(IOException e) {
-    		throw new RuntimeException(e);
+    		MessageDigest digest = MessageDigest.getInstance("SHA-256"); //$NON-NLS-1$
+    		for(Map.Entry<Path, SortedSet<String>> jar : packages.entrySet()) {
+    			digest.update(jar.getKey().toAbsolutePath().toString().getBytes(StandardCharsets.UTF_8));
+    			digest.update((byte)0);
+    			for(String pkg : jar.getValue()) {
+    				digest.update(pkg.getBytes(StandardCharsets.UTF_8));
+    				digest.update((byte)0);
+    			}
+    		}
+    		StringBuilder result = new StringBuilder();
+    		byte[] hash = digest.digest();
+    		for(int i = 0; i < 8; i++) {
+    			result.append(String.format("%02x", hash[i])); //$NON-NLS-1$
+    		}
+    		return result.toString();
+    	} catch(NoSuchAlgorithmException e) {
+    		throw new IllegalStateException(e);
     	}
     }
 }
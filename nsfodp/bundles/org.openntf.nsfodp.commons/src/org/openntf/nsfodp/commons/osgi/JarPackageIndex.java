@@ -0,0 +1,167 @@
+/**
+ * Copyright © 2018-2021 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsfodp.commons.osgi;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.openntf.nsfodp.commons.NSFODPUtil;
+
+/**
+ * Determines the Java packages contained in JAR files, caching the results in memory and on
+ * disk keyed by each JAR's path, size, and modification time.
+ *
+ * <p>Package names are read from the ZIP central directory, so no entries are inflated.</p>
+ *
+ * @author Jesse Gallagher
+ * @since 3.5.0
+ */
+public enum JarPackageIndex {
+	;
+
+	private static final Map<String, SortedSet<String>> CACHE = new ConcurrentHashMap<>();
+	private static final String CACHE_DIR = "nsfodppackagecache"; //$NON-NLS-1$
+
+	/**
+	 * Determines the packages of each of the provided JARs, scanning uncached JARs in parallel.
+	 *
+	 * @param jars the JARs to scan
+	 * @return a {@link Map} of JAR paths to their sorted package names, in the iteration order
+	 *         of {@code jars}
+	 */
+	public static Map<Path, SortedSet<String>> getPackages(Collection<Path> jars) {
+		List<SortedSet<String>> packages = jars.parallelStream()
+			.map(JarPackageIndex::getPackages)
+			.collect(Collectors.toList());
+		Map<Path, SortedSet<String>> result = new LinkedHashMap<>();
+		int i = 0;
+		for(Path jar : jars) {
+			result.put(jar, packages.get(i++));
+		}
+		return result;
+	}
+
+	/**
+	 * @param jar the JAR to scan
+	 * @return the sorted names of packages containing classes in the JAR, excluding the default
+	 *         package and {@code java.*}
+	 */
+	public static SortedSet<String> getPackages(Path jar) {
+		try {
+			String key = jar.toAbsolutePath() + "|" + Files.size(jar) + "|" + Files.getLastModifiedTime(jar).toMillis(); //$NON-NLS-1$ //$NON-NLS-2$
+			return CACHE.computeIfAbsent(key, k -> {
+				try {
+					Path cacheFile = getCacheFile(k);
+					SortedSet<String> result;
+					if(cacheFile != null && Files.isRegularFile(cacheFile)) {
+						result = new TreeSet<>(Files.readAllLines(cacheFile, StandardCharsets.UTF_8));
+					} else {
+						result = scan(jar);
+						if(cacheFile != null) {
+							writeCacheFile(cacheFile, result);
+						}
+					}
+					return Collections.unmodifiableSortedSet(result);
+				} catch(IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		} catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	// *******************************************************************************
+	// * Internal utility methods
+	// *******************************************************************************
+
+	private static SortedSet<String> scan(Path jar) throws IOException {
+		if(jar.getFileSystem() == FileSystems.getDefault()) {
+			return scan(new ZipFile(jar.toFile()));
+		} else {
+			// ZipFile needs a local file
+			Path tempFile = Files.createTempFile(NSFODPUtil.getTempDirectory(), jar.getFileName().toString(), ".jar"); //$NON-NLS-1$
+			try {
+				Files.copy(jar, tempFile, StandardCopyOption.REPLACE_EXISTING);
+				return scan(new ZipFile(tempFile.toFile()));
+			} finally {
+				Files.deleteIfExists(tempFile);
+			}
+		}
+	}
+
+	private static SortedSet<String> scan(ZipFile zip) throws IOException {
+		try {
+			SortedSet<String> packages = new TreeSet<>();
+			Enumeration<? extends ZipEntry> entries = zip.entries();
+			while(entries.hasMoreElements()) {
+				String name = entries.nextElement().getName();
+				if(name.endsWith(".class") && !name.startsWith("java/") && name.indexOf('/') > 0) { //$NON-NLS-1$ //$NON-NLS-2$
+					String packagePath = name.substring(0, name.lastIndexOf('/'));
+					packages.add(packagePath.replace('/', '.'));
+				}
+			}
+			return packages;
+		} finally {
+			zip.close();
+		}
+	}
+
+	private static Path getCacheFile(String key) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256"); //$NON-NLS-1$
+			StringBuilder name = new StringBuilder();
+			for(byte b : digest.digest(key.getBytes(StandardCharsets.UTF_8))) {
+				name.append(String.format("%02x", b)); //$NON-NLS-1$
+			}
+			return NSFODPUtil.getTempDirectory().resolve(CACHE_DIR).resolve(name + ".txt"); //$NON-NLS-1$
+		} catch(NoSuchAlgorithmException e) {
+			// Fall back to an in-memory cache only
+			return null;
+		}
+	}
+
+	private static void writeCacheFile(Path cacheFile, Collection<String> packages) {
+		try {
+			Files.createDirectories(cacheFile.getParent());
+			// Write to a temporary file first so that concurrent builds never see a partial file
+			Path temp = Files.createTempFile(cacheFile.getParent(), cacheFile.getFileName().toString(), ".tmp"); //$NON-NLS-1$
+			Files.write(temp, packages, StandardCharsets.UTF_8);
+			Files.move(temp, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch(IOException e) {
+			// The on-disk cache is only an optimization
+		}
+	}
+}
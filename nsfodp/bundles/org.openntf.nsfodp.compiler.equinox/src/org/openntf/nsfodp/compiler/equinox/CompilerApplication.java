@@ -25,6 +25,7 @@ import java.util.Objects;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -34,6 +35,7 @@ import org.openntf.nsfodp.commons.NSFODPConstants;
 import org.openntf.nsfodp.commons.PrintStreamProgressMonitor;
 import org.openntf.nsfodp.commons.odp.OnDiskProject;
 import org.openntf.nsfodp.commons.odp.notesapi.NotesAPI;
+import org.openntf.nsfodp.commons.osgi.EquinoxDaemon;
 import org.openntf.nsfodp.compiler.ODPCompiler;
 import org.openntf.nsfodp.compiler.ODPCompilerActivator;
 import org.openntf.nsfodp.compiler.update.FilesystemUpdateSite;
@@ -46,11 +48,11 @@ import com.ibm.commons.util.io.json.JsonParser;
 import lotus.domino.NotesThread;
 
 public class CompilerApplication implements IApplication {
-	private static final ExecutorService exec = Executors.newSingleThreadExecutor(NotesThread::new);
 	
 	@Override
 	public Object start(IApplicationContext context) throws Exception {
-		String notesIni = System.getenv(NSFODPConstants.PROP_NOTESINI);
+		Function<String, String> params = EquinoxDaemon.getParameters(context.getArguments());
+		String notesIni = params.apply(NSFODPConstants.PROP_NOTESINI);
 		if(notesIni != null && !notesIni.isEmpty()) {
 			String execDir = System.getenv("Notes_ExecDirectory"); //$NON-NLS-1$
 			try(NotesAPI api = NotesAPI.get()) {
@@ -67,40 +69,45 @@ public class CompilerApplication implements IApplication {
 			}
 			throw e;
 		}
+		ExecutorService exec = Executors.newSingleThreadExecutor(NotesThread::new);
 		try {
-			Path odpDirectory = toPath(System.getenv(NSFODPConstants.PROP_ODPDIRECTORY));
-			List<Path> updateSites = toPaths(System.getenv(NSFODPConstants.PROP_UPDATESITE));
-			Path outputFile = toPath(System.getenv(NSFODPConstants.PROP_OUTPUTFILE));
+			Path odpDirectory = toPath(params.apply(NSFODPConstants.PROP_ODPDIRECTORY));
+			List<Path> updateSites = toPaths(params.apply(NSFODPConstants.PROP_UPDATESITE));
+			Path outputFile = toPath(params.apply(NSFODPConstants.PROP_OUTPUTFILE));
 			
 			IProgressMonitor mon = new PrintStreamProgressMonitor(System.out);
 			OnDiskProject odp = new OnDiskProject(odpDirectory);
 			ODPCompiler compiler = new ODPCompiler(ODPCompilerActivator.instance.getBundle().getBundleContext(), odp, mon);
 			
 			// See if the client requested a specific compiler level
-			String compilerLevel = System.getenv(NSFODPConstants.PROP_COMPILERLEVEL);
+			String compilerLevel = params.apply(NSFODPConstants.PROP_COMPILERLEVEL);
 			if(StringUtil.isNotEmpty(compilerLevel)) {
 				compiler.setCompilerLevel(compilerLevel);
 			}
-			String appendTimestamp = System.getenv(NSFODPConstants.PROP_APPENDTIMESTAMPTOTITLE);
+			String appendTimestamp = params.apply(NSFODPConstants.PROP_APPENDTIMESTAMPTOTITLE);
 			if("true".equals(appendTimestamp)) { //$NON-NLS-1$
 				compiler.setAppendTimestampToTitle(true);
 			}
-			String templateName = System.getenv(NSFODPConstants.PROP_TEMPLATENAME);
+			String templateName = params.apply(NSFODPConstants.PROP_TEMPLATENAME);
 			if(StringUtil.isNotEmpty(templateName)) {
 				compiler.setTemplateName(templateName);
-				String templateVersion = System.getenv(NSFODPConstants.PROP_TEMPLATEVERSION);
+				String templateVersion = params.apply(NSFODPConstants.PROP_TEMPLATEVERSION);
 				if(StringUtil.isNotEmpty(templateVersion)) {
 					compiler.setTemplateVersion(templateVersion);
 				}
 			}
-			String setXspOptions = System.getenv(NSFODPConstants.PROP_SETPRODUCTIONXSPOPTIONS);
+			String setXspOptions = params.apply(NSFODPConstants.PROP_SETPRODUCTIONXSPOPTIONS);
 			if("true".equals(setXspOptions)) { //$NON-NLS-1$
 				compiler.setSetProductionXspOptions(true);
 			}
-			String odsRelease = System.getenv(NSFODPConstants.PROP_ODSRELEASE);
+			String odsRelease = params.apply(NSFODPConstants.PROP_ODSRELEASE);
 			if(StringUtil.isNotEmpty(odsRelease)) {
 				compiler.setOdsRelease(odsRelease);
 			}
+			Path incrementalManifest = toPath(params.apply(NSFODPConstants.PROP_INCREMENTALMANIFEST));
+			if(incrementalManifest != null) {
+				compiler.setIncremental(outputFile, incrementalManifest);
+			}
 			
 			if(updateSites != null && !updateSites.isEmpty()) {
 				updateSites.stream()
@@ -112,6 +119,7 @@ public class CompilerApplication implements IApplication {
 				try {
 					Path nsf = compiler.compile();
 					Files.move(nsf, outputFile, StandardCopyOption.REPLACE_EXISTING);
+					compiler.saveManifest(outputFile);
 					mon.done();
 				} catch(RuntimeException e) {
 					throw e;
@@ -121,11 +129,11 @@ public class CompilerApplication implements IApplication {
 			}).get();
 			System.out.println(getClass().getName() + "#end"); //$NON-NLS-1$
 			
+			return EXIT_OK;
+		} finally {
 			exec.shutdownNow();
 			exec.awaitTermination(30, TimeUnit.SECONDS);
 			
-			return EXIT_OK;
-		} finally {
 			NotesThread.stermThread();
 		}
 	}
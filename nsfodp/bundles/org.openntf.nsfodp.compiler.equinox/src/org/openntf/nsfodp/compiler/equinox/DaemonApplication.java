@@ -0,0 +1,224 @@
+/**
+ * Copyright © 2018-2021 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsfodp.compiler.equinox;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.MessageFormat;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.runtime.IConfigurationElement;
+import org.eclipse.core.runtime.IExtension;
+import org.eclipse.core.runtime.Platform;
+import org.eclipse.equinox.app.IApplication;
+import org.eclipse.equinox.app.IApplicationContext;
+import org.openntf.nsfodp.commons.NSFODPConstants;
+import org.openntf.nsfodp.commons.odp.notesapi.NotesAPI;
+import org.openntf.nsfodp.commons.osgi.EquinoxDaemon;
+import org.osgi.framework.Bundle;
+
+import com.ibm.commons.util.StringUtil;
+
+/**
+ * Long-lived application that keeps the Equinox framework running and runs the compiler,
+ * exporter, and transpiler applications for jobs sent over a loopback socket, one at a time.
+ *
+ * <p>The daemon writes its port and a random token to the file named by
+ * {@link NSFODPConstants#PROP_DAEMON_PORTFILE} and shuts down after
+ * {@link NSFODPConstants#PROP_DAEMON_IDLETIMEOUT} minutes without a job.</p>
+ *
+ * @author Jesse Gallagher
+ * @since 3.5.0
+ * @see EquinoxDaemon
+ */
+public class DaemonApplication implements IApplication {
+	public static final long DEFAULT_IDLE_TIMEOUT = 30;
+
+	private static final String EXTENSION_POINT_APPLICATIONS = "org.eclipse.core.runtime.applications"; //$NON-NLS-1$
+
+	private volatile boolean running = true;
+
+	@Override
+	public Object start(IApplicationContext context) throws Exception {
+		// Initialize Notes once for the lifetime of the daemon
+		String notesIni = System.getenv(NSFODPConstants.PROP_NOTESINI);
+		if(notesIni != null && !notesIni.isEmpty()) {
+			String execDir = System.getenv("Notes_ExecDirectory"); //$NON-NLS-1$
+			try(NotesAPI api = NotesAPI.get()) {
+				api.NotesInitExtended(execDir, "=" + notesIni); //$NON-NLS-1$
+			}
+		}
+
+		Path portFile = Paths.get(System.getenv(NSFODPConstants.PROP_DAEMON_PORTFILE));
+		long idleTimeout = DEFAULT_IDLE_TIMEOUT;
+		String idleTimeoutProp = System.getenv(NSFODPConstants.PROP_DAEMON_IDLETIMEOUT);
+		if(StringUtil.isNotEmpty(idleTimeoutProp)) {
+			idleTimeout = Long.parseLong(idleTimeoutProp);
+		}
+		String token = UUID.randomUUID().toString();
+
+		try(ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+			server.setSoTimeout((int)Math.min(Integer.MAX_VALUE, TimeUnit.MINUTES.toMillis(idleTimeout)));
+			EquinoxDaemon.writePortFile(portFile, server.getLocalPort(), token);
+
+			while(running) {
+				try(Socket socket = server.accept()) {
+					runJob(socket, token);
+				} catch(SocketTimeoutException e) {
+					// Then we've been idle long enough
+					break;
+				} catch(Exception e) {
+					// Problems with an individual connection shouldn't bring down the daemon
+					e.printStackTrace();
+				}
+			}
+		} finally {
+			Files.deleteIfExists(portFile);
+		}
+
+		return EXIT_OK;
+	}
+
+	@Override
+	public void stop() {
+		running = false;
+	}
+
+	// *******************************************************************************
+	// * Internal utility methods
+	// *******************************************************************************
+
+	private void runJob(Socket socket, String token) throws IOException {
+		InputStream is = socket.getInputStream();
+		OutputStream os = socket.getOutputStream();
+
+		EquinoxDaemon.Request request = EquinoxDaemon.Request.read(is);
+		if(!token.equals(request.getToken())) {
+			return;
+		}
+
+		PrintStream out = new PrintStream(os, true, "UTF-8"); //$NON-NLS-1$
+		PrintStream originalOut = System.out;
+		PrintStream originalErr = System.err;
+		System.setOut(out);
+		System.setErr(out);
+		int exitCode = 1;
+		try {
+			IApplication app = createApplication(request.getApplicationId());
+			Map<String, String> properties = new HashMap<>(request.getProperties());
+			// Notes was initialized at daemon startup
+			properties.remove(NSFODPConstants.PROP_NOTESINI);
+			Object result = app.start(new JobContext(properties));
+			if(result == null || EXIT_OK.equals(result)) {
+				exitCode = 0;
+			} else if(result instanceof Integer) {
+				exitCode = (Integer)result;
+			}
+		} catch(Throwable t) {
+			t.printStackTrace(out);
+		} finally {
+			System.setOut(originalOut);
+			System.setErr(originalErr);
+		}
+		out.println(EquinoxDaemon.EXIT_PREFIX + exitCode);
+		out.flush();
+	}
+
+	private IApplication createApplication(String applicationId) throws Exception {
+		IExtension extension = Platform.getExtensionRegistry().getExtension(EXTENSION_POINT_APPLICATIONS, applicationId);
+		if(extension != null) {
+			for(IConfigurationElement application : extension.getConfigurationElements()) {
+				for(IConfigurationElement run : application.getChildren("run")) { //$NON-NLS-1$
+					return (IApplication)run.createExecutableExtension("class"); //$NON-NLS-1$
+				}
+			}
+		}
+		throw new IllegalArgumentException(MessageFormat.format(Messages.DaemonApplication_applicationNotFound, applicationId));
+	}
+
+	/**
+	 * Provides a job's properties to an application in place of the process environment.
+	 */
+	private static class JobContext implements IApplicationContext {
+		private final Map<String, Object> arguments;
+
+		public JobContext(Map<String, String> properties) {
+			Map<String, Object> arguments = new HashMap<>();
+			arguments.put(EquinoxDaemon.ARG_JOB_PROPERTIES, properties);
+			arguments.put(APPLICATION_ARGS, new String[0]);
+			this.arguments = Collections.unmodifiableMap(arguments);
+		}
+
+		@SuppressWarnings("rawtypes")
+		@Override
+		public Map getArguments() {
+			return arguments;
+		}
+
+		@Override
+		public void applicationRunning() {
+			// NOP
+		}
+
+		@Override
+		public String getBrandingApplication() {
+			return null;
+		}
+
+		@Override
+		public String getBrandingName() {
+			return null;
+		}
+
+		@Override
+		public String getBrandingDescription() {
+			return null;
+		}
+
+		@Override
+		public String getBrandingId() {
+			return null;
+		}
+
+		@Override
+		public String getBrandingProperty(String key) {
+			return null;
+		}
+
+		@Override
+		public Bundle getBrandingBundle() {
+			return null;
+		}
+
+		// Not annotated, as this method is not present in older versions of the interface
+		public void setResult(Object result, IApplication application) {
+			// NOP
+		}
+	}
+}
@@ -0,0 +1,227 @@
+/**
+ * Copyright © 2018-2021 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsfodp.compiler.servlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.openntf.nsfodp.commons.NSFODPUtil;
+
+import com.ibm.commons.util.io.json.JsonException;
+import com.ibm.commons.util.io.json.JsonJavaFactory;
+import com.ibm.commons.util.io.json.JsonParser;
+
+/**
+ * Reads an uploaded compilation package, writing each of its parts directly to its final
+ * location on disk as the request body arrives.
+ *
+ * <p>A wrapped package is a ZIP containing {@code odp.zip}, any number of {@code siteN.zip}
+ * update sites, and any {@code classpath/*} JARs. The nested ODP and update sites are expanded
+ * straight from the stream, so neither the package nor the nested ZIPs are stored on disk.
+ * As before, a package with no {@code odp.zip} entry is treated as the ODP itself, though
+ * in that case any root-level update site or classpath entries are not included in it.
+ * Clients sending a bare ODP should use {@link #readOdp} instead.</p>
+ *
+ * <p>Clients using the server's {@link DependencyCache} instead include a
+ * {@code dependencies.json} entry listing the digests of the package's classpath JARs and
+ * update sites in order, and upload only the ones the server is missing, as
+ * {@code classpath/<digest>.jar} and {@code site-<digest>.zip}.</p>
+ *
+ * @author Jesse Gallagher
+ * @since 3.5.0
+ */
+class CompilationPackage {
+	private static final Pattern SITE_ZIP_PATTERN = Pattern.compile("^site\\d*\\.zip$"); //$NON-NLS-1$
+	private static final String ENTRY_ODP = "odp.zip"; //$NON-NLS-1$
+	private static final String PREFIX_CLASSPATH = "classpath/"; //$NON-NLS-1$
+	private static final String ENTRY_DEPENDENCIES = "dependencies.json"; //$NON-NLS-1$
+	private static final Pattern CACHED_JAR_PATTERN = Pattern.compile("^classpath/([0-9a-f]{64})\\.jar$"); //$NON-NLS-1$
+	private static final Pattern CACHED_SITE_PATTERN = Pattern.compile("^site-([0-9a-f]{64})\\.zip$"); //$NON-NLS-1$
+
+	/**
+	 * Reads a package containing only the ODP, with no wrapper ZIP.
+	 *
+	 * @param is the request body
+	 * @param cleanup a collection to add created temporary files to
+	 * @return the read package
+	 * @throws IOException if there is a problem reading the stream or writing the files
+	 */
+	public static CompilationPackage readOdp(InputStream is, Collection<Path> cleanup) throws IOException {
+		Path odpDir = createTempDirectory("odp", cleanup); //$NON-NLS-1$
+		NSFODPUtil.expandZip(is, odpDir);
+		return new CompilationPackage(odpDir, Collections.emptyList(), Collections.emptyList());
+	}
+
+	/**
+	 * Reads a wrapped package, demultiplexing its entries as they are read.
+	 *
+	 * @param is the request body
+	 * @param cleanup a collection to add created temporary files to
+	 * @param cache the cache to store uploaded dependencies in
+	 * @param lease the lease to hold cached dependencies used by the package with
+	 * @return the read package
+	 * @throws IOException if there is a problem reading the stream or writing the files
+	 */
+	public static CompilationPackage readPackage(InputStream is, Collection<Path> cleanup, DependencyCache cache, DependencyCache.Lease lease) throws IOException {
+		Path odpDir = null;
+		Path looseDir = null;
+		List<Path> siteDirs = new ArrayList<>();
+		List<Path> classPathJars = new ArrayList<>();
+		Map<String, Object> dependencies = null;
+
+		try(ZipInputStream zis = new ZipInputStream(is, StandardCharsets.UTF_8)) {
+			ZipEntry entry;
+			while((entry = zis.getNextEntry()) != null) {
+				String name = entry.getName();
+				Matcher cachedJar = CACHED_JAR_PATTERN.matcher(name);
+				Matcher cachedSite = CACHED_SITE_PATTERN.matcher(name);
+				if(ENTRY_DEPENDENCIES.equals(name)) {
+					dependencies = readJson(zis);
+				} else if(cachedJar.matches()) {
+					cache.storeJar(cachedJar.group(1), zis);
+				} else if(cachedSite.matches()) {
+					cache.storeSite(cachedSite.group(1), zis);
+				} else if(ENTRY_ODP.equals(name)) {
+					odpDir = createTempDirectory("odp", cleanup); //$NON-NLS-1$
+					NSFODPUtil.expandZip(zis, odpDir);
+				} else if(SITE_ZIP_PATTERN.matcher(name).matches()) {
+					Path siteDir = createTempDirectory("site", cleanup); //$NON-NLS-1$
+					NSFODPUtil.expandZip(zis, siteDir);
+					siteDirs.add(siteDir);
+				} else if(name.startsWith(PREFIX_CLASSPATH) && !entry.isDirectory()) {
+					Path cpJar = Files.createTempFile(NSFODPUtil.getTempDirectory(), "classpathJar", ".jar"); //$NON-NLS-1$ //$NON-NLS-2$
+					cleanup.add(cpJar);
+					Files.copy(zis, cpJar, StandardCopyOption.REPLACE_EXISTING);
+					classPathJars.add(cpJar);
+				} else {
+					// Retain other entries in case the package is the ODP itself
+					if(looseDir == null) {
+						looseDir = createTempDirectory("package", cleanup); //$NON-NLS-1$
+					}
+					Path dest = looseDir.resolve(name).normalize();
+					if(!dest.startsWith(looseDir)) {
+						throw new IOException("ZIP entry would be written outside of the destination: " + name); //$NON-NLS-1$
+					}
+					if(entry.isDirectory()) {
+						Files.createDirectories(dest);
+					} else {
+						Files.createDirectories(dest.getParent());
+						Files.copy(zis, dest, StandardCopyOption.REPLACE_EXISTING);
+					}
+				}
+			}
+		}
+
+		if(odpDir == null) {
+			// Then the package is itself the ODP
+			odpDir = looseDir == null ? createTempDirectory("odp", cleanup) : looseDir; //$NON-NLS-1$
+			return new CompilationPackage(odpDir, Collections.emptyList(), Collections.emptyList());
+		}
+		
+		if(dependencies != null) {
+			// Resolve the cached dependencies now that any missing ones have been uploaded
+			for(Object digest : getList(dependencies, "classpath")) { //$NON-NLS-1$
+				classPathJars.add(lease.getJar(String.valueOf(digest)));
+			}
+			for(Object digest : getList(dependencies, "sites")) { //$NON-NLS-1$
+				siteDirs.add(lease.getSite(String.valueOf(digest)));
+			}
+		}
+		return new CompilationPackage(odpDir, siteDirs, classPathJars);
+	}
+
+	private final Path odpDirectory;
+	private final List<Path> updateSiteDirectories;
+	private final List<Path> classPathJars;
+
+	private CompilationPackage(Path odpDirectory, List<Path> updateSiteDirectories, List<Path> classPathJars) {
+		this.odpDirectory = odpDirectory;
+		this.updateSiteDirectories = updateSiteDirectories;
+		this.classPathJars = classPathJars;
+	}
+
+	/**
+	 * @return the directory containing the expanded ODP
+	 */
+	public Path getOdpDirectory() {
+		return odpDirectory;
+	}
+
+	/**
+	 * @return the directories containing the expanded update sites
+	 */
+	public List<Path> getUpdateSiteDirectories() {
+		return updateSiteDirectories;
+	}
+
+	/**
+	 * @return the classpath JAR files
+	 */
+	public List<Path> getClassPathJars() {
+		return classPathJars;
+	}
+
+	// *******************************************************************************
+	// * Internal utility methods
+	// *******************************************************************************
+
+	/**
+	 * Reads a JSON object from the provided stream, leaving the stream open.
+	 *
+	 * @param is the stream to read
+	 * @return the read object
+	 * @throws IOException if there is a problem reading the stream or parsing the JSON
+	 */
+	@SuppressWarnings("unchecked")
+	static Map<String, Object> readJson(InputStream is) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int read;
+		while((read = is.read(buffer)) > -1) {
+			baos.write(buffer, 0, read);
+		}
+		try {
+			return (Map<String, Object>)JsonParser.fromJson(JsonJavaFactory.instance, new String(baos.toByteArray(), StandardCharsets.UTF_8));
+		} catch(JsonException e) {
+			throw new IOException(e);
+		}
+	}
+	
+	static List<?> getList(Map<String, Object> json, String key) {
+		Object value = json.get(key);
+		return value instanceof List ? (List<?>)value : Collections.emptyList();
+	}
+	
+	private static Path createTempDirectory(String prefix, Collection<Path> cleanup) throws IOException {
+		Path result = Files.createTempDirectory(NSFODPUtil.getTempDirectory(), prefix).toAbsolutePath();
+		cleanup.add(result);
+		return result;
+	}
+}
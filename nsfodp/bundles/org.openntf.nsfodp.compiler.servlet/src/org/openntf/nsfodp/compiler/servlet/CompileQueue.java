@@ -0,0 +1,182 @@
+/**
+ * Copyright © 2018-2021 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsfodp.compiler.servlet;
+
+import java.io.IOException;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import lotus.domino.NotesThread;
+
+/**
+ * Runs compilation jobs on a fixed pool of Notes threads, admitting them in the order
+ * they were submitted and tracking each waiting job's position in the queue.
+ *
+ * @author Jesse Gallagher
+ * @since 3.5.0
+ */
+class CompileQueue {
+	/**
+	 * Receives notifications about a job's position while it waits for a worker.
+	 */
+	@FunctionalInterface
+	interface QueueListener {
+		/**
+		 * @param position the 1-based position of the job among waiting jobs
+		 * @param depth the total number of waiting jobs
+		 * @throws IOException if there is a problem reporting the position
+		 */
+		void queued(int position, int depth) throws IOException;
+	}
+
+	private static final long POLL_INTERVAL_MILLIS = 1000;
+
+	private final int workers;
+	private final ExecutorService exec;
+	/** Jobs that have been submitted but not yet picked up by a worker, guarded by itself */
+	private final LinkedList<Job<?>> pending = new LinkedList<>();
+
+	public CompileQueue(int workers) {
+		this.workers = Math.max(1, workers);
+		AtomicInteger threadCount = new AtomicInteger();
+		// Executors' fixed pools take work from a FIFO queue, which provides fair admission
+		this.exec = Executors.newFixedThreadPool(this.workers, r -> new NotesThread(r, "NSF ODP Compiler " + threadCount.incrementAndGet())); //$NON-NLS-1$
+	}
+
+	/**
+	 * @return the number of jobs that can run concurrently
+	 */
+	public int getWorkers() {
+		return workers;
+	}
+
+	/**
+	 * @return the number of jobs waiting for a worker
+	 */
+	public int getDepth() {
+		synchronized(pending) {
+			return pending.size();
+		}
+	}
+
+	/**
+	 * Adds a job to the end of the queue.
+	 *
+	 * @param <T> the result type of the job
+	 * @param task the work to perform
+	 * @return a {@link Job} to track the work
+	 * @throws RejectedExecutionException if the queue has been shut down
+	 */
+	public <T> Job<T> submit(Callable<T> task) {
+		Job<T> job = new Job<>();
+		synchronized(pending) {
+			pending.add(job);
+		}
+		try {
+			job.future = exec.submit(() -> {
+				job.start();
+				return task.call();
+			});
+		} catch(RejectedExecutionException e) {
+			synchronized(pending) {
+				pending.remove(job);
+			}
+			throw e;
+		}
+		return job;
+	}
+
+	public void shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+		exec.shutdownNow();
+		exec.awaitTermination(timeout, unit);
+	}
+
+	/**
+	 * Represents a submitted compilation job.
+	 *
+	 * @param <T> the result type of the job
+	 */
+	class Job<T> {
+		private volatile Future<T> future;
+		/** Whether a worker has picked up the job, guarded by this object */
+		private boolean started;
+
+		/**
+		 * @return the 1-based position of this job among waiting jobs, or {@code 0} if a
+		 *         worker has picked it up
+		 */
+		public int getPosition() {
+			synchronized(pending) {
+				return pending.indexOf(this) + 1;
+			}
+		}
+
+		/**
+		 * Waits for the job to complete, notifying {@code listener} whenever its position
+		 * in the queue changes.
+		 *
+		 * <p>The listener is never called once a worker has begun the job, so it may safely
+		 * write to the same output as the job itself.</p>
+		 *
+		 * @param listener the listener to notify, or {@code null} to not report position
+		 * @return the result of the job
+		 * @throws ExecutionException if the job threw an exception
+		 * @throws InterruptedException if the current thread was interrupted while waiting
+		 * @throws IOException if the listener threw an exception
+		 */
+		public T get(QueueListener listener) throws ExecutionException, InterruptedException, IOException {
+			int lastPosition = 0;
+			while(true) {
+				if(listener != null) {
+					synchronized(this) {
+						if(!started) {
+							int position, depth;
+							synchronized(pending) {
+								position = pending.indexOf(this) + 1;
+								depth = pending.size();
+							}
+							if(position > 0 && position != lastPosition) {
+								listener.queued(position, depth);
+								lastPosition = position;
+							}
+						}
+					}
+				}
+
+				try {
+					return future.get(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+				} catch(TimeoutException e) {
+					// Check the position again
+				}
+			}
+		}
+
+		private synchronized void start() {
+			synchronized(pending) {
+				pending.remove(this);
+			}
+			started = true;
+		}
+	}
+}
@@ -0,0 +1,446 @@
+/**
+ * Copyright © 2018-2021 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsfodp.compiler.servlet;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.openntf.nsfodp.commons.NSFODPUtil;
+
+/**
+ * A content-addressed cache of classpath JARs and expanded update sites uploaded by clients,
+ * keyed by their SHA-256 digests and evicted in least-recently-used order once the cache
+ * exceeds its size limit.
+ *
+ * <p>JARs are keyed by {@link NSFODPUtil#sha256(Path)} and update sites by
+ * {@link NSFODPUtil#sha256Tree(Path)}. Entries in use by a running compilation are held by a
+ * {@link Lease} and are never evicted.</p>
+ *
+ * <p>Entries reported as present by {@link #query} are reserved under a token until the
+ * client's compilation request claims them with {@link Lease#claim(String)}, or until the
+ * reservation expires. Each client may hold only a few reservations at a time, with its oldest
+ * released when it makes another query. Entries used within the last few minutes are also kept,
+ * for clients that do not send the token back.</p>
+ *
+ * @author Jesse Gallagher
+ * @since 3.5.0
+ */
+class DependencyCache {
+	private static final Pattern DIGEST_PATTERN = Pattern.compile("^[0-9a-f]{64}$"); //$NON-NLS-1$
+	private static final String SUFFIX_JAR = ".jar"; //$NON-NLS-1$
+	private static final String SUFFIX_SITE = ".site"; //$NON-NLS-1$
+	private static final long EVICTION_GRACE_MILLIS = TimeUnit.MINUTES.toMillis(10);
+	private static final long RESERVATION_TIMEOUT_MILLIS = TimeUnit.HOURS.toMillis(1);
+	private static final int MAX_RESERVATIONS_PER_CLIENT = 4;
+
+	private static class Entry {
+		private final Path path;
+		private final long size;
+		private long lastUsed;
+		private int leases;
+
+		Entry(Path path, long size, long lastUsed) {
+			this.path = path;
+			this.size = size;
+			this.lastUsed = lastUsed;
+		}
+	}
+
+	/**
+	 * The result of a {@link DependencyCache#query}.
+	 */
+	public static class Query {
+		private final List<String> missing;
+		private final String token;
+
+		Query(List<String> missing, String token) {
+			this.missing = missing;
+			this.token = token;
+		}
+
+		/**
+		 * @return the digests that are not present
+		 */
+		public List<String> getMissing() {
+			return missing;
+		}
+
+		/**
+		 * @return a token reserving the present entries, to be passed to {@link Lease#claim(String)}
+		 */
+		public String getToken() {
+			return token;
+		}
+	}
+
+	private static class Reservation {
+		private final String client;
+		private final List<Entry> held;
+		private final long expires;
+
+		Reservation(String client, List<Entry> held, long expires) {
+			this.client = client;
+			this.held = held;
+			this.expires = expires;
+		}
+	}
+
+	private final Path root;
+	private final long maxSize;
+	/** Entries by file name, in access order; guarded by itself */
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+	/** Reservations made by queries, by token in creation order; guarded by {@link #entries} */
+	private final Map<String, Reservation> reservations = new LinkedHashMap<>();
+	private long totalSize;
+
+	/**
+	 * @param root the directory to store cached files in
+	 * @param maxSize the size in bytes beyond which unused entries are evicted
+	 * @throws IOException if there is a problem reading existing entries
+	 */
+	public DependencyCache(Path root, long maxSize) throws IOException {
+		this.root = root;
+		this.maxSize = maxSize;
+		Files.createDirectories(root);
+
+		// Pick up entries from previous runs, oldest first
+		List<Path> existing;
+		try(Stream<Path> children = Files.list(root)) {
+			existing = children.collect(Collectors.toList());
+		}
+		List<Entry> loaded = new ArrayList<>();
+		for(Path path : existing) {
+			String name = path.getFileName().toString();
+			if(isEntryName(name)) {
+				loaded.add(new Entry(path, size(path), Files.getLastModifiedTime(path).toMillis()));
+			} else {
+				// Leftover partial uploads
+				NSFODPUtil.deltree(path);
+			}
+		}
+		loaded.sort(Comparator.comparingLong(e -> e.lastUsed));
+		for(Entry entry : loaded) {
+			entries.put(entry.path.getFileName().toString(), entry);
+			totalSize += entry.size;
+		}
+	}
+
+	/**
+	 * Determines which of the provided digests are not in the cache, reserving the present
+	 * ones so that they cannot be evicted before the client's compilation claims them.
+	 *
+	 * @param client an identifier for the client making the query, used to limit the number
+	 *        of reservations it can hold
+	 * @param jarDigests the digests of classpath JARs
+	 * @param siteDigests the digests of update sites
+	 * @return the digests that are not present and a token for the reservation
+	 * @throws IllegalArgumentException if any of the digests is malformed
+	 */
+	public Query query(String client, Collection<String> jarDigests, Collection<String> siteDigests) {
+		// Validate everything before taking any leases
+		Map<String, String> names = new LinkedHashMap<>();
+		for(String digest : jarDigests) {
+			names.put(entryName(digest, SUFFIX_JAR), digest);
+		}
+		for(String digest : siteDigests) {
+			names.put(entryName(digest, SUFFIX_SITE), digest);
+		}
+
+		List<String> missing = new ArrayList<>();
+		List<Entry> held = new ArrayList<>();
+		long now = System.currentTimeMillis();
+		String token = UUID.randomUUID().toString();
+		synchronized(entries) {
+			expireReservations(now);
+			releaseExcessReservations(client);
+			for(Map.Entry<String, String> name : names.entrySet()) {
+				reserve(name.getKey(), now, name.getValue(), held, missing);
+			}
+			reservations.put(token, new Reservation(client, held, now + RESERVATION_TIMEOUT_MILLIS));
+		}
+		return new Query(missing, token);
+	}
+
+	/**
+	 * Stores an uploaded JAR, verifying its digest.
+	 *
+	 * @param digest the expected digest
+	 * @param is a stream of the JAR's contents
+	 * @throws IOException if there is a problem storing the JAR or its digest does not match
+	 */
+	public void storeJar(String digest, InputStream is) throws IOException {
+		Path temp = Files.createTempFile(root, "upload", ".tmp"); //$NON-NLS-1$ //$NON-NLS-2$
+		try {
+			Files.copy(is, temp, StandardCopyOption.REPLACE_EXISTING);
+			verify(digest, NSFODPUtil.sha256(temp));
+			add(entryName(digest, SUFFIX_JAR), temp);
+		} finally {
+			NSFODPUtil.deltree(temp);
+		}
+	}
+
+	/**
+	 * Stores and expands an uploaded update site, verifying its digest.
+	 *
+	 * @param digest the expected digest
+	 * @param is a stream of the update site as a ZIP
+	 * @throws IOException if there is a problem storing the site or its digest does not match
+	 */
+	public void storeSite(String digest, InputStream is) throws IOException {
+		Path temp = Files.createTempDirectory(root, "upload"); //$NON-NLS-1$
+		try {
+			NSFODPUtil.expandZip(is, temp);
+			verify(digest, NSFODPUtil.sha256Tree(temp));
+			add(entryName(digest, SUFFIX_SITE), temp);
+		} finally {
+			NSFODPUtil.deltree(temp);
+		}
+	}
+
+	/**
+	 * @return a new {@link Lease} to hold entries used by a compilation
+	 */
+	public Lease newLease() {
+		return new Lease();
+	}
+
+	/**
+	 * Holds cache entries for the duration of a compilation, preventing their eviction.
+	 */
+	class Lease implements AutoCloseable {
+		private final List<Entry> held = new ArrayList<>();
+
+		/**
+		 * Takes over the entries reserved by a previous {@link DependencyCache#query}, holding
+		 * them until this lease is closed.
+		 *
+		 * @param token the token returned by the query
+		 */
+		public void claim(String token) {
+			synchronized(entries) {
+				Reservation reservation = reservations.remove(token);
+				if(reservation != null) {
+					held.addAll(reservation.held);
+				}
+			}
+		}
+
+		/**
+		 * @param digest the digest of the JAR to hold
+		 * @return the path of the cached JAR
+		 * @throws IOException if the JAR is not in the cache
+		 */
+		public Path getJar(String digest) throws IOException {
+			return acquire(entryName(digest, SUFFIX_JAR), digest);
+		}
+
+		/**
+		 * @param digest the digest of the update site to hold
+		 * @return the directory of the cached, expanded update site
+		 * @throws IOException if the update site is not in the cache
+		 */
+		public Path getSite(String digest) throws IOException {
+			return acquire(entryName(digest, SUFFIX_SITE), digest);
+		}
+
+		private Path acquire(String name, String digest) throws IOException {
+			synchronized(entries) {
+				Entry entry = entries.get(name);
+				if(entry == null) {
+					throw new IOException(MessageFormat.format(Messages.DependencyCache_notCached, digest));
+				}
+				entry.leases++;
+				markUsed(entry, System.currentTimeMillis());
+				held.add(entry);
+				return entry.path;
+			}
+		}
+
+		@Override
+		public void close() {
+			long now = System.currentTimeMillis();
+			synchronized(entries) {
+				for(Entry entry : held) {
+					entry.leases--;
+					markUsed(entry, now);
+				}
+				held.clear();
+			}
+			evict();
+		}
+	}
+
+	// *******************************************************************************
+	// * Internal utility methods
+	// *******************************************************************************
+
+	private void reserve(String name, long now, String digest, List<Entry> held, List<String> missing) {
+		Entry entry = entries.get(name);
+		if(entry == null) {
+			missing.add(digest);
+		} else {
+			entry.leases++;
+			markUsed(entry, now);
+			held.add(entry);
+		}
+	}
+
+	private void expireReservations(long now) {
+		Iterator<Reservation> iter = reservations.values().iterator();
+		while(iter.hasNext()) {
+			Reservation reservation = iter.next();
+			if(reservation.expires <= now) {
+				iter.remove();
+				release(reservation);
+			}
+		}
+	}
+
+	/**
+	 * Releases the client's oldest reservations so that, with the one about to be made, it
+	 * holds no more than {@link #MAX_RESERVATIONS_PER_CLIENT}.
+	 */
+	private void releaseExcessReservations(String client) {
+		int count = 0;
+		for(Reservation reservation : reservations.values()) {
+			if(client.equals(reservation.client)) {
+				count++;
+			}
+		}
+		Iterator<Reservation> iter = reservations.values().iterator();
+		while(count >= MAX_RESERVATIONS_PER_CLIENT && iter.hasNext()) {
+			Reservation reservation = iter.next();
+			if(client.equals(reservation.client)) {
+				iter.remove();
+				release(reservation);
+				count--;
+			}
+		}
+	}
+
+	private static void release(Reservation reservation) {
+		for(Entry entry : reservation.held) {
+			entry.leases--;
+		}
+	}
+
+	private void add(String name, Path temp) throws IOException {
+		Path dest = root.resolve(name);
+		long size = size(temp);
+		synchronized(entries) {
+			if(entries.containsKey(name)) {
+				// Then it was uploaded concurrently
+				return;
+			}
+			try {
+				Files.move(temp, dest, StandardCopyOption.ATOMIC_MOVE);
+			} catch(FileAlreadyExistsException | DirectoryNotEmptyException e) {
+				return;
+			}
+			entries.put(name, new Entry(dest, size, System.currentTimeMillis()));
+			totalSize += size;
+		}
+		evict();
+	}
+
+	private void evict() {
+		List<Path> evicted = new ArrayList<>();
+		long now = System.currentTimeMillis();
+		synchronized(entries) {
+			expireReservations(now);
+			Iterator<Map.Entry<String, Entry>> iter = entries.entrySet().iterator();
+			while(totalSize > maxSize && iter.hasNext()) {
+				Entry entry = iter.next().getValue();
+				if(entry.leases == 0 && now - entry.lastUsed > EVICTION_GRACE_MILLIS) {
+					iter.remove();
+					totalSize -= entry.size;
+					evicted.add(entry.path);
+				}
+			}
+		}
+		for(Path path : evicted) {
+			try {
+				NSFODPUtil.deltree(path);
+			} catch(IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	private static String entryName(String digest, String suffix) {
+		if(!DIGEST_PATTERN.matcher(digest).matches()) {
+			throw new IllegalArgumentException(MessageFormat.format(Messages.DependencyCache_invalidDigest, digest));
+		}
+		return digest + suffix;
+	}
+
+	private static boolean isEntryName(String name) {
+		String digest;
+		if(name.endsWith(SUFFIX_JAR)) {
+			digest = name.substring(0, name.length()-SUFFIX_JAR.length());
+		} else if(name.endsWith(SUFFIX_SITE)) {
+			digest = name.substring(0, name.length()-SUFFIX_SITE.length());
+		} else {
+			return false;
+		}
+		return DIGEST_PATTERN.matcher(digest).matches();
+	}
+
+	private static void verify(String expected, String actual) throws IOException {
+		if(!expected.equals(actual)) {
+			throw new IOException(MessageFormat.format(Messages.DependencyCache_digestMismatch, expected, actual));
+		}
+	}
+
+	private static long size(Path path) throws IOException {
+		if(Files.isDirectory(path)) {
+			try(Stream<Path> walk = Files.walk(path)) {
+				return walk.filter(Files::isRegularFile).mapToLong(p -> p.toFile().length()).sum();
+			}
+		} else {
+			return Files.size(path);
+		}
+	}
+
+	private static void markUsed(Entry entry, long now) {
+		entry.lastUsed = now;
+		try {
+			// Record the use on disk to retain the order across restarts
+			Files.setLastModifiedTime(entry.path, FileTime.fromMillis(now));
+		} catch(IOException e) {
+			// Not important enough to fail over
+		}
+	}
+}
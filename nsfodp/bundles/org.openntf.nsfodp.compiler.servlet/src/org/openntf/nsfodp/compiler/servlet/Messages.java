@@ -19,8 +19,12 @@ import org.eclipse.osgi.util.NLS;
 
 public class Messages extends NLS {
 	private static final String BUNDLE_NAME = "org.openntf.nsfodp.compiler.servlet.messages"; //$NON-NLS-1$
+	public static String DependencyCache_digestMismatch;
+	public static String DependencyCache_invalidDigest;
+	public static String DependencyCache_notCached;
 	public static String ODPCompilerServlet_anonymousDisallowed;
 	public static String ODPCompilerServlet_contentMustBeZip;
+	public static String ODPCompilerServlet_queued;
 	static {
 		// initialize resource bundle
 		NLS.initializeMessages(BUNDLE_NAME, Messages.class);
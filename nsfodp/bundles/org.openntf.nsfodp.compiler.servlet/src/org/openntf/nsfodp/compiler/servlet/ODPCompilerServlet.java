@@ -20,23 +20,18 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PrintWriter;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.FileSystem;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
 import java.security.Principal;
-import java.util.ArrayList;
+import java.text.MessageFormat;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
-import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 import java.util.zip.GZIPOutputStream;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
 
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
@@ -51,38 +46,108 @@ import org.openntf.nsfodp.commons.NSFODPConstants;
 import org.openntf.nsfodp.commons.NSFODPUtil;
 import org.openntf.nsfodp.commons.odp.OnDiskProject;
 import org.openntf.nsfodp.commons.odp.notesapi.NotesAPI;
+import org.openntf.nsfodp.compiler.BundleCache;
 import org.openntf.nsfodp.compiler.ODPCompiler;
 import org.openntf.nsfodp.compiler.ODPCompilerActivator;
 import org.openntf.nsfodp.compiler.update.FilesystemUpdateSite;
 import org.openntf.nsfodp.compiler.update.UpdateSite;
 
 import com.ibm.commons.util.StringUtil;
-
-import lotus.domino.NotesThread;
+import com.ibm.commons.util.io.json.JsonException;
+import com.ibm.commons.util.io.json.JsonGenerator;
+import com.ibm.commons.util.io.json.JsonJavaFactory;
+import com.ibm.domino.napi.NException;
+import com.ibm.domino.napi.c.Os;
 
 public class ODPCompilerServlet extends HttpServlet {
 	private static final long serialVersionUID = 1L;
 	
-	private static final Pattern SITE_ZIP_PATTERN = Pattern.compile("^site\\d*\\.zip$"); //$NON-NLS-1$
-	
 	public static boolean ALLOW_ANONYMOUS = "true".equals(System.getProperty("org.openntf.nsfodp.allowAnonymous")); //$NON-NLS-1$ //$NON-NLS-2$
 	
-	private ExecutorService exec;
+	/**
+	 * Notes.ini property to set to the number of compilations to run concurrently. Defaults
+	 * to 1.
+	 * 
+	 * @since 3.5.0
+	 */
+	public static final String INI_COMPILERWORKERS = "NSFODP_CompilerWorkers"; //$NON-NLS-1$
+	/**
+	 * Notes.ini property to set to the size in megabytes beyond which the least-recently-used
+	 * classpath JARs and update sites are removed from the dependency cache. Defaults to
+	 * {@value #DEFAULT_DEPENDENCYCACHESIZE}.
+	 * 
+	 * @since 3.5.0
+	 */
+	public static final String INI_DEPENDENCYCACHESIZE = "NSFODP_DependencyCacheSize"; //$NON-NLS-1$
+	public static final int DEFAULT_DEPENDENCYCACHESIZE = 1024;
+	/**
+	 * Notes.ini property to set to the number of minutes that bundles from update sites remain
+	 * installed after the last compilation using them. Set to a negative value to uninstall them
+	 * immediately. Defaults to 30.
+	 * 
+	 * @since 3.5.0
+	 * @see BundleCache
+	 */
+	public static final String INI_BUNDLECACHETIMEOUT = "NSFODP_BundleCacheTimeout"; //$NON-NLS-1$
+	/**
+	 * Notes.ini property to set to the size in megabytes beyond which idle bundles from update
+	 * sites are uninstalled. Defaults to 256.
+	 * 
+	 * @since 3.5.0
+	 * @see BundleCache
+	 */
+	public static final String INI_BUNDLECACHESIZE = "NSFODP_BundleCacheSize"; //$NON-NLS-1$
+	
+	private CompileQueue queue;
+	private DependencyCache dependencyCache;
 	
 	@Override
 	public void init(ServletConfig config) throws ServletException {
 		super.init(config);
 		
-		this.exec = Executors.newSingleThreadExecutor(NotesThread::new);
+		int workers = 1;
+		try {
+			workers = Math.max(1, Os.OSGetEnvironmentInt(INI_COMPILERWORKERS));
+		} catch(NException e) {
+			e.printStackTrace();
+		}
+		this.queue = new CompileQueue(workers);
+		
+		int cacheSize = DEFAULT_DEPENDENCYCACHESIZE;
+		try {
+			int iniSize = Os.OSGetEnvironmentInt(INI_DEPENDENCYCACHESIZE);
+			if(iniSize > 0) {
+				cacheSize = iniSize;
+			}
+		} catch(NException e) {
+			e.printStackTrace();
+		}
+		try {
+			int timeout = Os.OSGetEnvironmentInt(INI_BUNDLECACHETIMEOUT);
+			if(timeout != 0) {
+				BundleCache.setIdleTimeout(timeout, TimeUnit.MINUTES);
+			}
+			int bundleCacheSize = Os.OSGetEnvironmentInt(INI_BUNDLECACHESIZE);
+			if(bundleCacheSize > 0) {
+				BundleCache.setMaxSize(bundleCacheSize * 1024L * 1024L);
+			}
+		} catch(NException e) {
+			e.printStackTrace();
+		}
+		try {
+			Path cacheDir = NSFODPUtil.getTempDirectory().resolve("nsfodpdependencycache"); //$NON-NLS-1$
+			this.dependencyCache = new DependencyCache(cacheDir, cacheSize * 1024L * 1024L);
+		} catch(IOException e) {
+			throw new ServletException(e);
+		}
 	}
 	
 	@Override
 	public void destroy() {
 		super.destroy();
 		
-		this.exec.shutdownNow();
 		try {
-			this.exec.awaitTermination(5, TimeUnit.MINUTES);
+			this.queue.shutdown(5, TimeUnit.MINUTES);
 		} catch (InterruptedException e) {
 			e.printStackTrace();
 		}
@@ -97,6 +162,7 @@ public class ODPCompilerServlet extends HttpServlet {
 		ServletOutputStream os = resp.getOutputStream();
 		
 		Set<Path> cleanup = new HashSet<>();
+		DependencyCache.Lease lease = dependencyCache.newLease();
 		try {
 			if(!ALLOW_ANONYMOUS && "Anonymous".equalsIgnoreCase(user.getName())) { //$NON-NLS-1$
 				resp.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
@@ -105,6 +171,11 @@ public class ODPCompilerServlet extends HttpServlet {
 				return;
 			}
 			
+			if("true".equals(req.getHeader(NSFODPConstants.HEADER_DEPENDENCY_QUERY))) { //$NON-NLS-1$
+				queryDependencies(req, resp, os, user);
+				return;
+			}
+			
 			// Developer's note: multipart/form-data with files broken out would be nice,
 			//   but Domino as of 9.0.1FP10 behaves poorly with them; for now, it's safer
 			//   to use a combined ZIP and pass options in headers
@@ -113,108 +184,72 @@ public class ODPCompilerServlet extends HttpServlet {
 				throw new IllegalArgumentException(Messages.ODPCompilerServlet_contentMustBeZip);
 			}
 			
-			Path packageFile = Files.createTempFile(NSFODPUtil.getTempDirectory(), "package", ".zip"); //$NON-NLS-1$ //$NON-NLS-2$
-			cleanup.add(packageFile);
-			try(InputStream reqInputStream = req.getInputStream()) {
-				Files.copy(reqInputStream, packageFile, StandardCopyOption.REPLACE_EXISTING);
+			// Hold the dependencies the client was told are cached until the compilation is done
+			String dependencyToken = req.getHeader(NSFODPConstants.HEADER_DEPENDENCY_TOKEN);
+			if(StringUtil.isNotEmpty(dependencyToken)) {
+				lease.claim(dependencyToken);
 			}
 			
-			// Look for an ODP item
-			Path odpZip = null;
-			List<Path> siteZips = new ArrayList<>();
-			List<Path> classPathJars = new ArrayList<>();
-			try(ZipFile packageZip = new ZipFile(packageFile.toFile(), StandardCharsets.UTF_8)) {
-				ZipEntry odpEntry = packageZip.getEntry("odp.zip"); //$NON-NLS-1$
-				if(odpEntry == null) {
-					// Then the package is itself the ODP
-					odpZip = packageFile;
+			// Write each part of the package to its final location as it arrives
+			CompilationPackage pkg;
+			try(InputStream reqInputStream = req.getInputStream()) {
+				if("true".equals(req.getHeader(NSFODPConstants.HEADER_ODP_ONLY))) { //$NON-NLS-1$
+					pkg = CompilationPackage.readOdp(reqInputStream, cleanup);
 				} else {
-					// Then extract the ODP
-					odpZip = Files.createTempFile(NSFODPUtil.getTempDirectory(), "odp", ".zip"); //$NON-NLS-1$ //$NON-NLS-2$
-					cleanup.add(odpZip);
-					try(InputStream odpIs = packageZip.getInputStream(odpEntry)) {
-						Files.copy(odpIs, odpZip, StandardCopyOption.REPLACE_EXISTING);
-					}
-					
-					// Look for any embedded update sites and classpath entries
-					packageZip.stream()
-						.forEach(entry -> {
-							try {
-								if(SITE_ZIP_PATTERN.matcher(entry.getName()).matches()) {
-									// Then add it as an update site
-									Path siteZip = Files.createTempFile(NSFODPUtil.getTempDirectory(), "site", ".zip"); //$NON-NLS-1$ //$NON-NLS-2$
-									cleanup.add(siteZip);
-									try(InputStream siteIs = packageZip.getInputStream(entry)) {
-										Files.copy(siteIs, siteZip, StandardCopyOption.REPLACE_EXISTING);
-									}
-									siteZips.add(siteZip);
-								} else if(entry.getName().startsWith("classpath/")) { //$NON-NLS-1$
-									// Then add it as an individual JAR
-									Path cpJar = Files.createTempFile(NSFODPUtil.getTempDirectory(), "classpathJar", ".jar"); //$NON-NLS-1$ //$NON-NLS-2$
-									cleanup.add(cpJar);
-									try(InputStream jarIs = packageZip.getInputStream(entry)) {
-										Files.copy(jarIs, cpJar, StandardCopyOption.REPLACE_EXISTING);
-									}
-									classPathJars.add(cpJar);
-								}
-							} catch(IOException e) {
-								throw new RuntimeException(e);
-							}
-						});
+					pkg = CompilationPackage.readPackage(reqInputStream, cleanup, dependencyCache, lease);
 				}
 			}
 			
 			IProgressMonitor mon = new LineDelimitedJsonProgressMonitor(os);
 
-			Path nsf;
-			try(FileSystem fs = NSFODPUtil.openZipPath(odpZip)) {
-				Path odpFile = fs.getPath("/"); //$NON-NLS-1$
-				
-				OnDiskProject odp = new OnDiskProject(odpFile);
-				ODPCompiler compiler = new ODPCompiler(ODPCompilerActivator.instance.getBundle().getBundleContext(), odp, mon);
-				
-				// See if the client requested a specific compiler level
-				String compilerLevel = req.getHeader(NSFODPConstants.HEADER_COMPILER_LEVEL);
-				if(StringUtil.isNotEmpty(compilerLevel)) {
-					compiler.setCompilerLevel(compilerLevel);
-				}
-				String appendTimestamp = req.getHeader(NSFODPConstants.HEADER_APPEND_TIMESTAMP);
-				if("true".equals(appendTimestamp)) { //$NON-NLS-1$
-					compiler.setAppendTimestampToTitle(true);
-				}
-				String templateName = req.getHeader(NSFODPConstants.HEADER_TEMPLATE_NAME);
-				if(StringUtil.isNotEmpty(templateName)) {
-					compiler.setTemplateName(templateName);
-					String templateVersion = req.getHeader(NSFODPConstants.HEADER_TEMPLATE_VERSION);
-					if(StringUtil.isNotEmpty(templateVersion)) {
-						compiler.setTemplateVersion(templateVersion);
-					}
-				}
-				String setXspOptions = req.getHeader(NSFODPConstants.HEADER_SET_PRODUCTION_XSP);
-				if("true".equals(setXspOptions)) { //$NON-NLS-1$
-					compiler.setSetProductionXspOptions(true);
-				}
-				String odsRelease = req.getHeader(NSFODPConstants.HEADER_ODS_RELEASE);
-				if(StringUtil.isNotEmpty(odsRelease)) {
-					compiler.setOdsRelease(odsRelease);
-				}
-				
-				if(siteZips != null && !siteZips.isEmpty()) {
-					for(Path siteZip : siteZips) {
-						Path siteFile = NSFODPUtil.expandZip(siteZip);
-						cleanup.add(siteFile);
-						UpdateSite updateSite = new FilesystemUpdateSite(siteFile);
-						compiler.addUpdateSite(updateSite);
-					}
+			OnDiskProject odp = new OnDiskProject(pkg.getOdpDirectory());
+			ODPCompiler compiler = new ODPCompiler(ODPCompilerActivator.instance.getBundle().getBundleContext(), odp, mon);
+			
+			// See if the client requested a specific compiler level
+			String compilerLevel = req.getHeader(NSFODPConstants.HEADER_COMPILER_LEVEL);
+			if(StringUtil.isNotEmpty(compilerLevel)) {
+				compiler.setCompilerLevel(compilerLevel);
+			}
+			String appendTimestamp = req.getHeader(NSFODPConstants.HEADER_APPEND_TIMESTAMP);
+			if("true".equals(appendTimestamp)) { //$NON-NLS-1$
+				compiler.setAppendTimestampToTitle(true);
+			}
+			String templateName = req.getHeader(NSFODPConstants.HEADER_TEMPLATE_NAME);
+			if(StringUtil.isNotEmpty(templateName)) {
+				compiler.setTemplateName(templateName);
+				String templateVersion = req.getHeader(NSFODPConstants.HEADER_TEMPLATE_VERSION);
+				if(StringUtil.isNotEmpty(templateVersion)) {
+					compiler.setTemplateVersion(templateVersion);
 				}
-				classPathJars.forEach(compiler::addClassPathEntry);
-				
-				nsf = this.exec.submit(() -> {
-					Path result = compiler.compile();
-					mon.done();
-					return result;
-				}).get();
 			}
+			String setXspOptions = req.getHeader(NSFODPConstants.HEADER_SET_PRODUCTION_XSP);
+			if("true".equals(setXspOptions)) { //$NON-NLS-1$
+				compiler.setSetProductionXspOptions(true);
+			}
+			String odsRelease = req.getHeader(NSFODPConstants.HEADER_ODS_RELEASE);
+			if(StringUtil.isNotEmpty(odsRelease)) {
+				compiler.setOdsRelease(odsRelease);
+			}
+			
+			for(Path siteDir : pkg.getUpdateSiteDirectories()) {
+				UpdateSite updateSite = new FilesystemUpdateSite(siteDir);
+				compiler.addUpdateSite(updateSite);
+			}
+			pkg.getClassPathJars().forEach(compiler::addClassPathEntry);
+			
+			// Share the processors among concurrent compilations
+			compiler.setTranslationThreads(Runtime.getRuntime().availableProcessors() / queue.getWorkers());
+			
+			Path nsf = this.queue.submit(() -> {
+				Path result = compiler.compile();
+				mon.done();
+				return result;
+			}).get((position, depth) -> os.println(LineDelimitedJsonProgressMonitor.message(
+				"type", "subTask", //$NON-NLS-1$ //$NON-NLS-2$
+				"name", MessageFormat.format(Messages.ODPCompilerServlet_queued, position, depth), //$NON-NLS-1$
+				"queuePosition", position, //$NON-NLS-1$
+				"queueDepth", depth //$NON-NLS-1$
+			)));
 			
 			// Now stream the NSF
 			cleanup.add(nsf);
@@ -239,7 +274,33 @@ public class ODPCompilerServlet extends HttpServlet {
 				)
 			);
 		} finally {
+			lease.close();
 			NSFODPUtil.deltree(cleanup);
 		}
 	}
+	
+	/**
+	 * Responds to a client's query for which of its dependencies are missing from the cache.
+	 */
+	private void queryDependencies(HttpServletRequest req, HttpServletResponse resp, ServletOutputStream os, Principal user) throws IOException, JsonException {
+		Map<String, Object> query;
+		try(InputStream is = req.getInputStream()) {
+			query = CompilationPackage.readJson(is);
+		}
+		List<String> jars = CompilationPackage.getList(query, "classpath").stream() //$NON-NLS-1$
+			.map(String::valueOf)
+			.collect(Collectors.toList());
+		List<String> sites = CompilationPackage.getList(query, "sites").stream() //$NON-NLS-1$
+			.map(String::valueOf)
+			.collect(Collectors.toList());
+		
+		// Anonymous clients, when allowed, are told apart by address
+		String client = "Anonymous".equalsIgnoreCase(user.getName()) ? req.getRemoteAddr() : user.getName(); //$NON-NLS-1$
+		DependencyCache.Query dependencyQuery = dependencyCache.query(client, jars, sites);
+		Map<String, Object> result = new HashMap<>();
+		result.put("missing", dependencyQuery.getMissing()); //$NON-NLS-1$
+		result.put("token", dependencyQuery.getToken()); //$NON-NLS-1$
+		resp.setContentType("application/json"); //$NON-NLS-1$
+		os.println(JsonGenerator.toJson(JsonJavaFactory.instance, result, true));
+	}
 }
@@ -18,17 +18,29 @@ package org.openntf.nsfodp.compiler;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.text.MessageFormat;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.stream.Collectors;
@@ -42,6 +54,7 @@ import org.openntf.nsfodp.compiler.util.LibraryWeightComparator;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.BundleException;
+import org.osgi.framework.FrameworkUtil;
 
 import com.ibm.commons.extension.ExtensionManager;
 import com.ibm.commons.util.StringUtil;
@@ -63,7 +76,6 @@ import com.ibm.xsp.registry.config.XspRegistryProvider;
  * @since 3.0.0
  */
 public abstract class AbstractCompilationEnvironment {
-
 	protected final BundleContext bundleContext;
 	protected final Set<UpdateSite> updateSites = new LinkedHashSet<>();
 	protected final Set<Path> classPathEntries = new LinkedHashSet<>();
@@ -72,6 +84,9 @@ public abstract class AbstractCompilationEnvironment {
 	protected final ResourceBundleSource resourceBundleSource;
 	protected final IconUrlSource iconUrlSource = icon -> getClass().getResource(icon);
 	protected final IProgressMonitor mon;
+	private int translationThreads = Runtime.getRuntime().availableProcessors();
+	/** Bundles from update sites held by the current compilation */
+	private final Set<Bundle> installedBundles = new HashSet<>();
 	
 	public AbstractCompilationEnvironment(BundleContext bundleContext, ResourceBundleSource resourceBundleSource, IProgressMonitor mon) {
 		this.bundleContext = Objects.requireNonNull(bundleContext);
@@ -97,17 +112,52 @@ public abstract class AbstractCompilationEnvironment {
 		}
 	}
 
+	/**
+	 * Sets the maximum number of threads to use when translating XSP source to Java.
+	 * 
+	 * @param translationThreads the number of threads to use; values below 1 are treated as 1
+	 * @since 3.5.0
+	 */
+	public void setTranslationThreads(int translationThreads) {
+		this.translationThreads = Math.max(1, translationThreads);
+	}
+	
+	/**
+	 * @return the maximum number of threads to use when translating XSP source to Java
+	 * @since 3.5.0
+	 */
+	public int getTranslationThreads() {
+		return translationThreads;
+	}
+
 	protected Collection<Bundle> installBundles() {
 		subTask(Messages.ODPCompiler_installingBundles);
 		
-		Collection<Bundle> result = updateSites.stream()
+		List<URI> uris = updateSites.stream()
 			.map(UpdateSite::getBundleURIs)
 			.flatMap(Collection::stream)
-			.map(this::installBundle)
-			.collect(Collectors.toList()).stream() // Force waiting until installation is complete
-			.filter(Objects::nonNull)
-			.map(this::startBundle)
 			.collect(Collectors.toList());
+		try {
+			// Don't let bundles kept from builds with other update sites leak into this one
+			BundleCache.evictUnused(uris);
+		} catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		List<Bundle> result = new ArrayList<>(uris.size());
+		try {
+			for(URI uri : uris) {
+				Bundle bundle = installBundle(uri);
+				if(bundle != null) {
+					result.add(bundle);
+				}
+			}
+		} catch(RuntimeException e) {
+			// Don't hold on to the bundles that were acquired before the failure
+			BundleCache.release(result);
+			throw e;
+		}
+		result.forEach(this::startBundle);
+		installedBundles.addAll(result);
 		subTask(MessageFormat.format(Messages.ODPCompiler_installedBundles, result.size()));
 		return result;
 	}
@@ -115,33 +165,34 @@ public abstract class AbstractCompilationEnvironment {
 	protected void uninstallBundles(Collection<Bundle> bundles) {
 		subTask(Messages.ODPCompiler_uninstallingBundles);
 		
-		bundles.stream().forEach(t -> {
-			try {
-				if(t.getState() == Bundle.RESOLVED && StringUtil.isEmpty(t.getHeaders().get("Fragment-Host"))) { //$NON-NLS-1$
-					t.stop();
-				}
-				t.uninstall();
-			} catch (BundleException e) {
-				throw new RuntimeException(e);
-			}
-		});
+		installedBundles.removeAll(bundles);
+		BundleCache.release(bundles);
 	}
 
 	/**
-	 * Installs the provided bundle.
+	 * Installs the provided bundle, or reuses an identical one left installed by a previous
+	 * compilation.
 	 * 
 	 * @param uri the platform-accessible URI to the bundle
-	 * @return the installed {@link Bundle} object
+	 * @return the installed {@link Bundle} object, or {@code null} if the platform already
+	 *         has a bundle with the same symbolic name and version
+	 * @throws RuntimeException if the bundle could not be installed for any other reason,
+	 *         such as a concurrent compilation using different contents for the same symbolic
+	 *         name and version
+	 * @see BundleCache
 	 */
 	private Bundle installBundle(URI uri) {
-		Bundle bundle = null;
 		try {
-			BundleContext bundleContext = ODPCompilerActivator.instance.getBundle().getBundleContext();
-			bundle = bundleContext.installBundle(uri.toString());
-		} catch(Exception e) {
-			// Ignore
+			return BundleCache.acquire(bundleContext, uri);
+		} catch(BundleException e) {
+			if(e.getType() == BundleException.DUPLICATE_BUNDLE_ERROR) {
+				// Then the platform's own copy will be used
+				return null;
+			}
+			throw new RuntimeException(MessageFormat.format(Messages.AbstractCompilationEnvironment_bundleInstallFailed, uri), e);
+		} catch(IOException e) {
+			throw new RuntimeException(MessageFormat.format(Messages.AbstractCompilationEnvironment_bundleInstallFailed, uri), e);
 		}
-		return bundle;
 	}
 
 	private Bundle startBundle(Bundle bundle) {
@@ -167,7 +218,11 @@ public abstract class AbstractCompilationEnvironment {
 	}
 
 	/**
-	 * Initializes the internal Faces registry with the newly-added plugins.
+	 * Initializes the internal Faces registry with the platform's libraries and those from
+	 * this compilation's update sites.
+	 * 
+	 * <p>Libraries from update-site bundles that another concurrent compilation is using are
+	 * skipped, as the service registry itself is shared.</p>
 	 */
 	protected void initRegistry() {
 		subTask(Messages.ODPCompiler_initializingLibraries);
@@ -176,6 +231,7 @@ public abstract class AbstractCompilationEnvironment {
 		List<Object> libraries = ExtensionManager.findServices((List<Object>)null, LibraryServiceLoader.class, "com.ibm.xsp.Library"); //$NON-NLS-1$
 		libraries.stream()
 			.filter(lib -> lib instanceof XspLibrary)
+			.filter(this::isVisibleLibrary)
 			.map(XspLibrary.class::cast)
 			.sorted(LibraryWeightComparator.INSTANCE)
 			.map(lib -> new LibraryWrapper(lib.getLibraryId(), lib))
@@ -189,6 +245,67 @@ public abstract class AbstractCompilationEnvironment {
 		facesRegistry.refreshReferences();
 	}
 	
+	private boolean isVisibleLibrary(Object library) {
+		Bundle bundle = FrameworkUtil.getBundle(library.getClass());
+		return bundle == null || installedBundles.contains(bundle) || !BundleCache.isCached(bundle);
+	}
+	
+	/**
+	 * Applies {@code translator} to each of the provided inputs using a bounded pool of worker
+	 * threads, returning the results in the iteration order of {@code inputs}.
+	 * 
+	 * <p>This is intended for XSP-to-Java translation, which is independent per page once the
+	 * Faces registry has been fully populated.</p>
+	 * 
+	 * @param <T> the input type
+	 * @param <R> the result type
+	 * @param inputs the inputs to translate
+	 * @param translator the translation function
+	 * @return a {@link Map} of inputs to their translated results
+	 * @since 3.5.0
+	 */
+	protected <T, R> Map<T, R> translateAll(Collection<T> inputs, Function<? super T, ? extends R> translator) {
+		if(inputs.isEmpty()) {
+			return Collections.emptyMap();
+		}
+		
+		ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+		AtomicInteger threadCount = new AtomicInteger();
+		ExecutorService exec = Executors.newFixedThreadPool(Math.min(inputs.size(), translationThreads), r -> {
+			Thread t = new Thread(r, getClass().getSimpleName() + "-translator-" + threadCount.incrementAndGet()); //$NON-NLS-1$
+			t.setDaemon(true);
+			t.setContextClassLoader(contextClassLoader);
+			return t;
+		});
+		try {
+			Map<T, Future<R>> futures = new LinkedHashMap<>();
+			for(T input : inputs) {
+				futures.put(input, exec.submit(() -> translator.apply(input)));
+			}
+			
+			Map<T, R> result = new LinkedHashMap<>();
+			for(Map.Entry<T, Future<R>> entry : futures.entrySet()) {
+				try {
+					result.put(entry.getKey(), entry.getValue().get());
+				} catch(ExecutionException e) {
+					Throwable cause = e.getCause();
+					if(cause instanceof RuntimeException) {
+						throw (RuntimeException)cause;
+					} else if(cause instanceof Error) {
+						throw (Error)cause;
+					}
+					throw new RuntimeException(cause);
+				} catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new RuntimeException(e);
+				}
+			}
+			return result;
+		} finally {
+			exec.shutdownNow();
+		}
+	}
+	
 	protected Collection<String> buildDependenciesCollection(Collection<Path> cleanup) throws IOException {
 		// Build our classpath
 		Collection<String> dependencies = new LinkedHashSet<>();;
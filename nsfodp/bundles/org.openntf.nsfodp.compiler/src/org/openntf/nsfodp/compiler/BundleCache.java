@@ -0,0 +1,391 @@
+/**
+ * Copyright © 2018-2021 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsfodp.compiler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.openntf.nsfodp.commons.NSFODPUtil;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleException;
+import org.osgi.framework.Constants;
+
+import com.ibm.commons.util.StringUtil;
+
+/**
+ * Keeps bundles installed from update sites available across compilations, so that builds
+ * using the same update sites do not have to re-install and re-resolve them each time.
+ *
+ * <p>Bundles are identified by their symbolic name, version, and the SHA-256 hash of their
+ * contents, and so are shared between compilations regardless of where the update site was
+ * expanded. Each compilation holds a reference to the bundles it uses; once a bundle is no
+ * longer referenced, it remains installed until it has been idle for longer than the
+ * configured timeout or until the total size of idle bundles exceeds the configured maximum,
+ * at which point the least-recently-used ones are uninstalled. Eviction is checked whenever
+ * bundles are acquired or released, as well as periodically in the background.</p>
+ *
+ * <p>Idle bundles are only kept for repeated builds against the same update sites: before a
+ * compilation acquires its bundles, it calls {@link #evictUnused(Collection)} to uninstall any
+ * idle bundles that it does not use, so that they cannot contribute XPages libraries or
+ * satisfy required bundles in an unrelated build.</p>
+ *
+ * <p>Cached bundles are installed from a copy of their contents, so the update site they
+ * came from may be deleted while they remain in use.</p>
+ *
+ * @author Jesse Gallagher
+ * @since 3.5.0
+ */
+public final class BundleCache {
+	public static final long DEFAULT_IDLE_TIMEOUT = TimeUnit.MINUTES.toMillis(30);
+	public static final long DEFAULT_MAX_SIZE = 256L * 1024L * 1024L;
+
+	private static final String LOCATION_PREFIX = "nsfodp:bundlecache/"; //$NON-NLS-1$
+	private static final long EVICTION_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+
+	private static class Entry {
+		private final String hash;
+		private final Bundle bundle;
+		private final long size;
+		private int references;
+		private long lastUsed;
+
+		Entry(String hash, Bundle bundle, long size) {
+			this.hash = hash;
+			this.bundle = bundle;
+			this.size = size;
+		}
+	}
+
+	/** Entries by symbolic name and version, in access order; guarded by itself */
+	private static final LinkedHashMap<String, Entry> ENTRIES = new LinkedHashMap<>(16, 0.75f, true);
+	/** Entries by their installed bundle; guarded by {@link #ENTRIES} */
+	private static final Map<Bundle, Entry> ENTRIES_BY_BUNDLE = new IdentityHashMap<>();
+	private static long idleTimeout = DEFAULT_IDLE_TIMEOUT;
+	private static long maxSize = DEFAULT_MAX_SIZE;
+	/** Runs timed eviction, created with the first entry; guarded by {@link #ENTRIES} */
+	private static ScheduledExecutorService evictionExecutor;
+
+	private BundleCache() { }
+
+	/**
+	 * Sets how long a bundle is kept installed once no compilation is using it. A value of
+	 * {@code 0} uninstalls bundles as soon as they are released.
+	 *
+	 * @param timeout the idle timeout
+	 * @param unit the unit of {@code timeout}
+	 */
+	public static void setIdleTimeout(long timeout, TimeUnit unit) {
+		synchronized(ENTRIES) {
+			idleTimeout = Math.max(0, unit.toMillis(timeout));
+		}
+	}
+
+	/**
+	 * Sets the total size of bundle contents beyond which idle bundles are uninstalled in
+	 * least-recently-used order.
+	 *
+	 * @param bytes the maximum size in bytes
+	 */
+	public static void setMaxSize(long bytes) {
+		synchronized(ENTRIES) {
+			maxSize = Math.max(0, bytes);
+		}
+	}
+
+	/**
+	 * Acquires a reference to the bundle at the provided URI, installing it if an identical
+	 * bundle is not already installed.
+	 *
+	 * @param bundleContext the context to install bundles with
+	 * @param uri the platform-accessible URI to the bundle file or directory
+	 * @return the installed {@link Bundle}
+	 * @throws IOException if there is a problem reading the bundle
+	 * @throws BundleException if there is a problem installing the bundle
+	 */
+	public static Bundle acquire(BundleContext bundleContext, URI uri) throws IOException, BundleException {
+		Path path = Paths.get(uri);
+		boolean dir = Files.isDirectory(path);
+		String hash = dir ? NSFODPUtil.sha256Tree(path) : NSFODPUtil.sha256(path);
+		String key = getKey(path, dir);
+		if(key == null) {
+			// Not identifiable by name, so the contents are all there is
+			key = hash;
+		}
+		long size = size(path, dir);
+
+		synchronized(ENTRIES) {
+			Entry entry = ENTRIES.get(key);
+			if(entry != null && (!entry.hash.equals(hash) || entry.bundle.getState() == Bundle.UNINSTALLED)) {
+				// Then the bundle has been changed or removed from outside the cache
+				if(entry.references > 0) {
+					throw new BundleException(MessageFormat.format(Messages.BundleCache_bundleInUse, key));
+				}
+				remove(entry);
+				uninstall(entry.bundle);
+				entry = null;
+			}
+			if(entry == null) {
+				// Directory bundles are packed into a JAR so that the installed copy doesn't depend
+				//   on the original location
+				Path packed = dir ? packDirectory(path) : null;
+				Bundle bundle;
+				try(InputStream is = Files.newInputStream(packed == null ? path : packed)) {
+					bundle = bundleContext.installBundle(LOCATION_PREFIX + key + '/' + hash, is);
+				} finally {
+					if(packed != null) {
+						Files.deleteIfExists(packed);
+					}
+				}
+				entry = new Entry(hash, bundle, size);
+				ENTRIES.put(key, entry);
+				ENTRIES_BY_BUNDLE.put(bundle, entry);
+				scheduleEviction();
+			}
+			entry.references++;
+			entry.lastUsed = System.currentTimeMillis();
+
+			evict();
+			return entry.bundle;
+		}
+	}
+
+	/**
+	 * Releases a reference to each of the provided bundles, uninstalling any bundles that are
+	 * no longer eligible to be cached.
+	 *
+	 * @param bundles the bundles previously returned by {@link #acquire}
+	 */
+	public static void release(Collection<Bundle> bundles) {
+		long now = System.currentTimeMillis();
+		synchronized(ENTRIES) {
+			for(Bundle bundle : bundles) {
+				Entry entry = ENTRIES_BY_BUNDLE.get(bundle);
+				if(entry != null && entry.references > 0) {
+					entry.references--;
+					entry.lastUsed = now;
+				}
+			}
+			evict();
+		}
+	}
+
+	/**
+	 * Uninstalls any idle bundles other than those for the provided URIs, so that bundles kept
+	 * from builds using other update sites are not visible to the coming compilation.
+	 *
+	 * @param uris the platform-accessible URIs of the bundles the coming compilation will use
+	 * @throws IOException if there is a problem reading a bundle's manifest
+	 */
+	public static void evictUnused(Collection<URI> uris) throws IOException {
+		Set<String> keys = new HashSet<>();
+		for(URI uri : uris) {
+			Path path = Paths.get(uri);
+			boolean dir = Files.isDirectory(path);
+			String key = getKey(path, dir);
+			if(key == null) {
+				key = dir ? NSFODPUtil.sha256Tree(path) : NSFODPUtil.sha256(path);
+			}
+			keys.add(key);
+		}
+
+		List<Entry> evicted = new ArrayList<>();
+		synchronized(ENTRIES) {
+			Iterator<Map.Entry<String, Entry>> iter = ENTRIES.entrySet().iterator();
+			while(iter.hasNext()) {
+				Map.Entry<String, Entry> mapEntry = iter.next();
+				Entry entry = mapEntry.getValue();
+				if(entry.references == 0 && !keys.contains(mapEntry.getKey())) {
+					iter.remove();
+					ENTRIES_BY_BUNDLE.remove(entry.bundle);
+					evicted.add(entry);
+				}
+			}
+			uninstallAll(evicted);
+		}
+	}
+
+	/**
+	 * @param bundle the bundle to check
+	 * @return whether the bundle was installed by this cache
+	 */
+	public static boolean isCached(Bundle bundle) {
+		synchronized(ENTRIES) {
+			return ENTRIES_BY_BUNDLE.containsKey(bundle);
+		}
+	}
+
+	// *******************************************************************************
+	// * Internal utility methods
+	// *******************************************************************************
+
+	private static void scheduleEviction() {
+		if(evictionExecutor == null) {
+			evictionExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread t = new Thread(r, BundleCache.class.getSimpleName() + "-eviction"); //$NON-NLS-1$
+				t.setDaemon(true);
+				return t;
+			});
+			evictionExecutor.scheduleWithFixedDelay(() -> {
+				try {
+					synchronized(ENTRIES) {
+						evict();
+					}
+				} catch(Throwable t) {
+					// Keep the schedule running
+					t.printStackTrace();
+				}
+			}, EVICTION_INTERVAL, EVICTION_INTERVAL, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private static void evict() {
+		long now = System.currentTimeMillis();
+		long idleSize = ENTRIES.values().stream()
+			.filter(entry -> entry.references == 0)
+			.mapToLong(entry -> entry.size)
+			.sum();
+
+		List<Entry> evicted = new ArrayList<>();
+		Iterator<Entry> iter = ENTRIES.values().iterator();
+		while(iter.hasNext()) {
+			Entry entry = iter.next();
+			if(entry.references == 0 && (idleSize > maxSize || now - entry.lastUsed >= idleTimeout)) {
+				iter.remove();
+				ENTRIES_BY_BUNDLE.remove(entry.bundle);
+				idleSize -= entry.size;
+				evicted.add(entry);
+			}
+		}
+
+		uninstallAll(evicted);
+	}
+
+	private static void uninstallAll(List<Entry> evicted) {
+		for(Entry entry : evicted) {
+			try {
+				uninstall(entry.bundle);
+			} catch(BundleException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	private static void remove(Entry entry) {
+		ENTRIES.values().remove(entry);
+		ENTRIES_BY_BUNDLE.remove(entry.bundle);
+	}
+
+	private static void uninstall(Bundle bundle) throws BundleException {
+		if(bundle.getState() == Bundle.UNINSTALLED) {
+			return;
+		}
+		if(StringUtil.isEmpty(bundle.getHeaders().get(Constants.FRAGMENT_HOST))) {
+			bundle.stop();
+		}
+		bundle.uninstall();
+	}
+
+	/**
+	 * @return the symbolic name and version of the bundle, or {@code null} if it has no
+	 *         symbolic name
+	 */
+	private static String getKey(Path path, boolean dir) throws IOException {
+		Manifest manifest = null;
+		if(dir) {
+			Path manifestFile = path.resolve(JarFile.MANIFEST_NAME);
+			if(Files.isRegularFile(manifestFile)) {
+				try(InputStream is = Files.newInputStream(manifestFile)) {
+					manifest = new Manifest(is);
+				}
+			}
+		} else {
+			try(JarFile jar = new JarFile(path.toFile())) {
+				manifest = jar.getManifest();
+			}
+		}
+
+		String symbolicName = null;
+		String version = null;
+		if(manifest != null) {
+			Attributes attributes = manifest.getMainAttributes();
+			symbolicName = attributes.getValue(Constants.BUNDLE_SYMBOLICNAME);
+			version = attributes.getValue(Constants.BUNDLE_VERSION);
+		}
+		if(StringUtil.isEmpty(symbolicName)) {
+			return null;
+		}
+
+		// Strip directives such as ";singleton:=true"
+		int semicolonIndex = symbolicName.indexOf(';');
+		if(semicolonIndex > -1) {
+			symbolicName = symbolicName.substring(0, semicolonIndex);
+		}
+		return symbolicName.trim() + '_' + (StringUtil.isEmpty(version) ? "0.0.0" : version.trim()); //$NON-NLS-1$
+	}
+
+	private static Path packDirectory(Path dir) throws IOException {
+		Path jar = Files.createTempFile(NSFODPUtil.getTempDirectory(), "bundle", ".jar"); //$NON-NLS-1$ //$NON-NLS-2$
+		List<Path> files;
+		try(Stream<Path> walk = Files.walk(dir)) {
+			files = walk.filter(Files::isRegularFile).collect(Collectors.toList());
+		}
+		try(OutputStream os = Files.newOutputStream(jar); ZipOutputStream zos = new ZipOutputStream(os)) {
+			for(Path file : files) {
+				String name = dir.relativize(file).toString().replace(file.getFileSystem().getSeparator(), "/"); //$NON-NLS-1$
+				zos.putNextEntry(new ZipEntry(name));
+				Files.copy(file, zos);
+				zos.closeEntry();
+			}
+		}
+		return jar;
+	}
+
+	private static long size(Path path, boolean dir) throws IOException {
+		if(dir) {
+			try(Stream<Path> walk = Files.walk(path)) {
+				return walk.filter(Files::isRegularFile).mapToLong(p -> p.toFile().length()).sum();
+			}
+		} else {
+			return Files.size(path);
+		}
+	}
+}
@@ -0,0 +1,305 @@
+/**
+ * Copyright © 2018-2021 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsfodp.compiler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import org.openntf.nsfodp.commons.NSFODPUtil;
+
+import com.ibm.commons.util.StringUtil;
+
+/**
+ * Represents the state of a previous compilation, used to determine which elements
+ * need to be re-imported when compiling incrementally.
+ *
+ * <p>Each entry is keyed by a stable element identifier (generally the ODP-relative path
+ * of the element) and records a content hash of the element's inputs as well as the
+ * note IDs that were produced by importing it.</p>
+ *
+ * @author Jesse Gallagher
+ * @since 3.5.0
+ */
+public class CompilationManifest {
+	private static final String PROP_SETTINGS = "settings"; //$NON-NLS-1$
+	private static final String PROP_CODE = "code"; //$NON-NLS-1$
+	private static final String PROP_DATABASE = "database"; //$NON-NLS-1$
+	private static final String PREFIX_HASH = "hash."; //$NON-NLS-1$
+	private static final String PREFIX_NOTES = "notes."; //$NON-NLS-1$
+
+	private final String settingsHash;
+	private String codeHash;
+	private String databaseIdentity;
+	private final Map<String, String> hashes = new TreeMap<>();
+	private final Map<String, Set<Integer>> noteIds = new TreeMap<>();
+
+	public CompilationManifest(String settingsHash) {
+		this.settingsHash = settingsHash;
+	}
+
+	/**
+	 * Loads a manifest previously written by {@link #save(Path)}.
+	 *
+	 * @param file the manifest file to read
+	 * @return the loaded manifest, or {@code null} if {@code file} does not exist
+	 * @throws IOException if there is a problem reading the file
+	 */
+	public static CompilationManifest load(Path file) throws IOException {
+		if(file == null || !Files.isRegularFile(file)) {
+			return null;
+		}
+
+		Properties props = new Properties();
+		try(InputStream is = Files.newInputStream(file)) {
+			props.load(is);
+		}
+
+		CompilationManifest result = new CompilationManifest(props.getProperty(PROP_SETTINGS));
+		result.codeHash = props.getProperty(PROP_CODE);
+		result.databaseIdentity = props.getProperty(PROP_DATABASE);
+		for(String propName : props.stringPropertyNames()) {
+			if(propName.startsWith(PREFIX_HASH)) {
+				String key = propName.substring(PREFIX_HASH.length());
+				result.hashes.put(key, props.getProperty(propName));
+				result.noteIds.put(key, toNoteIds(props.getProperty(PREFIX_NOTES + key)));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Writes the manifest to the provided file, replacing any existing content.
+	 *
+	 * @param file the manifest file to write
+	 * @throws IOException if there is a problem writing the file
+	 */
+	public void save(Path file) throws IOException {
+		Properties props = new Properties();
+		props.setProperty(PROP_SETTINGS, StringUtil.toString(settingsHash));
+		if(codeHash != null) {
+			props.setProperty(PROP_CODE, codeHash);
+		}
+		if(databaseIdentity != null) {
+			props.setProperty(PROP_DATABASE, databaseIdentity);
+		}
+		for(Map.Entry<String, String> entry : hashes.entrySet()) {
+			String key = entry.getKey();
+			props.setProperty(PREFIX_HASH + key, entry.getValue());
+			String ids = noteIds.getOrDefault(key, Collections.emptySet()).stream()
+				.map(String::valueOf)
+				.collect(Collectors.joining(",")); //$NON-NLS-1$
+			props.setProperty(PREFIX_NOTES + key, ids);
+		}
+
+		if(file.getParent() != null) {
+			Files.createDirectories(file.getParent());
+		}
+		try(OutputStream os = Files.newOutputStream(file)) {
+			props.store(os, null);
+		}
+	}
+
+	public String getSettingsHash() {
+		return settingsHash;
+	}
+
+	/**
+	 * @return a hash of all inputs that feed into Java and XSP compilation, or {@code null}
+	 *         if the compiled project did not contain XPages elements
+	 */
+	public String getCodeHash() {
+		return codeHash;
+	}
+
+	public void setCodeHash(String codeHash) {
+		this.codeHash = codeHash;
+	}
+
+	/**
+	 * @return the identity of the database produced by the compilation, as computed by
+	 *         {@link #identify(Path)}, or {@code null} if it was not recorded
+	 */
+	public String getDatabaseIdentity() {
+		return databaseIdentity;
+	}
+
+	public void setDatabaseIdentity(String databaseIdentity) {
+		this.databaseIdentity = databaseIdentity;
+	}
+
+	/**
+	 * @return the keys of all elements tracked by this manifest
+	 */
+	public Set<String> getKeys() {
+		return Collections.unmodifiableSet(hashes.keySet());
+	}
+
+	/**
+	 * @param key the element key to look up
+	 * @return the recorded content hash for the element, or {@code null} if the element
+	 *         is not tracked
+	 */
+	public String getHash(String key) {
+		return hashes.get(key);
+	}
+
+	/**
+	 * @param key the element key to look up
+	 * @return the note IDs produced by the element, or an empty set if the element is not
+	 *         tracked
+	 */
+	public Set<Integer> getNoteIds(String key) {
+		return Collections.unmodifiableSet(noteIds.getOrDefault(key, Collections.emptySet()));
+	}
+
+	/**
+	 * Records the state of an element.
+	 *
+	 * @param key the element key
+	 * @param hash the content hash of the element's inputs
+	 * @param noteIds the note IDs produced by importing the element
+	 */
+	public void put(String key, String hash, Collection<Integer> noteIds) {
+		this.hashes.put(Objects.requireNonNull(key), Objects.requireNonNull(hash));
+		this.noteIds.put(key, new LinkedHashSet<>(noteIds));
+	}
+
+	// *******************************************************************************
+	// * Hashing utilities
+	// *******************************************************************************
+
+	/**
+	 * Computes a cheap identity for a database file from its size and modification time,
+	 * used to detect when the file next to a manifest is not the one the manifest describes.
+	 *
+	 * @param database the database file to identify
+	 * @return an identity string, or {@code null} if {@code database} is not a regular file
+	 * @throws IOException if there is a problem reading the file's attributes
+	 */
+	public static String identify(Path database) throws IOException {
+		if(database == null || !Files.isRegularFile(database)) {
+			return null;
+		}
+		return Files.size(database) + ":" + Files.getLastModifiedTime(database).toMillis(); //$NON-NLS-1$
+	}
+
+	/**
+	 * Computes a hex-encoded SHA-256 hash of the provided files' contents. Files that do not
+	 * exist are skipped, but their absence is still reflected in the hash.
+	 *
+	 * @param files the files to hash
+	 * @return a hex-encoded hash string
+	 * @throws IOException if there is a problem reading a file
+	 */
+	public static String hash(Path... files) throws IOException {
+		MessageDigest digest = createDigest();
+		byte[] buf = new byte[8192];
+		for(Path file : files) {
+			if(file == null) {
+				continue;
+			}
+			digest.update(file.getFileName().toString().getBytes(StandardCharsets.UTF_8));
+			if(Files.isRegularFile(file)) {
+				try(InputStream is = NSFODPUtil.newInputStream(file)) {
+					int read;
+					while((read = is.read(buf)) > -1) {
+						digest.update(buf, 0, read);
+					}
+				}
+			} else {
+				digest.update((byte)0);
+			}
+		}
+		return toHex(digest.digest());
+	}
+
+	/**
+	 * Computes a hex-encoded SHA-256 hash of the provided data chunks.
+	 *
+	 * @param data the data to hash; {@code null} entries are skipped
+	 * @return a hex-encoded hash string
+	 */
+	public static String hash(byte[]... data) {
+		MessageDigest digest = createDigest();
+		for(byte[] chunk : data) {
+			if(chunk != null) {
+				digest.update(chunk);
+			}
+			// Delimit chunks so that shifting bytes between them changes the result
+			digest.update((byte)0);
+		}
+		return toHex(digest.digest());
+	}
+
+	/**
+	 * Computes a hex-encoded SHA-256 hash of the provided strings.
+	 *
+	 * @param values the values to hash
+	 * @return a hex-encoded hash string
+	 */
+	public static String hash(String... values) {
+		byte[][] data = Arrays.stream(values)
+			.map(val -> StringUtil.toString(val).getBytes(StandardCharsets.UTF_8))
+			.toArray(byte[][]::new);
+		return hash(data);
+	}
+
+	// *******************************************************************************
+	// * Internal utility methods
+	// *******************************************************************************
+
+	private static Set<Integer> toNoteIds(String value) {
+		if(StringUtil.isEmpty(value)) {
+			return Collections.emptySet();
+		}
+		return Arrays.stream(value.split(",")) //$NON-NLS-1$
+			.map(Integer::valueOf)
+			.collect(Collectors.toCollection(LinkedHashSet::new));
+	}
+
+	private static MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256"); //$NON-NLS-1$
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String toHex(byte[] bytes) {
+		StringBuilder result = new StringBuilder(bytes.length * 2);
+		for(byte b : bytes) {
+			result.append(Character.forDigit((b >> 4) & 0xF, 16));
+			result.append(Character.forDigit(b & 0xF, 16));
+		}
+		return result.toString();
+	}
+}
@@ -19,7 +19,12 @@ import org.eclipse.osgi.util.NLS;
 
 public class Messages extends NLS {
 	private static final String BUNDLE_NAME = "org.openntf.nsfodp.compiler.messages"; //$NON-NLS-1$
+	public static String AbstractCompilationEnvironment_bundleInstallFailed;
+	public static String BundleCache_bundleInUse;
+	public static String LotusScriptDependencies_circularUse;
 	public static String ODPCompiler_basicElementLabel;
+	public static String ODPCompiler_codeUnchanged;
+	public static String ODPCompiler_compiledClasses;
 	public static String ODPCompiler_compilingCustomControls;
 	public static String ODPCompiler_compilingJava;
 	public static String ODPCompiler_compilingJavaClasses;
@@ -28,8 +33,10 @@ public class Messages extends NLS {
 	public static String ODPCompiler_couldNotIdentifyTitle;
 	public static String ODPCompiler_creatingNSF;
 	public static String ODPCompiler_customControlLabel;
+	public static String ODPCompiler_deletingRemovedElements;
 	public static String ODPCompiler_dxlImportFailed;
 	public static String ODPCompiler_errorConvertingXSP;
+	public static String ODPCompiler_importedElements;
 	public static String ODPCompiler_importingCustomControls;
 	public static String ODPCompiler_importingDbProperties;
 	public static String ODPCompiler_importingDesignElements;
@@ -43,6 +50,8 @@ public class Messages extends NLS {
 	public static String ODPCompiler_javaClassLabel;
 	public static String ODPCompiler_javaCompilationFailed;
 	public static String ODPCompiler_lotusScriptLabel;
+	public static String ODPCompiler_reusingNSF;
+	public static String ODPCompiler_translatedXSP;
 	public static String ODPCompiler_unableToCompileLotusScript;
 	public static String ODPCompiler_uninstallingBundles;
 	public static String ODPCompiler_webServiceNotFound1;
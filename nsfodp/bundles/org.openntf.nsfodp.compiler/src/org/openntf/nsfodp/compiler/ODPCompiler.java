@@ -20,39 +20,42 @@ import java.io.ByteArrayOutputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.net.URI;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.text.DateFormat;
 import java.text.MessageFormat;
 import java.text.SimpleDateFormat;
-import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
 import java.util.Objects;
 import java.util.Properties;
-import java.util.Queue;
 import java.util.Set;
-import java.util.function.Function;
-import java.util.regex.Pattern;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.openntf.nsfodp.commons.NSFODPUtil;
-import org.openntf.nsfodp.commons.dxl.DXLUtil;
+import org.openntf.nsfodp.commons.dxl.DXLNote;
+import org.openntf.nsfodp.commons.dxl.StreamingDXLWriter;
 import org.openntf.nsfodp.commons.odp.AbstractSplitDesignElement;
 import org.openntf.nsfodp.commons.odp.CustomControl;
 import org.openntf.nsfodp.commons.odp.FileResource;
@@ -60,7 +63,6 @@ import org.openntf.nsfodp.commons.odp.JavaSource;
 import org.openntf.nsfodp.commons.odp.LotusScriptLibrary;
 import org.openntf.nsfodp.commons.odp.OnDiskProject;
 import org.openntf.nsfodp.commons.odp.XPage;
-import org.openntf.nsfodp.commons.odp.XSPCompilationResult;
 import org.openntf.nsfodp.commons.odp.notesapi.NDXLImporter;
 import org.openntf.nsfodp.commons.odp.notesapi.NDatabase;
 import org.openntf.nsfodp.commons.odp.notesapi.NDominoException;
@@ -68,14 +70,20 @@ import org.openntf.nsfodp.commons.odp.notesapi.NLotusScriptCompilationException;
 import org.openntf.nsfodp.commons.odp.notesapi.NNote;
 import org.openntf.nsfodp.commons.odp.notesapi.NotesAPI;
 import org.openntf.nsfodp.commons.odp.util.ODPUtil;
+import org.openntf.nsfodp.compiler.dxl.DxlImportBatch;
 import org.openntf.nsfodp.compiler.dxl.DxlImporterLog;
+import org.openntf.nsfodp.compiler.dxl.DxlPreparationPipeline;
 import org.openntf.nsfodp.compiler.dxl.DxlImporterLog.DXLError;
+import org.openntf.nsfodp.compiler.update.UpdateSite;
 import org.openntf.nsfodp.compiler.util.CompilerUtil;
+import org.openntf.nsfodp.compiler.util.LotusScriptDependencies;
 import org.openntf.nsfodp.compiler.util.MultiPathResourceBundleSource;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
 
 import com.ibm.commons.util.StringUtil;
 import com.ibm.commons.util.io.StreamUtil;
@@ -110,6 +118,17 @@ public class ODPCompiler extends AbstractCompilationEnvironment {
 	private String templateVersion;
 	private boolean setProductionXspOptions = false;
 	private String odsRelease;
+	private Path previousDatabase;
+	private Path manifestFile;
+	private CompilationManifest completedManifest;
+	
+	// Per-compilation incremental state
+	private CompilationManifest manifest;
+	private CompilationManifest previousManifest;
+	private boolean lotusScriptLibrariesChanged;
+	private DxlImportBatch dxlBatch;
+	/** Notes imported during compilation that have yet to be signed */
+	private final Set<Integer> unsignedNoteIds = new LinkedHashSet<>();
 	
 	private static final List<String> DEFAULT_COMPILER_OPTIONS = Arrays.asList(
 			"-g", //$NON-NLS-1$
@@ -125,18 +144,57 @@ public class ODPCompiler extends AbstractCompilationEnvironment {
 	 * files.
 	 */
 	public static final String INI_DEBUGDXL = "NSFODP_DebugDXL"; //$NON-NLS-1$
-	private static boolean DEBUG_DXL = false;
+	private final boolean debugDxl;
+	/**
+	 * Notes.ini property to set to the number of design elements to import in each DXL
+	 * importer call. Set to "1" to import each element separately. Defaults to
+	 * {@value #DEFAULT_DXL_IMPORT_BATCH_SIZE}.
+	 * 
+	 * @since 3.5.0
+	 */
+	public static final String INI_DXLIMPORTBATCHSIZE = "NSFODP_DxlImportBatchSize"; //$NON-NLS-1$
+	public static final int DEFAULT_DXL_IMPORT_BATCH_SIZE = 50;
+	private int dxlImportBatchSize = DEFAULT_DXL_IMPORT_BATCH_SIZE;
+	/**
+	 * Notes.ini property to set to the amount of memory, in megabytes, that design elements
+	 * prepared ahead of import may occupy. Defaults to 64.
+	 * 
+	 * @since 3.5.0
+	 */
+	public static final String INI_DXLPREPARATIONMEMORY = "NSFODP_DxlPreparationMemory"; //$NON-NLS-1$
+	public static final long DEFAULT_DXL_PREPARATION_MEMORY = 64L * 1024L * 1024L;
+	private long dxlPreparationMemory = DEFAULT_DXL_PREPARATION_MEMORY;
+	
+	// Element key prefixes used in the incremental compilation manifest
+	private static final String KEY_DXL = "dxl:"; //$NON-NLS-1$
+	private static final String KEY_FILE = "file:"; //$NON-NLS-1$
+	private static final String KEY_LOTUSSCRIPT = "lsl:"; //$NON-NLS-1$
+	private static final String KEY_DB_SCRIPT = "dbscript"; //$NON-NLS-1$
+	private static final String KEY_CUSTOM_CONTROL = "cc:"; //$NON-NLS-1$
+	private static final String KEY_XPAGE = "xpage:"; //$NON-NLS-1$
+	private static final String KEY_JAVA = "java:"; //$NON-NLS-1$
+	private static final String KEY_CLASS = "class:"; //$NON-NLS-1$
+	private static final List<String> CODE_KEYS = Arrays.asList(KEY_CUSTOM_CONTROL, KEY_XPAGE, KEY_JAVA, KEY_CLASS);
 	
 	public ODPCompiler(BundleContext bundleContext, OnDiskProject onDiskProject, IProgressMonitor mon) throws FileNotFoundException, XMLException, IOException {
 		super(bundleContext, new MultiPathResourceBundleSource(Objects.requireNonNull(onDiskProject).getResourcePaths()), mon);
 		this.odp = onDiskProject;
 		
+		boolean debugDxl = false;
 		try {
-			int debugDxl = Os.OSGetEnvironmentInt(INI_DEBUGDXL);
-			DEBUG_DXL = debugDxl > 0;
+			debugDxl = Os.OSGetEnvironmentInt(INI_DEBUGDXL) > 0;
+			int batchSize = Os.OSGetEnvironmentInt(INI_DXLIMPORTBATCHSIZE);
+			if(batchSize > 0) {
+				this.dxlImportBatchSize = batchSize;
+			}
+			int preparationMemory = Os.OSGetEnvironmentInt(INI_DXLPREPARATIONMEMORY);
+			if(preparationMemory > 0) {
+				this.dxlPreparationMemory = preparationMemory * 1024L * 1024L;
+			}
 		} catch(NException e) {
 			e.printStackTrace();
 		}
+		this.debugDxl = debugDxl;
 	}
 	
 	public OnDiskProject getOnDiskProject() {
@@ -281,6 +339,106 @@ public class ODPCompiler extends AbstractCompilationEnvironment {
 		return odsRelease;
 	}
 	
+	/**
+	 * Configures incremental compilation.
+	 * 
+	 * <p>When both a previous database and a manifest file are set and the manifest
+	 * matches the current compiler settings, the compiler starts from a copy of the previous
+	 * database and only re-imports elements whose inputs or compiled output changed. The
+	 * previous manifest is only trusted when the database it recorded is still the one at
+	 * {@code previousDatabase}.</p>
+	 * 
+	 * <p>After a successful compilation, callers should move the new database into place and
+	 * then call {@link #saveManifest(Path)} to write the new manifest.</p>
+	 * 
+	 * @param previousDatabase the output of the previous compilation, or {@code null} to
+	 *        always perform a full build
+	 * @param manifestFile the manifest file to read and update, or {@code null} to disable
+	 *        incremental compilation
+	 * @since 3.5.0
+	 */
+	public void setIncremental(Path previousDatabase, Path manifestFile) {
+		this.previousDatabase = previousDatabase;
+		this.manifestFile = manifestFile;
+	}
+	
+	/**
+	 * @return the previous database used as a base for incremental compilation, or
+	 *         {@code null} if not set
+	 * @since 3.5.0
+	 */
+	public Path getPreviousDatabase() {
+		return previousDatabase;
+	}
+	
+	/**
+	 * @return the manifest file used for incremental compilation, or {@code null} if not set
+	 * @since 3.5.0
+	 */
+	public Path getManifestFile() {
+		return manifestFile;
+	}
+	
+	/**
+	 * Writes the manifest of the last successful compilation to the configured manifest file,
+	 * recording the identity of the database it describes. This should be called after the
+	 * compiled database has been moved to its final location, so that the manifest is never
+	 * paired with an older database.
+	 * 
+	 * @param database the final location of the compiled database
+	 * @throws IOException if there is a problem writing the manifest
+	 * @since 3.5.0
+	 */
+	public synchronized void saveManifest(Path database) throws IOException {
+		CompilationManifest completed = this.completedManifest;
+		if(completed == null || manifestFile == null) {
+			return;
+		}
+		completed.setDatabaseIdentity(CompilationManifest.identify(database));
+		completed.save(manifestFile);
+		this.completedManifest = null;
+	}
+	
+	/**
+	 * Sets the number of design elements to import in each DXL importer call.
+	 * 
+	 * @param dxlImportBatchSize the number of elements to import together; values below 1 are
+	 *        treated as 1, which imports each element separately
+	 * @since 3.5.0
+	 */
+	public void setDxlImportBatchSize(int dxlImportBatchSize) {
+		this.dxlImportBatchSize = Math.max(1, dxlImportBatchSize);
+	}
+	
+	/**
+	 * @return the number of design elements to import in each DXL importer call
+	 * @since 3.5.0
+	 */
+	public int getDxlImportBatchSize() {
+		return dxlImportBatchSize;
+	}
+	
+	/**
+	 * Sets the amount of memory that design elements prepared ahead of import may occupy,
+	 * including those held in a DXL import batch. Preparation uses the same number of threads
+	 * as XSP translation.
+	 * 
+	 * @param dxlPreparationMemory the memory cap in bytes
+	 * @since 3.5.0
+	 */
+	public void setDxlPreparationMemory(long dxlPreparationMemory) {
+		this.dxlPreparationMemory = Math.max(0, dxlPreparationMemory);
+	}
+	
+	/**
+	 * @return the amount of memory in bytes that design elements prepared ahead of import may
+	 *         occupy
+	 * @since 3.5.0
+	 */
+	public long getDxlPreparationMemory() {
+		return dxlPreparationMemory;
+	}
+	
 	/**
 	 * Runs the compilation process:
 	 * 
@@ -289,7 +447,7 @@ public class ODPCompiler extends AbstractCompilationEnvironment {
 	 *	<li>Initializes plugin contributions from installed bundles</li>
 	 * 	<li>Compiles all XPage artifacts</li>
 	 * 	<li>Constructs the NSF from the on-disk project</li>
-	 * 	<li>Uninstalls any installed bundles</li>
+	 * 	<li>Releases installed bundles</li>
 	 * </ol>
 	 * 
 	 * @return a {@link Path} representing the created database
@@ -308,7 +466,7 @@ public class ODPCompiler extends AbstractCompilationEnvironment {
 	 *	<li>Initializes plugin contributions from installed bundles</li>
 	 * 	<li>Compiles all XPage artifacts</li>
 	 * 	<li>Constructs the NSF from the on-disk project</li>
-	 * 	<li>Uninstalls any installed bundles</li>
+	 * 	<li>Releases installed bundles</li>
 	 * </ol>
 	 * 
 	 * @param cl the base {@link ClassLoader} to use during compilation
@@ -321,8 +479,18 @@ public class ODPCompiler extends AbstractCompilationEnvironment {
 		JavaSourceClassLoader classLoader = null;
 		Set<Path> cleanup = new HashSet<>();
 		try {
+			initManifests();
+			
 			boolean hasXPages = odp.hasXPagesElements();
-			if(hasXPages) {
+			boolean compileCode = hasXPages;
+			if(hasXPages && manifest != null) {
+				manifest.setCodeHash(computeCodeHash());
+				if(previousManifest != null && Objects.equals(previousManifest.getCodeHash(), manifest.getCodeHash())) {
+					subTask(Messages.ODPCompiler_codeUnchanged);
+					compileCode = false;
+				}
+			}
+			if(compileCode) {
 				initRegistry();
 	
 				Collection<String> dependencies = buildDependenciesCollection(cleanup);
@@ -351,15 +519,15 @@ public class ODPCompiler extends AbstractCompilationEnvironment {
 				classLoader.getJavaFileManager().setNonDelegatingPackages(Arrays.asList("com.ibm.jscript")); //$NON-NLS-1$
 
 				// Compile Java classes
-				compileJavaSources(classLoader);
-				compileCustomControls(classLoader);
-				compileXPages(classLoader);
+				compileClasses(classLoader);
 			}
 			
 			try(NotesAPI session = NotesAPI.get()) {
-				Path file = createDatabase(session);
+				Path file = previousManifest == null ? createDatabase(session) : copyPreviousDatabase();
 				try(NDatabase database = session.openDatabase("", file.toAbsolutePath().toString())) { //$NON-NLS-1$
 					try(NDXLImporter importer = session.createDXLImporter()) {
+						long importStart = System.nanoTime();
+						dxlBatch = new DxlImportBatch(database, importer, (is, name) -> importDxl(importer, is, database, name), noteIds -> deleteNotes(database, noteIds), dxlImportBatchSize, dxlPreparationMemory / 2);
 						
 						importDbProperties(importer, database);
 						importLotusScriptLibraries(importer, database);
@@ -367,12 +535,18 @@ public class ODPCompiler extends AbstractCompilationEnvironment {
 						importFileResources(importer, database);
 						importDbScript(importer, database);
 						
-						if(hasXPages) {
+						if(compileCode) {
 							Set<String> compiledClassNames = new HashSet<>(classLoader.getCompiledClassNames());
 							importCustomControls(importer, database, classLoader, compiledClassNames);
 							importXPages(importer, database, classLoader, compiledClassNames);
 							importJavaElements(importer, database, classLoader, compiledClassNames);
+						} else if(hasXPages) {
+							carryOverCodeElements();
 						}
+						
+						deleteRemovedElements(database);
+						
+						subTask(MessageFormat.format(Messages.ODPCompiler_importedElements, toMillis(importStart)));
 		
 						// Append a timestamp if requested
 						if(this.isAppendTimestampToTitle()) {
@@ -402,9 +576,13 @@ public class ODPCompiler extends AbstractCompilationEnvironment {
 							doc.set("$TemplateBuildDate", new Date()); //$NON-NLS-1$
 							doc.save();
 						}
+						
+						signImportedNotes(database);
 					}
 				}
 				
+				completedManifest = manifest;
+				
 				return file;
 			}
 		} catch(JavaCompilerException e) {
@@ -420,6 +598,12 @@ public class ODPCompiler extends AbstractCompilationEnvironment {
 			}
 
 			NSFODPUtil.deltree(cleanup);
+			
+			manifest = null;
+			previousManifest = null;
+			lotusScriptLibrariesChanged = false;
+			dxlBatch = null;
+			unsignedNoteIds.clear();
 		}
 	}
 	
@@ -428,14 +612,55 @@ public class ODPCompiler extends AbstractCompilationEnvironment {
 	// * Class compilation methods
 	// *******************************************************************************
 	
-	private Map<String, Class<?>> compileJavaSources(JavaSourceClassLoader classLoader) throws FileNotFoundException, XMLException, IOException, JavaCompilerException {
+	/**
+	 * Compiles all Java source, custom controls and XPages in the ODP.
+	 * 
+	 * <p>XSP elements are first translated to Java and then compiled together with the
+	 * project's Java source in a single compiler pass. The exception is when a custom
+	 * control's configuration or one of the project's own {@code WEB-INF} faces or xsp-config
+	 * files refers to a class in the project, in which case the Java source must be compiled
+	 * before the XSP elements can be translated.</p>
+	 * 
+	 * @param classLoader the class loader to compile into
+	 * @return a {@link Map} of compiled class names to classes
+	 */
+	private Map<String, Class<?>> compileClasses(JavaSourceClassLoader classLoader) throws Exception {
 		subTask(Messages.ODPCompiler_compilingJava);
 		
+		Map<String, CharSequence> javaSources = getJavaSources();
+		List<CustomControl> ccs = odp.getCustomControls();
+		
+		Map<String, Class<?>> result = new HashMap<>();
+		Map<String, CharSequence> sources = new LinkedHashMap<>();
+		if(isJavaReferencedByConfig(ccs, javaSources.keySet())) {
+			result.putAll(compileSources(classLoader, javaSources));
+		} else {
+			sources.putAll(javaSources);
+		}
+		
+		long start = System.nanoTime();
+		
+		subTask(Messages.ODPCompiler_compilingCustomControls);
+		registerCustomControls(ccs, classLoader);
+		// Now that they're all defined, the CCs can be translated along with the XPages
+		sources.putAll(translateXSP(ccs));
+		
+		subTask(Messages.ODPCompiler_compilingXPages);
+		List<XPage> xpages = odp.getXPages();
+		sources.putAll(translateXSP(xpages));
+		
+		subTask(MessageFormat.format(Messages.ODPCompiler_translatedXSP, ccs.size() + xpages.size(), toMillis(start)));
+		
+		result.putAll(compileSources(classLoader, sources));
+		return result;
+	}
+	
+	private Map<String, CharSequence> getJavaSources() {
 		Map<Path, List<JavaSource>> javaSourceFiles = odp.getJavaSourceFiles();
 		if(javaSourceFiles.isEmpty()) {
 			return Collections.emptyMap();
 		}
-		Map<String, CharSequence> sources = javaSourceFiles.entrySet().stream()
+		return javaSourceFiles.entrySet().stream()
 			.map(entry ->
 				// Convert to a map of class name -> source
 				entry.getValue().stream()
@@ -447,11 +672,16 @@ public class ODPCompiler extends AbstractCompilationEnvironment {
 			.map(Map::entrySet)
 			.flatMap(Set::stream)
 			.collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
-		
+	}
+	
+	private Map<String, Class<?>> compileSources(JavaSourceClassLoader classLoader, Map<String, CharSequence> sources) throws JavaCompilerException {
 		int size = sources.size();
-		subTask(MessageFormat.format(Messages.ODPCompiler_compilingJavaClasses, sources.size()));
+		subTask(MessageFormat.format(Messages.ODPCompiler_compilingJavaClasses, size));
 		if(size > 0) {
-			return classLoader.addClasses(sources);
+			long start = System.nanoTime();
+			Map<String, Class<?>> result = classLoader.addClasses(sources);
+			subTask(MessageFormat.format(Messages.ODPCompiler_compiledClasses, size, toMillis(start)));
+			return result;
 		} else {
 			return Collections.emptyMap();
 		}
@@ -461,15 +691,10 @@ public class ODPCompiler extends AbstractCompilationEnvironment {
 	// * XSP compilation methods
 	// *******************************************************************************
 	
-	private Map<CustomControl, XSPCompilationResult> compileCustomControls(JavaSourceClassLoader classLoader) throws Exception {
-		subTask(Messages.ODPCompiler_compilingCustomControls);
-		
+	private void registerCustomControls(List<CustomControl> ccs, JavaSourceClassLoader classLoader) throws Exception {
 		ConfigParser configParser = ConfigParserFactory.getParserInstance();
 		FacesClassLoader facesClassLoader = new DynamicFacesClassLoader(dynamicXPageBean, classLoader);
 		
-		Map<CustomControl, XSPCompilationResult> result = new LinkedHashMap<>();
-		
-		List<CustomControl> ccs = odp.getCustomControls();
 		for(CustomControl cc : ccs) {
 			Document xspConfig = cc.getXspConfig().get();
 			
@@ -488,25 +713,92 @@ public class ODPCompiler extends AbstractCompilationEnvironment {
 			facesProject.register(fragment);
 		}
 		facesProject.getRegistry().refreshReferences();
-		
-		// Now that they're all defined, try to compile them in a queue
+	}
+	
+	/**
+	 * Determines whether any of the provided custom controls or any faces or xsp-config file
+	 * in the project's {@code WEB-INF} directory names a class defined in the project's own
+	 * Java source, such as a property type or a component, renderer, or converter class.
+	 */
+	private boolean isJavaReferencedByConfig(List<CustomControl> ccs, Set<String> javaClassNames) throws IOException {
+		if(javaClassNames.isEmpty()) {
+			return false;
+		}
 		for(CustomControl cc : ccs) {
-			XSPCompilationResult compilationResult = compileXSP(cc, classLoader);
-			result.put(cc, compilationResult);
+			Document xspConfig = cc.getXspConfig().orElse(null);
+			if(xspConfig != null && isJavaReferencedByConfig(xspConfig, javaClassNames)) {
+				return true;
+			}
 		}
-		
-		return result;
+		for(Path configFile : getProjectConfigFiles()) {
+			Document config;
+			try {
+				config = ODPUtil.readXml(configFile);
+			} catch(RuntimeException e) {
+				// Be conservative with a file that can't be inspected
+				return true;
+			}
+			if(isJavaReferencedByConfig(config, javaClassNames)) {
+				return true;
+			}
+		}
+		return false;
 	}
 	
-	private Map<XPage, XSPCompilationResult> compileXPages(JavaSourceClassLoader classLoader) throws Exception {
-		subTask(Messages.ODPCompiler_compilingXPages);
-		Map<XPage, XSPCompilationResult> result = new LinkedHashMap<>();
-		
-		for(XPage xpage : odp.getXPages()) {
-			XSPCompilationResult compilationResult = compileXSP(xpage, classLoader);
-			result.put(xpage, compilationResult);
+	private static boolean isJavaReferencedByConfig(Document config, Set<String> javaClassNames) {
+		NodeList elements = config.getElementsByTagName("*"); //$NON-NLS-1$
+		for(int i = 0; i < elements.getLength(); i++) {
+			Node element = elements.item(i);
+			String name = element.getLocalName() == null ? element.getNodeName() : element.getLocalName();
+			if(!name.endsWith("-class")) { //$NON-NLS-1$
+				continue;
+			}
+			String className = StringUtil.trim(element.getTextContent());
+			// Strip any generic or array suffix
+			int suffix = className.indexOf('<');
+			if(suffix < 0) {
+				suffix = className.indexOf('[');
+			}
+			if(suffix > -1) {
+				className = className.substring(0, suffix);
+			}
+			if(javaClassNames.contains(className)) {
+				return true;
+			}
 		}
-		
+		return false;
+	}
+	
+	/**
+	 * @return the faces-config and xsp-config files in the project's {@code WEB-INF} directory
+	 */
+	private List<Path> getProjectConfigFiles() throws IOException {
+		Path webInf = odp.getBaseDirectory().resolve("WebContent").resolve("WEB-INF"); //$NON-NLS-1$ //$NON-NLS-2$
+		if(!Files.isDirectory(webInf)) {
+			return Collections.emptyList();
+		}
+		try(Stream<Path> walk = Files.walk(webInf)) {
+			return walk
+				.filter(Files::isRegularFile)
+				.filter(path -> {
+					String fileName = path.getFileName().toString();
+					return fileName.endsWith(".xsp-config") || fileName.equals("faces-config.xml"); //$NON-NLS-1$ //$NON-NLS-2$
+				})
+				.sorted()
+				.collect(Collectors.toList());
+		}
+	}
+	
+	/**
+	 * Translates the provided XSP elements to Java in parallel.
+	 * 
+	 * @param xpages the elements to translate
+	 * @return a {@link Map} of Java class names to generated source
+	 */
+	private Map<String, CharSequence> translateXSP(List<? extends XPage> xpages) {
+		Map<String, CharSequence> result = new LinkedHashMap<>();
+		translateAll(xpages, this::translateXSP)
+			.forEach((xpage, javaSource) -> result.put(xpage.getJavaClassName(), javaSource));
 		return result;
 	}
 	
@@ -525,15 +817,7 @@ public class ODPCompiler extends AbstractCompilationEnvironment {
 	private Path createDatabase(NotesAPI session) throws IOException {
 		subTask(Messages.ODPCompiler_creatingNSF);
 		
-		String ext;
-		String odsRelease = getOdsRelease();
-		if(StringUtil.isEmpty(odsRelease)) {
-			ext = ".nsf"; //$NON-NLS-1$
-		} else {
-			ext = ".ns" + odsRelease; //$NON-NLS-1$
-		}
-		
-		Path temp = Files.createTempFile(NSFODPUtil.getTempDirectory(), "odpcompilertemp", ext); //$NON-NLS-1$
+		Path temp = Files.createTempFile(NSFODPUtil.getTempDirectory(), "odpcompilertemp", getDatabaseExtension()); //$NON-NLS-1$
 		Files.deleteIfExists(temp);
 		String filePath = temp.toAbsolutePath().toString();
 		
@@ -542,6 +826,31 @@ public class ODPCompiler extends AbstractCompilationEnvironment {
 		return temp;
 	}
 	
+	/**
+	 * Creates a copy of the previous compilation output in the local temp directory to act
+	 * as the base for an incremental compilation.
+	 * 
+	 * @return a {@link Path} representing the new NSF file
+	 * @throws IOException if there is a problem copying the database
+	 * @since 3.5.0
+	 */
+	private Path copyPreviousDatabase() throws IOException {
+		subTask(MessageFormat.format(Messages.ODPCompiler_reusingNSF, previousDatabase));
+		
+		Path temp = Files.createTempFile(NSFODPUtil.getTempDirectory(), "odpcompilertemp", getDatabaseExtension()); //$NON-NLS-1$
+		Files.copy(previousDatabase, temp, StandardCopyOption.REPLACE_EXISTING);
+		return temp;
+	}
+	
+	private String getDatabaseExtension() {
+		String odsRelease = getOdsRelease();
+		if(StringUtil.isEmpty(odsRelease)) {
+			return ".nsf"; //$NON-NLS-1$
+		} else {
+			return ".ns" + odsRelease; //$NON-NLS-1$
+		}
+	}
+	
 	private void importDbProperties(NDXLImporter importer, NDatabase database) throws Exception {
 		// DB properties gets special handling
 		subTask(Messages.ODPCompiler_importingDbProperties);
@@ -560,9 +869,9 @@ public class ODPCompiler extends AbstractCompilationEnvironment {
 	
 	private void importBasicElements(NDXLImporter importer, NDatabase database) throws Exception {
 		subTask(Messages.ODPCompiler_importingDesignElements);
-		List<Integer> noteIds = new ArrayList<>();
+		List<Path> elements;
 		try(Stream<Path> dxlElements = odp.getDirectDXLElements()) {
-			dxlElements
+			elements = dxlElements
 				.filter(p -> {
 					try {
 						return Files.size(p) > 0;
@@ -570,23 +879,43 @@ public class ODPCompiler extends AbstractCompilationEnvironment {
 						throw new RuntimeException(e);
 					}
 				})
-				.forEach(p -> {
-					try {
-						try(InputStream is = NSFODPUtil.newInputStream(p)) {
-							noteIds.addAll(importDxl(importer, is, database, MessageFormat.format(Messages.ODPCompiler_basicElementLabel, odp.getBaseDirectory().relativize(p))));
-						}
-					} catch(Exception e) {
-						throw new RuntimeException("Exception while importing element " + odp.getBaseDirectory().relativize(p), e);
-					}
-				});
+				.collect(Collectors.toList());
 		}
-		compileLotusScript(database, noteIds, false);
+		
+		List<Integer> noteIds = new ArrayList<>();
+		ImportedNotesHandler handler = imported -> {
+			noteIds.addAll(imported);
+			return imported;
+		};
+		newPreparationPipeline().run(elements, p -> estimateDxlSize(0, p), p -> {
+			Path relativePath = odp.getBaseDirectory().relativize(p);
+			try {
+				String key = KEY_DXL + toKey(relativePath);
+				String hash = hashInputs(p);
+				String name = MessageFormat.format(Messages.ODPCompiler_basicElementLabel, relativePath);
+				if(isUnchanged(key, hash)) {
+					return new PreparedElement(key, hash, name, null, false, null);
+				}
+				boolean batchable = DxlImportBatch.isBatchable(p);
+				return new PreparedElement(key, hash, name, buffer(() -> NSFODPUtil.newInputStream(p), estimateDxlSize(0, p)), batchable, handler);
+			} catch(Exception e) {
+				throw new RuntimeException("Exception while importing element " + relativePath, e);
+			}
+		}, element -> importPrepared(importer, database, element));
+		dxlBatch.flush();
+		
+		if(lotusScriptLibrariesChanged) {
+			// Unchanged elements may still "Use" a changed library
+			noteIds.clear();
+			noteIds.addAll(getTrackedNoteIds(KEY_DXL));
+		}
+		compileLotusScript(database, noteIds);
 	}
 	
 	private void importFileResources(NDXLImporter importer, NDatabase database) throws Exception {
 		subTask(Messages.ODPCompiler_importingFileResources);
 		
-		Map<AbstractSplitDesignElement, Document> elements = odp.getFileResources().stream()
+		List<AbstractSplitDesignElement> elements = odp.getFileResources().stream()
 			.filter(res -> {
 				Path filePath = odp.getBaseDirectory().relativize(res.getDataFile());
 				String normalizedPath = filePath.toString().replace('\\', '/');
@@ -625,153 +954,328 @@ public class ODPCompiler extends AbstractCompilationEnvironment {
 				
 				return true;
 			})
-			.collect(Collectors.toMap(
-				Function.identity(),
-				res -> {
-					try {
-						return res.getDxl();
-					} catch (XMLException | IOException e) {
-						throw new RuntimeException(e);
-					}
-				}
-			));
+			.collect(Collectors.toList());
 		
-		for(Map.Entry<AbstractSplitDesignElement, Document> entry : elements.entrySet()) {
-			AbstractSplitDesignElement res = entry.getKey();
-			Document dxlDoc = entry.getValue();
+		newPreparationPipeline().run(elements, res -> estimateDxlSize(0, res.getDataFile(), res.getDxlFile()), res -> {
 			Path filePath = odp.getBaseDirectory().relativize(res.getDataFile());
-			importDxl(importer, DOMUtil.getXMLString(dxlDoc), database, res.getClass().getSimpleName() + " " + filePath); //$NON-NLS-1$
+			String key = KEY_FILE + toKey(filePath);
+			String hash = hashInputs(res.getDataFile(), res.getDxlFile());
+			String name = res.getClass().getSimpleName() + " " + filePath; //$NON-NLS-1$
+			if(isUnchanged(key, hash)) {
+				return new PreparedElement(key, hash, name, null, true, null);
+			}
+			StreamingDXLWriter dxl = res.getStreamingDxl();
 			
-			if(res instanceof FileResource) {
-				FileResource fileRes = (FileResource)res;
-				if(fileRes.isCopyToClasses()) {
-					// Also create a copy beneath WEB-INF/classes
-					ByteArrayOutputStream baos = new ByteArrayOutputStream();
-					Files.copy(fileRes.getDataFile(), baos);
-					// Use expanded syntax due to the presence of the xmlns
-					String title = DOMUtil.evaluateXPath(dxlDoc, "/*[name()='note']/*[name()='item'][@name='$TITLE']/*[name()='text']/text()").getStringValue(); //$NON-NLS-1$
-					if(StringUtil.isEmpty(title)) {
-						throw new IllegalStateException(MessageFormat.format(Messages.ODPCompiler_couldNotIdentifyTitle, filePath));
-					}
-					CompilerUtil.importFileResource(importer, baos.toByteArray(), database, "WEB-INF/classes/" + title, "~C4g", "w"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			String classesDxl = null;
+			String classesName = null;
+			if(res instanceof FileResource && ((FileResource)res).isCopyToClasses()) {
+				// Also create a copy beneath WEB-INF/classes
+				List<String> titles = dxl.getNote().getItemValueStrings("$TITLE"); //$NON-NLS-1$
+				String title = titles.isEmpty() ? null : titles.get(0);
+				if(StringUtil.isEmpty(title)) {
+					throw new IllegalStateException(MessageFormat.format(Messages.ODPCompiler_couldNotIdentifyTitle, filePath));
 				}
+				classesName = "WEB-INF/classes/" + title; //$NON-NLS-1$
+				classesDxl = CompilerUtil.createFileResourceDxl(Files.readAllBytes(res.getDataFile()), classesName, "~C4g", "w"); //$NON-NLS-1$ //$NON-NLS-2$
 			}
-		}
+			String copyDxl = classesDxl;
+			String copyName = classesName;
+			
+			DxlImportBatch.Source source = buffer(dxl::getInputStream, estimateDxlSize(0, res.getDataFile(), res.getDxlFile()));
+			return new PreparedElement(key, hash, name, source, true, imported -> {
+				if(copyDxl == null) {
+					return imported;
+				}
+				List<Integer> noteIds = new ArrayList<>(imported);
+				noteIds.addAll(importDxl(importer, copyDxl, database, copyName));
+				return noteIds;
+			});
+		}, element -> importPrepared(importer, database, element));
+		dxlBatch.flush();
 	}
 	
 	private void importCustomControls(NDXLImporter importer, NDatabase database, JavaSourceClassLoader classLoader, Set<String> compiledClassNames) throws Exception {
 		subTask(Messages.ODPCompiler_importingCustomControls);
 		
-		List<CustomControl> ccs = odp.getCustomControls();
-		for(CustomControl cc : ccs) {
-			Document dxlDoc = importXSP(importer, database, classLoader, compiledClassNames, cc);
+		List<CompiledElement<CustomControl>> elements = new ArrayList<>();
+		for(CustomControl cc : odp.getCustomControls()) {
+			List<String> classNames = getXSPClassNames(cc);
+			// Drain them from the later queue
+			compiledClassNames.removeAll(classNames);
+			elements.add(new CompiledElement<>(cc, classLoader, classNames));
+		}
+		
+		newPreparationPipeline().run(elements, el -> estimateDxlSize(el.getClassesSize(), el.element.getDataFile(), el.element.getDxlFile(), el.element.getXspConfigFile()), el -> {
+			CustomControl cc = el.element;
+			Path filePath = odp.getBaseDirectory().relativize(cc.getDataFile());
+			String key = KEY_CUSTOM_CONTROL + toKey(filePath);
+			String hash = hashCompiledInputs(el.classes, cc.getDataFile(), cc.getDxlFile(), cc.getXspConfigFile());
+			String name = MessageFormat.format(Messages.ODPCompiler_customControlLabel, cc.getPageName());
+			if(isUnchanged(key, hash)) {
+				return new PreparedElement(key, hash, name, null, true, null);
+			}
+			StreamingDXLWriter dxl = importXSP(el.classes, cc);
 			
 			String xspConfig = cc.getXspConfigSource();
 			byte[] xspConfigData = xspConfig.getBytes(StandardCharsets.UTF_8);
-			DXLUtil.writeItemFileData(dxlDoc, "$ConfigData", xspConfigData); //$NON-NLS-1$
-			DXLUtil.writeItemNumber(dxlDoc, "$ConfigSize", xspConfigData.length); //$NON-NLS-1$
+			dxl.addItemFileData("$ConfigData", xspConfigData); //$NON-NLS-1$
+			dxl.getNote().writeItemNumber("$ConfigSize", xspConfigData.length); //$NON-NLS-1$
 			
-			importDxl(importer, DOMUtil.getXMLString(dxlDoc), database, MessageFormat.format(Messages.ODPCompiler_customControlLabel, cc.getPageName()));
-		}
+			DxlImportBatch.Source source = buffer(dxl::getInputStream, estimateDxlSize(el.getClassesSize(), cc.getDataFile(), cc.getDxlFile(), cc.getXspConfigFile()));
+			return new PreparedElement(key, hash, name, source, true, null);
+		}, element -> importPrepared(importer, database, element));
+		dxlBatch.flush();
 	}
 	
 	private void importXPages(NDXLImporter importer, NDatabase database, JavaSourceClassLoader classLoader, Set<String> compiledClassNames) throws Exception {
 		subTask(Messages.ODPCompiler_importingXPages);
 		
-		List<XPage> xpages = odp.getXPages();
-		for(XPage xpage : xpages) {
-			Document dxlDoc = importXSP(importer, database, classLoader, compiledClassNames, xpage);
-			importDxl(importer, DOMUtil.getXMLString(dxlDoc), database, MessageFormat.format(Messages.ODPCompiler_XPageLabel, xpage.getPageName()));
+		List<CompiledElement<XPage>> elements = new ArrayList<>();
+		for(XPage xpage : odp.getXPages()) {
+			List<String> classNames = getXSPClassNames(xpage);
+			// Drain them from the later queue
+			compiledClassNames.removeAll(classNames);
+			elements.add(new CompiledElement<>(xpage, classLoader, classNames));
 		}
+		
+		newPreparationPipeline().run(elements, el -> estimateDxlSize(el.getClassesSize(), el.element.getDataFile(), el.element.getDxlFile()), el -> {
+			XPage xpage = el.element;
+			Path filePath = odp.getBaseDirectory().relativize(xpage.getDataFile());
+			String key = KEY_XPAGE + toKey(filePath);
+			String hash = hashCompiledInputs(el.classes, xpage.getDataFile(), xpage.getDxlFile());
+			String name = MessageFormat.format(Messages.ODPCompiler_XPageLabel, xpage.getPageName());
+			if(isUnchanged(key, hash)) {
+				return new PreparedElement(key, hash, name, null, true, null);
+			}
+			StreamingDXLWriter dxl = importXSP(el.classes, xpage);
+			DxlImportBatch.Source source = buffer(dxl::getInputStream, estimateDxlSize(el.getClassesSize(), xpage.getDataFile(), xpage.getDxlFile()));
+			return new PreparedElement(key, hash, name, source, true, null);
+		}, element -> importPrepared(importer, database, element));
+		dxlBatch.flush();
 	}
 	
-	private Document importXSP(NDXLImporter importer, NDatabase database, JavaSourceClassLoader classLoader, Set<String> compiledClassNames, XPage xpage) throws XMLException, IOException {
+	private List<String> getXSPClassNames(XPage xpage) {
 		String className = xpage.getJavaClassName();
-		byte[] byteCode = classLoader.getClassByteCode(className);
-		String innerClassName = xpage.getJavaClassName() + '$' + xpage.getJavaClassSimpleName() + "Page"; //$NON-NLS-1$
-		byte[] innerByteCode = classLoader.getClassByteCode(innerClassName);
-		
-		Document dxlDoc = xpage.getDxl();
-		
-		DXLUtil.writeItemFileData(dxlDoc, "$ClassData0", byteCode); //$NON-NLS-1$
-		DXLUtil.writeItemNumber(dxlDoc, "$ClassSize0", byteCode.length); //$NON-NLS-1$
-		DXLUtil.writeItemFileData(dxlDoc, "$ClassData1", innerByteCode); //$NON-NLS-1$
-		DXLUtil.writeItemNumber(dxlDoc, "$ClassSize1", innerByteCode.length); //$NON-NLS-1$
-		
-		String[] classIndex = new String[] { "WEB-INF/classes/" + ODPUtil.toJavaPath(className), "WEB-INF/classes/" + ODPUtil.toJavaPath(innerClassName) }; //$NON-NLS-1$ //$NON-NLS-2$
-		DXLUtil.writeItemString(dxlDoc, "$ClassIndexItem", true, classIndex); //$NON-NLS-1$
+		String innerClassName = className + '$' + xpage.getJavaClassSimpleName() + "Page"; //$NON-NLS-1$
+		return Arrays.asList(className, innerClassName);
+	}
+	
+	/**
+	 * @param classes the bytecode of the XPage class and its inner page class, in that order
+	 */
+	private StreamingDXLWriter importXSP(Map<String, byte[]> classes, XPage xpage) throws XMLException, IOException {
+		StreamingDXLWriter dxl = xpage.getStreamingDxl();
+		DXLNote note = dxl.getNote();
 		
-		// Drain them from the later queue
-		compiledClassNames.remove(className);
-		compiledClassNames.remove(innerClassName);
+		List<String> classIndex = new ArrayList<>();
+		int i = 0;
+		for(Map.Entry<String, byte[]> entry : classes.entrySet()) {
+			dxl.addItemFileData("$ClassData" + i, entry.getValue()); //$NON-NLS-1$
+			note.writeItemNumber("$ClassSize" + i, entry.getValue().length); //$NON-NLS-1$
+			classIndex.add("WEB-INF/classes/" + ODPUtil.toJavaPath(entry.getKey())); //$NON-NLS-1$
+			i++;
+		}
+		note.writeItemString("$ClassIndexItem", true, classIndex.toArray(new CharSequence[classIndex.size()])); //$NON-NLS-1$
 		
-		return dxlDoc;
+		return dxl;
 	}
 	
 	private void importJavaElements(NDXLImporter importer, NDatabase database, JavaSourceClassLoader classLoader, Set<String> compiledClassNames) throws Exception {
 		subTask(Messages.ODPCompiler_importingJava);
 		
+		// Index the compiled classes once so that nested classes can be found by prefix
+		NavigableSet<String> classIndex = new TreeSet<>(classLoader.getCompiledClassNames());
+		
+		List<CompiledElement<JavaSource>> elements = new ArrayList<>();
 		Map<Path, List<JavaSource>> javaSourceFiles = odp.getJavaSourceFiles();
 		for(Map.Entry<Path, List<JavaSource>> entry : javaSourceFiles.entrySet()) {
 			for(JavaSource source : entry.getValue()) {
 				Path filePath = entry.getKey().relativize(source.getDataFile());
 				String className = ODPUtil.toJavaClassName(filePath);
 				compiledClassNames.remove(className);
-				byte[] byteCode = classLoader.getClassByteCode(className);
-				
-				Document dxlDoc = source.getDxl();
-				
-				DXLUtil.writeItemFileData(dxlDoc, "$ClassData0", byteCode); //$NON-NLS-1$
-				DXLUtil.writeItemNumber(dxlDoc, "$ClassSize0", byteCode.length); //$NON-NLS-1$
-				
-				List<String> classIndexItem = new ArrayList<>();
-				classIndexItem.add("WEB-INF/classes/" + ODPUtil.toJavaPath(className)); //$NON-NLS-1$
 				
 				// Also look for any inner classes that were compiled
-				List<String> innerClasses = classLoader.getCompiledClassNames().stream()
-						.filter(cname -> cname.matches("^" + Pattern.quote(className) + "[\\.\\$].+$")) //$NON-NLS-1$ //$NON-NLS-2$
-						.collect(Collectors.toList());
-				for(int i = 0; i < innerClasses.size(); i++) {
-					String innerClassName = innerClasses.get(i);
-					compiledClassNames.remove(innerClassName);
-					byte[] innerByteCode = classLoader.getClassByteCode(innerClassName);
-					DXLUtil.writeItemFileData(dxlDoc, "$ClassData" + (i+1), innerByteCode); //$NON-NLS-1$
-					DXLUtil.writeItemNumber(dxlDoc, "$ClassSize" + (i+1), innerByteCode.length); //$NON-NLS-1$
-					classIndexItem.add("WEB-INF/classes/" + ODPUtil.toJavaPath(innerClassName)); //$NON-NLS-1$
-				}
-				DXLUtil.writeItemString(dxlDoc, "$ClassIndexItem", true, classIndexItem.toArray(new CharSequence[classIndexItem.size()])); //$NON-NLS-1$
+				List<String> innerClasses = findNestedClasses(classIndex, className);
+				innerClasses.forEach(compiledClassNames::remove);
 				
-				importDxl(importer, DOMUtil.getXMLString(dxlDoc), database, MessageFormat.format(Messages.ODPCompiler_javaClassLabel, className));
+				List<String> classNames = new ArrayList<>();
+				classNames.add(className);
+				classNames.addAll(innerClasses);
+				elements.add(new CompiledElement<>(source, classLoader, classNames));
 			}
 		}
 		
+		newPreparationPipeline().run(elements, el -> estimateDxlSize(el.getClassesSize(), el.element.getDataFile(), el.element.getDxlFile()), el -> {
+			JavaSource source = el.element;
+			String className = el.classes.keySet().iterator().next();
+			String key = KEY_JAVA + className;
+			String hash = hashCompiledInputs(el.classes, source.getDataFile(), source.getDxlFile());
+			String name = MessageFormat.format(Messages.ODPCompiler_javaClassLabel, className);
+			if(isUnchanged(key, hash)) {
+				return new PreparedElement(key, hash, name, null, true, null);
+			}
+			StreamingDXLWriter dxl = source.getStreamingDxl();
+			DXLNote note = dxl.getNote();
+			
+			List<String> classIndexItem = new ArrayList<>();
+			int i = 0;
+			for(Map.Entry<String, byte[]> entry : el.classes.entrySet()) {
+				dxl.addItemFileData("$ClassData" + i, entry.getValue()); //$NON-NLS-1$
+				note.writeItemNumber("$ClassSize" + i, entry.getValue().length); //$NON-NLS-1$
+				classIndexItem.add("WEB-INF/classes/" + ODPUtil.toJavaPath(entry.getKey())); //$NON-NLS-1$
+				i++;
+			}
+			note.writeItemString("$ClassIndexItem", true, classIndexItem.toArray(new CharSequence[classIndexItem.size()])); //$NON-NLS-1$
+			
+			DxlImportBatch.Source dxlSource = buffer(dxl::getInputStream, estimateDxlSize(el.getClassesSize(), source.getDataFile(), source.getDxlFile()));
+			return new PreparedElement(key, hash, name, dxlSource, true, null);
+		}, element -> importPrepared(importer, database, element));
+		
 		// Create standalone class files for remaining classes
-		for(String leftoverClassName : compiledClassNames) {
-			String fileName = "WEB-INF/classes/" + ODPUtil.toJavaPath(leftoverClassName); //$NON-NLS-1$
-			byte[] leftoverByteCode = classLoader.getClassByteCode(leftoverClassName);
-			CompilerUtil.importFileResource(importer, leftoverByteCode, database, fileName, "~C4g", "w"); //$NON-NLS-1$ //$NON-NLS-2$
+		List<CompiledElement<String>> leftovers = compiledClassNames.stream()
+			.map(className -> new CompiledElement<>("WEB-INF/classes/" + ODPUtil.toJavaPath(className), classLoader, Collections.singletonList(className))) //$NON-NLS-1$
+			.collect(Collectors.toList());
+		newPreparationPipeline().run(leftovers, el -> estimateDxlSize(el.getClassesSize()), el -> {
+			String fileName = el.element;
+			byte[] leftoverByteCode = el.classes.values().iterator().next();
+			String key = KEY_CLASS + fileName;
+			String hash = manifest == null ? null : CompilationManifest.hash(leftoverByteCode);
+			if(isUnchanged(key, hash)) {
+				return new PreparedElement(key, hash, fileName, null, true, null);
+			}
+			byte[] dxl = CompilerUtil.createFileResourceDxl(leftoverByteCode, fileName, "~C4g", "w").getBytes(StandardCharsets.UTF_8); //$NON-NLS-1$ //$NON-NLS-2$
+			return new PreparedElement(key, hash, fileName, DxlImportBatch.of(dxl), true, null);
+		}, element -> importPrepared(importer, database, element));
+		dxlBatch.flush();
+	}
+	
+	private DxlPreparationPipeline newPreparationPipeline() {
+		int threads = getTranslationThreads();
+		// Buffered elements queued in the DXL batch share the cap with those being prepared
+		return new DxlPreparationPipeline(threads, threads * 2, dxlPreparationMemory, () -> dxlBatch == null ? 0 : dxlBatch.getPendingBytes());
+	}
+	
+	/**
+	 * Estimates the memory occupied by an element's DXL, which Base64-encodes its data.
+	 * 
+	 * @param rawSize the size of any in-memory data, such as bytecode
+	 * @param files the files the element is built from; missing files are ignored
+	 */
+	private static long estimateDxlSize(long rawSize, Path... files) {
+		long size = rawSize;
+		for(Path file : files) {
+			try {
+				if(file != null && Files.isRegularFile(file)) {
+					size += Files.size(file);
+				}
+			} catch(IOException e) {
+				// Then it will be reported during preparation
+			}
 		}
+		return size / 3 * 4 + 4096;
+	}
+	
+	/**
+	 * Renders the provided DXL into memory on the preparation thread. Elements too large to
+	 * hold within a quarter of the memory cap are left to be streamed during import.
+	 */
+	private DxlImportBatch.Source buffer(DxlImportBatch.Source dxl, long estimatedSize) throws Exception {
+		if(estimatedSize > dxlPreparationMemory / 4) {
+			return dxl;
+		}
+		ByteArrayOutputStream baos = new ByteArrayOutputStream((int)Math.min(estimatedSize, Integer.MAX_VALUE - 8));
+		try(InputStream is = dxl.open()) {
+			StreamUtil.copyStream(is, baos);
+		}
+		return DxlImportBatch.of(baos.toByteArray());
+	}
+	
+	/**
+	 * Finds the compiled classes nested within the provided class, in name order.
+	 * 
+	 * @param classIndex a sorted set of all compiled class names
+	 * @param className the name of the outer class
+	 * @return the names of classes starting with {@code className} followed by {@code $} or
+	 *         {@code .}
+	 */
+	private static List<String> findNestedClasses(NavigableSet<String> classIndex, String className) {
+		// '%' and '/' sort immediately after '$' and '.', bounding the names with each prefix
+		List<String> result = new ArrayList<>();
+		result.addAll(classIndex.subSet(className + '$', false, className + '%', false));
+		result.addAll(classIndex.subSet(className + '.', false, className + '/', false));
+		return result;
 	}
 	
 	private void importLotusScriptLibraries(NDXLImporter importer, NDatabase database) throws Exception {
 		subTask(Messages.ODPCompiler_importingLotusScript);
 		
 		List<Integer> noteIds = new ArrayList<>();
+		Map<Integer, LotusScriptLibrary> libraries = new HashMap<>();
 		for(LotusScriptLibrary lib : odp.getLotusScriptLibraries()) {
+			Path filePath = odp.getBaseDirectory().relativize(lib.getDataFile());
+			String key = KEY_LOTUSSCRIPT + toKey(filePath);
+			String hash = hashInputs(lib.getDataFile(), lib.getDxlFile());
+			if(carryOverUnchanged(key, hash)) {
+				manifest.getNoteIds(key).forEach(noteId -> libraries.put(noteId, lib));
+				continue;
+			}
+			
 			Document dxlDoc = lib.getDxl();
+			DXLNote note = new DXLNote(dxlDoc);
 			String script = lib.getSource();
 			int chunkSize = 60 * 1024;
 			for(int startIndex = 0; startIndex < script.length(); startIndex += chunkSize) {
 				int endIndex = Math.min(startIndex+chunkSize, script.length());
 				String scriptChunk = script.substring(startIndex, endIndex);
-				Element el = DXLUtil.writeItemString(dxlDoc, "$ScriptLib", false, scriptChunk); //$NON-NLS-1$
+				Element el = note.writeItemString("$ScriptLib", false, scriptChunk); //$NON-NLS-1$
 				el.setAttribute("sign", "true"); //$NON-NLS-1$ //$NON-NLS-2$
 				el.setAttribute("summary", "false"); //$NON-NLS-1$ //$NON-NLS-2$
 			}
-			noteIds.addAll(importDxl(importer, DOMUtil.getXMLString(dxlDoc), database, MessageFormat.format(Messages.ODPCompiler_lotusScriptLabel, odp.getBaseDirectory().relativize(lib.getDataFile()))));
+			byte[] dxl = DOMUtil.getXMLString(dxlDoc).getBytes(StandardCharsets.UTF_8);
+			queueElement(database, key, hash, MessageFormat.format(Messages.ODPCompiler_lotusScriptLabel, filePath), DxlImportBatch.of(dxl), imported -> {
+				noteIds.addAll(imported);
+				imported.forEach(noteId -> libraries.put(noteId, lib));
+				return imported;
+			});
+		}
+		dxlBatch.flush();
+		
+		if(previousManifest != null) {
+			// Libraries can "Use" each other, so any change means that all of them (and any
+			//   other LotusScript-containing elements) need to be recompiled
+			lotusScriptLibrariesChanged = !noteIds.isEmpty() || isAnyRemoved(KEY_LOTUSSCRIPT);
+			if(lotusScriptLibrariesChanged) {
+				noteIds = getTrackedNoteIds(KEY_LOTUSSCRIPT);
+			}
 		}
 		
-		compileLotusScript(database, noteIds, true);
+		compileLotusScript(database, sortLotusScriptLibraries(database, noteIds, libraries));
+	}
+	
+	/**
+	 * Orders the provided library notes so that each is compiled after the libraries named in
+	 * its {@code Use} statements.
+	 * 
+	 * @param database the database containing the libraries
+	 * @param noteIds the IDs of the library notes to compile
+	 * @param libraries the ODP libraries the notes were imported from, by note ID
+	 * @return the note IDs in compilation order
+	 * @throws IllegalArgumentException if the libraries have a circular dependency
+	 * @since 3.5.0
+	 */
+	private List<Integer> sortLotusScriptLibraries(NDatabase database, List<Integer> noteIds, Map<Integer, LotusScriptLibrary> libraries) {
+		Map<Integer, Collection<String>> names = new HashMap<>();
+		Map<Integer, Collection<String>> uses = new HashMap<>();
+		for(Integer noteId : noteIds) {
+			try(NNote note = database.getNoteByID(noteId)) {
+				// Libraries can be referenced by name or alias
+				String title = note.getAsString("$TITLE", '|'); //$NON-NLS-1$
+				names.put(noteId, StringUtil.isEmpty(title) ? Collections.emptyList() : Arrays.asList(title.split("\\|"))); //$NON-NLS-1$
+			}
+			LotusScriptLibrary lib = libraries.get(noteId);
+			uses.put(noteId, lib == null ? Collections.emptySet() : LotusScriptDependencies.findUses(lib.getSource()));
+		}
+		return LotusScriptDependencies.sort(noteIds, names::get, uses::get);
 	}
 	
 	/**
@@ -786,11 +1290,15 @@ public class ODPCompiler extends AbstractCompilationEnvironment {
 		Path dbScript = odp.getDbScriptFile();
 		if(dbScript != null) {
 			try {
-				List<Integer> noteIds;
-				try(InputStream is = NSFODPUtil.newInputStream(dbScript)) {
-					noteIds = importDxl(importer, is, database, MessageFormat.format(Messages.ODPCompiler_basicElementLabel, odp.getBaseDirectory().relativize(dbScript)));
+				List<Integer> noteIds = new ArrayList<>(importElement(database, KEY_DB_SCRIPT, hashInputs(dbScript), () -> {
+					try(InputStream is = NSFODPUtil.newInputStream(dbScript)) {
+						return importDxl(importer, is, database, MessageFormat.format(Messages.ODPCompiler_basicElementLabel, odp.getBaseDirectory().relativize(dbScript)));
+					}
+				}));
+				if(lotusScriptLibrariesChanged) {
+					noteIds = getTrackedNoteIds(KEY_DB_SCRIPT);
 				}
-				compileLotusScript(database, noteIds, true);
+				compileLotusScript(database, noteIds);
 			} catch(Exception ne) {
 				throw new Exception("Exception while importing element " + odp.getBaseDirectory().relativize(dbScript), ne); //$NON-NLS-1$
 			}
@@ -798,17 +1306,342 @@ public class ODPCompiler extends AbstractCompilationEnvironment {
 	}
 	
 	// *******************************************************************************
-	// * Internal utility methods
+	// * Incremental compilation methods
 	// *******************************************************************************
 	
-	private XSPCompilationResult compileXSP(XPage xpage, JavaSourceClassLoader classLoader) throws Exception {
-		try {
-			String javaSource;
-			try(InputStream xspSource = xpage.getSourceAsStream()) {
-				javaSource = dynamicXPageBean.translate(xpage.getJavaClassName(), xpage.getPageName(), xspSource, (FacesSharableRegistry)facesProject.getRegistry());
+	@FunctionalInterface
+	private interface ElementImporter {
+		Collection<Integer> importElement() throws Exception;
+	}
+	
+	@FunctionalInterface
+	private interface ImportedNotesHandler {
+		Collection<Integer> handle(List<Integer> noteIds) throws Exception;
+	}
+	
+	/**
+	 * A design element whose DXL has been prepared for import.
+	 */
+	private static class PreparedElement {
+		private final String key;
+		private final String hash;
+		private final String name;
+		/** The element's DXL, or {@code null} if the element is unchanged */
+		private final DxlImportBatch.Source dxl;
+		private final boolean batchable;
+		private final ImportedNotesHandler handler;
+		
+		PreparedElement(String key, String hash, String name, DxlImportBatch.Source dxl, boolean batchable, ImportedNotesHandler handler) {
+			this.key = key;
+			this.hash = hash;
+			this.name = name;
+			this.dxl = dxl;
+			this.batchable = batchable;
+			this.handler = handler;
+		}
+	}
+	
+	/**
+	 * A design element along with the bytecode of its compiled classes, retrieved up front so
+	 * that preparation threads do not need to access the class loader.
+	 */
+	private static class CompiledElement<T> {
+		private final T element;
+		/** Bytecode by class name, with the primary class first */
+		private final Map<String, byte[]> classes = new LinkedHashMap<>();
+		
+		CompiledElement(T element, JavaSourceClassLoader classLoader, List<String> classNames) {
+			this.element = element;
+			for(String className : classNames) {
+				classes.put(className, classLoader.getClassByteCode(className));
+			}
+		}
+		
+		long getClassesSize() {
+			return classes.values().stream().mapToLong(byteCode -> byteCode.length).sum();
+		}
+	}
+	
+	private void initManifests() throws IOException {
+		completedManifest = null;
+		if(manifestFile == null) {
+			return;
+		}
+		
+		String settingsHash = CompilationManifest.hash(
+			String.join(" ", compilerOptions), //$NON-NLS-1$
+			compilerLevel,
+			odsRelease,
+			String.valueOf(setProductionXspOptions)
+		);
+		manifest = new CompilationManifest(settingsHash);
+		
+		CompilationManifest previous = CompilationManifest.load(manifestFile);
+		if(previous == null || previousDatabase == null || !settingsHash.equals(previous.getSettingsHash())) {
+			return;
+		}
+		// Only trust the manifest if it describes the database that is actually there
+		String identity = CompilationManifest.identify(previousDatabase);
+		if(identity != null && identity.equals(previous.getDatabaseIdentity())) {
+			previousManifest = previous;
+		}
+	}
+	
+	/**
+	 * Computes a hash of all inputs that affect Java and XSP compilation, allowing the entire
+	 * class-compilation phase to be skipped when nothing has changed. Bundles from update sites
+	 * are identified by their URIs and contents, so that a rebuilt dependency with an unchanged
+	 * file name still triggers recompilation.
+	 */
+	private String computeCodeHash() throws IOException {
+		List<Path> inputs = new ArrayList<>();
+		odp.getJavaSourceFiles().values().stream()
+			.flatMap(List::stream)
+			.forEach(source -> {
+				inputs.add(source.getDataFile());
+				inputs.add(source.getDxlFile());
+			});
+		for(CustomControl cc : odp.getCustomControls()) {
+			inputs.add(cc.getDataFile());
+			inputs.add(cc.getDxlFile());
+			inputs.add(cc.getXspConfigFile());
+		}
+		for(XPage xpage : odp.getXPages()) {
+			inputs.add(xpage.getDataFile());
+			inputs.add(xpage.getDxlFile());
+		}
+		inputs.addAll(odp.getJars());
+		inputs.add(odp.getPluginFile());
+		inputs.removeIf(Objects::isNull);
+		inputs.sort(Comparator.comparing(Path::toString));
+		inputs.addAll(classPathEntries);
+		
+		List<URI> bundleUris = updateSites.stream()
+			.map(UpdateSite::getBundleURIs)
+			.flatMap(Collection::stream)
+			.sorted(Comparator.comparing(String::valueOf))
+			.collect(Collectors.toList());
+		StringBuilder bundles = new StringBuilder();
+		for(URI uri : bundleUris) {
+			bundles.append(uri).append('=').append(hashBundle(uri)).append('\n');
+		}
+		
+		return CompilationManifest.hash(CompilationManifest.hash(inputs.toArray(new Path[inputs.size()])), bundles.toString());
+	}
+	
+	/**
+	 * Hashes the contents of a bundle from an update site, which may be either a JAR file or
+	 * an unpacked directory. Bundles that are not on a file system are identified only by their
+	 * URI.
+	 */
+	private static String hashBundle(URI uri) throws IOException {
+		if(!"file".equals(uri.getScheme())) { //$NON-NLS-1$
+			return ""; //$NON-NLS-1$
+		}
+		Path path = Paths.get(uri);
+		if(Files.isDirectory(path)) {
+			return NSFODPUtil.sha256Tree(path);
+		} else if(Files.isRegularFile(path)) {
+			return NSFODPUtil.sha256(path);
+		} else {
+			return ""; //$NON-NLS-1$
+		}
+	}
+	
+	/**
+	 * @return a hash of the provided files, or {@code null} if incremental compilation is
+	 *         not active
+	 */
+	private String hashInputs(Path... files) throws IOException {
+		if(manifest == null) {
+			return null;
+		}
+		return CompilationManifest.hash(files);
+	}
+	
+	/**
+	 * @return a hash of the provided source files and the emitted bytecode for the named
+	 *         classes, or {@code null} if incremental compilation is not active
+	 */
+	private String hashCompiledInputs(Map<String, byte[]> classes, Path... files) throws IOException {
+		if(manifest == null) {
+			return null;
+		}
+		List<String> parts = new ArrayList<>();
+		parts.add(CompilationManifest.hash(files));
+		for(Map.Entry<String, byte[]> entry : classes.entrySet()) {
+			parts.add(entry.getKey());
+			parts.add(CompilationManifest.hash(entry.getValue()));
+		}
+		return CompilationManifest.hash(parts.toArray(new String[parts.size()]));
+	}
+	
+	/**
+	 * Imports an element if its hash differs from the one recorded by the previous compilation,
+	 * removing any notes the previous import produced that were not replaced. Any elements
+	 * queued in the current DXL batch are imported first.
+	 * 
+	 * @return the IDs of the imported notes, or an empty collection if the element was unchanged
+	 */
+	private Collection<Integer> importElement(NDatabase database, String key, String hash, ElementImporter importer) throws Exception {
+		if(carryOverUnchanged(key, hash)) {
+			return Collections.emptyList();
+		}
+		if(dxlBatch != null) {
+			dxlBatch.flush();
+		}
+		
+		Collection<Integer> noteIds = importer.importElement();
+		recordImport(database, key, hash, noteIds);
+		return noteIds;
+	}
+	
+	/**
+	 * Queues an element's DXL in the current batch. Once the batch is imported, the manifest
+	 * is updated as in {@link #importElement(NDatabase, String, String, ElementImporter)}.
+	 * 
+	 * <p>Callers should first check {@link #carryOverUnchanged(String, String)}.</p>
+	 * 
+	 * @param handler a handler for the imported note IDs, which returns the IDs to record for
+	 *        the element; may be {@code null}
+	 */
+	private void queueElement(NDatabase database, String key, String hash, String name, DxlImportBatch.Source dxl, ImportedNotesHandler handler) throws Exception {
+		if(debugDxl) {
+			writeDebugDxl(name, dxl);
+		}
+		dxlBatch.add(name, dxl, noteIds -> {
+			Collection<Integer> result = handler == null ? noteIds : handler.handle(noteIds);
+			recordImport(database, key, hash, result);
+		});
+	}
+	
+	/**
+	 * Records an element as unchanged if its hash matches the one recorded by the previous
+	 * compilation.
+	 * 
+	 * @return {@code true} if the element is unchanged and need not be imported
+	 */
+	private boolean carryOverUnchanged(String key, String hash) {
+		if(!isUnchanged(key, hash)) {
+			return false;
+		}
+		manifest.put(key, hash, previousManifest.getNoteIds(key));
+		return true;
+	}
+	
+	/**
+	 * Determines whether an element's hash matches the one recorded by the previous compilation.
+	 * This only reads the previous manifest, and so may be called from preparation threads.
+	 */
+	private boolean isUnchanged(String key, String hash) {
+		return manifest != null && previousManifest != null && hash.equals(previousManifest.getHash(key));
+	}
+	
+	/**
+	 * Imports an element prepared by a {@link DxlPreparationPipeline}, either by queuing it in
+	 * the current DXL batch or, for elements that cannot be batched, directly.
+	 */
+	private void importPrepared(NDXLImporter importer, NDatabase database, PreparedElement element) throws Exception {
+		if(carryOverUnchanged(element.key, element.hash)) {
+			return;
+		}
+		if(element.batchable) {
+			queueElement(database, element.key, element.hash, element.name, element.dxl, element.handler);
+		} else {
+			importElement(database, element.key, element.hash, () -> {
+				List<Integer> imported;
+				try(InputStream is = element.dxl.open()) {
+					imported = importDxl(importer, is, database, element.name);
+				}
+				return element.handler == null ? imported : element.handler.handle(imported);
+			});
+		}
+	}
+	
+	private void recordImport(NDatabase database, String key, String hash, Collection<Integer> noteIds) {
+		if(manifest == null) {
+			return;
+		}
+		if(previousManifest != null) {
+			Set<Integer> stale = new HashSet<>(previousManifest.getNoteIds(key));
+			stale.removeAll(noteIds);
+			deleteNotes(database, stale);
+		}
+		manifest.put(key, hash, noteIds);
+	}
+	
+	/**
+	 * Records all Java and XSP elements from the previous compilation as-is, for when the
+	 * class-compilation phase was skipped.
+	 */
+	private void carryOverCodeElements() {
+		if(previousManifest == null) {
+			return;
+		}
+		previousManifest.getKeys().stream()
+			.filter(key -> CODE_KEYS.stream().anyMatch(key::startsWith))
+			.forEach(key -> manifest.put(key, previousManifest.getHash(key), previousManifest.getNoteIds(key)));
+	}
+	
+	private void deleteRemovedElements(NDatabase database) {
+		if(previousManifest == null) {
+			return;
+		}
+		List<String> removed = previousManifest.getKeys().stream()
+			.filter(key -> manifest.getHash(key) == null)
+			.collect(Collectors.toList());
+		if(!removed.isEmpty()) {
+			subTask(MessageFormat.format(Messages.ODPCompiler_deletingRemovedElements, removed.size()));
+			for(String key : removed) {
+				deleteNotes(database, previousManifest.getNoteIds(key));
+			}
+		}
+	}
+	
+	private boolean isAnyRemoved(String keyPrefix) {
+		return previousManifest.getKeys().stream()
+			.filter(key -> key.startsWith(keyPrefix))
+			.anyMatch(key -> manifest.getHash(key) == null);
+	}
+	
+	/**
+	 * @return the IDs of all notes currently tracked for elements with the given key prefix
+	 */
+	private List<Integer> getTrackedNoteIds(String keyPrefix) {
+		return manifest.getKeys().stream()
+			.filter(key -> key.startsWith(keyPrefix))
+			.map(manifest::getNoteIds)
+			.flatMap(Set::stream)
+			.distinct()
+			.collect(Collectors.toList());
+	}
+	
+	private void deleteNotes(NDatabase database, Collection<Integer> noteIds) {
+		for(Integer noteId : noteIds) {
+			unsignedNoteIds.remove(noteId);
+			try {
+				database.deleteNote(noteId);
+			} catch(NDominoException e) {
+				// Most likely already removed when the DXL importer replaced the note
 			}
-			Class<?> compiled = classLoader.addClass(xpage.getJavaClassName(), javaSource);
-			return new XSPCompilationResult(javaSource, compiled);
+		}
+	}
+	
+	private static long toMillis(long startNanos) {
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+	}
+	
+	private static String toKey(Path relativePath) {
+		return relativePath.toString().replace('\\', '/');
+	}
+	
+	// *******************************************************************************
+	// * Internal utility methods
+	// *******************************************************************************
+	
+	private String translateXSP(XPage xpage) {
+		try(InputStream xspSource = xpage.getSourceAsStream()) {
+			return dynamicXPageBean.translate(xpage.getJavaClassName(), xpage.getPageName(), xspSource, (FacesSharableRegistry)facesProject.getRegistry());
 		} catch(Throwable e) {
 			throw new RuntimeException(MessageFormat.format(Messages.ODPCompiler_errorConvertingXSP, odp.getBaseDirectory().relativize(xpage.getDataFile())), e);
 		}
@@ -822,11 +1655,8 @@ public class ODPCompiler extends AbstractCompilationEnvironment {
 	 * @return a {@link List} of imported note IDs
 	 */
 	private List<Integer> importDxl(NDXLImporter importer, String dxl, NDatabase database, String name) throws Exception {
-		if(DEBUG_DXL) {
-			Path dxlFile = Files.createTempFile(NSFODPUtil.getTempDirectory(), name.replace('/', '-').replace('\\', '-'), ".xml"); //$NON-NLS-1$
-			try(OutputStream os = Files.newOutputStream(dxlFile)) {
-				os.write(dxl.getBytes(StandardCharsets.UTF_8));
-			}
+		if(debugDxl) {
+			writeDebugDxl(name, () -> new ByteArrayInputStream(dxl.getBytes(StandardCharsets.UTF_8)));
 		}
 		try(InputStream baos = new ByteArrayInputStream(dxl.getBytes(StandardCharsets.UTF_8))) {
 			return importDxl(importer, baos, database, name);
@@ -834,15 +1664,32 @@ public class ODPCompiler extends AbstractCompilationEnvironment {
 	}
 	/**
 	 * @param importer the importer to use during the process
-	 * @param dxl an XML {@link InputStream} to import
+	 * @param dxl a {@link StreamingDXLWriter} for the note to import
 	 * @param database the database to import to
 	 * @param name a human-readable name of the element, for logging
 	 * @return a {@link List} of imported note IDs
+	 * @since 3.5.0
+	 */
+	private List<Integer> importDxl(NDXLImporter importer, StreamingDXLWriter dxl, NDatabase database, String name) throws Exception {
+		if(debugDxl) {
+			writeDebugDxl(name, dxl::getInputStream);
+		}
+		try(InputStream is = dxl.getInputStream()) {
+			return importDxl(importer, is, database, name);
+		}
+	}
+	/**
+	 * @param importer the importer to use during the process
+	 * @param dxl an XML {@link InputStream} to import
+	 * @param database the database to import to
+	 * @param name a human-readable name of the element, for logging
+	 * @return a {@link List} of imported note IDs, which will be signed by
+	 *         {@link #signImportedNotes(NDatabase)}
 	 * @since 3.4.0
 	 */
 	private List<Integer> importDxl(NDXLImporter importer, InputStream dxl, NDatabase database, String name) throws Exception {
 		try {
-			Collection<Integer> imported = new HashSet<>();
+			Collection<Integer> imported = new LinkedHashSet<>();
 			imported.addAll(importer.importDxl(database, dxl));
 			String logXml = importer.getResultLogXML();
 			if(StringUtil.isNotEmpty(logXml)) {
@@ -860,17 +1707,9 @@ public class ODPCompiler extends AbstractCompilationEnvironment {
 				}
 			}
 
-			List<Integer> importedIds = new ArrayList<>();
-			for(Integer noteId : imported) {
-				importedIds.add(noteId);
-				
-				try(NNote note = database.getNoteByID(noteId)) {
-					note.sign();
-					note.save();
-				}
-			}
-			
-			return importedIds;
+			// Signing is deferred until all elements have been imported
+			unsignedNoteIds.addAll(imported);
+			return new ArrayList<>(imported);
 		} catch(Exception ne) {
 			if(ne.getMessage().contains("DXL importer operation failed")) { //$NON-NLS-1$
 				throw new RuntimeException(MessageFormat.format(Messages.ODPCompiler_dxlImportFailed, name, importer.getResultLogXML()), ne);
@@ -879,7 +1718,47 @@ public class ODPCompiler extends AbstractCompilationEnvironment {
 		}
 	}
 	
-	private void compileLotusScript(NDatabase database, List<Integer> noteIds, boolean retry) {
+	/**
+	 * Writes the provided DXL to a temporary file for debugging.
+	 * 
+	 * @param name a human-readable name of the element, used in the file name
+	 * @param dxl the DXL to write
+	 * @since 3.5.0
+	 */
+	private void writeDebugDxl(String name, DxlImportBatch.Source dxl) throws Exception {
+		Path dxlFile = Files.createTempFile(NSFODPUtil.getTempDirectory(), name.replace('/', '-').replace('\\', '-'), ".xml"); //$NON-NLS-1$
+		try(InputStream is = dxl.open()) {
+			Files.copy(is, dxlFile, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+	
+	/**
+	 * Signs and saves all notes imported during compilation that have not since been signed
+	 * by LotusScript compilation or removed.
+	 * 
+	 * @param database the database containing the notes
+	 * @since 3.5.0
+	 */
+	private void signImportedNotes(NDatabase database) {
+		for(Integer noteId : unsignedNoteIds) {
+			try(NNote note = database.getNoteByID(noteId)) {
+				note.sign();
+				note.save();
+			}
+		}
+		unsignedNoteIds.clear();
+	}
+	
+	/**
+	 * Compiles the LotusScript in the provided notes in a single pass, in the order given.
+	 * 
+	 * <p>Notes that use LotusScript libraries must come after those libraries, such as by
+	 * ordering them with {@link #sortLotusScriptLibraries}.</p>
+	 * 
+	 * @param database the database containing the notes
+	 * @param noteIds the IDs of the notes to compile
+	 */
+	private void compileLotusScript(NDatabase database, List<Integer> noteIds) {
 		if(!noteIds.isEmpty()) {
 			try {
 				Class.forName("lotus.domino.websvc.client.Stub"); //$NON-NLS-1$
@@ -890,44 +1769,30 @@ public class ODPCompiler extends AbstractCompilationEnvironment {
 			}
 			
 			subTask(Messages.ODPCompiler_compilingLotusScript);
-			// In lieu of a dependency graph, just keep bashing at the list until it's done
-			Queue<Integer> remaining = new ArrayDeque<>(noteIds);
-			Map<Integer, String> titles = new HashMap<>();
-			for(int i = 0; i < noteIds.size(); i++) {
-				Queue<Integer> nextPass = new ArrayDeque<>();
-				
-				Integer noteId;
-				while((noteId = remaining.poll()) != null) {
-					String title = null;
-					try(NNote note = database.getNoteByID(noteId)) {
-						title = note.get("$TITLE", String.class); //$NON-NLS-1$
-						titles.put(noteId, title);
-						note.compileLotusScript();
-						note.sign();
-						note.save();
-					} catch(NLotusScriptCompilationException err) {
-						nextPass.add(noteId);
-						titles.put(noteId, title + " - " + err); //$NON-NLS-1$
-					} catch(NDominoException err) {
-						if(err.getStatus() == 12051) { // Same as above, but not encapsulated
-							titles.put(noteId, title + " - " + err); //$NON-NLS-1$
-							nextPass.add(noteId);
-						} else if (err.getStatus() == 546) {
-							//probably not LS element, skip							
-						} else {
-							throw err;
-						}
+			Map<Integer, String> failed = new LinkedHashMap<>();
+			for(Integer noteId : noteIds) {
+				String title = null;
+				try(NNote note = database.getNoteByID(noteId)) {
+					title = note.get("$TITLE", String.class); //$NON-NLS-1$
+					note.compileLotusScript();
+					note.sign();
+					note.save();
+					unsignedNoteIds.remove(noteId);
+				} catch(NLotusScriptCompilationException err) {
+					failed.put(noteId, title + " - " + err); //$NON-NLS-1$
+				} catch(NDominoException err) {
+					if(err.getStatus() == 12051) { // Same as above, but not encapsulated
+						failed.put(noteId, title + " - " + err); //$NON-NLS-1$
+					} else if (err.getStatus() == 546) {
+						//probably not LS element, skip							
+					} else {
+						throw err;
 					}
 				}
-				
-				remaining = nextPass;
-				if(!retry || nextPass.isEmpty()) {
-					break;
-				}
 			}
-			if(!remaining.isEmpty()) {
-				String notes = remaining.stream()
-					.map(noteId -> "Note ID " + noteId + ": " + titles.get(noteId)) //$NON-NLS-1$ //$NON-NLS-2$
+			if(!failed.isEmpty()) {
+				String notes = failed.entrySet().stream()
+					.map(entry -> "Note ID " + entry.getKey() + ": " + entry.getValue()) //$NON-NLS-1$ //$NON-NLS-2$
 					.collect(Collectors.joining("\n")); //$NON-NLS-1$
 				throw new RuntimeException(MessageFormat.format(Messages.ODPCompiler_unableToCompileLotusScript, notes));
 			}
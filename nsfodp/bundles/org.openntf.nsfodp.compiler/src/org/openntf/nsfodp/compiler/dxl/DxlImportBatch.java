@@ -0,0 +1,427 @@
+/**
+ * Copyright © 2018-2021 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsfodp.compiler.dxl;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import org.openntf.nsfodp.commons.odp.notesapi.NDXLImporter;
+import org.openntf.nsfodp.commons.odp.notesapi.NDatabase;
+
+/**
+ * Queues single-note DXL documents and imports them in groups, wrapped in a single
+ * {@code <database>} document, to reduce the fixed cost of each importer call.
+ *
+ * <p>The importer reports note IDs as a set, not in import order, so a group's note IDs are
+ * mapped back to its documents only when each document produced a newly-created note: as note
+ * IDs are allocated in ascending order, these sort in the same order as the documents. If a
+ * group fails to import, replaces existing notes, or does not produce exactly one note per
+ * document, its documents are imported again individually, which also identifies any failing
+ * document, and notes from the group import that were not produced again are removed. As a
+ * failed group import does not report the notes it created before failing, these are found
+ * by looking for design notes above the highest note ID present before the import.</p>
+ *
+ * <p>Documents held in memory, created with {@link #of(byte[])}, count against a memory cap,
+ * and the group is imported early once the queued documents exceed it. Their memory is
+ * released from the count when the group is imported.</p>
+ *
+ * <p>Only documents whose root element is a single note, such as {@code <note>} or
+ * {@code <form>}, and which are encoded in UTF-8 may be queued.</p>
+ *
+ * @author Jesse Gallagher
+ * @since 3.5.0
+ */
+public class DxlImportBatch {
+	/**
+	 * Provides a fresh stream of a queued document each time it is imported.
+	 */
+	@FunctionalInterface
+	public interface Source {
+		InputStream open() throws Exception;
+	}
+
+	/**
+	 * Imports a DXL document, verifying the result and returning the imported note IDs in the
+	 * order reported by the importer.
+	 */
+	@FunctionalInterface
+	public interface Importer {
+		List<Integer> importDxl(InputStream dxl, String name) throws Exception;
+	}
+
+	/**
+	 * Receives the IDs of the notes imported for a queued document.
+	 */
+	@FunctionalInterface
+	public interface Callback {
+		void imported(List<Integer> noteIds) throws Exception;
+	}
+
+	private static final byte[] DATABASE_START = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<database xmlns=\"http://www.lotus.com/dxl\">\n".getBytes(StandardCharsets.UTF_8); //$NON-NLS-1$
+	private static final byte[] DATABASE_END = "\n</database>".getBytes(StandardCharsets.UTF_8); //$NON-NLS-1$
+	private static final Pattern ENCODING = Pattern.compile("encoding\\s*=\\s*[\"']([^\"']+)[\"']"); //$NON-NLS-1$
+	/** The amount of a file to read when looking for its root element */
+	private static final int PROLOG_LIMIT = 8 * 1024;
+
+	private static class Entry {
+		private final String name;
+		private final Source source;
+		private final Callback callback;
+
+		Entry(String name, Source source, Callback callback) {
+			this.name = name;
+			this.source = source;
+			this.callback = callback;
+		}
+	}
+
+	private static class BufferSource implements Source {
+		private final byte[] data;
+
+		BufferSource(byte[] data) {
+			this.data = data;
+		}
+
+		@Override
+		public InputStream open() {
+			return new ByteArrayInputStream(data);
+		}
+	}
+
+	private final NDatabase database;
+	private final NDXLImporter dxlImporter;
+	private final Importer importer;
+	private final Consumer<Collection<Integer>> deleter;
+	private final int batchSize;
+	private final long maxBytes;
+	private final List<Entry> pending = new ArrayList<>();
+	private long pendingBytes;
+
+	/**
+	 * @param database the database being imported into
+	 * @param dxlImporter the underlying importer, used to adjust options for group imports
+	 * @param importer a function to import a DXL document and verify the result
+	 * @param deleter a function to delete notes left over from a failed group import
+	 * @param batchSize the maximum number of documents to import together
+	 * @param maxBytes the size of in-memory documents beyond which the group is imported early
+	 */
+	public DxlImportBatch(NDatabase database, NDXLImporter dxlImporter, Importer importer, Consumer<Collection<Integer>> deleter, int batchSize, long maxBytes) {
+		this.database = database;
+		this.dxlImporter = dxlImporter;
+		this.importer = importer;
+		this.deleter = deleter;
+		this.batchSize = Math.max(1, batchSize);
+		this.maxBytes = Math.max(0, maxBytes);
+	}
+
+	/**
+	 * Creates a source for a document held in memory, whose size counts against the memory cap
+	 * while it is queued.
+	 *
+	 * @param data the document's DXL
+	 * @return a source reading {@code data}
+	 */
+	public static Source of(byte[] data) {
+		return new BufferSource(data);
+	}
+
+	/**
+	 * Queues a document for import, importing the current group if it is full.
+	 *
+	 * @param name a human-readable name of the element, for logging
+	 * @param source the source of the element's DXL
+	 * @param callback a callback to receive the imported note IDs
+	 * @throws Exception if there is a problem importing the current group
+	 */
+	public void add(String name, Source source, Callback callback) throws Exception {
+		pending.add(new Entry(name, source, callback));
+		if(source instanceof BufferSource) {
+			pendingBytes += ((BufferSource)source).data.length;
+		}
+		if(pending.size() >= batchSize || pendingBytes > maxBytes) {
+			flush();
+		}
+	}
+
+	/**
+	 * @return the size of the in-memory documents currently queued
+	 */
+	public long getPendingBytes() {
+		return pendingBytes;
+	}
+
+	/**
+	 * Imports all queued documents and invokes their callbacks in the order they were added.
+	 *
+	 * @throws Exception if there is a problem importing a document or in a callback
+	 */
+	public void flush() throws Exception {
+		if(pending.isEmpty()) {
+			return;
+		}
+		List<Entry> entries = new ArrayList<>(pending);
+		pending.clear();
+		pendingBytes = 0;
+
+		if(entries.size() == 1) {
+			Entry entry = entries.get(0);
+			try(InputStream is = entry.source.open()) {
+				entry.callback.imported(importer.importDxl(is, entry.name));
+			}
+			return;
+		}
+
+		// Any note at or below the current highest ID was replaced rather than created
+		AtomicInteger highestNoteId = new AtomicInteger();
+		database.eachDesignNoteId(noteId -> highestNoteId.accumulateAndGet(noteId, Math::max));
+		
+		Set<Integer> groupNoteIds = new LinkedHashSet<>();
+		boolean groupFailed = false;
+		dxlImporter.setReplaceDBProperties(false);
+		try(InputStream is = new SequenceInputStream(new GroupEnumeration(entries))) {
+			String name = entries.stream().map(entry -> entry.name).collect(Collectors.joining(", ")); //$NON-NLS-1$
+			groupNoteIds.addAll(importer.importDxl(is, name));
+		} catch(Exception e) {
+			// Fall back to individual imports below to identify the problem
+			groupFailed = true;
+		} finally {
+			dxlImporter.setReplaceDBProperties(true);
+		}
+		if(groupFailed) {
+			// Any notes the group created before failing are candidates for removal
+			database.eachDesignNoteId(noteId -> {
+				if(noteId > highestNoteId.get()) {
+					groupNoteIds.add(noteId);
+				}
+			});
+		}
+
+		if(!groupFailed && groupNoteIds.size() == entries.size() && groupNoteIds.stream().allMatch(noteId -> noteId > highestNoteId.get())) {
+			List<Integer> sorted = new ArrayList<>(groupNoteIds);
+			Collections.sort(sorted);
+			for(int i = 0; i < entries.size(); i++) {
+				entries.get(i).callback.imported(Collections.singletonList(sorted.get(i)));
+			}
+		} else {
+			// Import individually, which replaces any design notes already created by the group
+			Set<Integer> claimed = new LinkedHashSet<>();
+			for(Entry entry : entries) {
+				List<Integer> entryNoteIds;
+				try(InputStream is = entry.source.open()) {
+					entryNoteIds = importer.importDxl(is, entry.name);
+				}
+				claimed.addAll(entryNoteIds);
+				entry.callback.imported(entryNoteIds);
+			}
+			Set<Integer> orphaned = new LinkedHashSet<>(groupNoteIds);
+			orphaned.removeAll(claimed);
+			if(!orphaned.isEmpty()) {
+				deleter.accept(orphaned);
+			}
+		}
+	}
+
+	/**
+	 * Determines whether the provided DXL file may be queued in a batch.
+	 *
+	 * @param dxlFile the DXL file to check
+	 * @return {@code true} if the file is UTF-8 and contains a single note
+	 * @throws IOException if there is a problem reading the file
+	 */
+	public static boolean isBatchable(Path dxlFile) throws IOException {
+		byte[] head = new byte[PROLOG_LIMIT];
+		int read = 0;
+		try(InputStream is = Files.newInputStream(dxlFile)) {
+			int r;
+			while(read < head.length && (r = is.read(head, read, head.length-read)) > -1) {
+				read += r;
+			}
+		}
+
+		PushbackInputStream is = new PushbackInputStream(new ByteArrayInputStream(head, 0, read), 2);
+		String declaration = skipProlog(is);
+		if(declaration != null) {
+			Matcher matcher = ENCODING.matcher(declaration);
+			if(matcher.find() && !"utf-8".equals(matcher.group(1).toLowerCase(Locale.ENGLISH))) { //$NON-NLS-1$
+				return false;
+			}
+		}
+
+		StringBuilder root = new StringBuilder();
+		int c = is.read();
+		if(c != '<') {
+			return false;
+		}
+		while((c = is.read()) > -1 && !Character.isWhitespace(c) && c != '>' && c != '/') {
+			root.append((char)c);
+		}
+		return c > -1 && root.length() > 0 && !"database".equals(root.toString()); //$NON-NLS-1$
+	}
+
+	// *******************************************************************************
+	// * Internal utility methods
+	// *******************************************************************************
+
+	/**
+	 * Advances the provided stream past a byte order mark, XML declaration, DOCTYPE, comments,
+	 * and whitespace preceding the root element.
+	 *
+	 * @return the XML declaration, or {@code null} if the document does not have one
+	 */
+	private static String skipProlog(PushbackInputStream is) throws IOException {
+		String declaration = null;
+
+		// UTF-8 byte order mark
+		int c = is.read();
+		if(c == 0xEF) {
+			is.read();
+			is.read();
+		} else if(c > -1) {
+			is.unread(c);
+		}
+
+		while(true) {
+			c = is.read();
+			if(c == -1) {
+				return declaration;
+			} else if(Character.isWhitespace(c)) {
+				continue;
+			} else if(c != '<') {
+				is.unread(c);
+				return declaration;
+			}
+
+			int next = is.read();
+			if(next == '?') {
+				String pi = readUntil(is, "?>"); //$NON-NLS-1$
+				if(pi.startsWith("xml")) { //$NON-NLS-1$
+					declaration = pi;
+				}
+			} else if(next == '!') {
+				int dash = is.read();
+				if(dash == '-') {
+					readUntil(is, "-->"); //$NON-NLS-1$
+				} else {
+					is.unread(dash);
+					skipDeclaration(is);
+				}
+			} else {
+				is.unread(next);
+				is.unread(c);
+				return declaration;
+			}
+		}
+	}
+
+	private static String readUntil(InputStream is, String terminator) throws IOException {
+		StringBuilder result = new StringBuilder();
+		int c;
+		while((c = is.read()) > -1) {
+			result.append((char)c);
+			if(result.length() >= terminator.length() && result.lastIndexOf(terminator) == result.length()-terminator.length()) {
+				result.setLength(result.length()-terminator.length());
+				break;
+			}
+		}
+		return result.toString();
+	}
+
+	/** Skips a markup declaration such as DOCTYPE, including any internal subset */
+	private static void skipDeclaration(InputStream is) throws IOException {
+		int depth = 0;
+		int quote = -1;
+		int c;
+		while((c = is.read()) > -1) {
+			if(quote != -1) {
+				if(c == quote) {
+					quote = -1;
+				}
+			} else if(c == '"' || c == '\'') {
+				quote = c;
+			} else if(c == '[') {
+				depth++;
+			} else if(c == ']') {
+				depth--;
+			} else if(c == '>' && depth == 0) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Produces the combined document for a group: a {@code <database>} start tag, the body of
+	 * each queued document with its prolog removed, and the end tag.
+	 */
+	private static class GroupEnumeration implements Enumeration<InputStream> {
+		private final Iterator<Entry> entries;
+		private int state;
+
+		public GroupEnumeration(List<Entry> entries) {
+			this.entries = entries.iterator();
+		}
+
+		@Override
+		public boolean hasMoreElements() {
+			return state < 2;
+		}
+
+		@Override
+		public InputStream nextElement() {
+			switch(state) {
+			case 0:
+				state = 1;
+				return new ByteArrayInputStream(DATABASE_START);
+			case 1:
+				if(entries.hasNext()) {
+					try {
+						PushbackInputStream is = new PushbackInputStream(entries.next().source.open(), 2);
+						skipProlog(is);
+						return is;
+					} catch(RuntimeException e) {
+						throw e;
+					} catch(Exception e) {
+						throw new RuntimeException(e);
+					}
+				}
+				state = 2;
+				return new ByteArrayInputStream(DATABASE_END);
+			default:
+				throw new NoSuchElementException();
+			}
+		}
+	}
+}
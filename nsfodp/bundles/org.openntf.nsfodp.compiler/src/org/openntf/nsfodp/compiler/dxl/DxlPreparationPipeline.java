@@ -0,0 +1,173 @@
+/**
+ * Copyright © 2018-2021 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsfodp.compiler.dxl;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Prepares design elements for import on a pool of worker threads while the calling thread
+ * imports the results, which lets pure-Java work such as parsing, Base64 encoding, and DOM
+ * serialization overlap with the Notes API calls that must stay on the calling thread.
+ *
+ * <p>Results are handed to the consumer in the order of the inputs, regardless of the order
+ * in which preparation finishes. Preparation runs at most a fixed number of elements ahead of
+ * the consumer, and only while the estimated size of the prepared-but-unconsumed elements is
+ * within the memory cap. The element at the head of the queue is always admitted, so a single
+ * element larger than the cap is still processed, just without overlap. Memory held by the
+ * consumer after it accepts an element, such as a queued import batch, may be reported so that
+ * it counts against the same cap.</p>
+ *
+ * @author Jesse Gallagher
+ * @since 3.5.0
+ */
+public class DxlPreparationPipeline {
+	/**
+	 * Prepares an element for import. Implementations must not call the Notes API.
+	 */
+	@FunctionalInterface
+	public interface Preparer<T, R> {
+		R prepare(T input) throws Exception;
+	}
+
+	/**
+	 * Consumes a prepared element on the calling thread.
+	 */
+	@FunctionalInterface
+	public interface Consumer<R> {
+		void accept(R prepared) throws Exception;
+	}
+
+	private static class Pending<R> {
+		private final Future<R> future;
+		private final long size;
+
+		Pending(Future<R> future, long size) {
+			this.future = future;
+			this.size = size;
+		}
+	}
+
+	private final int threads;
+	private final int maxPending;
+	private final long maxBytes;
+	private final LongSupplier heldBytes;
+
+	/**
+	 * @param threads the number of worker threads to prepare elements with
+	 * @param maxPending the maximum number of elements to prepare ahead of the consumer
+	 * @param maxBytes the maximum estimated size of elements prepared ahead of the consumer
+	 */
+	public DxlPreparationPipeline(int threads, int maxPending, long maxBytes) {
+		this(threads, maxPending, maxBytes, () -> 0);
+	}
+
+	/**
+	 * @param threads the number of worker threads to prepare elements with
+	 * @param maxPending the maximum number of elements to prepare ahead of the consumer
+	 * @param maxBytes the maximum estimated size of elements prepared ahead of the consumer,
+	 *        including those still held by the consumer
+	 * @param heldBytes a function reporting the size of accepted elements still held by the
+	 *        consumer, called on the calling thread
+	 */
+	public DxlPreparationPipeline(int threads, int maxPending, long maxBytes, LongSupplier heldBytes) {
+		this.threads = Math.max(1, threads);
+		this.maxPending = Math.max(1, maxPending);
+		this.maxBytes = Math.max(0, maxBytes);
+		this.heldBytes = heldBytes;
+	}
+
+	/**
+	 * Prepares each of the provided inputs and passes the results to {@code consumer} on the
+	 * calling thread, in the order of {@code inputs}.
+	 *
+	 * @param <T> the input type
+	 * @param <R> the prepared type
+	 * @param inputs the inputs to prepare
+	 * @param sizeEstimate a function estimating the memory a prepared input will occupy
+	 * @param preparer the function to prepare each input
+	 * @param consumer the consumer of prepared elements
+	 * @throws Exception if there is a problem preparing or consuming an element, in which case
+	 *         preparation of the remaining elements is cancelled
+	 */
+	public <T, R> void run(List<T> inputs, ToLongFunction<? super T> sizeEstimate, Preparer<? super T, ? extends R> preparer, Consumer<? super R> consumer) throws Exception {
+		if(inputs.isEmpty()) {
+			return;
+		}
+
+		ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+		AtomicInteger threadCount = new AtomicInteger();
+		ExecutorService exec = Executors.newFixedThreadPool(Math.min(inputs.size(), threads), r -> {
+			Thread t = new Thread(r, getClass().getSimpleName() + "-" + threadCount.incrementAndGet()); //$NON-NLS-1$
+			t.setDaemon(true);
+			t.setContextClassLoader(contextClassLoader);
+			return t;
+		});
+		try {
+			Iterator<T> iter = inputs.iterator();
+			T next = iter.next();
+			Deque<Pending<R>> queue = new ArrayDeque<>();
+			long pendingBytes = 0;
+			while(next != null || !queue.isEmpty()) {
+				// Fill the queue up to its limits before blocking on the head
+				while(next != null) {
+					long size = Math.max(0, sizeEstimate.applyAsLong(next));
+					if(!queue.isEmpty() && (queue.size() >= maxPending || pendingBytes + heldBytes.getAsLong() + size > maxBytes)) {
+						break;
+					}
+					T input = next;
+					queue.add(new Pending<>(exec.submit(() -> preparer.prepare(input)), size));
+					pendingBytes += size;
+					next = iter.hasNext() ? iter.next() : null;
+				}
+
+				Pending<R> head = queue.remove();
+				R prepared = get(head.future);
+				pendingBytes -= head.size;
+				consumer.accept(prepared);
+			}
+		} finally {
+			exec.shutdownNow();
+		}
+	}
+
+	// *******************************************************************************
+	// * Internal utility methods
+	// *******************************************************************************
+
+	private static <R> R get(Future<R> future) throws Exception {
+		try {
+			return future.get();
+		} catch(ExecutionException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof Exception) {
+				throw (Exception)cause;
+			} else if(cause instanceof Error) {
+				throw (Error)cause;
+			}
+			throw e;
+		}
+	}
+}
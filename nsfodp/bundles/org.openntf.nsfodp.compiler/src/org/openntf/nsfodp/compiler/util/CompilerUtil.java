@@ -19,6 +19,7 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.Collection;
 
 import org.openntf.nsfodp.commons.dxl.DXLUtil;
 import org.openntf.nsfodp.commons.odp.notesapi.NDXLImporter;
@@ -41,8 +42,24 @@ public enum CompilerUtil {
 	
 	/**
 	 * Imports a generic file resource, such as an outer class file from a multi-class Java resource.
+	 * 
+	 * @return the IDs of the imported notes
 	 */
-	public static void importFileResource(NDXLImporter importer, byte[] data, NDatabase database, String name, String flags, String flagsExt) throws XMLException, IOException {
+	public static Collection<Integer> importFileResource(NDXLImporter importer, byte[] data, NDatabase database, String name, String flags, String flagsExt) throws XMLException, IOException {
+		String dxl = createFileResourceDxl(data, name, flags, flagsExt);
+		try(InputStream is = new ByteArrayInputStream(dxl.getBytes(StandardCharsets.UTF_8))) {
+			return importer.importDxl(database, is);
+		}
+	}
+	
+	/**
+	 * Creates the DXL for a generic file resource, such as an outer class file from a multi-class
+	 * Java resource.
+	 * 
+	 * @return the DXL of a single note
+	 * @since 3.5.0
+	 */
+	public static String createFileResourceDxl(byte[] data, String name, String flags, String flagsExt) throws XMLException {
 		Document dxlDoc = DOMUtil.createDocument();
 		Element note = DOMUtil.createElement(dxlDoc, "note"); //$NON-NLS-1$
 		note.setAttribute("class", "form"); //$NON-NLS-1$ //$NON-NLS-2$
@@ -55,9 +72,6 @@ public enum CompilerUtil {
 		DXLUtil.writeItemNumber(dxlDoc, "$FileSize", data.length); //$NON-NLS-1$
 		DXLUtil.writeItemFileData(dxlDoc, "$FileData", data); //$NON-NLS-1$
 		DXLUtil.writeItemString(dxlDoc, "$FileNames", false, name); //$NON-NLS-1$
-		String dxl = DOMUtil.getXMLString(dxlDoc);
-		try(InputStream is = new ByteArrayInputStream(dxl.getBytes(StandardCharsets.UTF_8))) {
-			importer.importDxl(database, is);
-		}
+		return DOMUtil.getXMLString(dxlDoc);
 	}
 }
@@ -0,0 +1,147 @@
+/**
+ * Copyright © 2018-2021 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsfodp.compiler.util;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import org.openntf.nsfodp.compiler.Messages;
+
+/**
+ * Utilities for ordering LotusScript libraries so that each is compiled after the libraries
+ * it {@code Use}s.
+ *
+ * @author Jesse Gallagher
+ * @since 3.5.0
+ */
+public enum LotusScriptDependencies {
+	;
+
+	private static final Pattern REM_BLOCK = Pattern.compile("^\\s*%REM\\b.*?^\\s*%END\\s*REM\\b", Pattern.CASE_INSENSITIVE | Pattern.MULTILINE | Pattern.DOTALL); //$NON-NLS-1$
+	private static final Pattern USE_STATEMENT = Pattern.compile("^\\s*Use\\s+\"([^\"]+)\"", Pattern.CASE_INSENSITIVE | Pattern.MULTILINE); //$NON-NLS-1$
+
+	/**
+	 * Finds the names of the libraries referenced by {@code Use} statements in the provided
+	 * LotusScript source.
+	 *
+	 * @param script the LotusScript source to parse
+	 * @return the referenced library names, in source order
+	 */
+	public static Set<String> findUses(String script) {
+		Set<String> result = new LinkedHashSet<>();
+		if(script == null || script.isEmpty()) {
+			return result;
+		}
+
+		String code = REM_BLOCK.matcher(script).replaceAll(""); //$NON-NLS-1$
+		Matcher matcher = USE_STATEMENT.matcher(code);
+		while(matcher.find()) {
+			result.add(matcher.group(1).trim());
+		}
+		return result;
+	}
+
+	/**
+	 * Sorts the provided libraries so that each comes after all of the libraries it uses.
+	 * Libraries are otherwise kept in their original order, and references to names not present
+	 * in {@code libraries} are ignored. Names are matched case-insensitively.
+	 *
+	 * @param <T> the type of object representing a library
+	 * @param libraries the libraries to sort
+	 * @param names a function returning the names a library can be referenced by
+	 * @param uses a function returning the names of the libraries a library uses
+	 * @return a new {@link List} of the libraries in dependency order
+	 * @throws IllegalArgumentException if the libraries contain a circular dependency, including
+	 *         a library that uses itself
+	 */
+	public static <T> List<T> sort(Collection<T> libraries, Function<T, Collection<String>> names, Function<T, Collection<String>> uses) {
+		Map<String, T> byName = new HashMap<>();
+		for(T library : libraries) {
+			for(String name : names.apply(library)) {
+				byName.putIfAbsent(toKey(name), library);
+			}
+		}
+
+		Map<T, List<T>> dependencies = new LinkedHashMap<>();
+		for(T library : libraries) {
+			List<T> deps = uses.apply(library).stream()
+				.map(LotusScriptDependencies::toKey)
+				.map(byName::get)
+				// A library that uses itself is kept, to be reported as a cycle below
+				.filter(Objects::nonNull)
+				.distinct()
+				.collect(Collectors.toList());
+			dependencies.put(library, deps);
+		}
+
+		List<T> result = new ArrayList<>(dependencies.size());
+		Set<T> visited = new LinkedHashSet<>();
+		for(T library : dependencies.keySet()) {
+			visit(library, dependencies, visited, new LinkedHashSet<>(), result, names);
+		}
+		return result;
+	}
+
+	// *******************************************************************************
+	// * Internal utility methods
+	// *******************************************************************************
+
+	private static <T> void visit(T library, Map<T, List<T>> dependencies, Set<T> visited, LinkedHashSet<T> path, List<T> result, Function<T, Collection<String>> names) {
+		if(visited.contains(library)) {
+			return;
+		}
+		if(!path.add(library)) {
+			// Report the cycle starting from its first occurrence in the current path
+			List<String> cycle = new ArrayList<>();
+			boolean inCycle = false;
+			for(T element : path) {
+				inCycle |= Objects.equals(element, library);
+				if(inCycle) {
+					cycle.add(getName(element, names));
+				}
+			}
+			cycle.add(getName(library, names));
+			throw new IllegalArgumentException(MessageFormat.format(Messages.LotusScriptDependencies_circularUse, String.join(" -> ", cycle))); //$NON-NLS-1$
+		}
+		for(T dep : dependencies.get(library)) {
+			visit(dep, dependencies, visited, path, result, names);
+		}
+		path.remove(library);
+		visited.add(library);
+		result.add(library);
+	}
+
+	private static <T> String getName(T library, Function<T, Collection<String>> names) {
+		return names.apply(library).stream().findFirst().orElse(String.valueOf(library));
+	}
+
+	private static String toKey(String name) {
+		return name.trim().toLowerCase(Locale.ENGLISH);
+	}
+}
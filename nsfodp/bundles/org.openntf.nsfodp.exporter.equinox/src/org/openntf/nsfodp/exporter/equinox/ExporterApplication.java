@@ -21,6 +21,7 @@ import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.text.MessageFormat;
 import java.util.Collections;
+import java.util.function.Function;
 
 import org.eclipse.equinox.app.IApplication;
 import org.eclipse.equinox.app.IApplicationContext;
@@ -28,6 +29,7 @@ import org.openntf.nsfodp.commons.NSFODPConstants;
 import org.openntf.nsfodp.commons.NSFODPUtil;
 import org.openntf.nsfodp.commons.odp.notesapi.NDatabase;
 import org.openntf.nsfodp.commons.odp.notesapi.NotesAPI;
+import org.openntf.nsfodp.commons.osgi.EquinoxDaemon;
 import org.openntf.nsfodp.exporter.ODPExporter;
 
 import lotus.domino.NotesThread;
@@ -39,7 +41,8 @@ public class ExporterApplication implements IApplication {
 
 	@Override
 	public Object start(IApplicationContext context) throws Exception {
-		String notesIni = System.getenv(NSFODPConstants.PROP_NOTESINI);
+		Function<String, String> params = EquinoxDaemon.getParameters(context.getArguments());
+		String notesIni = params.apply(NSFODPConstants.PROP_NOTESINI);
 		if(notesIni != null && !notesIni.isEmpty()) {
 			String execDir = System.getenv("Notes_ExecDirectory"); //$NON-NLS-1$
 			try(NotesAPI api = NotesAPI.get()) {
@@ -47,16 +50,17 @@ public class ExporterApplication implements IApplication {
 			}
 		}
 		
-		String databasePath = System.getenv(NSFODPConstants.PROP_EXPORTER_DATABASE_PATH);
+		String databasePath = params.apply(NSFODPConstants.PROP_EXPORTER_DATABASE_PATH);
 		if(databasePath == null) {
 			throw new IllegalArgumentException(MessageFormat.format(Messages.ExporterApplication_dbPathCannotBeEmpty, NSFODPConstants.PROP_EXPORTER_DATABASE_PATH));
 		}
-		Path odpDir = Paths.get(System.getenv(NSFODPConstants.PROP_OUTPUTFILE));
+		Path odpDir = Paths.get(params.apply(NSFODPConstants.PROP_OUTPUTFILE));
 		
-		boolean binaryDxl = "true".equals(System.getenv(NSFODPConstants.PROP_EXPORTER_BINARY_DXL)); //$NON-NLS-1$
-		boolean swiperFilter = "true".equals(System.getenv(NSFODPConstants.PROP_EXPORTER_SWIPER_FILTER)); //$NON-NLS-1$
-		boolean richTextAsItemData = "true".equals(System.getenv(NSFODPConstants.PROP_RICH_TEXT_AS_ITEM_DATA)); //$NON-NLS-1$
-		String projectName = System.getenv(NSFODPConstants.PROP_PROJECT_NAME);
+		boolean binaryDxl = "true".equals(params.apply(NSFODPConstants.PROP_EXPORTER_BINARY_DXL)); //$NON-NLS-1$
+		boolean swiperFilter = "true".equals(params.apply(NSFODPConstants.PROP_EXPORTER_SWIPER_FILTER)); //$NON-NLS-1$
+		boolean richTextAsItemData = "true".equals(params.apply(NSFODPConstants.PROP_RICH_TEXT_AS_ITEM_DATA)); //$NON-NLS-1$
+		String projectName = params.apply(NSFODPConstants.PROP_PROJECT_NAME);
+		String exportThreads = params.apply(NSFODPConstants.PROP_EXPORTER_THREADS);
 		
 		NotesThread runner = new NotesThread(() -> {
 			try(NotesAPI session = NotesAPI.get()) {
@@ -67,6 +71,9 @@ public class ExporterApplication implements IApplication {
 					exporter.setSwiperFilter(swiperFilter);
 					exporter.setRichTextAsItemData(richTextAsItemData);
 					exporter.setProjectName(projectName);
+					if(exportThreads != null && !exportThreads.isEmpty()) {
+						exporter.setExportThreads(Integer.parseInt(exportThreads));
+					}
 					Path result = exporter.export();
 					Path eclipseProject = odpDir.resolve(".project"); //$NON-NLS-1$
 					if(Files.exists(eclipseProject)) {
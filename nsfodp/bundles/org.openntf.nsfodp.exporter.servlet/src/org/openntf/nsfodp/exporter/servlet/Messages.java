@@ -21,6 +21,7 @@ public class Messages extends NLS {
 	private static final String BUNDLE_NAME = "org.openntf.nsfodp.exporter.servlet.messages"; //$NON-NLS-1$
 	public static String ODPExporterServlet_anonymousAccessDisallowed;
 	public static String ODPExporterServlet_dbPathMissing;
+	public static String ODPExporterServlet_exportFailedDuringZip;
 	public static String ODPExporterServlet_insufficientAccess;
 	public static String ODPExporterServlet_mismatchedContentType;
 	public static String ODPExporterServlet_unableToOpenDb;
@@ -15,9 +15,11 @@
  */
 package org.openntf.nsfodp.exporter.servlet;
 
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -40,10 +42,20 @@ import org.openntf.nsfodp.commons.NSFODPUtil;
 import org.openntf.nsfodp.commons.odp.notesapi.NDatabase;
 import org.openntf.nsfodp.commons.odp.notesapi.NotesAPI;
 import org.openntf.nsfodp.exporter.ODPExporter;
-import org.openntf.nsfodp.exporter.ODPExporter.ODPType;
 
 import com.ibm.commons.util.StringUtil;
 
+/**
+ * Exports an NSF, either POSTed as the request body or named by
+ * {@link NSFODPConstants#HEADER_DATABASE_PATH}, as a ZIP-format ODP.
+ * 
+ * <p>The response consists of line-delimited JSON progress messages, ending with a message of
+ * type {@code "done"}, followed by the ODP ZIP, which is streamed as the export runs. A
+ * failure before the ZIP begins is reported as a JSON message of type {@code "error"} in place
+ * of {@code "done"}. A failure after that point cannot be reported in-band, so the response is
+ * aborted without writing the end of the ZIP, and clients must treat a ZIP that is cut short
+ * or lacks its central directory as a failed export.</p>
+ */
 public class ODPExporterServlet extends HttpServlet {
 	private static final long serialVersionUID = 1L;
 	
@@ -69,6 +81,7 @@ public class ODPExporterServlet extends HttpServlet {
 		ServletOutputStream os = resp.getOutputStream();
 		
 		Set<Path> cleanup = new HashSet<>();
+		boolean zipStarted = false;
 		try {
 			if(!ALLOW_ANONYMOUS && "Anonymous".equalsIgnoreCase(user.getName())) { //$NON-NLS-1$
 				resp.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
@@ -135,13 +148,18 @@ public class ODPExporterServlet extends HttpServlet {
 						exporter.setRichTextAsItemData(true);
 					}
 					exporter.setProjectName(req.getHeader(NSFODPConstants.HEADER_PROJECT_NAME));
+					int exportThreads = parseExportThreads(req.getHeader(NSFODPConstants.HEADER_EXPORTER_THREADS));
+					if(exportThreads > 0) {
+						exporter.setExportThreads(exportThreads);
+					}
 					
-					exporter.setOdpType(ODPType.ZIP);
-					Path result = exporter.export();
-					cleanup.add(result);
 					mon.done();
 					
-					Files.copy(result, os);
+					// The ZIP follows the progress messages and is written as each note is exported
+					OutputStream zipOut = new BufferedOutputStream(os, 64 * 1024);
+					zipStarted = true;
+					exporter.export(zipOut);
+					zipOut.flush();
 				} finally {
 					if(post) {
 						String filePath = database.getFilePath();
@@ -152,6 +170,10 @@ public class ODPExporterServlet extends HttpServlet {
 			}
 			
 		} catch(Throwable e) {
+			if(zipStarted) {
+				// JSON here would be read as part of the ZIP, so abort the response instead
+				throw new ServletException(Messages.ODPExporterServlet_exportFailedDuringZip, e);
+			}
 			ByteArrayOutputStream baos = new ByteArrayOutputStream();
 			PrintWriter out = new PrintWriter(baos);
 			e.printStackTrace(out);
@@ -165,4 +187,25 @@ public class ODPExporterServlet extends HttpServlet {
 			NSFODPUtil.deltree(cleanup);
 		}
 	}
+	
+	/**
+	 * Reads the requested export thread count, clamped to between 1 and the number of
+	 * processors on the server.
+	 * 
+	 * @param value the header value
+	 * @return the thread count to use, or {@code 0} if the header is missing or invalid
+	 */
+	private static int parseExportThreads(String value) {
+		if(StringUtil.isEmpty(value)) {
+			return 0;
+		}
+		int threads;
+		try {
+			threads = Integer.parseInt(value.trim());
+		} catch(NumberFormatException e) {
+			return 0;
+		}
+		// Don't let a client claim more threads than the server has cores
+		return Math.max(1, Math.min(threads, Runtime.getRuntime().availableProcessors()));
+	}
 }
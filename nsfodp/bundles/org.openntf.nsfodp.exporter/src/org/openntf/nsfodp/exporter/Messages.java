@@ -22,6 +22,7 @@ public class Messages extends NLS {
 	public static String ODPExporter_nativeExceptionSpecialNote;
 	public static String ODPExporter_nativeExceptionNoteId;
 	public static String ODPExporter_unknownNote;
+	public static String ZipExportWriter_skippedDuplicate;
 	static {
 		// initialize resource bundle
 		NLS.initializeMessages(BUNDLE_NAME, Messages.class);
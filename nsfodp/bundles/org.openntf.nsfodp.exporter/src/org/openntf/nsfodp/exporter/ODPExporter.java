@@ -16,43 +16,8 @@
 package org.openntf.nsfodp.exporter;
 
 import static org.openntf.nsfodp.commons.h.StdNames.ASSIST_TYPE_ITEM;
-import static org.openntf.nsfodp.commons.h.StdNames.DESIGN_FLAGEXT_WEBCONTENTFILE;
-import static org.openntf.nsfodp.commons.h.StdNames.DESIGN_FLAGEXT_WEBSERVICELIB;
 import static org.openntf.nsfodp.commons.h.StdNames.DESIGN_FLAGS;
 import static org.openntf.nsfodp.commons.h.StdNames.DESIGN_FLAGS_EXTENDED;
-import static org.openntf.nsfodp.commons.h.StdNames.DESIGN_FLAG_DATABASESCRIPT;
-import static org.openntf.nsfodp.commons.h.StdNames.DESIGN_FLAG_HIDEFROMDESIGNLIST;
-import static org.openntf.nsfodp.commons.h.StdNames.DESIGN_FLAG_JAVA_AGENT;
-import static org.openntf.nsfodp.commons.h.StdNames.DESIGN_FLAG_JAVA_AGENT_WITH_SOURCE;
-import static org.openntf.nsfodp.commons.h.StdNames.DESIGN_FLAG_JAVA_RESOURCE;
-import static org.openntf.nsfodp.commons.h.StdNames.DESIGN_FLAG_LOTUSSCRIPT_AGENT;
-import static org.openntf.nsfodp.commons.h.StdNames.DESIGN_FLAG_PROPFILE;
-import static org.openntf.nsfodp.commons.h.StdNames.DFLAGPAT_COMPAPP;
-import static org.openntf.nsfodp.commons.h.StdNames.DFLAGPAT_COMPDEF;
-import static org.openntf.nsfodp.commons.h.StdNames.DFLAGPAT_DATA_CONNECTION_RESOURCE;
-import static org.openntf.nsfodp.commons.h.StdNames.DFLAGPAT_DB2ACCESSVIEW;
-import static org.openntf.nsfodp.commons.h.StdNames.DFLAGPAT_FILE;
-import static org.openntf.nsfodp.commons.h.StdNames.DFLAGPAT_FOLDER_DESIGN;
-import static org.openntf.nsfodp.commons.h.StdNames.DFLAGPAT_FRAMESET;
-import static org.openntf.nsfodp.commons.h.StdNames.DFLAGPAT_IMAGE_RESOURCE;
-import static org.openntf.nsfodp.commons.h.StdNames.DFLAGPAT_JAVAFILE;
-import static org.openntf.nsfodp.commons.h.StdNames.DFLAGPAT_JAVA_WEBSERVICE;
-import static org.openntf.nsfodp.commons.h.StdNames.DFLAGPAT_LS_WEBSERVICE;
-import static org.openntf.nsfodp.commons.h.StdNames.DFLAGPAT_SACTIONS_DESIGN;
-import static org.openntf.nsfodp.commons.h.StdNames.DFLAGPAT_SCRIPTLIB_JAVA;
-import static org.openntf.nsfodp.commons.h.StdNames.DFLAGPAT_SCRIPTLIB_JS;
-import static org.openntf.nsfodp.commons.h.StdNames.DFLAGPAT_SCRIPTLIB_LS;
-import static org.openntf.nsfodp.commons.h.StdNames.DFLAGPAT_SCRIPTLIB_SERVER_JS;
-import static org.openntf.nsfodp.commons.h.StdNames.DFLAGPAT_SHARED_COLS;
-import static org.openntf.nsfodp.commons.h.StdNames.DFLAGPAT_SITEMAP;
-import static org.openntf.nsfodp.commons.h.StdNames.DFLAGPAT_STYLEKIT;
-import static org.openntf.nsfodp.commons.h.StdNames.DFLAGPAT_STYLE_SHEET_RESOURCE;
-import static org.openntf.nsfodp.commons.h.StdNames.DFLAGPAT_SUBFORM_DESIGN;
-import static org.openntf.nsfodp.commons.h.StdNames.DFLAGPAT_VIEWMAP_DESIGN;
-import static org.openntf.nsfodp.commons.h.StdNames.DFLAGPAT_WEBPAGE;
-import static org.openntf.nsfodp.commons.h.StdNames.DFLAGPAT_WIDGET;
-import static org.openntf.nsfodp.commons.h.StdNames.DFLAGPAT_XSPCC;
-import static org.openntf.nsfodp.commons.h.StdNames.DFLAGPAT_XSPPAGE;
 import static org.openntf.nsfodp.commons.h.StdNames.FIELD_TITLE;
 import static org.openntf.nsfodp.commons.h.StdNames.ITEM_NAME_FILE_DATA;
 import static org.openntf.nsfodp.commons.h.StdNames.ITEM_NAME_FILE_NAMES;
@@ -64,13 +29,9 @@ import static org.openntf.nsfodp.commons.h.NsfNote.NOTE_CLASS_INFO;
 import static org.openntf.nsfodp.commons.h.NsfNote.NOTE_ID_SPECIAL;
 import static org.openntf.nsfodp.commons.h.StdNames.SCRIPTLIB_OBJECT;
 import static org.openntf.nsfodp.commons.h.StdNames.XSP_CLASS_INDEX;
-import static org.openntf.nsfodp.commons.h.StdNames.ASSIST_TYPE_JAVA;
-import static org.openntf.nsfodp.commons.h.StdNames.DESIGN_FLAG_JARFILE;
-import static org.openntf.nsfodp.commons.h.StdNames.IMAGE_NEW_DBICON_NAME;
 import static org.openntf.nsfodp.commons.h.StdNames.ITEM_NAME_CONFIG_FILE_DATA;
 import static org.openntf.nsfodp.commons.h.StdNames.ITEM_NAME_CONFIG_FILE_SIZE;
 import static org.openntf.nsfodp.commons.h.StdNames.ITEM_NAME_JAVA_COMPILER_SOURCE;
-import static org.openntf.nsfodp.commons.NSFODPUtil.matchesFlagsPattern;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -93,10 +54,16 @@ import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 
 import org.openntf.nsfodp.commons.NSFODPUtil;
 import org.openntf.nsfodp.commons.NoteType;
+import org.openntf.nsfodp.commons.NoteTypeClassifier;
 import org.openntf.nsfodp.commons.dxl.DXLUtil;
 import org.openntf.nsfodp.commons.h.NsfNote;
 import org.openntf.nsfodp.commons.h.StdNames;
@@ -106,7 +73,10 @@ import org.openntf.nsfodp.commons.odp.notesapi.NDXLExporter;
 import org.openntf.nsfodp.commons.odp.notesapi.NDatabase;
 import org.openntf.nsfodp.commons.odp.notesapi.NDominoException;
 import org.openntf.nsfodp.commons.odp.notesapi.NNote;
+import org.openntf.nsfodp.commons.odp.notesapi.NotesAPI;
 import org.openntf.nsfodp.exporter.io.CommonsSwiperOutputStream;
+import org.openntf.nsfodp.exporter.io.OrderedExportWriter;
+import org.openntf.nsfodp.exporter.io.ZipExportWriter;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
@@ -131,6 +101,13 @@ public class ODPExporter {
 	
 	public static final String EXT_METADATA = ".metadata"; //$NON-NLS-1$
 	private static final Collection<NoteType> IGNORE_FILENAMES_TYPES = EnumSet.of(NoteType.FileResource, NoteType.StyleSheet, NoteType.ImageResource, NoteType.Theme);
+	/** Files whose existence is checked by {@link #finishProject(Path)} */
+	private static final List<String> FINISH_CHECKED_FILES = Arrays.asList(
+		"META-INF/MANIFEST.MF", //$NON-NLS-1$
+		".project", //$NON-NLS-1$
+		"Resources/UsingDocument", //$NON-NLS-1$
+		"Resources/AboutDocument" //$NON-NLS-1$
+	);
 	
 	private final NDatabase database;
 	private boolean binaryDxl = false;
@@ -138,6 +115,7 @@ public class ODPExporter {
 	private boolean swiperFilter = false;
 	private String projectName;
 	private ODPType odpType = ODPType.DIRECTORY;
+	private int exportThreads = 1;
 
 	public ODPExporter(NDatabase database) {
 		this.database = database;
@@ -239,6 +217,28 @@ public class ODPExporter {
 		return odpType;
 	}
 	
+	/**
+	 * Sets the number of threads to use when exporting design notes. When this is greater
+	 * than 1, each thread uses its own DXL exporter and the written files are committed in
+	 * the same order as a serial export.
+	 * 
+	 * @param exportThreads the number of export threads to use
+	 * @since 3.5.0
+	 */
+	public void setExportThreads(int exportThreads) {
+		this.exportThreads = Math.max(1, exportThreads);
+	}
+	
+	/**
+	 * Gets the number of threads to use when exporting design notes.
+	 * 
+	 * @return the configured number of export threads
+	 * @since 3.5.0
+	 */
+	public int getExportThreads() {
+		return exportThreads;
+	}
+	
 	/**
 	 * Exports the NSF to an on-disk project using the configured settings.
 	 * 
@@ -262,70 +262,232 @@ public class ODPExporter {
 		}
 		
 		try(NDXLExporter exporter = database.getAPI().createDXLExporter()) {
-			// Output database.properties in encapsulated format
-			Path databaseProperties = target.resolve("AppProperties").resolve("database.properties"); //$NON-NLS-1$ //$NON-NLS-2$
-			Files.createDirectories(databaseProperties.getParent());
-			Set<Integer> iconColl = new HashSet<>();
-			iconColl.add(NOTE_ID_SPECIAL | NOTE_CLASS_ICON);
-			try(NNote acl = database.getNoteByID(NOTE_ID_SPECIAL | NOTE_CLASS_ACL)) {
-				iconColl.add(acl.getNoteID());
-			}
-			
-			try(OutputStream os = new CommonsSwiperOutputStream(databaseProperties, isSwiperFilter())) {
-				exporter.export(database, iconColl, os);
-			}
+			exportDatabaseProperties(exporter, target);
 			
 			// Output the rest according to the settings
 			exporter.setForceNoteFormat(isBinaryDxl());
 			exporter.setRichTextAsItemData(isRichTextAsItemData());
 			
-			database.eachDesignNote((noteId, note) -> {
-				NoteType type = null;
-				try {
-					type = forNote(note);
-					exportNote(note, exporter, target);
-				} catch(Throwable e) {
-					System.out.println(StringUtil.format(Messages.ODPExporter_nativeExceptionNoteId, Integer.toString(noteId, 16), e.getMessage(), type));
-					e.printStackTrace(System.out);
+			if(exportThreads > 1) {
+				try(OrderedExportWriter writer = new OrderedExportWriter(target)) {
+					exportDesignNotesParallel(writer);
 				}
-			});
+			} else {
+				database.eachDesignNote((noteId, note) -> exportDesignNote(noteId, note, exporter, target));
+			}
 			
-			// Export several notes specially
-			int[] specialIds = new int[] { NOTE_CLASS_ICON, NOTE_CLASS_HELP, NOTE_CLASS_INFO };
-			for(int id : specialIds) {
-				try {
-					try(NNote iconNote = database.getNoteByID(NOTE_ID_SPECIAL | id)) {
-						if(iconNote != null && iconNote.isRefValid()) {
-							exportNote(iconNote, exporter, target);
+			exportSpecialNotes(exporter, target);
+			
+			finishProject(target);
+		}
+		
+		if(odpType == ODPType.ZIP) {
+			target.getFileSystem().close();
+		}
+		
+		return returnPath;
+	}
+	
+	/**
+	 * Exports the NSF as a ZIP-format on-disk project to the provided stream, writing the files
+	 * for each note as soon as it is exported. This ignores the configured {@link ODPType}.
+	 * 
+	 * <p>Each note is exported to a temporary staging directory that is removed once it has
+	 * been written to the stream, so neither the full project nor the ZIP are kept on disk or
+	 * in memory. As ZIP entries cannot be replaced, if multiple notes map to the same file, the
+	 * first one is kept and each later one is logged, whereas {@link #export()} keeps the last.</p>
+	 * 
+	 * @param os the stream to write to, which is not closed by this method
+	 * @throws IOException if there is a problem reading or writing filesystem data
+	 * @throws XMLException if there is a problem parsing DXL or other configuration information in the ODP
+	 * @since 3.5.0
+	 */
+	public void export(OutputStream os) throws IOException, XMLException {
+		Path stagingRoot = Files.createTempDirectory(NSFODPUtil.getTempDirectory(), getClass().getName());
+		try {
+			// Files read back when finishing the project are kept aside as they're written
+			Path finishDir = Files.createDirectories(stagingRoot.resolve("finish")); //$NON-NLS-1$
+			ZipExportWriter zip = new ZipExportWriter(os, finishDir, Collections.singleton(".classpath")); //$NON-NLS-1$
+			
+			try(NDXLExporter exporter = database.getAPI().createDXLExporter()) {
+				Path propertiesDir = Files.createDirectories(stagingRoot.resolve("properties")); //$NON-NLS-1$
+				exportDatabaseProperties(exporter, propertiesDir);
+				zip.commit(propertiesDir);
+				NSFODPUtil.deltree(propertiesDir);
+				
+				exporter.setForceNoteFormat(isBinaryDxl());
+				exporter.setRichTextAsItemData(isRichTextAsItemData());
+				
+				if(exportThreads > 1) {
+					try(OrderedExportWriter writer = new OrderedExportWriter(zip::commit)) {
+						exportDesignNotesParallel(writer);
+					}
+				} else {
+					// Iterate outside of the search callback so that write failures propagate
+					List<Integer> noteIds = new ArrayList<>();
+					database.eachDesignNoteId(noteIds::add);
+					Path noteDir = stagingRoot.resolve("note"); //$NON-NLS-1$
+					for(int noteId : noteIds) {
+						Files.createDirectories(noteDir);
+						try(NNote note = database.getNoteByID(noteId)) {
+							exportDesignNote(noteId, note, exporter, noteDir);
 						}
+						zip.commit(noteDir);
+						NSFODPUtil.deltree(noteDir);
 					}
-				} catch(NDominoException e) {
-					switch(e.getStatus()) {
-					case 578:
-						// "Special database object cannot be located", which is fine
-						break;
-					default:
-						e.printStackTrace();
-						System.out.println(StringUtil.format(Messages.ODPExporter_nativeExceptionSpecialNote, id, e.getMessage()));
-						break;
+				}
+				
+				Path specialDir = Files.createDirectories(stagingRoot.resolve("special")); //$NON-NLS-1$
+				exportSpecialNotes(exporter, specialDir);
+				zip.commit(specialDir);
+				NSFODPUtil.deltree(specialDir);
+			}
+			
+			// Stand in for files already written that finishProject checks for, which will then
+			//   be skipped as duplicates
+			for(String name : FINISH_CHECKED_FILES) {
+				Path path = ZipExportWriter.resolve(finishDir, name);
+				if(zip.contains(name) && !Files.exists(path)) {
+					Files.createDirectories(path.getParent());
+					Files.createFile(path);
+				}
+			}
+			finishProject(finishDir);
+			zip.commit(finishDir);
+			zip.finish();
+		} finally {
+			NSFODPUtil.deltree(stagingRoot);
+		}
+	}
+	
+	private void exportDatabaseProperties(NDXLExporter exporter, Path target) throws IOException {
+		// Output database.properties in encapsulated format
+		Path databaseProperties = target.resolve("AppProperties").resolve("database.properties"); //$NON-NLS-1$ //$NON-NLS-2$
+		Files.createDirectories(databaseProperties.getParent());
+		Set<Integer> iconColl = new HashSet<>();
+		iconColl.add(NOTE_ID_SPECIAL | NOTE_CLASS_ICON);
+		try(NNote acl = database.getNoteByID(NOTE_ID_SPECIAL | NOTE_CLASS_ACL)) {
+			iconColl.add(acl.getNoteID());
+		}
+		
+		try(OutputStream os = new CommonsSwiperOutputStream(databaseProperties, isSwiperFilter())) {
+			exporter.export(database, iconColl, os);
+		}
+	}
+	
+	private void exportSpecialNotes(NDXLExporter exporter, Path target) {
+		// Export several notes specially
+		int[] specialIds = new int[] { NOTE_CLASS_ICON, NOTE_CLASS_HELP, NOTE_CLASS_INFO };
+		for(int id : specialIds) {
+			try {
+				try(NNote iconNote = database.getNoteByID(NOTE_ID_SPECIAL | id)) {
+					if(iconNote != null && iconNote.isRefValid()) {
+						exportNote(iconNote, exporter, target);
 					}
-				} catch(Throwable e) {
+				}
+			} catch(NDominoException e) {
+				switch(e.getStatus()) {
+				case 578:
+					// "Special database object cannot be located", which is fine
+					break;
+				default:
 					e.printStackTrace();
 					System.out.println(StringUtil.format(Messages.ODPExporter_nativeExceptionSpecialNote, id, e.getMessage()));
+					break;
 				}
+			} catch(Throwable e) {
+				e.printStackTrace();
+				System.out.println(StringUtil.format(Messages.ODPExporter_nativeExceptionSpecialNote, id, e.getMessage()));
 			}
-			
-			generateManifestMf(target);
-			generateEclipseProjectFile(target);
-			createClasspathDirectories(target);
-			createStubFiles(target);
 		}
+	}
+	
+	/**
+	 * Generates the stub files and directories expected in an ODP that the NSF did not provide.
+	 * 
+	 * @param target the base directory for export operations
+	 */
+	private void finishProject(Path target) throws IOException, XMLException {
+		generateManifestMf(target);
+		generateEclipseProjectFile(target);
+		createClasspathDirectories(target);
+		createStubFiles(target);
+	}
+
+	/**
+	 * Exports all design notes using a pool of {@link #getExportThreads()} threads, each with
+	 * its own {@link NDXLExporter}. Each note is exported to a staging directory and then
+	 * committed by {@code writer} in the original design-note order.
+	 * 
+	 * @param writer the writer to stage and commit exported files with
+	 * @throws IOException if there is a problem committing exported files
+	 * @since 3.5.0
+	 */
+	private void exportDesignNotesParallel(OrderedExportWriter writer) throws IOException {
+		List<Integer> noteIds = new ArrayList<>();
+		database.eachDesignNoteId(noteIds::add);
 		
-		if(odpType == ODPType.ZIP) {
-			target.getFileSystem().close();
+		NotesAPI api = database.getAPI();
+		int threads = Math.min(exportThreads, Math.max(1, noteIds.size()));
+		ExecutorService exec = Executors.newFixedThreadPool(threads, api.createThreadFactory());
+		try {
+			AtomicInteger nextIndex = new AtomicInteger();
+			List<Future<?>> workers = new ArrayList<>();
+			for(int i = 0; i < threads; i++) {
+				workers.add(exec.submit(() -> {
+					try(NDXLExporter exporter = api.createDXLExporter()) {
+						exporter.setForceNoteFormat(isBinaryDxl());
+						exporter.setRichTextAsItemData(isRichTextAsItemData());
+						
+						int index;
+						while((index = nextIndex.getAndIncrement()) < noteIds.size()) {
+							int noteId = noteIds.get(index);
+							try {
+								Path stagingDir = writer.stage(index);
+								try(NNote note = database.getNoteByID(noteId)) {
+									exportDesignNote(noteId, note, exporter, stagingDir);
+								}
+							} catch(IOException | RuntimeException e) {
+								System.out.println(StringUtil.format(Messages.ODPExporter_nativeExceptionNoteId, Integer.toString(noteId, 16), e.getMessage(), null));
+								e.printStackTrace(System.out);
+							} finally {
+								writer.complete(index);
+							}
+						}
+					}
+					return null;
+				}));
+			}
+			for(Future<?> worker : workers) {
+				try {
+					worker.get();
+				} catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IOException(e);
+				} catch(ExecutionException e) {
+					Throwable cause = e.getCause();
+					if(cause instanceof IOException) {
+						throw (IOException)cause;
+					} else if(cause instanceof RuntimeException) {
+						throw (RuntimeException)cause;
+					}
+					throw new IOException(cause);
+				}
+			}
+		} finally {
+			exec.shutdownNow();
+		}
+	}
+	
+	private void exportDesignNote(int noteId, NNote note, NDXLExporter exporter, Path baseDir) {
+		NoteType type = null;
+		try {
+			type = forNote(note);
+			exportNote(note, exporter, baseDir);
+		} catch(Throwable e) {
+			System.out.println(StringUtil.format(Messages.ODPExporter_nativeExceptionNoteId, Integer.toString(noteId, 16), e.getMessage(), type));
+			e.printStackTrace(System.out);
 		}
-		
-		return returnPath;
 	}
 
 	private void exportNote(NNote note, NDXLExporter exporter, Path baseDir) throws IOException, XMLException {
@@ -740,159 +902,29 @@ public class ODPExporter {
 	
 	public static NoteType forNote(NNote note) {
 		String flags = note.hasItem(StdNames.DESIGN_FLAGS) ? note.getAsString(StdNames.DESIGN_FLAGS, ' ') : StringUtil.EMPTY_STRING;
-		String title = getTitle(note);
 		String flagsExt = note.hasItem(DESIGN_FLAGS_EXTENDED) ? note.getAsString(DESIGN_FLAGS_EXTENDED, ' ') : StringUtil.EMPTY_STRING;
 		
-		if(flags.indexOf('X') > -1) {
-			return NoteType.AgentData;
-		}
-		
-		
-		switch(note.getNoteClassValue() & NsfNote.NOTE_CLASS_NONPRIV) {
-		case NOTE_CLASS_ACL:
-			return NoteType.ACL;
-		case NsfNote.NOTE_CLASS_DESIGN:
-			return NoteType.DesignCollection;
-		case NOTE_CLASS_ICON:
-			return NoteType.IconNote;
-		case NsfNote.NOTE_CLASS_VIEW:
-			if(matchesFlagsPattern(flags, DFLAGPAT_FOLDER_DESIGN)) {
-				return NoteType.Folder;
-			} else if(matchesFlagsPattern(flags, DFLAGPAT_VIEWMAP_DESIGN)) {
-				return NoteType.Navigator;
-			} else if(matchesFlagsPattern(flags, DFLAGPAT_SHARED_COLS)) {
-				return NoteType.SharedColumn;
-			} else {
-				return NoteType.View;
+		return NoteTypeClassifier.classify(note.getNoteClassValue(), flags, flagsExt, new NoteTypeClassifier.NoteContext() {
+			@Override
+			public String getTitle() {
+				return ODPExporter.getTitle(note);
 			}
-		case NsfNote.NOTE_CLASS_FIELD:
-			return NoteType.SharedField;
-		case NsfNote.NOTE_CLASS_HELP:
-			return NoteType.UsingDocument;
-		case NsfNote.NOTE_CLASS_INFO:
-			return NoteType.AboutDocument;
-		case NsfNote.NOTE_CLASS_FILTER:
-			// "filter" is a dumping ground for pre-XPages code elements
 			
-			if(flags.indexOf(DESIGN_FLAG_DATABASESCRIPT) > -1) {
-				return NoteType.DBScript;
-			} else if(matchesFlagsPattern(flags, DFLAGPAT_SITEMAP)) {
-				return NoteType.Outline;
-			} else if(matchesFlagsPattern(flags, DFLAGPAT_SCRIPTLIB_LS)) {
-				if(flagsExt.indexOf(DESIGN_FLAGEXT_WEBSERVICELIB) > -1) {
-					return NoteType.LotusScriptWebServiceConsumer;
-				} else {
-					return NoteType.LotusScriptLibrary; 
-				}
-			} else if(matchesFlagsPattern(flags, DFLAGPAT_SCRIPTLIB_JAVA)) {
-				if(flagsExt.indexOf(DESIGN_FLAGEXT_WEBSERVICELIB) > -1) {
-					return NoteType.JavaWebServiceConsumer;
-				} else {
-					return NoteType.JavaLibrary;
-				}
-			} else if(matchesFlagsPattern(flags, DFLAGPAT_SCRIPTLIB_JS)) {
-				return NoteType.JavaScriptLibrary;
-			} else if(matchesFlagsPattern(flags, DFLAGPAT_SCRIPTLIB_SERVER_JS)) {
-				return NoteType.ServerJavaScriptLibrary;
-			} else if(matchesFlagsPattern(flags, DFLAGPAT_JAVA_WEBSERVICE)) {
-				return NoteType.JavaWebService;
-			} else if(matchesFlagsPattern(flags, DFLAGPAT_LS_WEBSERVICE)) {
-				return NoteType.LotusScriptWebService;
-			} else if(matchesFlagsPattern(flags, DFLAGPAT_DATA_CONNECTION_RESOURCE)) {
-				return NoteType.DataConnection;
+			@Override
+			public int getAssistType() {
+				return note.hasItem(ASSIST_TYPE_ITEM) ? note.get(ASSIST_TYPE_ITEM, int.class) : 0;
 			}
 			
-			// Determine from here what kind of agent it is
-			int assistType = 0;
-			if(note.hasItem(ASSIST_TYPE_ITEM)) {
-				assistType = note.get(ASSIST_TYPE_ITEM, int.class);
+			@Override
+			public boolean hasJavaCompilerSource() {
+				return note.hasItem(ITEM_NAME_JAVA_COMPILER_SOURCE);
 			}
 			
-			if(flags.indexOf(DESIGN_FLAG_LOTUSSCRIPT_AGENT) > -1) {
-				return NoteType.LotusScriptAgent;
-			} else if(flags.indexOf(DESIGN_FLAG_JAVA_AGENT) > -1 || flags.indexOf(DESIGN_FLAG_JAVA_AGENT_WITH_SOURCE) > -1 || assistType == ASSIST_TYPE_JAVA) {
-				// There's not a proper pattern for distinguishing between these two, so look for another marker
-				if(flags.indexOf(DESIGN_FLAG_JAVA_AGENT_WITH_SOURCE) > -1 || note.hasItem(ITEM_NAME_JAVA_COMPILER_SOURCE)) {
-					return NoteType.JavaAgent;
-				} else {
-					return NoteType.ImportedJavaAgent;
-				}
-			} else if(assistType == -1) {
-				return NoteType.SimpleActionAgent;
-			} else {
-				return NoteType.FormulaAgent;
+			@Override
+			public String getFileName() {
+				return note.hasItem(StdNames.ITEM_NAME_FILE_NAMES) ? note.get(StdNames.ITEM_NAME_FILE_NAMES, String[].class)[0] : null;
 			}
-		case NsfNote.NOTE_CLASS_FORM:
-			// Pretty much everything is a form nowadays
-			if(flags.isEmpty()) {
-				// Definitely an actual form
-				return NoteType.Form;
-			} else if(matchesFlagsPattern(flags, DFLAGPAT_IMAGE_RESOURCE)) {
-				if(IMAGE_NEW_DBICON_NAME.equals(title)) {
-					return NoteType.DBIcon;
-				}
-				return NoteType.ImageResource;
-			} else if(flags.indexOf(DESIGN_FLAG_JARFILE) > -1) {
-				return NoteType.Jar;			
-			} else if(matchesFlagsPattern(flags, DFLAGPAT_COMPDEF)) {
-				return NoteType.WiringProperties;
-			} else if(matchesFlagsPattern(flags, DFLAGPAT_COMPAPP)) {
-				return NoteType.CompositeApplication;
-			} else if(matchesFlagsPattern(flags, DFLAGPAT_WIDGET)) {
-				return NoteType.CompositeComponent;
-			} else if(matchesFlagsPattern(flags, DFLAGPAT_XSPCC)) {
-				if(flags.indexOf(DESIGN_FLAG_PROPFILE) > -1) {
-					return NoteType.CustomControlProperties;
-				} else {
-					return NoteType.CustomControl;
-				}
-			} else if(matchesFlagsPattern(flags, DFLAGPAT_XSPPAGE)) {
-				if(flags.indexOf(DESIGN_FLAG_PROPFILE) > -1) {
-					return NoteType.XPageProperties;
-				} else {
-					return NoteType.XPage;
-				}
-			} else if(matchesFlagsPattern(flags, DFLAGPAT_STYLEKIT)) {
-				return NoteType.Theme;
-			} else if(matchesFlagsPattern(flags, DFLAGPAT_WEBPAGE)) {
-				return NoteType.Page;
-			} else if(matchesFlagsPattern(flags, DFLAGPAT_IMAGE_RESOURCE)) {
-				return NoteType.ImageResource;
-			} else if(matchesFlagsPattern(flags, DFLAGPAT_STYLE_SHEET_RESOURCE)) {
-				return NoteType.StyleSheet;
-			} else if(matchesFlagsPattern(flags, DFLAGPAT_SUBFORM_DESIGN)) {
-				return NoteType.Subform;
-			} else if(matchesFlagsPattern(flags, DFLAGPAT_FRAMESET)) {
-				return NoteType.Frameset;
-			} else if(matchesFlagsPattern(flags, DFLAGPAT_DB2ACCESSVIEW)) {
-				return NoteType.DB2AccessView;
-			} else if(matchesFlagsPattern(flags, DFLAGPAT_FILE)) {
-				// xspdesign.properties needs special handling, but is distinguished only by file name
-				String filePath = note.hasItem(StdNames.ITEM_NAME_FILE_NAMES) ? note.get(StdNames.ITEM_NAME_FILE_NAMES, String[].class)[0] : null;
-				
-				if(flags.indexOf(DESIGN_FLAG_HIDEFROMDESIGNLIST) == -1) {
-					return NoteType.FileResource;
-				} else if("xspdesign.properties".equals(filePath)) { //$NON-NLS-1$
-					return NoteType.XSPDesignProperties;
-				} else if(flagsExt.indexOf(DESIGN_FLAGEXT_WEBCONTENTFILE) > -1) {
-					return NoteType.WebContentFile;
-				} else if(matchesFlagsPattern(flags, DFLAGPAT_JAVAFILE)) {
-					return NoteType.Java;
-				} else {
-					return NoteType.GenericFile;
-				}
-			} else if(matchesFlagsPattern(flags, DFLAGPAT_SACTIONS_DESIGN)) {
-				return NoteType.SharedActions;
-			} else if(flags.indexOf(DESIGN_FLAG_JAVA_RESOURCE) > -1) {
-				return NoteType.Applet;
-			} else {
-				return NoteType.Form;
-			}
-		case NsfNote.NOTE_CLASS_REPLFORMULA:
-			return NoteType.ReplicationFormula;
-		}
-		
-		return NoteType.Unknown;
+		});
 	}
 	
 	private NCompositeData getFileItem(NNote note, NoteType type) {
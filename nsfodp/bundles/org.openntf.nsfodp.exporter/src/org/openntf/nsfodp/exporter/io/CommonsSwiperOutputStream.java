@@ -16,15 +16,12 @@
 package org.openntf.nsfodp.exporter.io;
 
 import java.io.IOException;
-import java.io.Reader;
 import java.io.Writer;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.Path;
 
+import javax.xml.transform.Source;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.dom.DOMResult;
-import javax.xml.transform.stream.StreamSource;
 
 import org.openntf.nsfodp.commons.io.SwiperOutputStream;
 
@@ -36,7 +33,8 @@ import com.ibm.commons.xml.Format;
  * of the JRE's default serializer.
  * 
  * <p>This provides for more-consistent indentation than the varying implementations than can be
- * provided normally.</p>
+ * provided normally. It applies only when the XSLT stylesheet is used, as output from
+ * {@link org.openntf.nsfodp.commons.io.SwiperFilter} is streamed to the file.</p>
  * 
  * @since 3.0.0
  */
@@ -47,11 +45,9 @@ public class CommonsSwiperOutputStream extends SwiperOutputStream {
 	}
 	
 	@Override
-	protected void transform(Transformer transformer, Reader r, Path destination) throws Exception {
+	protected void transform(Transformer transformer, Source source, Writer destination) throws Exception {
 		DOMResult result = new DOMResult();
-		transformer.transform(new StreamSource(r), result);
-		try(Writer w = Files.newBufferedWriter(destination, StandardCharsets.UTF_8)) {
-			DOMUtil.serialize(w, result.getNode(), Format.defaultFormat);
-		}
+		transformer.transform(source, result);
+		DOMUtil.serialize(destination, result.getNode(), Format.defaultFormat);
 	}
 }
\ No newline at end of file
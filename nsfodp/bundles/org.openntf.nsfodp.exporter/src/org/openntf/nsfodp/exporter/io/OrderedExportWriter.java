@@ -0,0 +1,144 @@
+/**
+ * Copyright © 2018-2021 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsfodp.exporter.io;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.BitSet;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.openntf.nsfodp.commons.NSFODPUtil;
+
+/**
+ * Coordinates concurrent export of notes by giving each note its own staging directory
+ * and committing the staged files to the real target strictly in sequence order.
+ *
+ * <p>Since notes are committed in the same order the serial exporter would visit them, the
+ * result is identical to a serial export even when multiple notes map to the same file.</p>
+ *
+ * @author Jesse Gallagher
+ * @since 3.5.0
+ */
+public class OrderedExportWriter implements AutoCloseable {
+	/**
+	 * Commits the contents of a staging directory to the export destination.
+	 */
+	@FunctionalInterface
+	public interface Committer {
+		void commit(Path stagingDir) throws IOException;
+	}
+
+	private final Path target;
+	private final Committer committer;
+	private final Path stagingRoot;
+	private final BitSet completed = new BitSet();
+	private int nextSequence;
+
+	/**
+	 * @param target the base directory to commit to, which may be in any filesystem
+	 * @throws IOException if there is a problem creating the staging directory
+	 */
+	public OrderedExportWriter(Path target) throws IOException {
+		this.target = target;
+		this.committer = this::commit;
+		this.stagingRoot = Files.createTempDirectory(NSFODPUtil.getTempDirectory(), getClass().getName());
+	}
+
+	/**
+	 * @param committer the destination to commit each staging directory to
+	 * @throws IOException if there is a problem creating the staging directory
+	 * @since 3.5.0
+	 */
+	public OrderedExportWriter(Committer committer) throws IOException {
+		this.target = null;
+		this.committer = committer;
+		this.stagingRoot = Files.createTempDirectory(NSFODPUtil.getTempDirectory(), getClass().getName());
+	}
+
+	/**
+	 * Creates a fresh staging directory to use as the export base for the note at the
+	 * given sequence position.
+	 *
+	 * @param sequence the zero-based position of the note in the export order
+	 * @return a new empty directory
+	 * @throws IOException if there is a problem creating the directory
+	 */
+	public Path stage(int sequence) throws IOException {
+		return Files.createDirectories(getStagingDir(sequence));
+	}
+
+	/**
+	 * Marks the note at the given sequence position as finished, committing it and any
+	 * following notes that were waiting on it. This must be called for every staged note,
+	 * including ones that failed to export.
+	 *
+	 * @param sequence the zero-based position of the note in the export order
+	 * @throws IOException if there is a problem committing staged files
+	 */
+	public synchronized void complete(int sequence) throws IOException {
+		completed.set(sequence);
+		while(completed.get(nextSequence)) {
+			Path dir = getStagingDir(nextSequence);
+			if(Files.isDirectory(dir)) {
+				committer.commit(dir);
+				NSFODPUtil.deltree(dir);
+			}
+			completed.clear(nextSequence);
+			nextSequence++;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		NSFODPUtil.deltree(stagingRoot);
+	}
+
+	// *******************************************************************************
+	// * Internal utility methods
+	// *******************************************************************************
+
+	private Path getStagingDir(int sequence) {
+		return stagingRoot.resolve(Integer.toString(sequence));
+	}
+
+	private void commit(Path dir) throws IOException {
+		List<Path> staged;
+		try(Stream<Path> walk = Files.walk(dir)) {
+			staged = walk.filter(path -> !path.equals(dir))
+				.sorted()
+				.collect(Collectors.toList());
+		}
+		boolean sameFileSystem = target.getFileSystem().equals(dir.getFileSystem());
+		for(Path path : staged) {
+			Path dest = target;
+			for(Path element : dir.relativize(path)) {
+				dest = dest.resolve(element.toString());
+			}
+
+			if(Files.isDirectory(path)) {
+				Files.createDirectories(dest);
+			} else if(sameFileSystem) {
+				Files.move(path, dest, StandardCopyOption.REPLACE_EXISTING);
+			} else {
+				Files.copy(path, dest, StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+	}
+}
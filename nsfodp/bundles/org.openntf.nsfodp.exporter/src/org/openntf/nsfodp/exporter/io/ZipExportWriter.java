@@ -0,0 +1,160 @@
+/**
+ * Copyright © 2018-2021 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.nsfodp.exporter.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.openntf.nsfodp.exporter.Messages;
+
+import com.ibm.commons.util.StringUtil;
+
+/**
+ * Appends staged export directories to a ZIP stream as they are committed, so that an ODP can
+ * be sent to its destination while the export is still running.
+ *
+ * <p>As entries cannot be replaced once written, the first file committed for each path is
+ * kept and later ones are skipped. This differs from a directory export, where the last note
+ * written to a path wins, so each skipped file is logged. Files in the retained directory are
+ * the exception: when it is committed, its files are expected to duplicate ones already
+ * written.</p>
+ *
+ * <p>Files matching one of the configured names are also copied to a local directory as they
+ * are committed, for later steps that need to read them back.</p>
+ *
+ * @author Jesse Gallagher
+ * @since 3.5.0
+ */
+public class ZipExportWriter {
+	private final OutputStream out;
+	private final ZipOutputStream zos;
+	private final Path retainDir;
+	private final Set<String> retainNames;
+	private final Set<String> entryNames = new HashSet<>();
+
+	/**
+	 * @param out the stream to write to, which is not closed by this writer
+	 * @param retainDir the directory to copy retained files to
+	 * @param retainNames the slash-separated relative paths of files to retain
+	 */
+	public ZipExportWriter(OutputStream out, Path retainDir, Collection<String> retainNames) {
+		this.out = out;
+		this.zos = new ZipOutputStream(out, StandardCharsets.UTF_8);
+		this.retainDir = retainDir;
+		this.retainNames = new HashSet<>(retainNames);
+	}
+
+	/**
+	 * Writes the contents of the provided directory to the ZIP stream, relative to the
+	 * directory, and flushes the stream.
+	 *
+	 * @param dir the staged directory to commit
+	 * @throws IOException if there is a problem reading staged files or writing the stream
+	 */
+	public synchronized void commit(Path dir) throws IOException {
+		List<Path> staged;
+		try(Stream<Path> walk = Files.walk(dir)) {
+			staged = walk.filter(path -> !path.equals(dir))
+				.sorted()
+				.collect(Collectors.toList());
+		}
+		for(Path path : staged) {
+			String name = toEntryName(dir.relativize(path));
+			boolean isDir = Files.isDirectory(path);
+			if(!entryNames.add(isDir ? name + '/' : name)) {
+				if(!isDir && !dir.equals(retainDir)) {
+					System.out.println(StringUtil.format(Messages.ZipExportWriter_skippedDuplicate, name));
+				}
+				continue;
+			}
+
+			if(isDir) {
+				zos.putNextEntry(new ZipEntry(name + '/'));
+			} else {
+				zos.putNextEntry(new ZipEntry(name));
+				Files.copy(path, zos);
+				if(retainNames.contains(name) && !dir.equals(retainDir)) {
+					Path dest = resolve(retainDir, name);
+					Files.createDirectories(dest.getParent());
+					Files.copy(path, dest, StandardCopyOption.REPLACE_EXISTING);
+				}
+			}
+			zos.closeEntry();
+		}
+		zos.flush();
+		out.flush();
+	}
+
+	/**
+	 * @param name a slash-separated relative file path
+	 * @return whether a file has been written at the provided path
+	 */
+	public synchronized boolean contains(String name) {
+		return entryNames.contains(name);
+	}
+
+	/**
+	 * Writes the ZIP central directory, leaving the underlying stream open.
+	 *
+	 * @throws IOException if there is a problem writing the stream
+	 */
+	public synchronized void finish() throws IOException {
+		zos.finish();
+		out.flush();
+	}
+
+	/**
+	 * Resolves a slash-separated relative path against the provided directory.
+	 *
+	 * @param dir the base directory
+	 * @param name the slash-separated relative path
+	 * @return the resolved path
+	 */
+	public static Path resolve(Path dir, String name) {
+		Path result = dir;
+		for(String part : name.split("/")) { //$NON-NLS-1$
+			result = result.resolve(part);
+		}
+		return result;
+	}
+
+	// *******************************************************************************
+	// * Internal utility methods
+	// *******************************************************************************
+
+	private static String toEntryName(Path relativePath) {
+		StringBuilder result = new StringBuilder();
+		for(Path element : relativePath) {
+			if(result.length() > 0) {
+				result.append('/');
+			}
+			result.append(element.toString());
+		}
+		return result.toString();
+	}
+}
@@ -37,6 +37,15 @@ public class DarwinoNDXLImporter implements NDXLImporter {
 		}
 	}
 
+	@Override
+	public void setReplaceDBProperties(boolean replaceDbProperties) {
+		try {
+			importer.setReplaceDBProperties(replaceDbProperties);
+		} catch (DominoException e) {
+			throw new NDominoException(e.getStatus(), e);
+		}
+	}
+
 	@Override
 	public void close() {
 		this.importer.free();
@@ -1,6 +1,7 @@
 package org.openntf.nsfodp.notesapi.darwinonapi;
 
 import java.util.function.BiConsumer;
+import java.util.function.IntConsumer;
 
 import org.openntf.nsfodp.commons.odp.notesapi.NDatabase;
 import org.openntf.nsfodp.commons.odp.notesapi.NDominoException;
@@ -44,6 +45,15 @@ public class DarwinoNDatabase implements NDatabase {
 		}
 	}
 	
+	@Override
+	public void deleteNote(int noteId) {
+		try {
+			DominoAPI.get().NSFNoteDelete(database.getHandle(), noteId, (short)0);
+		} catch (DominoException e) {
+			throw new NDominoException(e.getStatus(), e);
+		}
+	}
+	
 	@Override
 	public String getTitle() {
 		try {
@@ -82,6 +92,15 @@ public class DarwinoNDatabase implements NDatabase {
 	
 	@Override
 	public void eachDesignNote(BiConsumer<Integer, NNote> consumer) {
+		eachDesignNoteId(noteId -> {
+			try(NNote note = getNoteByID(noteId)) {
+				consumer.accept(noteId, note);
+			}
+		});
+	}
+	
+	@Override
+	public void eachDesignNoteId(IntConsumer consumer) {
 		NSFSEARCHPROC proc = new NSFSEARCHPROC() {
 			@Override public short callback(long searchMatchPtr, long summaryBufferPtr) throws DominoException {
 				SEARCH_MATCH searchMatch = new SEARCH_MATCH();
@@ -95,9 +114,7 @@ public class DarwinoNDatabase implements NDatabase {
 				boolean isSearchMatch = (retFlags & DominoAPI.SE_FMATCH) != 0;  // The use of "since" means that non-matching notes will be returned; check this flag to make sure
 				
 				if(isSearchMatch && !deleted) {
-					try(NNote note = getNoteByID(noteId)) {
-						consumer.accept(noteId, note);
-					}
+					consumer.accept(noteId);
 				}
 				return DominoAPI.NOERROR;
 			}
@@ -28,6 +28,7 @@ import java.util.Objects;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -35,6 +36,7 @@ import org.eclipse.equinox.app.IApplication;
 import org.eclipse.equinox.app.IApplicationContext;
 import org.openntf.nsfodp.commons.NSFODPConstants;
 import org.openntf.nsfodp.commons.PrintStreamProgressMonitor;
+import org.openntf.nsfodp.commons.osgi.EquinoxDaemon;
 import org.openntf.nsfodp.compiler.update.FilesystemUpdateSite;
 import org.openntf.nsfodp.transpiler.TranspilerActivator;
 import org.openntf.nsfodp.transpiler.XspTranspiler;
@@ -52,22 +54,23 @@ import lotus.domino.NotesThread;
  * @since 3.0.0
  */
 public class TranspilerApplication implements IApplication {
-	private static final ExecutorService exec = Executors.newSingleThreadExecutor(NotesThread::new);
 	
 	@Override
 	public Object start(IApplicationContext context) throws Exception {
-		String notesIni = System.getenv(NSFODPConstants.PROP_NOTESINI);
+		Function<String, String> params = EquinoxDaemon.getParameters(context.getArguments());
+		String notesIni = params.apply(NSFODPConstants.PROP_NOTESINI);
 		if(notesIni != null && !notesIni.isEmpty()) {
 			String execDir = System.getenv("Notes_ExecDirectory"); //$NON-NLS-1$
 			DominoAPI.get().NotesInitExtended(execDir, "=" + notesIni); //$NON-NLS-1$
 		}
 		
 		NotesThread.sinitThread();
+		ExecutorService exec = Executors.newSingleThreadExecutor(NotesThread::new);
 		try {
-			Path xspSourceRoot = toPath(System.getenv(NSFODPConstants.PROP_XSP_SOURCE_ROOT));
-			Path ccSourceRoot = toPath(System.getenv(NSFODPConstants.PROP_CC_SOURCE_ROOT));
-			List<Path> updateSites = toPaths(System.getenv(NSFODPConstants.PROP_UPDATESITE));
-			Path outputDirectory = toPath(System.getenv(NSFODPConstants.PROP_OUTPUTFILE));
+			Path xspSourceRoot = toPath(params.apply(NSFODPConstants.PROP_XSP_SOURCE_ROOT));
+			Path ccSourceRoot = toPath(params.apply(NSFODPConstants.PROP_CC_SOURCE_ROOT));
+			List<Path> updateSites = toPaths(params.apply(NSFODPConstants.PROP_UPDATESITE));
+			Path outputDirectory = toPath(params.apply(NSFODPConstants.PROP_OUTPUTFILE));
 			
 			IProgressMonitor mon = new PrintStreamProgressMonitor(System.out);
 			XspTranspiler transpiler = new XspTranspiler(TranspilerActivator.instance.getBundle().getBundleContext(), xspSourceRoot, ccSourceRoot, mon);
@@ -104,11 +107,11 @@ public class TranspilerApplication implements IApplication {
 			}).get();
 			System.out.println(getClass().getName() + "#end"); //$NON-NLS-1$
 			
+			return EXIT_OK;
+		} finally {
 			exec.shutdownNow();
 			exec.awaitTermination(30, TimeUnit.SECONDS);
 			
-			return EXIT_OK;
-		} finally {
 			NotesThread.stermThread();
 		}
 	}
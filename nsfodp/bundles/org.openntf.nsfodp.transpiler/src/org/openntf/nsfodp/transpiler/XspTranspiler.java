@@ -26,7 +26,9 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -88,15 +90,11 @@ public class XspTranspiler extends AbstractCompilationEnvironment {
 				defineCustomControls(ccSourceRoot);
 				
 				subTask("Transpiling Custom Controls");
-				try(Stream<Path> xspFiles = Files.find(ccSourceRoot, Integer.MAX_VALUE, (path, attr) -> attr.isRegularFile() && path.toString().toLowerCase().endsWith(".xsp"), FileVisitOption.FOLLOW_LINKS)) { //$NON-NLS-1$
-					xspFiles.forEach(p -> transpileXsp(ccSourceRoot, p, outputDirectory));
-				}
+				transpileXsp(ccSourceRoot, outputDirectory);
 			}
 			if(xspSourceRoot != null && Files.isDirectory(xspSourceRoot)) {
 				subTask("Transpiling XPages");
-				try(Stream<Path> xspFiles = Files.find(xspSourceRoot, Integer.MAX_VALUE, (path, attr) -> attr.isRegularFile() && path.toString().toLowerCase().endsWith(".xsp"), FileVisitOption.FOLLOW_LINKS)) { //$NON-NLS-1$
-					xspFiles.forEach(p -> transpileXsp(xspSourceRoot, p, outputDirectory));
-				}
+				transpileXsp(xspSourceRoot, outputDirectory);
 			}
 			
 			return outputDirectory;
@@ -150,7 +148,23 @@ public class XspTranspiler extends AbstractCompilationEnvironment {
 		}
 	}
 	
-	private void transpileXsp(Path rootDir, Path xspFile, Path outputDirectory) {
+	/**
+	 * Transpiles all XSP files beneath {@code rootDir} in parallel.
+	 * 
+	 * @param rootDir the root directory to search
+	 * @param outputDirectory the root directory for generated Java source
+	 * @throws IOException if there is a problem listing the XSP files
+	 * @since 3.5.0
+	 */
+	private void transpileXsp(Path rootDir, Path outputDirectory) throws IOException {
+		List<Path> xspFiles;
+		try(Stream<Path> xspFileStream = Files.find(rootDir, Integer.MAX_VALUE, (path, attr) -> attr.isRegularFile() && path.toString().toLowerCase().endsWith(".xsp"), FileVisitOption.FOLLOW_LINKS)) { //$NON-NLS-1$
+			xspFiles = xspFileStream.collect(Collectors.toList());
+		}
+		translateAll(xspFiles, p -> transpileXsp(rootDir, p, outputDirectory));
+	}
+	
+	private Path transpileXsp(Path rootDir, Path xspFile, Path outputDirectory) {
 		try {
 			String xspSource;
 			try(InputStream is = Files.newInputStream(xspFile)) {
@@ -168,6 +182,7 @@ public class XspTranspiler extends AbstractCompilationEnvironment {
 			try(Writer w = Files.newBufferedWriter(outputFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
 				w.write(javaSource);
 			}
+			return outputFile;
 		} catch(Exception e) {
 			throw new RuntimeException("Exception processing page " + rootDir.relativize(xspFile), e);
 		}
@@ -84,6 +84,25 @@ public abstract class AbstractEquinoxMojo extends AbstractMojo {
 	 */
 	@Parameter(property="nsfodp.equinoxJvmArgs", required=false)
 	protected String equinoxJvmArgs;
+	
+	/**
+	 * Runs local tasks in a long-lived Equinox daemon instead of launching a new framework
+	 * for each task. The daemon is shared by all builds on the machine with the same
+	 * Notes environment, plugin version, and classpath, and shuts down after
+	 * {@code equinoxDaemonIdleTimeout} minutes without a job.
+	 * 
+	 * @since 3.5.0
+	 */
+	@Parameter(property="nsfodp.equinoxDaemon", required=false)
+	protected boolean equinoxDaemon = false;
+	
+	/**
+	 * The number of minutes the Equinox daemon should wait for a new task before shutting down.
+	 * 
+	 * @since 3.5.0
+	 */
+	@Parameter(property="nsfodp.equinoxDaemonIdleTimeout", required=false)
+	protected long equinoxDaemonIdleTimeout = 30;
 
 	protected boolean isRunLocally() {
 		return notesProgram != null && notesPlatform != null && !requireServerExecution;
@@ -103,6 +103,14 @@ public abstract class AbstractExportMojo extends AbstractEquinoxMojo {
 	 */
 	@Parameter(property = "nsfodp.exporter.richTextAsItemData", required = false)
 	protected boolean richTextAsItemData = true;
+	/**
+	 * The number of threads to use when exporting design notes. Defaults to <code>1</code>,
+	 * which exports serially.
+	 * 
+	 * @since 3.5.0
+	 */
+	@Parameter(property = "nsfodp.exporter.threads", required = false)
+	protected int exporterThreads = 1;
 	protected Log log;
 	/**
 	 * Location of the ODP directory.
@@ -148,6 +156,7 @@ public abstract class AbstractExportMojo extends AbstractEquinoxMojo {
 			req.addHeader(NSFODPConstants.HEADER_SWIPER_FILTER, String.valueOf(this.swiperFilter));
 			req.addHeader(NSFODPConstants.HEADER_RICH_TEXT_AS_ITEM_DATA, String.valueOf(this.richTextAsItemData));
 			req.addHeader(NSFODPConstants.HEADER_PROJECT_NAME, this.project.getGroupId() + '.' + this.project.getArtifactId());
+			req.addHeader(NSFODPConstants.HEADER_EXPORTER_THREADS, String.valueOf(this.exporterThreads));
 			
 			HttpResponse res = client.execute(req);
 			HttpEntity responseEntity = ResponseUtil.checkResponse(log, res);
@@ -171,10 +180,11 @@ public abstract class AbstractExportMojo extends AbstractEquinoxMojo {
 		Path notesIni = this.notesIni == null ? null : this.notesIni.toPath();
 		EquinoxExporter exporter = new EquinoxExporter(pluginDescriptor, mavenSession, project, getLog(), notesProgram.toPath(), notesPlatform, notesIni);
 		exporter.setJvmArgs(this.equinoxJvmArgs);
+		exporter.setDaemon(this.equinoxDaemon, this.equinoxDaemonIdleTimeout);
 		if(file == null) {
-			exporter.exportOdp(odpDir, databasePath, binaryDxl, swiperFilter, richTextAsItemData);
+			exporter.exportOdp(odpDir, databasePath, binaryDxl, swiperFilter, richTextAsItemData, exporterThreads);
 		} else {
-			exporter.exportOdp(odpDir, file.getAbsolutePath(), binaryDxl, swiperFilter, richTextAsItemData);
+			exporter.exportOdp(odpDir, file.getAbsolutePath(), binaryDxl, swiperFilter, richTextAsItemData, exporterThreads);
 		}
 	}
 
@@ -19,34 +19,34 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.OutputStream;
 import java.io.Reader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
 import java.io.Writer;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.FileSystem;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
-import java.nio.file.StandardOpenOption;
-import java.nio.file.attribute.FileTime;
 import java.security.KeyManagementException;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 import java.util.zip.Deflater;
 import java.util.zip.GZIPInputStream;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
@@ -58,11 +58,13 @@ import org.apache.http.client.methods.HttpPost;
 import org.apache.http.conn.ssl.NoopHostnameVerifier;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.conn.ssl.TrustSelfSignedStrategy;
-import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.client.HttpClients;
 import org.apache.http.ssl.SSLContextBuilder;
+import org.apache.http.util.EntityUtils;
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.model.Resource;
 import org.apache.maven.plugin.MojoExecutionException;
@@ -76,8 +78,12 @@ import org.apache.maven.shared.filtering.MavenResourcesExecution;
 import org.apache.maven.shared.filtering.MavenResourcesFiltering;
 import org.openntf.maven.nsfodp.config.ConfigAcl;
 import org.openntf.maven.nsfodp.equinox.EquinoxCompiler;
+import org.openntf.maven.nsfodp.util.CompilationPackageEntity;
+import org.openntf.maven.nsfodp.util.CompileFingerprint;
+import org.openntf.maven.nsfodp.util.JsonUtil;
 import org.openntf.maven.nsfodp.util.ODPMojoUtil;
 import org.openntf.maven.nsfodp.util.ResponseUtil;
+import org.openntf.maven.nsfodp.util.StagingUtil;
 import org.openntf.nsfodp.commons.NSFODPConstants;
 import org.openntf.nsfodp.commons.NSFODPUtil;
 import org.sonatype.plexus.build.incremental.BuildContext;
@@ -97,6 +103,20 @@ public class CompileODPMojo extends AbstractCompilerMojo {
 	
 	public static final String CLASSIFIER_NSF = "nsf"; //$NON-NLS-1$
 	public static final String SERVLET_PATH = "/org.openntf.nsfodp/compiler"; //$NON-NLS-1$
+	/**
+	 * The name of the file in the build directory recording the inputs of the last successful
+	 * compilation.
+	 * 
+	 * @since 3.5.0
+	 */
+	public static final String FINGERPRINT_FILE = "nsfodp-compile-fingerprint.txt"; //$NON-NLS-1$
+	/**
+	 * The name of the file in the build directory listing the keys of inputs that changed since
+	 * the last successful compilation, one per line.
+	 * 
+	 * @since 3.5.0
+	 */
+	public static final String CHANGES_FILE = "nsfodp-compile-changes.txt"; //$NON-NLS-1$
 	
 	/**
 	 * Location of the generated NSF.
@@ -199,6 +219,29 @@ public class CompileODPMojo extends AbstractCompilerMojo {
 	@Parameter(required=false)
 	private ConfigAcl acl;
 	
+	/**
+	 * Whether to compile incrementally, re-importing only changed elements into the previously-generated
+	 * NSF. Defaults to {@value}.
+	 * 
+	 * <p>This is currently only supported when compiling locally.</p>
+	 * 
+	 * @since 3.5.0
+	 */
+	@Parameter(property="nsfodp.compiler.incremental", required=false)
+	private boolean incremental = false;
+	
+	/**
+	 * The compression level, from {@code 0} to {@code 9}, to use for compressible files when
+	 * sending the project to a compiler server. Defaults to {@code -1}, the default level of
+	 * the JVM's ZIP implementation.
+	 * 
+	 * <p>Files that are already compressed, such as JARs, are always sent uncompressed.</p>
+	 * 
+	 * @since 3.5.0
+	 */
+	@Parameter(property="nsfodp.compiler.packageCompressionLevel", required=false)
+	private int packageCompressionLevel = Deflater.DEFAULT_COMPRESSION;
+	
 	@Component( role = MavenResourcesFiltering.class, hint = "default" )
     protected MavenResourcesFiltering mavenResourcesFiltering;
 	
@@ -241,25 +284,31 @@ public class CompileODPMojo extends AbstractCompilerMojo {
 
 		Path outputFile = outputDirectory.resolve(outputFileName);
 		
-		if(checkNeedsCompile(outputFile, odpDirectory, updateSites)) {
+		Path fingerprintFile = Paths.get(project.getBuild().getDirectory()).resolve(FINGERPRINT_FILE);
+		CompileFingerprint fingerprint = computeFingerprint(odpDirectory, updateSites);
+		if(checkNeedsCompile(outputFile, fingerprintFile, fingerprint)) {
 			if(log.isInfoEnabled()) {
 				log.info(Messages.getString("CompileODPMojo.compilingOdp")); //$NON-NLS-1$
 			}
 			try {
+				// Make sure that a failed compilation is retried next time
+				Files.deleteIfExists(fingerprintFile);
+				
 				if(!Files.exists(outputDirectory)) {
 					Files.createDirectories(outputDirectory);
 				}
 				
-				// Create a copy of the ODP directory to interleave resources
+				// Stage a copy of the ODP directory to interleave resources, materializing only
+				//   the files that are modified below
 				Path odpCopy = Paths.get(project.getBuild().getDirectory()).resolve("nsfodp-odp"); //$NON-NLS-1$
 				if(log.isDebugEnabled()) {
 					log.debug(Messages.getString("CompileODPMojo.copyingOdpToTarget", odpCopy)); //$NON-NLS-1$
 				}
-				if(Files.exists(odpCopy)) {
-					NSFODPUtil.deltree(odpCopy);
-				}
-				Files.createDirectories(odpCopy);
-				NSFODPUtil.copyDirectory(odpDirectory, odpCopy);
+				Path databasePropertiesPath = Paths.get("AppProperties", "database.properties"); //$NON-NLS-1$ //$NON-NLS-2$
+				StagingUtil.stageDirectory(odpDirectory, odpCopy, path ->
+					(this.webContentResources != null && path.startsWith("WebContent")) //$NON-NLS-1$
+					|| (this.acl != null && path.equals(databasePropertiesPath))
+				);
 				
 				// Copy in any defined resources
 				if(this.webContentResources != null) {
@@ -332,31 +381,16 @@ public class CompileODPMojo extends AbstractCompilerMojo {
 				if(isRunLocally()) {
 					compileOdpLocal(odpCopy, updateSites, outputFile);
 				} else {
-					Path odpZip = zipDirectory(odpCopy);
-					try {
-						List<Path> updateSiteZips = null;
-						if(updateSites != null && !updateSites.isEmpty()) {
-							updateSiteZips = updateSites.stream()
-								.map(this::zipDirectory)
-								.collect(Collectors.toList());
-						}
-						
-						Path packageZip = createPackage(odpZip, updateSiteZips);
-						try {
-							Path result = compileOdpOnServer(packageZip);
-							Files.move(result, outputFile, StandardCopyOption.REPLACE_EXISTING);
-							buildContext.refresh(outputFile.toFile());
-						} finally {
-							Files.deleteIfExists(packageZip);
-						}
-					} finally {
-						Files.deleteIfExists(odpZip);
-					}
+					Path result = compileOdpOnServer(odpCopy, updateSites);
+					Files.move(result, outputFile, StandardCopyOption.REPLACE_EXISTING);
+					buildContext.refresh(outputFile.toFile());
 				}
 				
 				if(log.isInfoEnabled()) {
 					log.info(Messages.getString("CompileODPMojo.generatedNsf", outputFile)); //$NON-NLS-1$
 				}
+				
+				fingerprint.store(fingerprintFile);
 			} catch(MojoExecutionException e) {
 				throw e;
 			} catch(Throwable t) {
@@ -381,6 +415,7 @@ public class CompileODPMojo extends AbstractCompilerMojo {
 		Path notesIni = this.notesIni == null ? null : this.notesIni.toPath();
 		EquinoxCompiler compiler = new EquinoxCompiler(pluginDescriptor, mavenSession, project, getLog(), notesProgram.toPath(), notesPlatform, notesIni);
 		compiler.setJvmArgs(this.equinoxJvmArgs);
+		compiler.setDaemon(this.equinoxDaemon, this.equinoxDaemonIdleTimeout);
 		List<Path> jars = new ArrayList<>();
 		if(this.classpathJars != null) {
 			Arrays.stream(this.classpathJars).map(File::toPath).forEach(jars::add);
@@ -390,52 +425,18 @@ public class CompileODPMojo extends AbstractCompilerMojo {
 			.map(Artifact::getFile)
 			.map(File::toPath)
 			.forEach(jars::add);
-		compiler.compileOdp(odpDirectory, updateSites, jars, outputFile, compilerLevel, appendTimestampToTitle, templateName, setProductionXspOptions, odsRelease);
+		Path incrementalManifest = null;
+		if(this.incremental) {
+			incrementalManifest = Paths.get(project.getBuild().getDirectory()).resolve("nsfodp-compile-manifest.properties"); //$NON-NLS-1$
+		}
+		compiler.compileOdp(odpDirectory, updateSites, jars, outputFile, compilerLevel, appendTimestampToTitle, templateName, setProductionXspOptions, odsRelease, incrementalManifest);
 	}
 	
 	// *******************************************************************************
 	// * Server-based compilation
 	// *******************************************************************************
 	
-	private Path createPackage(Path odpZip, List<Path> updateSiteZips) throws IOException {
-		if(log.isDebugEnabled()) {
-			log.debug(Messages.getString("CompileODPMojo.creatingPackage") + odpZip + ", updateSiteZips=" + updateSiteZips); //$NON-NLS-1$ //$NON-NLS-2$
-		}
-		
-		Path packageZip = Files.createTempFile("odpcompiler-package", ".zip"); //$NON-NLS-1$ //$NON-NLS-2$
-		try(OutputStream fos = Files.newOutputStream(packageZip, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
-			try(ZipOutputStream zos = new ZipOutputStream(fos, StandardCharsets.UTF_8)) {
-				zos.setLevel(Deflater.BEST_COMPRESSION);
-				ZipEntry entry = new ZipEntry("odp.zip"); //$NON-NLS-1$
-				zos.putNextEntry(entry);
-				Files.copy(odpZip, zos);
-				zos.closeEntry();
-				
-				if(updateSiteZips != null && !updateSiteZips.isEmpty()) {
-					for(int i = 0; i < updateSiteZips.size(); i++) {
-						Path updateSiteZip = updateSiteZips.get(i);
-						entry = new ZipEntry("site" + i + ".zip"); //$NON-NLS-1$ //$NON-NLS-2$
-						zos.putNextEntry(entry);
-						Files.copy(updateSiteZip, zos);
-						zos.closeEntry();
-					}
-				}
-				
-				// Add any project dependencies
-				for(Artifact artifact : this.project.getArtifacts()) {
-					Path artifactPath = artifact.getFile().toPath();
-					String dedupeName = System.currentTimeMillis() + artifactPath.getFileName().toString();
-					entry = new ZipEntry("classpath/" + dedupeName); //$NON-NLS-1$
-					zos.putNextEntry(entry);
-					Files.copy(artifactPath, zos);
-					zos.closeEntry();
-				}
-			}
-		}
-		return packageZip;
-	}
-	
-	private Path compileOdpOnServer(Path packageZip) throws IOException, URISyntaxException, MojoExecutionException, NoSuchAlgorithmException, KeyStoreException, KeyManagementException {
+	private Path compileOdpOnServer(Path odpDirectory, List<Path> updateSites) throws IOException, URISyntaxException, MojoExecutionException, NoSuchAlgorithmException, KeyStoreException, KeyManagementException {
 		URL compilerServerUrl = Objects.requireNonNull(this.compilerServerUrl);
 		if(log.isDebugEnabled()) {
 			log.debug(Messages.getString("CompileODPMojo.usingServerUrl", compilerServerUrl)); //$NON-NLS-1$
@@ -470,14 +471,33 @@ public class CompileODPMojo extends AbstractCompilerMojo {
 			post.addHeader(NSFODPConstants.HEADER_SET_PRODUCTION_XSP, String.valueOf(this.setProductionXspOptions));
 			post.addHeader(NSFODPConstants.HEADER_ODS_RELEASE, StringUtil.toString(this.odsRelease));
 			
-			HttpEntity responseEntity;
-			try(InputStream fileIs = Files.newInputStream(packageZip)) {
-				HttpEntity entity = new InputStreamEntity(fileIs, Files.size(packageZip));
-				post.setEntity(entity);
-				
-				HttpResponse res = client.execute(post);
-				responseEntity = ResponseUtil.checkResponse(log, res);
+			// Stream the package to the server as it is created
+			List<Path> classpathJars = this.project.getArtifacts().stream()
+				.map(Artifact::getFile)
+				.map(File::toPath)
+				.collect(Collectors.toList());
+			if(log.isDebugEnabled()) {
+				log.debug(Messages.getString("CompileODPMojo.creatingPackage", odpDirectory, updateSites)); //$NON-NLS-1$
 			}
+			CompilationPackageEntity entity = new CompilationPackageEntity(odpDirectory, updateSites, classpathJars, this.packageCompressionLevel);
+			
+			// Ask the server which dependencies it already has, to avoid sending them again
+			List<String> jarDigests = digest(classpathJars, NSFODPUtil::sha256);
+			List<String> siteDigests = digest(updateSites, NSFODPUtil::sha256Tree);
+			DependencyQuery query = queryMissingDependencies(client, servlet, jarDigests, siteDigests);
+			if(query != null) {
+				if(log.isInfoEnabled()) {
+					log.info(Messages.getString("CompileODPMojo.uploadingDependencies", query.missing.size(), jarDigests.size() + siteDigests.size())); //$NON-NLS-1$
+				}
+				entity.setCachedDependencies(jarDigests, siteDigests, query.missing);
+				if(StringUtil.isNotEmpty(query.token)) {
+					post.addHeader(NSFODPConstants.HEADER_DEPENDENCY_TOKEN, query.token);
+				}
+			}
+			post.setEntity(entity);
+			
+			HttpResponse res = client.execute(post);
+			HttpEntity responseEntity = ResponseUtil.checkResponse(log, res);
  			
 			try(InputStream is = responseEntity.getContent()) {
 				ResponseUtil.monitorResponse(log, is);
@@ -492,21 +512,75 @@ public class CompileODPMojo extends AbstractCompilerMojo {
 		}
 	}
 	
-	private Path zipDirectory(Path path) {
-		if(log.isDebugEnabled()) {
-			log.debug(Messages.getString("CompileODPMojo.zippingPath", path.toString())); //$NON-NLS-1$
+	private static class DependencyQuery {
+		private final Set<String> missing;
+		private final String token;
+		
+		DependencyQuery(Set<String> missing, String token) {
+			this.missing = missing;
+			this.token = token;
 		}
+	}
+	
+	/**
+	 * Queries the server for the dependencies missing from its cache.
+	 * 
+	 * @return the missing digests and the token reserving the present ones, or {@code null}
+	 *         if the server does not support caching
+	 */
+	private DependencyQuery queryMissingDependencies(CloseableHttpClient client, URI servlet, List<String> jarDigests, List<String> siteDigests) throws MojoExecutionException {
+		HttpPost post = new HttpPost(servlet);
+		post.addHeader(NSFODPConstants.HEADER_DEPENDENCY_QUERY, "true"); //$NON-NLS-1$
+		ODPMojoUtil.addAuthenticationInfo(this.wagonManager, this.compilerServer, post, this.log);
+		
+		Map<String, Object> query = new LinkedHashMap<>();
+		query.put("classpath", jarDigests); //$NON-NLS-1$
+		query.put("sites", siteDigests); //$NON-NLS-1$
+		post.setEntity(new StringEntity(JsonUtil.toJson(query), ContentType.APPLICATION_JSON));
 		
 		try {
-			Path result = Files.createTempFile("odpcompiler-dir", ".zip"); //$NON-NLS-1$ //$NON-NLS-2$
-			try(FileSystem fs = NSFODPUtil.openZipPath(result)) {
-				Path dest = fs.getPath("/"); //$NON-NLS-1$
-				NSFODPUtil.copyDirectory(path, dest);
+			HttpResponse res = client.execute(post);
+			HttpEntity responseEntity = ResponseUtil.checkResponse(log, res);
+			Object result = JsonUtil.fromJson(EntityUtils.toString(responseEntity, StandardCharsets.UTF_8));
+			if(result instanceof Map && ((Map<?, ?>)result).get("missing") instanceof List) { //$NON-NLS-1$
+				Map<?, ?> response = (Map<?, ?>)result;
+				Set<String> missing = ((List<?>)response.get("missing")).stream() //$NON-NLS-1$
+					.map(String::valueOf)
+					.collect(Collectors.toSet());
+				Object token = response.get("token"); //$NON-NLS-1$
+				return new DependencyQuery(missing, token == null ? null : token.toString());
 			}
-			
-			return result;
-		} catch(IOException e) {
-			throw new RuntimeException(Messages.getString("CompileODPMojo.exceptionCompressingDir", path), e); //$NON-NLS-1$
+		} catch(IOException | RuntimeException e) {
+			if(log.isDebugEnabled()) {
+				log.debug(Messages.getString("CompileODPMojo.dependencyQueryFailed"), e); //$NON-NLS-1$
+			}
+			return null;
+		}
+		// Older servers respond with an error message
+		if(log.isDebugEnabled()) {
+			log.debug(Messages.getString("CompileODPMojo.dependencyQueryFailed")); //$NON-NLS-1$
+		}
+		return null;
+	}
+	
+	@FunctionalInterface
+	private interface PathDigester {
+		String digest(Path path) throws IOException;
+	}
+	
+	private static List<String> digest(List<Path> paths, PathDigester digester) throws IOException {
+		try {
+			return paths.parallelStream()
+				.map(path -> {
+					try {
+						return digester.digest(path);
+					} catch(IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				})
+				.collect(Collectors.toList());
+		} catch(UncheckedIOException e) {
+			throw e.getCause();
 		}
 	}
 	
@@ -514,40 +588,86 @@ public class CompileODPMojo extends AbstractCompilerMojo {
 	// * Misc. internal utilities
 	// *******************************************************************************
 	
-	private boolean checkNeedsCompile(Path outputFile, Path odpDirectory, List<Path> updateSites) throws MojoExecutionException {
-		if(Files.exists(outputFile)) {
-			// Check to see if we need compilation
-			try {
-				FileTime mod = Files.getLastModifiedTime(outputFile);
-				
-				// Check if the project pom itself changed
-				if(this.project.getFile().lastModified() > mod.toMillis()) {
-					return true;
-				}
-				
-				// Check if any ODP files changed
-				try(Stream<Path> changeStream = Files.find(odpDirectory, Integer.MAX_VALUE, (path, attr) -> attr.isRegularFile() && attr.lastModifiedTime().compareTo(mod) > 0)) {
-					if(changeStream.findAny().isPresent()) {
-						return true;
+	private CompileFingerprint computeFingerprint(Path odpDirectory, List<Path> updateSites) throws MojoExecutionException {
+		try {
+			CompileFingerprint fingerprint = new CompileFingerprint();
+			
+			fingerprint.addDirectory("odp:", odpDirectory); //$NON-NLS-1$
+			
+			// Resources are fingerprinted from their source, along with the values used to filter them
+			if(this.webContentResources != null) {
+				boolean filtering = false;
+				for(int i = 0; i < this.webContentResources.size(); i++) {
+					Resource resource = this.webContentResources.get(i);
+					fingerprint.addValue("webContentResource:" + i, Arrays.asList( //$NON-NLS-1$
+						resource.getDirectory(), resource.getTargetPath(), resource.getFiltering(),
+						resource.getIncludes(), resource.getExcludes()
+					));
+					Path dir = resource.getDirectory() == null ? null : Paths.get(resource.getDirectory());
+					if(dir != null && Files.isDirectory(dir)) {
+						fingerprint.addDirectory("webContent:" + i + ":", dir); //$NON-NLS-1$ //$NON-NLS-2$
 					}
+					filtering |= resource.isFiltering();
 				}
-				
-				// Check if any dependent update sites changed
-				if(updateSites.stream().anyMatch(path -> {
-						try {
-							return Files.getLastModifiedTime(path).compareTo(mod) > 0;
-						} catch (IOException e) {
-							throw new RuntimeException(e);
-						}
-					})) {
-					return true;
+				if(filtering) {
+					fingerprint.addValue("webContentFilterProperties", new TreeMap<>(project.getProperties())); //$NON-NLS-1$
+				}
+			}
+			
+			if(this.acl != null) {
+				StringWriter aclXml = new StringWriter();
+				JAXBContext.newInstance(ConfigAcl.class).createMarshaller().marshal(this.acl, aclXml);
+				fingerprint.addValue("acl", aclXml); //$NON-NLS-1$
+			}
+			
+			for(int i = 0; i < updateSites.size(); i++) {
+				fingerprint.addDirectory("updateSite:" + i + ":", updateSites.get(i)); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+			
+			int classpathIndex = 0;
+			if(this.classpathJars != null) {
+				for(File jar : this.classpathJars) {
+					fingerprint.addFile("classpath:" + classpathIndex++ + ":" + jar.getName(), jar.toPath()); //$NON-NLS-1$ //$NON-NLS-2$
 				}
-				
-				return false;
-			} catch(IOException e) {
-				throw new MojoExecutionException(Messages.getString("CompileODPMojo.exceptionCheckingFiles"), e); //$NON-NLS-1$
 			}
+			for(Artifact artifact : this.project.getArtifacts()) {
+				File file = artifact.getFile();
+				fingerprint.addFile("classpath:" + classpathIndex++ + ":" + file.getName(), file.toPath()); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+			
+			fingerprint.addValue("setting:pluginVersion", pluginDescriptor.getVersion()); //$NON-NLS-1$
+			fingerprint.addValue("setting:runLocally", isRunLocally()); //$NON-NLS-1$
+			fingerprint.addValue("setting:compilerServerUrl", this.compilerServerUrl); //$NON-NLS-1$
+			fingerprint.addValue("setting:compilerLevel", this.compilerLevel); //$NON-NLS-1$
+			fingerprint.addValue("setting:appendTimestampToTitle", this.appendTimestampToTitle); //$NON-NLS-1$
+			fingerprint.addValue("setting:templateName", this.templateName); //$NON-NLS-1$
+			fingerprint.addValue("setting:projectVersion", this.project.getVersion()); //$NON-NLS-1$
+			fingerprint.addValue("setting:setProductionXspOptions", this.setProductionXspOptions); //$NON-NLS-1$
+			fingerprint.addValue("setting:odsRelease", this.odsRelease); //$NON-NLS-1$
+			fingerprint.addValue("setting:incremental", this.incremental); //$NON-NLS-1$
+			
+			return fingerprint;
+		} catch(IOException | JAXBException e) {
+			throw new MojoExecutionException(Messages.getString("CompileODPMojo.exceptionCheckingFiles"), e); //$NON-NLS-1$
+		}
+	}
+	
+	private boolean checkNeedsCompile(Path outputFile, Path fingerprintFile, CompileFingerprint fingerprint) throws MojoExecutionException {
+		try {
+			CompileFingerprint previous = Files.exists(outputFile) ? CompileFingerprint.load(fingerprintFile) : null;
+			SortedSet<String> changes = fingerprint.getChanges(previous);
+			
+			// Record the changed inputs for later stages
+			Path changesFile = fingerprintFile.resolveSibling(CHANGES_FILE);
+			Files.createDirectories(changesFile.getParent());
+			Files.write(changesFile, changes, StandardCharsets.UTF_8);
+			
+			if(previous != null && log.isDebugEnabled()) {
+				changes.forEach(key -> log.debug(Messages.getString("CompileODPMojo.changedInput", key))); //$NON-NLS-1$
+			}
+			return !changes.isEmpty();
+		} catch(IOException e) {
+			throw new MojoExecutionException(Messages.getString("CompileODPMojo.exceptionCheckingFiles"), e); //$NON-NLS-1$
 		}
-		return true;
 	}
 }
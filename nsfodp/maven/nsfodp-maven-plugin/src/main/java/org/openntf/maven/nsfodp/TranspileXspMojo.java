@@ -133,6 +133,7 @@ public class TranspileXspMojo extends AbstractCompilerMojo {
 		Path notesIni = this.notesIni == null ? null : this.notesIni.toPath();
 		EquinoxTranspiler transpiler = new EquinoxTranspiler(pluginDescriptor, mavenSession, project, getLog(), notesProgram.toPath(), notesPlatform, notesIni);
 		transpiler.setJvmArgs(this.equinoxJvmArgs);
+		transpiler.setDaemon(this.equinoxDaemon, this.equinoxDaemonIdleTimeout);
 		List<Path> jars = new ArrayList<>();
 		if(this.classpathJars != null) {
 			Arrays.stream(this.classpathJars).map(File::toPath).forEach(jars::add);
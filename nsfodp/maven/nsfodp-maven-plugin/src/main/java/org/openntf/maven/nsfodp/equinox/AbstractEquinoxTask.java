@@ -22,16 +22,21 @@ import java.io.InputStreamReader;
 import java.io.Reader;
 import java.net.URL;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import org.apache.commons.lang3.SystemUtils;
@@ -45,9 +50,34 @@ import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.project.MavenProject;
 import org.codehaus.plexus.component.repository.ComponentDependency;
 import org.openntf.maven.nsfodp.Messages;
+import org.openntf.maven.nsfodp.util.JsonUtil;
+import org.openntf.nsfodp.commons.NSFODPConstants;
+import org.openntf.nsfodp.commons.NSFODPUtil;
 import org.openntf.nsfodp.commons.osgi.EquinoxRunner;
 
 public abstract class AbstractEquinoxTask {
+	private static final String[] PLATFORM_ARTIFACTS = {
+		"org.openntf.nsfodp.commons", //$NON-NLS-1$
+		"org.openntf.nsfodp.notesapi.darwinonapi", //$NON-NLS-1$
+		"org.openntf.nsfodp.commons.dxl", //$NON-NLS-1$
+		"org.openntf.nsfodp.commons.odp", //$NON-NLS-1$
+		"org.openntf.nsfodp.compiler", //$NON-NLS-1$
+		"org.openntf.nsfodp.compiler.equinox", //$NON-NLS-1$
+		"org.openntf.nsfodp.deployment", //$NON-NLS-1$
+		"org.openntf.nsfodp.exporter", //$NON-NLS-1$
+		"org.openntf.nsfodp.exporter.equinox", //$NON-NLS-1$
+		"org.openntf.nsfodp.transpiler", //$NON-NLS-1$
+		"org.openntf.nsfodp.transpiler.equinox", //$NON-NLS-1$
+		"com.ibm.xsp.extlibx.bazaar", //$NON-NLS-1$
+		"com.ibm.xsp.extlibx.bazaar.interpreter", //$NON-NLS-1$
+		"com.darwino.domino.napi" //$NON-NLS-1$
+	};
+	private static final Collection<String> PLATFORM_ARTIFACTS_STARTED = Arrays.asList(
+		"org.openntf.nsfodp.compiler", //$NON-NLS-1$
+		"org.openntf.nsfodp.deployment", //$NON-NLS-1$
+		"org.openntf.nsfodp.transpiler" //$NON-NLS-1$
+	);
+	
 	private final PluginDescriptor pluginDescriptor;
 	private final MavenSession mavenSession;
 	private final MavenProject project;
@@ -63,6 +93,8 @@ public abstract class AbstractEquinoxTask {
 	private boolean successFlag;
 	
 	private String jvmArgs;
+	private boolean daemon;
+	private long daemonIdleTimeout = 30;
 
 	public AbstractEquinoxTask(PluginDescriptor pluginDescriptor, MavenSession mavenSession, MavenProject project, Log log, Path notesProgram, URL notesPlatform, Path notesIni) throws IOException {
 		this.pluginDescriptor = pluginDescriptor;
@@ -104,6 +136,20 @@ public abstract class AbstractEquinoxTask {
 		this.jvmArgs = jvmArgs;
 	}
 	
+	/**
+	 * Sets whether to run the task in a long-lived Equinox daemon shared with other builds
+	 * using the same configuration, rather than in a new framework.
+	 * 
+	 * @param daemon whether to use the daemon
+	 * @param idleTimeout the number of minutes the daemon should wait for a new job before
+	 *        shutting down
+	 * @since 3.5.0
+	 */
+	public void setDaemon(boolean daemon, long idleTimeout) {
+		this.daemon = daemon;
+		this.daemonIdleTimeout = idleTimeout;
+	}
+	
 	protected void run(String applicationId) {
 		successFlag = false;
 		try {
@@ -113,7 +159,8 @@ public abstract class AbstractEquinoxTask {
 			}
 			
 			EquinoxRunner runner = new EquinoxRunner();
-			runner.setJavaBin(getJavaBinary(notesProgram));
+			Path javaBin = getJavaBinary(notesProgram);
+			runner.setJavaBin(javaBin);
 			runner.setNotesProgram(notesProgram);
 			runner.setJvmArgs(this.jvmArgs);
 			
@@ -126,34 +173,12 @@ public abstract class AbstractEquinoxTask {
 				throw new MojoExecutionException(Messages.getString("EquinoxMojo.notesProgramDirDoesNotExist", notesProgram)); //$NON-NLS-1$
 			}
 			
-			Path target;
-			if("standalone-pom".equals(project.getArtifactId())) { //$NON-NLS-1$
-				target = Files.createTempDirectory("nsfodp"); //$NON-NLS-1$
-			} else {
-				target = Paths.get(project.getBuild().getDirectory());
-			}
-			Path framework = target.resolve("nsfodpequinox"); //$NON-NLS-1$
-			if(log.isDebugEnabled()) {
-				log.debug(Messages.getString("EquinoxMojo.creatingOsgi", framework)); //$NON-NLS-1$
+			List<Path> platformJars = new ArrayList<>();
+			for(String artifactId : PLATFORM_ARTIFACTS) {
+				Path jar = getDependencyJar(artifactId);
+				platformJars.add(jar);
+				runner.addPlatformEntry(getPathRef(jar, PLATFORM_ARTIFACTS_STARTED.contains(artifactId) ? 2 : -1));
 			}
-			runner.setWorkingDirectory(framework);
-
-			Stream.of(
-				getDependencyRef("org.openntf.nsfodp.commons", -1), //$NON-NLS-1$
-				getDependencyRef("org.openntf.nsfodp.notesapi.darwinonapi", -1), //$NON-NLS-1$
-				getDependencyRef("org.openntf.nsfodp.commons.dxl", -1), //$NON-NLS-1$
-				getDependencyRef("org.openntf.nsfodp.commons.odp", -1), //$NON-NLS-1$
-				getDependencyRef("org.openntf.nsfodp.compiler", 2), //$NON-NLS-1$
-				getDependencyRef("org.openntf.nsfodp.compiler.equinox", -1), //$NON-NLS-1$
-				getDependencyRef("org.openntf.nsfodp.deployment", 2), //$NON-NLS-1$
-				getDependencyRef("org.openntf.nsfodp.exporter", -1), //$NON-NLS-1$
-				getDependencyRef("org.openntf.nsfodp.exporter.equinox", -1), //$NON-NLS-1$
-				getDependencyRef("org.openntf.nsfodp.transpiler", 2), //$NON-NLS-1$
-				getDependencyRef("org.openntf.nsfodp.transpiler.equinox", -1), //$NON-NLS-1$
-				getDependencyRef("com.ibm.xsp.extlibx.bazaar", -1), //$NON-NLS-1$
-				getDependencyRef("com.ibm.xsp.extlibx.bazaar.interpreter", -1), //$NON-NLS-1$
-				getDependencyRef("com.darwino.domino.napi", -1) //$NON-NLS-1$
-			).forEach(runner::addPlatformEntry);
 			
 			runner.addClasspathJar(equinox);
 			
@@ -183,7 +208,8 @@ public abstract class AbstractEquinoxTask {
 			}
 			runner.setOsgiBundle(osgiBundle[0]);
 			
-			if(this.updateSites != null) {
+			// The daemon installs update sites per job instead
+			if(this.updateSites != null && !daemon) {
 				for(Path updateSite : this.updateSites) {
 					Path sitePlugins = updateSite.resolve("plugins"); //$NON-NLS-1$
 					if(Files.isDirectory(sitePlugins)) {
@@ -196,6 +222,23 @@ public abstract class AbstractEquinoxTask {
 				}
 			}
 			
+			if(daemon) {
+				runInDaemon(runner, applicationId, javaBin, platformJars);
+				return;
+			}
+			
+			Path target;
+			if("standalone-pom".equals(project.getArtifactId())) { //$NON-NLS-1$
+				target = Files.createTempDirectory("nsfodp"); //$NON-NLS-1$
+			} else {
+				target = Paths.get(project.getBuild().getDirectory());
+			}
+			Path framework = target.resolve("nsfodpequinox"); //$NON-NLS-1$
+			if(log.isDebugEnabled()) {
+				log.debug(Messages.getString("EquinoxMojo.creatingOsgi", framework)); //$NON-NLS-1$
+			}
+			runner.setWorkingDirectory(framework);
+			
 			if(systemProperties != null) {
 				systemProperties.forEach(runner::addSystemProperty);
 			}
@@ -240,6 +283,86 @@ public abstract class AbstractEquinoxTask {
 	// * Internal utility methods
 	// *******************************************************************************
 	
+	/**
+	 * Runs the application in the daemon for this configuration, launching it if needed.
+	 * 
+	 * @since 3.5.0
+	 */
+	private void runInDaemon(EquinoxRunner runner, String applicationId, Path javaBin, List<Path> platformJars) throws Exception {
+		Path daemonDir = NSFODPUtil.getTempDirectory()
+			.resolve("nsfodpdaemon") //$NON-NLS-1$
+			.resolve(computeDaemonKey(javaBin, platformJars));
+		
+		Map<String, String> jobProperties = new LinkedHashMap<>();
+		if(systemProperties != null) {
+			jobProperties.putAll(systemProperties);
+		}
+		if(updateSites != null && !updateSites.isEmpty()) {
+			List<String> sitePaths = updateSites.stream()
+				.map(site -> site.toAbsolutePath().toString())
+				.collect(Collectors.toList());
+			jobProperties.put(NSFODPConstants.PROP_UPDATESITE, JsonUtil.toJson(sitePaths));
+		}
+		
+		EquinoxDaemonClient client = new EquinoxDaemonClient(daemonDir, log);
+		int exitValue = client.run(applicationId, jobProperties, (portFile, outputFile) -> {
+			if(log.isDebugEnabled()) {
+				log.debug(Messages.getString("EquinoxMojo.creatingOsgi", daemonDir)); //$NON-NLS-1$
+			}
+			runner.setWorkingDirectory(daemonDir);
+			if(notesIni != null) {
+				runner.addSystemProperty(NSFODPConstants.PROP_NOTESINI, notesIni.toString());
+			}
+			runner.addSystemProperty(NSFODPConstants.PROP_DAEMON_PORTFILE, portFile.toString());
+			runner.addSystemProperty(NSFODPConstants.PROP_DAEMON_IDLETIMEOUT, Long.toString(daemonIdleTimeout));
+			// Any JRE links are left in place for the lifetime of the daemon
+			initJreJars(notesProgram);
+			return runner.startDetached(NSFODPConstants.APP_DAEMON, outputFile);
+		});
+		if(exitValue != 0) {
+			throw new RuntimeException(Messages.getString("EquinoxMojo.processExitedWithNonZero", exitValue)); //$NON-NLS-1$
+		}
+	}
+	
+	/**
+	 * Computes an identifier for the framework configuration, so that a daemon is only shared
+	 * among tasks that would otherwise launch an identical framework.
+	 * 
+	 * @since 3.5.0
+	 */
+	private String computeDaemonKey(Path javaBin, List<Path> platformJars) throws Exception {
+		MessageDigest digest = MessageDigest.getInstance("SHA-256"); //$NON-NLS-1$
+		List<Object> parts = new ArrayList<>();
+		parts.add(pluginDescriptor.getVersion());
+		parts.add(javaBin);
+		parts.add(notesProgram);
+		parts.add(notesPlatform);
+		parts.add(notesIni);
+		parts.add(jvmArgs);
+		List<Path> jars = new ArrayList<>(platformJars);
+		if(classpathJars != null) {
+			jars.addAll(classpathJars);
+		}
+		for(Path jar : jars) {
+			parts.add(jar.toAbsolutePath());
+			if(Files.exists(jar)) {
+				parts.add(Files.size(jar));
+				parts.add(Files.getLastModifiedTime(jar).toMillis());
+			}
+		}
+		for(Object part : parts) {
+			digest.update(String.valueOf(part).getBytes(StandardCharsets.UTF_8));
+			digest.update((byte)0);
+		}
+		StringBuilder result = new StringBuilder();
+		byte[] hash = digest.digest();
+		// The first half of the hash is plenty to distinguish configurations
+		for(int i = 0; i < hash.length / 2; i++) {
+			result.append(String.format("%02x", hash[i])); //$NON-NLS-1$
+		}
+		return result.toString();
+	}
+	
 	private Path getDependencyJar(String artifactId) throws MojoExecutionException {
 		List<ComponentDependency> dependencies = pluginDescriptor.getDependencies();
 		ComponentDependency dep = dependencies.stream()
@@ -264,11 +387,6 @@ public abstract class AbstractEquinoxTask {
 		return result;
 	}
 	
-	private String getDependencyRef(String artifactId, int startLevel) throws MojoExecutionException {
-		Path path = getDependencyJar(artifactId);
-		return getPathRef(path, startLevel);
-	}
-	
 	private String getPathRef(Path path, int startLevel) {
 		if(startLevel < 1) {
 			return "reference:" + path.toUri(); //$NON-NLS-1$
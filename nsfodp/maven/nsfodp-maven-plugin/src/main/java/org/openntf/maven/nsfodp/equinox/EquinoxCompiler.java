@@ -52,7 +52,8 @@ public class EquinoxCompiler extends AbstractEquinoxTask {
 			boolean appendTimestampToTitle,
 			String templateName,
 			boolean setProductionXspOptions,
-			String odsRelease
+			String odsRelease,
+			Path incrementalManifest
 		) {
 		setClasspathJars(classpathJars);
 		
@@ -70,6 +71,9 @@ public class EquinoxCompiler extends AbstractEquinoxTask {
 		}
 		props.put(NSFODPConstants.PROP_SETPRODUCTIONXSPOPTIONS, Boolean.toString(setProductionXspOptions));
 		props.put(NSFODPConstants.PROP_ODSRELEASE, StringUtil.toString(odsRelease));
+		if(incrementalManifest != null) {
+			props.put(NSFODPConstants.PROP_INCREMENTALMANIFEST, incrementalManifest.toAbsolutePath().toString());
+		}
 		
 		Path notesIni = getNotesIni();
 		if(notesIni != null) {
@@ -0,0 +1,179 @@
+/**
+ * Copyright © 2018-2021 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.maven.nsfodp.equinox;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.apache.maven.plugin.logging.Log;
+import org.openntf.maven.nsfodp.Messages;
+import org.openntf.nsfodp.commons.osgi.EquinoxDaemon;
+
+/**
+ * Submits jobs to a long-lived local Equinox daemon, launching the daemon first if one is not
+ * already running for the given configuration.
+ *
+ * @author Jesse Gallagher
+ * @since 3.5.0
+ * @see EquinoxDaemon
+ */
+public class EquinoxDaemonClient {
+	/**
+	 * Launches a new daemon process.
+	 */
+	@FunctionalInterface
+	public interface Launcher {
+		/**
+		 * @param portFile the file the daemon should publish its connection information to
+		 * @param outputFile the file the daemon's console output should be written to
+		 * @return the launched process
+		 * @throws Exception if there is a problem launching the daemon
+		 */
+		Process launch(Path portFile, Path outputFile) throws Exception;
+	}
+
+	private static final long STARTUP_TIMEOUT = TimeUnit.MINUTES.toMillis(10);
+	private static final long STARTUP_POLL_INTERVAL = 250;
+
+	private final Path directory;
+	private final Log log;
+
+	/**
+	 * @param directory the working directory of the daemon for this configuration
+	 * @param log the log to send job output to
+	 */
+	public EquinoxDaemonClient(Path directory, Log log) {
+		this.directory = directory;
+		this.log = log;
+	}
+
+	/**
+	 * Runs a job in the daemon, logging its output as it is produced.
+	 *
+	 * @param applicationId the Equinox application to run
+	 * @param properties the properties to pass to the application
+	 * @param launcher the launcher to use if no daemon is running
+	 * @return the exit code of the job
+	 * @throws Exception if there is a problem launching or communicating with the daemon
+	 */
+	public int run(String applicationId, Map<String, String> properties, Launcher launcher) throws Exception {
+		Socket socket = null;
+		try {
+			String token;
+			Path portFile = getSiblingPath(".port"); //$NON-NLS-1$
+			// Hold a lock while connecting so that concurrent builds don't launch duplicate daemons
+			Files.createDirectories(directory.getParent());
+			try(FileChannel lockChannel = FileChannel.open(getSiblingPath(".lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) { //$NON-NLS-1$
+				try(FileLock lock = lockChannel.lock()) {
+					Properties endpoint = EquinoxDaemon.readPortFile(portFile);
+					socket = connect(endpoint);
+					if(socket == null) {
+						endpoint = launch(launcher, portFile);
+						socket = connect(endpoint);
+						if(socket == null) {
+							throw new IOException(Messages.getString("EquinoxMojo.daemonFailedToStart", getSiblingPath(".log"))); //$NON-NLS-1$ //$NON-NLS-2$
+						}
+					} else if(log.isDebugEnabled()) {
+						log.debug(Messages.getString("EquinoxMojo.usingDaemon", directory)); //$NON-NLS-1$
+					}
+					token = EquinoxDaemon.getToken(endpoint);
+				}
+			}
+
+			new EquinoxDaemon.Request(token, applicationId, properties).write(socket.getOutputStream());
+
+			try(BufferedReader r = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+				String line;
+				while((line = r.readLine()) != null) {
+					if(line.startsWith(EquinoxDaemon.EXIT_PREFIX)) {
+						return Integer.parseInt(line.substring(EquinoxDaemon.EXIT_PREFIX.length()).trim());
+					}
+					if(log.isInfoEnabled()) {
+						log.info(line);
+					}
+				}
+			}
+			throw new IOException(Messages.getString("EquinoxMojo.daemonConnectionClosed")); //$NON-NLS-1$
+		} finally {
+			if(socket != null) {
+				socket.close();
+			}
+		}
+	}
+
+	// *******************************************************************************
+	// * Internal utility methods
+	// *******************************************************************************
+
+	private Properties launch(Launcher launcher, Path portFile) throws Exception {
+		if(log.isInfoEnabled()) {
+			log.info(Messages.getString("EquinoxMojo.startingDaemon", directory)); //$NON-NLS-1$
+		}
+		Files.deleteIfExists(portFile);
+		Path outputFile = getSiblingPath(".log"); //$NON-NLS-1$
+		Files.deleteIfExists(outputFile);
+		Process proc = launcher.launch(portFile, outputFile);
+
+		long deadline = System.currentTimeMillis() + STARTUP_TIMEOUT;
+		while(System.currentTimeMillis() < deadline) {
+			Properties endpoint = EquinoxDaemon.readPortFile(portFile);
+			if(endpoint != null) {
+				return endpoint;
+			}
+			if(!proc.isAlive()) {
+				break;
+			}
+			Thread.sleep(STARTUP_POLL_INTERVAL);
+		}
+
+		if(Files.isReadable(outputFile)) {
+			try(Stream<String> lines = Files.lines(outputFile)) {
+				lines.forEach(log::error);
+			}
+		}
+		proc.destroyForcibly();
+		throw new IOException(Messages.getString("EquinoxMojo.daemonFailedToStart", outputFile)); //$NON-NLS-1$
+	}
+
+	private static Socket connect(Properties endpoint) {
+		if(endpoint == null) {
+			return null;
+		}
+		try {
+			return new Socket(InetAddress.getLoopbackAddress(), EquinoxDaemon.getPort(endpoint));
+		} catch(IOException | RuntimeException e) {
+			// Then the daemon is no longer running
+			return null;
+		}
+	}
+
+	private Path getSiblingPath(String extension) {
+		return directory.resolveSibling(directory.getFileName() + extension);
+	}
+}
@@ -39,7 +39,7 @@ public class EquinoxExporter extends AbstractEquinoxTask {
 		super(pluginDescriptor, mavenSession, project, log, notesProgram, notesPlatform, notesIni);
 	}
 
-	public void exportOdp(Path odpDir, String databasePath, boolean binaryDxl, boolean swiperFilter, boolean richTextAsItemData) {
+	public void exportOdp(Path odpDir, String databasePath, boolean binaryDxl, boolean swiperFilter, boolean richTextAsItemData, int exportThreads) {
 		Map<String, String> props = new HashMap<>();
 		props.put(NSFODPConstants.PROP_OUTPUTFILE, odpDir.toAbsolutePath().toString());
 		props.put(NSFODPConstants.PROP_EXPORTER_DATABASE_PATH, databasePath);
@@ -47,6 +47,7 @@ public class EquinoxExporter extends AbstractEquinoxTask {
 		props.put(NSFODPConstants.PROP_EXPORTER_SWIPER_FILTER, Boolean.toString(swiperFilter));
 		props.put(NSFODPConstants.PROP_RICH_TEXT_AS_ITEM_DATA, Boolean.toString(richTextAsItemData));
 		props.put(NSFODPConstants.PROP_PROJECT_NAME, getProject().getGroupId() + '.' + getProject().getArtifactId());
+		props.put(NSFODPConstants.PROP_EXPORTER_THREADS, Integer.toString(exportThreads));
 		Path notesIni = getNotesIni();
 		if(notesIni != null) {
 			props.put(NSFODPConstants.PROP_NOTESINI, notesIni.toString());
@@ -0,0 +1,254 @@
+/**
+ * Copyright © 2018-2021 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.maven.nsfodp.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.http.entity.ContentProducer;
+import org.apache.http.entity.EntityTemplate;
+
+/**
+ * An HTTP entity that writes a compilation package for the ODP compiler servlet directly to
+ * the request body as it is produced, without creating intermediate files.
+ *
+ * <p>The package contains {@code odp.zip}, a {@code siteN.zip} for each update site, and a
+ * {@code classpath/} entry for each dependency JAR. Files that are already compressed, such as
+ * JARs and nested ZIPs, are stored rather than deflated again.</p>
+ *
+ * <p>When {@link #setCachedDependencies} has been called, the package instead lists the digests
+ * of all classpath JARs and update sites in {@code dependencies.json} and includes only the
+ * ones the server reported as missing from its cache.</p>
+ *
+ * <p>The package is regenerated each time it is written, so the entity may be repeated, for
+ * example when a request is retried.</p>
+ *
+ * @author Jesse Gallagher
+ * @since 3.5.0
+ */
+public class CompilationPackageEntity extends EntityTemplate {
+	private static final Set<String> COMPRESSED_EXTENSIONS = new HashSet<>(Arrays.asList(
+		"jar", "zip", "gz", "tgz", "bz2", "xz", "7z", "nsf", "ntf", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$ //$NON-NLS-7$ //$NON-NLS-8$ //$NON-NLS-9$
+		"png", "jpg", "jpeg", "gif", "webp", "woff", "woff2", "mp3", "mp4", "pdf" //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$ //$NON-NLS-7$ //$NON-NLS-8$ //$NON-NLS-9$ //$NON-NLS-10$
+	));
+
+	private final Producer producer;
+
+	/**
+	 * @param odpDirectory the ODP to package
+	 * @param updateSites the update site directories to package, which may be {@code null}
+	 * @param classpathJars the classpath JARs to package, which may be {@code null}
+	 * @param compressionLevel the {@link Deflater} level to use for compressible files
+	 */
+	public CompilationPackageEntity(Path odpDirectory, List<Path> updateSites, List<Path> classpathJars, int compressionLevel) {
+		this(new Producer(odpDirectory, updateSites, classpathJars, compressionLevel));
+	}
+
+	private CompilationPackageEntity(Producer producer) {
+		super(producer);
+		this.producer = producer;
+		setContentType("application/zip"); //$NON-NLS-1$
+		setChunked(true);
+	}
+
+	/**
+	 * Switches the package to reference dependencies in the server's cache by digest.
+	 *
+	 * @param jarDigests the digests of the classpath JARs, in order
+	 * @param siteDigests the digests of the update sites, in order
+	 * @param missingDigests the digests the server reported as missing, which will be uploaded
+	 */
+	public void setCachedDependencies(List<String> jarDigests, List<String> siteDigests, Set<String> missingDigests) {
+		producer.jarDigests = jarDigests;
+		producer.siteDigests = siteDigests;
+		producer.missingDigests = missingDigests;
+	}
+
+	/**
+	 * Writes the package content each time the entity is written.
+	 */
+	private static class Producer implements ContentProducer {
+		private final Path odpDirectory;
+		private final List<Path> updateSites;
+		private final List<Path> classpathJars;
+		private final int compressionLevel;
+		private List<String> jarDigests;
+		private List<String> siteDigests;
+		private Set<String> missingDigests;
+
+		Producer(Path odpDirectory, List<Path> updateSites, List<Path> classpathJars, int compressionLevel) {
+			this.odpDirectory = odpDirectory;
+			this.updateSites = updateSites == null ? Collections.emptyList() : updateSites;
+			this.classpathJars = classpathJars == null ? Collections.emptyList() : classpathJars;
+			this.compressionLevel = compressionLevel;
+		}
+
+		@Override
+		public void writeTo(OutputStream os) throws IOException {
+			// The stream is finished rather than closed, leaving the request body open
+			PackageZipOutputStream zos = new PackageZipOutputStream(os);
+			try {
+				writePackage(zos);
+				zos.finish();
+			} finally {
+				zos.releaseDeflater();
+			}
+			os.flush();
+		}
+
+		private void writePackage(ZipOutputStream zos) throws IOException {
+			if(jarDigests != null) {
+				// Write the manifest first so that the server knows to expect the cache entries
+				Map<String, Object> dependencies = new LinkedHashMap<>();
+				dependencies.put("classpath", jarDigests); //$NON-NLS-1$
+				dependencies.put("sites", siteDigests); //$NON-NLS-1$
+				zos.putNextEntry(new ZipEntry("dependencies.json")); //$NON-NLS-1$
+				zos.write(JsonUtil.toJson(dependencies).getBytes(StandardCharsets.UTF_8));
+				zos.closeEntry();
+			}
+
+			// Nested ZIPs are compressed internally, so they're wrapped without further compression.
+			//   They're still DEFLATED entries, as STORED entries need their size and CRC up front
+			zos.setLevel(Deflater.NO_COMPRESSION);
+			zos.putNextEntry(new ZipEntry("odp.zip")); //$NON-NLS-1$
+			writeDirectory(odpDirectory, zos);
+			zos.closeEntry();
+
+			Set<String> written = new HashSet<>();
+			for(int i = 0; i < updateSites.size(); i++) {
+				String name;
+				if(jarDigests == null) {
+					name = "site" + i + ".zip"; //$NON-NLS-1$ //$NON-NLS-2$
+				} else if(missingDigests.contains(siteDigests.get(i)) && written.add(siteDigests.get(i))) {
+					name = "site-" + siteDigests.get(i) + ".zip"; //$NON-NLS-1$ //$NON-NLS-2$
+				} else {
+					continue;
+				}
+				zos.putNextEntry(new ZipEntry(name));
+				writeDirectory(updateSites.get(i), zos);
+				zos.closeEntry();
+			}
+
+			for(int i = 0; i < classpathJars.size(); i++) {
+				Path jar = classpathJars.get(i);
+				if(jarDigests == null) {
+					putStoredEntry(zos, "classpath/" + i + "-" + jar.getFileName(), jar); //$NON-NLS-1$ //$NON-NLS-2$
+				} else if(missingDigests.contains(jarDigests.get(i)) && written.add(jarDigests.get(i))) {
+					putStoredEntry(zos, "classpath/" + jarDigests.get(i) + ".jar", jar); //$NON-NLS-1$ //$NON-NLS-2$
+				}
+			}
+		}
+
+		private void writeDirectory(Path dir, OutputStream os) throws IOException {
+			PackageZipOutputStream zos = new PackageZipOutputStream(os);
+			try {
+				zos.setLevel(compressionLevel);
+				writeEntries(dir, zos);
+				zos.finish();
+			} finally {
+				zos.releaseDeflater();
+			}
+		}
+
+		private void writeEntries(Path dir, ZipOutputStream zos) throws IOException {
+			List<Path> paths;
+			try(Stream<Path> walk = Files.walk(dir)) {
+				paths = walk
+					.filter(p -> !p.equals(dir))
+					.filter(p -> !p.getFileName().toString().startsWith(".DS_Store")) //$NON-NLS-1$
+					.collect(Collectors.toList());
+			}
+			for(Path path : paths) {
+				String name = dir.relativize(path).toString().replace(path.getFileSystem().getSeparator(), "/"); //$NON-NLS-1$
+				if(Files.isDirectory(path)) {
+					zos.putNextEntry(new ZipEntry(name + '/'));
+					zos.closeEntry();
+				} else if(isCompressed(path)) {
+					putStoredEntry(zos, name, path);
+				} else {
+					zos.putNextEntry(new ZipEntry(name));
+					Files.copy(path, zos);
+					zos.closeEntry();
+				}
+			}
+		}
+	}
+
+	/**
+	 * A {@link ZipOutputStream} whose default {@link Deflater} can be released without closing
+	 * the underlying stream, as {@link ZipOutputStream#finish()} alone leaves it allocated.
+	 */
+	private static class PackageZipOutputStream extends ZipOutputStream {
+		PackageZipOutputStream(OutputStream os) {
+			super(os, StandardCharsets.UTF_8);
+		}
+
+		void releaseDeflater() {
+			def.end();
+		}
+	}
+
+	// *******************************************************************************
+	// * Internal utility methods
+	// *******************************************************************************
+
+	private static boolean isCompressed(Path file) {
+		String name = file.getFileName().toString();
+		int dotIndex = name.lastIndexOf('.');
+		return dotIndex > -1 && COMPRESSED_EXTENSIONS.contains(name.substring(dotIndex+1).toLowerCase(Locale.ENGLISH));
+	}
+
+	private static void putStoredEntry(ZipOutputStream zos, String name, Path file) throws IOException {
+		// Read the file once up front to find the CRC required by STORED entries
+		CRC32 crc = new CRC32();
+		byte[] buffer = new byte[16 * 1024];
+		long size = 0;
+		try(InputStream is = Files.newInputStream(file)) {
+			int read;
+			while((read = is.read(buffer)) > -1) {
+				crc.update(buffer, 0, read);
+				size += read;
+			}
+		}
+
+		ZipEntry entry = new ZipEntry(name);
+		entry.setMethod(ZipEntry.STORED);
+		entry.setSize(size);
+		entry.setCompressedSize(size);
+		entry.setCrc(crc.getValue());
+		zos.putNextEntry(entry);
+		Files.copy(file, zos);
+		zos.closeEntry();
+	}
+}
@@ -0,0 +1,217 @@
+/**
+ * Copyright © 2018-2021 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.maven.nsfodp.util;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Records content hashes of the inputs to a build step. The recorded fingerprint can be compared
+ * with the one from a previous build to find the inputs that actually changed, independent of
+ * file modification times.
+ *
+ * <p>Each input is identified by a key, such as {@code "odp:Forms/Foo.form"}. Fingerprints are
+ * stored one input per line as the hex-encoded SHA-256 hash, a space, and the key.</p>
+ *
+ * @author Jesse Gallagher
+ * @since 3.5.0
+ */
+public class CompileFingerprint {
+	private final SortedMap<String, String> entries = new TreeMap<>();
+
+	/**
+	 * Adds the content hash of a single file.
+	 *
+	 * @param key the key to record the file under
+	 * @param file the file to hash
+	 * @throws IOException if there is a problem reading the file
+	 */
+	public void addFile(String key, Path file) throws IOException {
+		entries.put(key, hash(file));
+	}
+
+	/**
+	 * Adds the content hashes of all files within a directory, hashing them in parallel. Each
+	 * file is recorded under {@code prefix} followed by its "/"-separated relative path.
+	 *
+	 * @param prefix the prefix to use for the keys of files in the directory
+	 * @param dir the directory to hash
+	 * @throws IOException if there is a problem reading the directory
+	 */
+	public void addDirectory(String prefix, Path dir) throws IOException {
+		List<Path> files;
+		try(Stream<Path> walk = Files.walk(dir)) {
+			files = walk.filter(Files::isRegularFile).collect(Collectors.toList());
+		}
+		try {
+			Map<String, String> hashes = files.parallelStream()
+				.collect(Collectors.toMap(
+					file -> prefix + toKey(dir.relativize(file)),
+					file -> {
+						try {
+							return hash(file);
+						} catch(IOException e) {
+							throw new UncheckedIOException(e);
+						}
+					}
+				));
+			entries.putAll(hashes);
+		} catch(UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Adds the hash of a configuration value.
+	 *
+	 * @param key the key to record the value under
+	 * @param value the value to hash, which may be {@code null}
+	 */
+	public void addValue(String key, Object value) {
+		entries.put(key, hash(String.valueOf(value).getBytes(StandardCharsets.UTF_8)));
+	}
+
+	/**
+	 * @return an unmodifiable view of the recorded keys and their hashes
+	 */
+	public SortedMap<String, String> getEntries() {
+		return Collections.unmodifiableSortedMap(entries);
+	}
+
+	/**
+	 * Determines the inputs that differ from a previous fingerprint.
+	 *
+	 * @param previous the fingerprint of the previous build, or {@code null} if there was none
+	 * @return the keys of inputs that were added, removed, or changed since {@code previous}
+	 */
+	public SortedSet<String> getChanges(CompileFingerprint previous) {
+		SortedSet<String> result = new TreeSet<>();
+		if(previous == null) {
+			result.addAll(entries.keySet());
+			return result;
+		}
+		for(Map.Entry<String, String> entry : entries.entrySet()) {
+			if(!Objects.equals(entry.getValue(), previous.entries.get(entry.getKey()))) {
+				result.add(entry.getKey());
+			}
+		}
+		for(String key : previous.entries.keySet()) {
+			if(!entries.containsKey(key)) {
+				result.add(key);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Writes the fingerprint to a file, replacing it atomically.
+	 *
+	 * @param file the file to write
+	 * @throws IOException if there is a problem writing the file
+	 */
+	public void store(Path file) throws IOException {
+		Files.createDirectories(file.getParent());
+		Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp"); //$NON-NLS-1$
+		try(BufferedWriter w = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+			for(Map.Entry<String, String> entry : entries.entrySet()) {
+				w.write(entry.getValue());
+				w.write(' ');
+				w.write(entry.getKey());
+				w.newLine();
+			}
+		}
+		Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Reads a fingerprint written by {@link #store(Path)}.
+	 *
+	 * @param file the file to read
+	 * @return the read fingerprint, or {@code null} if {@code file} does not exist
+	 * @throws IOException if there is a problem reading the file
+	 */
+	public static CompileFingerprint load(Path file) throws IOException {
+		if(!Files.isRegularFile(file)) {
+			return null;
+		}
+		CompileFingerprint result = new CompileFingerprint();
+		for(String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+			int spaceIndex = line.indexOf(' ');
+			if(spaceIndex > 0) {
+				result.entries.put(line.substring(spaceIndex+1), line.substring(0, spaceIndex));
+			}
+		}
+		return result;
+	}
+
+	// *******************************************************************************
+	// * Internal utility methods
+	// *******************************************************************************
+
+	private static String toKey(Path relativePath) {
+		return relativePath.toString().replace(relativePath.getFileSystem().getSeparator(), "/"); //$NON-NLS-1$
+	}
+
+	private static String hash(Path file) throws IOException {
+		MessageDigest digest = newDigest();
+		byte[] buffer = new byte[16 * 1024];
+		try(InputStream is = Files.newInputStream(file)) {
+			int read;
+			while((read = is.read(buffer)) > -1) {
+				digest.update(buffer, 0, read);
+			}
+		}
+		return toHex(digest.digest());
+	}
+
+	private static String hash(byte[] value) {
+		return toHex(newDigest().digest(value));
+	}
+
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256"); //$NON-NLS-1$
+		} catch(NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String toHex(byte[] bytes) {
+		StringBuilder result = new StringBuilder(bytes.length * 2);
+		for(byte b : bytes) {
+			result.append(String.format("%02x", b)); //$NON-NLS-1$
+		}
+		return result.toString();
+	}
+}
@@ -0,0 +1,148 @@
+/**
+ * Copyright © 2018-2021 Jesse Gallagher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.maven.nsfodp.util;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.function.Predicate;
+
+import org.openntf.nsfodp.commons.NSFODPUtil;
+
+/**
+ * Utilities for staging a copy of a directory for later modification.
+ *
+ * @author Jesse Gallagher
+ * @since 3.5.0
+ */
+public enum StagingUtil {
+	;
+
+	/**
+	 * Brings {@code dest} in line with the contents of {@code source}, reusing the results of a
+	 * previous staging where files are unchanged.
+	 *
+	 * <p>Files are hard-linked into the destination when the filesystem allows it and copied
+	 * otherwise. Files matched by {@code materialize} are always real copies, so that they can be
+	 * modified in place without affecting the source. Files and directories in {@code dest} that
+	 * are not present in {@code source} are removed.</p>
+	 *
+	 * @param source the directory to stage
+	 * @param dest the staging directory, which will be created if needed
+	 * @param materialize a filter of paths, relative to {@code source}, that must be staged as
+	 *        independent copies
+	 * @throws IOException if there is a problem staging the directory
+	 */
+	public static void stageDirectory(Path source, Path dest, Predicate<Path> materialize) throws IOException {
+		Files.createDirectories(dest);
+		removeStale(source, dest);
+		Files.walkFileTree(source, new StagingFileVisitor(source, dest, materialize));
+	}
+
+	// *******************************************************************************
+	// * Internal utility methods
+	// *******************************************************************************
+
+	private static void removeStale(Path source, Path dest) throws IOException {
+		Files.walkFileTree(dest, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+				if(dir.equals(dest)) {
+					return FileVisitResult.CONTINUE;
+				}
+				if(!Files.isDirectory(source.resolve(dest.relativize(dir).toString()))) {
+					NSFODPUtil.deltree(dir);
+					return FileVisitResult.SKIP_SUBTREE;
+				}
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				if(!Files.isRegularFile(source.resolve(dest.relativize(file).toString()))) {
+					Files.delete(file);
+				}
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	private static class StagingFileVisitor extends SimpleFileVisitor<Path> {
+		private final Path sourcePath;
+		private final Path targetPath;
+		private final Predicate<Path> materialize;
+		private boolean canLink = true;
+
+		public StagingFileVisitor(Path sourcePath, Path targetPath, Predicate<Path> materialize) {
+			this.sourcePath = sourcePath;
+			this.targetPath = targetPath;
+			this.materialize = materialize;
+		}
+
+		@Override
+		public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+			Files.createDirectories(targetPath.resolve(sourcePath.relativize(dir).toString()));
+			return FileVisitResult.CONTINUE;
+		}
+
+		@Override
+		public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+			if(file.getFileName().toString().startsWith(".DS_Store")) { //$NON-NLS-1$
+				// skip
+				return FileVisitResult.CONTINUE;
+			}
+
+			Path relativePath = sourcePath.relativize(file);
+			Path dest = targetPath.resolve(relativePath.toString());
+			boolean copy = materialize.test(relativePath);
+
+			if(Files.exists(dest, LinkOption.NOFOLLOW_LINKS)) {
+				boolean linked = Files.isSameFile(file, dest);
+				if(linked && !copy) {
+					return FileVisitResult.CONTINUE;
+				} else if(!linked && isSameCopy(attrs, dest)) {
+					return FileVisitResult.CONTINUE;
+				}
+				// Never write through an existing link, as that would modify the source
+				Files.delete(dest);
+			}
+
+			if(!copy && canLink) {
+				try {
+					Files.createLink(dest, file);
+					return FileVisitResult.CONTINUE;
+				} catch(UnsupportedOperationException | IOException e) {
+					// Likely a filesystem without hard links or a different volume - copy from now on
+					canLink = false;
+				}
+			}
+			Files.copy(file, dest, StandardCopyOption.COPY_ATTRIBUTES);
+			return FileVisitResult.CONTINUE;
+		}
+
+		private static boolean isSameCopy(BasicFileAttributes sourceAttrs, Path dest) throws IOException {
+			BasicFileAttributes destAttrs = Files.readAttributes(dest, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+			return destAttrs.isRegularFile()
+				&& destAttrs.size() == sourceAttrs.size()
+				&& destAttrs.lastModifiedTime().equals(sourceAttrs.lastModifiedTime());
+		}
+	}
+}
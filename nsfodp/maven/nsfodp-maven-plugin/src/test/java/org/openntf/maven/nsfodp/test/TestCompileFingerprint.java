@@ -0,0 +1,52 @@
+package org.openntf.maven.nsfodp.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openntf.maven.nsfodp.util.CompileFingerprint;
+
+@SuppressWarnings("nls")
+public class TestCompileFingerprint {
+	@Test
+	public void testChanges(@TempDir Path dir) throws Exception {
+		Path odp = dir.resolve("odp");
+		Files.createDirectories(odp.resolve("Forms"));
+		Files.write(odp.resolve("Forms").resolve("Foo.form"), "foo".getBytes(StandardCharsets.UTF_8));
+		Files.write(odp.resolve("Forms").resolve("Bar.form"), "bar".getBytes(StandardCharsets.UTF_8));
+
+		CompileFingerprint first = new CompileFingerprint();
+		first.addDirectory("odp:", odp);
+		first.addValue("setting:compilerLevel", "1.8");
+		assertEquals(first.getEntries().keySet(), first.getChanges(null));
+
+		Path fingerprintFile = dir.resolve("fingerprint.txt");
+		assertNull(CompileFingerprint.load(fingerprintFile));
+		first.store(fingerprintFile);
+		CompileFingerprint loaded = CompileFingerprint.load(fingerprintFile);
+		assertEquals(first.getEntries(), loaded.getEntries());
+
+		// Rewriting a file with the same content is not a change
+		Files.write(odp.resolve("Forms").resolve("Foo.form"), "foo".getBytes(StandardCharsets.UTF_8));
+		CompileFingerprint same = new CompileFingerprint();
+		same.addDirectory("odp:", odp);
+		same.addValue("setting:compilerLevel", "1.8");
+		assertTrue(same.getChanges(loaded).isEmpty());
+
+		Files.write(odp.resolve("Forms").resolve("Bar.form"), "baz".getBytes(StandardCharsets.UTF_8));
+		Files.write(odp.resolve("Forms").resolve("New.form"), "new".getBytes(StandardCharsets.UTF_8));
+		Files.delete(odp.resolve("Forms").resolve("Foo.form"));
+		CompileFingerprint changed = new CompileFingerprint();
+		changed.addDirectory("odp:", odp);
+		changed.addValue("setting:compilerLevel", "1.8");
+		assertEquals(new TreeSet<>(Arrays.asList("odp:Forms/Bar.form", "odp:Forms/Foo.form", "odp:Forms/New.form")), changed.getChanges(loaded));
+	}
+}
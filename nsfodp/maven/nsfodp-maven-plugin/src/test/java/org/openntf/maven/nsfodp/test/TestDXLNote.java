@@ -0,0 +1,206 @@
+package org.openntf.maven.nsfodp.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+import org.openntf.nsfodp.commons.dxl.DXLNote;
+import org.openntf.nsfodp.commons.dxl.DXLUtil;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import com.ibm.commons.util.StringUtil;
+import com.ibm.commons.xml.DOMUtil;
+import com.ibm.commons.xml.XMLException;
+
+@SuppressWarnings("nls")
+public class TestDXLNote {
+	private static final String DXL = "<?xml version='1.0' encoding='utf-8'?>"
+		+ "<note class='form' xmlns='http://www.lotus.com/dxl'>"
+		+ "<item name='$TITLE'><text>Foo.java</text></item>"
+		+ "<item name='$ClassSize0'><number>1</number></item>"
+		+ "<item name='$ClassSize0'><number>2</number></item>"
+		+ "</note>";
+
+	@Test
+	public void testReadExisting() throws XMLException {
+		DXLNote note = new DXLNote(parse());
+		assertEquals(Collections.singletonList("Foo.java"), note.getItemValueStrings("$TITLE"));
+		assertEquals(2, note.getItems("$ClassSize0").size());
+		assertFalse(note.hasItem("$ClassData0"));
+	}
+
+	@Test
+	public void testIndexStaysCurrent() throws XMLException {
+		DXLNote note = new DXLNote(parse());
+		note.writeItemNumber("$ClassSize0", 3);
+		assertEquals(1, note.getItems("$ClassSize0").size());
+		note.writeItemString("$ClassIndexItem", true, "a", "b");
+		note.writeItemString("$ClassIndexItem", true, "c");
+		assertEquals(Collections.singletonList("c"), note.getItemValueStrings("$ClassIndexItem"));
+		note.deleteItems("$TITLE");
+		assertFalse(note.hasItem("$TITLE"));
+
+		// A fresh index over the same document should agree
+		DXLNote reread = new DXLNote(note.getDocument());
+		for(String itemName : Arrays.asList("$TITLE", "$ClassSize0", "$ClassIndexItem")) {
+			assertEquals(note.getItems(itemName), reread.getItems(itemName), itemName);
+		}
+	}
+
+	@Test
+	public void testMatchesLegacy() throws XMLException {
+		Document legacy = parse();
+		Document indexed = parse();
+		DXLNote note = new DXLNote(indexed);
+
+		// An outer class and two inner classes, written twice as when recompiling
+		for(int pass = 0; pass < 2; pass++) {
+			for(int i = 0; i < 3; i++) {
+				byte[] data = bytes(5000 + pass * 3000 + i * 100);
+				legacyWriteItemDataRaw(legacy, "$ClassData" + i, data, 2048, 10);
+				legacyWriteItemNumber(legacy, "$ClassSize" + i, data.length);
+				note.writeItemDataRaw("$ClassData" + i, data, 2048, 10);
+				note.writeItemNumber("$ClassSize" + i, data.length);
+			}
+		}
+		assertEquals(DOMUtil.getXMLString(legacy), DOMUtil.getXMLString(indexed));
+
+		// Replaced and appended text items
+		legacyWriteItemString(legacy, "$ClassIndexItem", true, "a", "b");
+		legacyWriteItemString(legacy, "$ClassIndexItem", true, "c");
+		legacyWriteItemString(legacy, "$TITLE", false, "Bar.java");
+		legacyWriteItemString(legacy, "$Comment", true, (CharSequence[])null);
+		note.writeItemString("$ClassIndexItem", true, "a", "b");
+		note.writeItemString("$ClassIndexItem", true, "c");
+		note.writeItemString("$TITLE", false, "Bar.java");
+		note.writeItemString("$Comment", true, (CharSequence[])null);
+		assertEquals(DOMUtil.getXMLString(legacy), DOMUtil.getXMLString(indexed));
+
+		// Removing an inner class's pair
+		legacyDeleteItems(legacy, "$ClassData2");
+		legacyDeleteItems(legacy, "$ClassSize2");
+		legacyWriteItemNumber(legacy, "$ClassSize2", (Number[])null);
+		note.deleteItems("$ClassData2");
+		note.deleteItems("$ClassSize2");
+		note.writeItemNumber("$ClassSize2", (Number[])null);
+		assertEquals(DOMUtil.getXMLString(legacy), DOMUtil.getXMLString(indexed));
+	}
+
+	@Test
+	public void testNonNote() throws XMLException {
+		Document doc = DOMUtil.createDocument(new StringReader("<database/>"));
+		assertThrows(IllegalStateException.class, () -> new DXLNote(doc));
+		assertTrue(DXLUtil.getItemValueStrings(parse(), "$Foo").isEmpty());
+	}
+
+	private static Document parse() throws XMLException {
+		return DOMUtil.createDocument(new StringReader(DXL));
+	}
+
+	private static byte[] bytes(int length) {
+		byte[] data = new byte[length];
+		for(int i = 0; i < data.length; i++) {
+			data[i] = (byte)(i * 31 + length);
+		}
+		return data;
+	}
+
+	// *******************************************************************************
+	// * The XPath-based item methods previously in DXLUtil
+	// *******************************************************************************
+
+	private static void legacyDeleteItems(Document dxlDoc, String itemName) throws XMLException {
+		// Force the side effect of checking for the note root
+		legacyGetRootNoteElement(dxlDoc);
+		
+		Object[] existingNodes = DOMUtil.evaluateXPath(dxlDoc, "/note/item[@name='" + DXLUtil.escapeXPathValue(itemName) + "']").getNodes(); //$NON-NLS-1$ //$NON-NLS-2$
+		for(Object existing : existingNodes) {
+			Node node = (Node)existing;
+			node.getParentNode().removeChild(node);
+		}
+	}
+
+	private static Element legacyWriteItemString(Document dxlDoc, String itemName, boolean removeExisting, CharSequence... value) throws XMLException {
+		if(removeExisting) {
+			legacyDeleteItems(dxlDoc, itemName);
+		}
+		
+		if(value != null) {
+			Element note = legacyGetRootNoteElement(dxlDoc);
+			Element item = DOMUtil.createElement(dxlDoc, note, "item"); //$NON-NLS-1$
+			item.setAttribute("name", itemName); //$NON-NLS-1$
+			if(value.length > 1) {
+				item = DOMUtil.createElement(dxlDoc, item, "textlist"); //$NON-NLS-1$
+			}
+			for(CharSequence val : value) {
+				Element text = DOMUtil.createElement(dxlDoc, item, "text"); //$NON-NLS-1$
+				text.setTextContent(StringUtil.toString(val));
+			}
+			return item;
+		} else {
+			return null;
+		}
+	}
+
+	private static void legacyWriteItemNumber(Document dxlDoc, String itemName, Number... value) throws XMLException {
+		legacyDeleteItems(dxlDoc, itemName);
+		
+		if(value != null) {
+			Element note = legacyGetRootNoteElement(dxlDoc);
+			Element item = DOMUtil.createElement(dxlDoc, note, "item"); //$NON-NLS-1$
+			item.setAttribute("name", itemName); //$NON-NLS-1$
+			for(Number val : value) {
+				Element number = DOMUtil.createElement(dxlDoc, item, "number"); //$NON-NLS-1$
+				number.setTextContent(StringUtil.toString(val));
+			}
+		}
+	}
+
+	private static void legacyWriteItemDataRaw(Document dxlDoc, String itemName, byte[] data, int itemCap, int headerSize) throws XMLException {
+		legacyDeleteItems(dxlDoc, itemName);
+
+		Element note = legacyGetRootNoteElement(dxlDoc);
+		
+		int dxlChunks = data.length / itemCap;
+		if(data.length % itemCap > 0) {
+			dxlChunks++;
+		}
+		int offset = 0;
+		Base64.Encoder base64 = Base64.getEncoder();
+		for (int i = 0; i < dxlChunks; i++) {
+			int chunkSize = Math.min(data.length-offset, itemCap + (i==0 ? headerSize : 0));
+			String chunkData = base64.encodeToString(Arrays.copyOfRange(data, offset, offset + chunkSize));
+	
+			Element itemNode = DOMUtil.createElement(dxlDoc, note, "item"); //$NON-NLS-1$
+			itemNode.setAttribute("name", itemName); //$NON-NLS-1$
+			Element fileDataNode = DOMUtil.createElement(dxlDoc, itemNode, "rawitemdata"); //$NON-NLS-1$
+			fileDataNode.setAttribute("type", "1"); //$NON-NLS-1$ //$NON-NLS-2$
+			// Write out the value with 72-column wrapping
+			StringBuilder wrapped = new StringBuilder("\n"); //$NON-NLS-1$
+			for(int stringIndex = 0; stringIndex < chunkData.length(); stringIndex += 72) {
+				wrapped.append(chunkData.substring(stringIndex, Math.min(stringIndex+72, chunkData.length())));
+				wrapped.append('\n');
+			}
+			fileDataNode.setTextContent(StringUtil.toString(wrapped));
+	
+			offset += chunkSize;
+		}
+	}
+
+	private static Element legacyGetRootNoteElement(Document dxlDoc) throws XMLException {
+		Element note = (Element)DOMUtil.evaluateXPath(dxlDoc, "/note").getSingleNode(); //$NON-NLS-1$
+		if(note == null) {
+			throw new IllegalStateException("Root element <note> not found. This is most likely because the ODP is not using binary DXL, and this is currently unsupported");
+		}
+		return note;
+	}
+}
@@ -0,0 +1,75 @@
+package org.openntf.maven.nsfodp.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.openntf.nsfodp.compiler.util.LotusScriptDependencies;
+
+/**
+ * Checks the ordering of LotusScript libraries by their {@code Use} statements, keyed by note
+ * ID as in the compiler.
+ */
+@SuppressWarnings("nls")
+public class TestLotusScriptDependencies {
+	private final Map<Integer, String> names = new HashMap<>();
+	private final Map<Integer, String> sources = new HashMap<>();
+
+	@Test
+	public void testFindUses() {
+		String script = "Option Public\n"
+			+ "Use \"First\"\n"
+			+ "%REM\n"
+			+ "Use \"Commented\"\n"
+			+ "%END REM\n"
+			+ "  use \"Second\" \n";
+		assertEquals(Arrays.asList("First", "Second"), Arrays.asList(LotusScriptDependencies.findUses(script).toArray()));
+	}
+
+	@Test
+	public void testSort() {
+		Integer a = library(1000, "A", "Use \"b\"\nUse \"Missing\"");
+		Integer b = library(1001, "B", "Use \"C\"");
+		Integer c = library(1002, "C", "");
+		assertEquals(Arrays.asList(c, b, a), sort(a, b, c));
+	}
+
+	@Test
+	public void testSelfUse() {
+		Integer a = library(1000, "A", "Use \"A\"");
+		Integer b = library(1001, "B", "");
+		IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> sort(b, a));
+		assertTrue(e.getMessage().endsWith("A -> A"), e.getMessage());
+	}
+
+	@Test
+	public void testCycle() {
+		Integer a = library(1000, "A", "Use \"B\"");
+		Integer b = library(1001, "B", "Use \"C\"");
+		Integer c = library(1002, "C", "Use \"A\"");
+		IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> sort(a, b, c));
+		assertTrue(e.getMessage().endsWith("A -> B -> C -> A"), e.getMessage());
+	}
+
+	private Integer library(int noteId, String name, String source) {
+		names.put(noteId, name);
+		sources.put(noteId, source);
+		return noteId;
+	}
+
+	private List<Integer> sort(Integer... libraries) {
+		return LotusScriptDependencies.sort(Arrays.asList(libraries), this::getNames, id -> LotusScriptDependencies.findUses(sources.get(id)));
+	}
+
+	private Collection<String> getNames(Integer noteId) {
+		return Collections.singletonList(names.get(noteId));
+	}
+}
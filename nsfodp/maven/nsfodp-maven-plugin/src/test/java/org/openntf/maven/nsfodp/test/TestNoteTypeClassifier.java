@@ -0,0 +1,353 @@
+package org.openntf.maven.nsfodp.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.openntf.nsfodp.commons.h.StdNames.*;
+
+import java.util.EnumSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.openntf.nsfodp.commons.FlagPattern;
+import org.openntf.nsfodp.commons.NoteType;
+import org.openntf.nsfodp.commons.NoteTypeClassifier;
+import org.openntf.nsfodp.commons.NoteTypeClassifier.NoteContext;
+import org.openntf.nsfodp.commons.h.NsfNote;
+
+/**
+ * Checks that {@link NoteTypeClassifier} and {@link FlagPattern} give the same results as the
+ * original string-scanning classification chain.
+ */
+@SuppressWarnings("nls")
+public class TestNoteTypeClassifier {
+	private static final int NOTE_CLASS_DOCUMENT = 0x0001;
+
+	private static final int[] NOTE_CLASSES = {
+		NsfNote.NOTE_CLASS_ACL, NsfNote.NOTE_CLASS_DESIGN, NsfNote.NOTE_CLASS_ICON, NsfNote.NOTE_CLASS_VIEW,
+		NsfNote.NOTE_CLASS_FIELD, NsfNote.NOTE_CLASS_HELP, NsfNote.NOTE_CLASS_INFO, NsfNote.NOTE_CLASS_FILTER,
+		NsfNote.NOTE_CLASS_FORM, NsfNote.NOTE_CLASS_REPLFORMULA, NOTE_CLASS_DOCUMENT
+	};
+	private static final String ALPHABET = "X0124FGKLJjUWsjhkmgiy.`[];,:|_^#{=@tzw~";
+
+	private static class Context implements NoteContext {
+		final String title;
+		final int assistType;
+		final boolean javaSource;
+		final String fileName;
+
+		Context(String title, int assistType, boolean javaSource, String fileName) {
+			this.title = title;
+			this.assistType = assistType;
+			this.javaSource = javaSource;
+			this.fileName = fileName;
+		}
+
+		@Override public String getTitle() { return title; }
+		@Override public int getAssistType() { return assistType; }
+		@Override public boolean hasJavaCompilerSource() { return javaSource; }
+		@Override public String getFileName() { return fileName; }
+	}
+
+	private static final Context EMPTY = new Context("", 0, false, null);
+
+	@Test
+	public void testKnownTypes() {
+		Set<NoteType> seen = EnumSet.noneOf(NoteType.class);
+		seen.add(check(NoteType.ACL, NsfNote.NOTE_CLASS_ACL, "", "", EMPTY));
+		seen.add(check(NoteType.DesignCollection, NsfNote.NOTE_CLASS_DESIGN, "", "", EMPTY));
+		seen.add(check(NoteType.IconNote, NsfNote.NOTE_CLASS_ICON | NsfNote.NOTE_CLASS_DEFAULT, "", "", EMPTY));
+		seen.add(check(NoteType.View, NsfNote.NOTE_CLASS_VIEW, "Y", "", EMPTY));
+		seen.add(check(NoteType.Folder, NsfNote.NOTE_CLASS_VIEW, "F", "", EMPTY));
+		seen.add(check(NoteType.Navigator, NsfNote.NOTE_CLASS_VIEW, "G", "", EMPTY));
+		seen.add(check(NoteType.SharedColumn, NsfNote.NOTE_CLASS_VIEW, "^", "", EMPTY));
+		seen.add(check(NoteType.SharedField, NsfNote.NOTE_CLASS_FIELD, "", "", EMPTY));
+		seen.add(check(NoteType.UsingDocument, NsfNote.NOTE_CLASS_HELP, "", "", EMPTY));
+		seen.add(check(NoteType.AboutDocument, NsfNote.NOTE_CLASS_INFO, "", "", EMPTY));
+		seen.add(check(NoteType.ReplicationFormula, NsfNote.NOTE_CLASS_REPLFORMULA, "", "", EMPTY));
+		seen.add(check(NoteType.AgentData, NsfNote.NOTE_CLASS_FORM, "X", "", EMPTY));
+		seen.add(check(NoteType.Unknown, NOTE_CLASS_DOCUMENT, "", "", EMPTY));
+
+		seen.add(check(NoteType.DBScript, NsfNote.NOTE_CLASS_FILTER, "t", "", EMPTY));
+		seen.add(check(NoteType.Outline, NsfNote.NOTE_CLASS_FILTER, "m", "", EMPTY));
+		seen.add(check(NoteType.LotusScriptLibrary, NsfNote.NOTE_CLASS_FILTER, "s", "", EMPTY));
+		seen.add(check(NoteType.LotusScriptWebServiceConsumer, NsfNote.NOTE_CLASS_FILTER, "s", "W", EMPTY));
+		seen.add(check(NoteType.JavaLibrary, NsfNote.NOTE_CLASS_FILTER, "34sj", "", EMPTY));
+		seen.add(check(NoteType.JavaWebServiceConsumer, NsfNote.NOTE_CLASS_FILTER, "34sj", "W", EMPTY));
+		seen.add(check(NoteType.JavaScriptLibrary, NsfNote.NOTE_CLASS_FILTER, "h", "", EMPTY));
+		seen.add(check(NoteType.ServerJavaScriptLibrary, NsfNote.NOTE_CLASS_FILTER, ".", "", EMPTY));
+		seen.add(check(NoteType.JavaWebService, NsfNote.NOTE_CLASS_FILTER, "{J", "", EMPTY));
+		seen.add(check(NoteType.LotusScriptWebService, NsfNote.NOTE_CLASS_FILTER, "{L", "", EMPTY));
+		seen.add(check(NoteType.DataConnection, NsfNote.NOTE_CLASS_FILTER, "k", "", EMPTY));
+		seen.add(check(NoteType.LotusScriptAgent, NsfNote.NOTE_CLASS_FILTER, "fL", "", EMPTY));
+		seen.add(check(NoteType.JavaAgent, NsfNote.NOTE_CLASS_FILTER, "fJ", "", new Context("", 0, true, null)));
+		seen.add(check(NoteType.ImportedJavaAgent, NsfNote.NOTE_CLASS_FILTER, "fJ", "", EMPTY));
+		seen.add(check(NoteType.SimpleActionAgent, NsfNote.NOTE_CLASS_FILTER, "f", "", new Context("", -1, false, null)));
+		seen.add(check(NoteType.FormulaAgent, NsfNote.NOTE_CLASS_FILTER, "f", "", EMPTY));
+
+		seen.add(check(NoteType.Form, NsfNote.NOTE_CLASS_FORM, "", "", EMPTY));
+		seen.add(check(NoteType.DBIcon, NsfNote.NOTE_CLASS_FORM, "i", "", new Context(IMAGE_NEW_DBICON_NAME, 0, false, null)));
+		seen.add(check(NoteType.ImageResource, NsfNote.NOTE_CLASS_FORM, "i", "", EMPTY));
+		seen.add(check(NoteType.Jar, NsfNote.NOTE_CLASS_FORM, ",", "", EMPTY));
+		seen.add(check(NoteType.WiringProperties, NsfNote.NOTE_CLASS_FORM, ":", "", EMPTY));
+		seen.add(check(NoteType.CompositeApplication, NsfNote.NOTE_CLASS_FORM, "|", "", EMPTY));
+		seen.add(check(NoteType.CompositeComponent, NsfNote.NOTE_CLASS_FORM, "g_", "", EMPTY));
+		seen.add(check(NoteType.CustomControl, NsfNote.NOTE_CLASS_FORM, "g;", "", EMPTY));
+		seen.add(check(NoteType.CustomControlProperties, NsfNote.NOTE_CLASS_FORM, "g;2", "", EMPTY));
+		seen.add(check(NoteType.XPage, NsfNote.NOTE_CLASS_FORM, "gK", "", EMPTY));
+		seen.add(check(NoteType.XPageProperties, NsfNote.NOTE_CLASS_FORM, "gK2", "", EMPTY));
+		seen.add(check(NoteType.Theme, NsfNote.NOTE_CLASS_FORM, "g`", "", EMPTY));
+		seen.add(check(NoteType.Page, NsfNote.NOTE_CLASS_FORM, "W", "", EMPTY));
+		seen.add(check(NoteType.StyleSheet, NsfNote.NOTE_CLASS_FORM, "=", "", EMPTY));
+		seen.add(check(NoteType.Subform, NsfNote.NOTE_CLASS_FORM, "U", "", EMPTY));
+		seen.add(check(NoteType.Frameset, NsfNote.NOTE_CLASS_FORM, "#", "", EMPTY));
+		seen.add(check(NoteType.DB2AccessView, NsfNote.NOTE_CLASS_FORM, "z", "", EMPTY));
+		seen.add(check(NoteType.FileResource, NsfNote.NOTE_CLASS_FORM, "g", "", EMPTY));
+		seen.add(check(NoteType.XSPDesignProperties, NsfNote.NOTE_CLASS_FORM, "g~", "", new Context("", 0, false, "xspdesign.properties")));
+		seen.add(check(NoteType.WebContentFile, NsfNote.NOTE_CLASS_FORM, "g~", "w", EMPTY));
+		seen.add(check(NoteType.Java, NsfNote.NOTE_CLASS_FORM, "g~[", "", EMPTY));
+		seen.add(check(NoteType.GenericFile, NsfNote.NOTE_CLASS_FORM, "g~", "", EMPTY));
+		seen.add(check(NoteType.SharedActions, NsfNote.NOTE_CLASS_FORM, "y", "", EMPTY));
+		seen.add(check(NoteType.Applet, NsfNote.NOTE_CLASS_FORM, "@", "", EMPTY));
+
+		assertEquals(EnumSet.allOf(NoteType.class), seen);
+	}
+
+	@Test
+	public void testMatchesLegacyChain() {
+		Random random = new Random(0);
+		Context[] contexts = {
+			EMPTY,
+			new Context(IMAGE_NEW_DBICON_NAME, ASSIST_TYPE_JAVA, true, "xspdesign.properties"),
+			new Context("foo", -1, false, "foo.txt")
+		};
+		for(int i = 0; i < 100000; i++) {
+			int noteClass = NOTE_CLASSES[random.nextInt(NOTE_CLASSES.length)];
+			String flags = randomFlags(random);
+			String flagsExt = randomFlags(random);
+			Context context = contexts[random.nextInt(contexts.length)];
+
+			NoteType expected = legacyClassify(noteClass, flags, flagsExt, context);
+			assertEquals(expected, NoteTypeClassifier.classify(noteClass, flags, flagsExt, context), () -> noteClass + " [" + flags + "] [" + flagsExt + "]");
+		}
+	}
+
+	@Test
+	public void testFlagPatterns() {
+		String[] patterns = {
+			DFLAGPAT_COMPDEF, DFLAGPAT_COMPAPP, DFLAGPAT_DATA_CONNECTION_RESOURCE, DFLAGPAT_DB2ACCESSVIEW, DFLAGPAT_FILE,
+			DFLAGPAT_FOLDER_DESIGN, DFLAGPAT_FRAMESET, DFLAGPAT_IMAGE_RESOURCE, DFLAGPAT_JAVAFILE, DFLAGPAT_JAVA_WEBSERVICE,
+			DFLAGPAT_LS_WEBSERVICE, DFLAGPAT_SACTIONS_DESIGN, DFLAGPAT_SCRIPTLIB_JAVA, DFLAGPAT_SCRIPTLIB_JS,
+			DFLAGPAT_SCRIPTLIB_SERVER_JS, DFLAGPAT_SCRIPTLIB_LS, DFLAGPAT_SHARED_COLS, DFLAGPAT_SITEMAP, DFLAGPAT_STYLEKIT,
+			DFLAGPAT_STYLE_SHEET_RESOURCE, DFLAGPAT_SUBFORM_DESIGN, DFLAGPAT_VIEWMAP_DESIGN, DFLAGPAT_WEBPAGE, DFLAGPAT_WIDGET,
+			DFLAGPAT_XSPCC, DFLAGPAT_XSPPAGE
+		};
+		Random random = new Random(0);
+		for(int i = 0; i < 10000; i++) {
+			String flags = randomFlags(random);
+			for(String pattern : patterns) {
+				assertEquals(legacyMatches(flags, pattern), FlagPattern.compile(pattern).matches(flags), () -> pattern + " [" + flags + "]");
+			}
+		}
+	}
+
+	// *******************************************************************************
+	// * Internal utility methods
+	// *******************************************************************************
+
+	private static NoteType check(NoteType expected, int noteClass, String flags, String flagsExt, Context context) {
+		assertEquals(expected, legacyClassify(noteClass, flags, flagsExt, context), "legacy");
+		assertEquals(expected, NoteTypeClassifier.classify(noteClass, flags, flagsExt, context));
+		return expected;
+	}
+
+	private static String randomFlags(Random random) {
+		int len = random.nextInt(5);
+		StringBuilder result = new StringBuilder(len);
+		for(int i = 0; i < len; i++) {
+			result.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+		}
+		return result.toString();
+	}
+
+	/**
+	 * The string-scanning pattern matcher previously in {@code NSFODPUtil}.
+	 */
+	private static boolean legacyMatches(String flags, String pattern) {
+		if(pattern == null || pattern.isEmpty()) {
+			return false;
+		}
+		String matchers = null;
+		String antiMatchers = null;
+		String allMatchers = null;
+		char first = pattern.charAt(0);
+		switch(first) {
+		case '+':
+			matchers = pattern.substring(1);
+			antiMatchers = "";
+			allMatchers = "";
+			break;
+		case '-':
+			matchers = "";
+			antiMatchers = pattern.substring(1);
+			allMatchers = "";
+			break;
+		case '*':
+			matchers = "";
+			antiMatchers = "";
+			allMatchers = pattern.substring(1);
+		case '(':
+			int plusIndex = pattern.indexOf('+');
+			int minusIndex = pattern.indexOf('-');
+			int starIndex = pattern.indexOf('*');
+			matchers = pattern.substring(plusIndex+1, minusIndex == -1 ? pattern.length() : minusIndex);
+			antiMatchers = minusIndex == -1 ? "" : pattern.substring(minusIndex+1, starIndex == -1 ? pattern.length() : starIndex);
+			allMatchers = starIndex == -1 ? "" : pattern.substring(starIndex+1);
+			break;
+		}
+		if(matchers == null) { matchers = ""; }
+		if(antiMatchers == null) { antiMatchers = ""; }
+		if(allMatchers == null) { allMatchers = ""; }
+
+		if(!matchers.isEmpty()) {
+			boolean matched = false;
+			for(int i = 0; i < matchers.length(); i++) {
+				if(flags.indexOf(matchers.charAt(i)) > -1) {
+					matched = true;
+					break;
+				}
+			}
+			if(!matched) {
+				return false;
+			}
+		}
+		for(int i = 0; i < antiMatchers.length(); i++) {
+			if(flags.indexOf(antiMatchers.charAt(i)) > -1) {
+				return false;
+			}
+		}
+		for(int i = 0; i < allMatchers.length(); i++) {
+			if(flags.indexOf(allMatchers.charAt(i)) == -1) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * The classification chain previously in {@code ODPExporter#forNote}.
+	 */
+	private static NoteType legacyClassify(int noteClass, String flags, String flagsExt, NoteContext context) {
+		if(flags.indexOf('X') > -1) {
+			return NoteType.AgentData;
+		}
+		switch(noteClass & NsfNote.NOTE_CLASS_NONPRIV) {
+		case NsfNote.NOTE_CLASS_ACL:
+			return NoteType.ACL;
+		case NsfNote.NOTE_CLASS_DESIGN:
+			return NoteType.DesignCollection;
+		case NsfNote.NOTE_CLASS_ICON:
+			return NoteType.IconNote;
+		case NsfNote.NOTE_CLASS_VIEW:
+			if(legacyMatches(flags, DFLAGPAT_FOLDER_DESIGN)) {
+				return NoteType.Folder;
+			} else if(legacyMatches(flags, DFLAGPAT_VIEWMAP_DESIGN)) {
+				return NoteType.Navigator;
+			} else if(legacyMatches(flags, DFLAGPAT_SHARED_COLS)) {
+				return NoteType.SharedColumn;
+			} else {
+				return NoteType.View;
+			}
+		case NsfNote.NOTE_CLASS_FIELD:
+			return NoteType.SharedField;
+		case NsfNote.NOTE_CLASS_HELP:
+			return NoteType.UsingDocument;
+		case NsfNote.NOTE_CLASS_INFO:
+			return NoteType.AboutDocument;
+		case NsfNote.NOTE_CLASS_FILTER:
+			if(flags.indexOf(DESIGN_FLAG_DATABASESCRIPT) > -1) {
+				return NoteType.DBScript;
+			} else if(legacyMatches(flags, DFLAGPAT_SITEMAP)) {
+				return NoteType.Outline;
+			} else if(legacyMatches(flags, DFLAGPAT_SCRIPTLIB_LS)) {
+				return flagsExt.indexOf(DESIGN_FLAGEXT_WEBSERVICELIB) > -1 ? NoteType.LotusScriptWebServiceConsumer : NoteType.LotusScriptLibrary;
+			} else if(legacyMatches(flags, DFLAGPAT_SCRIPTLIB_JAVA)) {
+				return flagsExt.indexOf(DESIGN_FLAGEXT_WEBSERVICELIB) > -1 ? NoteType.JavaWebServiceConsumer : NoteType.JavaLibrary;
+			} else if(legacyMatches(flags, DFLAGPAT_SCRIPTLIB_JS)) {
+				return NoteType.JavaScriptLibrary;
+			} else if(legacyMatches(flags, DFLAGPAT_SCRIPTLIB_SERVER_JS)) {
+				return NoteType.ServerJavaScriptLibrary;
+			} else if(legacyMatches(flags, DFLAGPAT_JAVA_WEBSERVICE)) {
+				return NoteType.JavaWebService;
+			} else if(legacyMatches(flags, DFLAGPAT_LS_WEBSERVICE)) {
+				return NoteType.LotusScriptWebService;
+			} else if(legacyMatches(flags, DFLAGPAT_DATA_CONNECTION_RESOURCE)) {
+				return NoteType.DataConnection;
+			}
+			int assistType = context.getAssistType();
+			if(flags.indexOf(DESIGN_FLAG_LOTUSSCRIPT_AGENT) > -1) {
+				return NoteType.LotusScriptAgent;
+			} else if(flags.indexOf(DESIGN_FLAG_JAVA_AGENT) > -1 || flags.indexOf(DESIGN_FLAG_JAVA_AGENT_WITH_SOURCE) > -1 || assistType == ASSIST_TYPE_JAVA) {
+				if(flags.indexOf(DESIGN_FLAG_JAVA_AGENT_WITH_SOURCE) > -1 || context.hasJavaCompilerSource()) {
+					return NoteType.JavaAgent;
+				} else {
+					return NoteType.ImportedJavaAgent;
+				}
+			} else if(assistType == -1) {
+				return NoteType.SimpleActionAgent;
+			} else {
+				return NoteType.FormulaAgent;
+			}
+		case NsfNote.NOTE_CLASS_FORM:
+			if(flags.isEmpty()) {
+				return NoteType.Form;
+			} else if(legacyMatches(flags, DFLAGPAT_IMAGE_RESOURCE)) {
+				return IMAGE_NEW_DBICON_NAME.equals(context.getTitle()) ? NoteType.DBIcon : NoteType.ImageResource;
+			} else if(flags.indexOf(DESIGN_FLAG_JARFILE) > -1) {
+				return NoteType.Jar;
+			} else if(legacyMatches(flags, DFLAGPAT_COMPDEF)) {
+				return NoteType.WiringProperties;
+			} else if(legacyMatches(flags, DFLAGPAT_COMPAPP)) {
+				return NoteType.CompositeApplication;
+			} else if(legacyMatches(flags, DFLAGPAT_WIDGET)) {
+				return NoteType.CompositeComponent;
+			} else if(legacyMatches(flags, DFLAGPAT_XSPCC)) {
+				return flags.indexOf(DESIGN_FLAG_PROPFILE) > -1 ? NoteType.CustomControlProperties : NoteType.CustomControl;
+			} else if(legacyMatches(flags, DFLAGPAT_XSPPAGE)) {
+				return flags.indexOf(DESIGN_FLAG_PROPFILE) > -1 ? NoteType.XPageProperties : NoteType.XPage;
+			} else if(legacyMatches(flags, DFLAGPAT_STYLEKIT)) {
+				return NoteType.Theme;
+			} else if(legacyMatches(flags, DFLAGPAT_WEBPAGE)) {
+				return NoteType.Page;
+			} else if(legacyMatches(flags, DFLAGPAT_STYLE_SHEET_RESOURCE)) {
+				return NoteType.StyleSheet;
+			} else if(legacyMatches(flags, DFLAGPAT_SUBFORM_DESIGN)) {
+				return NoteType.Subform;
+			} else if(legacyMatches(flags, DFLAGPAT_FRAMESET)) {
+				return NoteType.Frameset;
+			} else if(legacyMatches(flags, DFLAGPAT_DB2ACCESSVIEW)) {
+				return NoteType.DB2AccessView;
+			} else if(legacyMatches(flags, DFLAGPAT_FILE)) {
+				if(flags.indexOf(DESIGN_FLAG_HIDEFROMDESIGNLIST) == -1) {
+					return NoteType.FileResource;
+				} else if("xspdesign.properties".equals(context.getFileName())) {
+					return NoteType.XSPDesignProperties;
+				} else if(flagsExt.indexOf(DESIGN_FLAGEXT_WEBCONTENTFILE) > -1) {
+					return NoteType.WebContentFile;
+				} else if(legacyMatches(flags, DFLAGPAT_JAVAFILE)) {
+					return NoteType.Java;
+				} else {
+					return NoteType.GenericFile;
+				}
+			} else if(legacyMatches(flags, DFLAGPAT_SACTIONS_DESIGN)) {
+				return NoteType.SharedActions;
+			} else if(flags.indexOf(DESIGN_FLAG_JAVA_RESOURCE) > -1) {
+				return NoteType.Applet;
+			} else {
+				return NoteType.Form;
+			}
+		case NsfNote.NOTE_CLASS_REPLFORMULA:
+			return NoteType.ReplicationFormula;
+		}
+		return NoteType.Unknown;
+	}
+}
@@ -0,0 +1,64 @@
+package org.openntf.maven.nsfodp.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+import org.openntf.nsfodp.commons.io.SwiperOutputStream;
+
+/**
+ * Checks that {@link org.openntf.nsfodp.commons.io.SwiperFilter} produces the same output
+ * as the XSLT stylesheet for a corpus of exported DXL.
+ */
+@SuppressWarnings("nls")
+public class TestSwiperFilter {
+	private static final String[] CORPUS = {
+		"agent.xml",
+		"database.xml",
+		"form.xml",
+		"icon.xml",
+		"imageresource.xml",
+		"imageresource-dxl.xml",
+		"view.xml"
+	};
+
+	@TestFactory
+	public Stream<DynamicTest> testMatchesXslt() {
+		return Arrays.stream(CORPUS)
+			.map(name -> DynamicTest.dynamicTest(name, () -> {
+				String xslt = swipe(name, false);
+				String java = swipe(name, true);
+				assertEquals(xslt, java);
+			}));
+	}
+
+	private String swipe(String name, boolean javaFilter) throws IOException {
+		Path dest = Files.createTempFile(getClass().getName(), ".xml");
+		try {
+			try(
+				InputStream is = getClass().getResourceAsStream("/swiper/" + name);
+				OutputStream os = new SwiperOutputStream(dest, true, javaFilter)
+			) {
+				assertNotNull(is, name);
+				byte[] buf = new byte[4096];
+				int read;
+				while((read = is.read(buf)) > -1) {
+					os.write(buf, 0, read);
+				}
+			}
+			return new String(Files.readAllBytes(dest), StandardCharsets.UTF_8);
+		} finally {
+			Files.deleteIfExists(dest);
+		}
+	}
+}